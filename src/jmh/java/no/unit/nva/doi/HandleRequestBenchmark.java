@@ -0,0 +1,116 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import javax.ws.rs.core.HttpHeaders;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.LocalUpstreamServer;
+import no.unit.nva.utils.MockHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FetchDoiMetadata#handleRequest} end to end for a CrossRef DOI: served from the metadata store, fetched
+ * through a mocked HTTP client, and fetched over HTTP from a local stand-in for CrossRef. The handlers fetching
+ * upstream use a store that never keeps anything, so that every invocation does the lookup. Their CrossRef clients
+ * are not rate limited, which would otherwise shed most of the invocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandleRequestBenchmark {
+
+    public static final Map<String, Object> EVENT = Map.of(
+        FetchDoiMetadata.HEADERS, Map.of(HttpHeaders.ACCEPT, DataciteContentType.CITEPROC_JSON.getContentType()),
+        FetchDoiMetadata.BODY, HotPathBenchmark.LOOKUP_BODY);
+
+    private static final MetadataStore NO_STORE = new MetadataStore() {
+        @Override
+        public Optional<MetadataAndContentLocation> get(CacheKey key) {
+            return Optional.empty();
+        }
+
+        @Override
+        public void put(CacheKey key, MetadataAndContentLocation value) {
+            // nothing is kept
+        }
+    };
+
+    private PrintStream standardOut;
+    private LocalUpstreamServer upstream;
+    private FetchDoiMetadata fromStore;
+    private FetchDoiMetadata mockedClient;
+    private FetchDoiMetadata localServer;
+
+    /**
+     * Create the handlers and start the local server. The handlers log every request, so standard out is silenced
+     * to keep the logging out of the measurements and the benchmark output.
+     *
+     * @throws IOException when the sample cannot be read or the server cannot be started.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        standardOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        String metadata = IoUtils.resourceAsString(Paths.get("crossRefSample.json"));
+        MockHttpClient<String> mockHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(metadata));
+        upstream = LocalUpstreamServer.start(metadata);
+
+        fromStore = new FetchDoiMetadata(new FakeDataciteClient(), unlimitedCrossRefClient(mockHttpClient));
+        mockedClient = new FetchDoiMetadata(new FakeDataciteClient(), unlimitedCrossRefClient(mockHttpClient),
+                                            NO_STORE);
+        localServer = new FetchDoiMetadata(new FakeDataciteClient(),
+                                           unlimitedCrossRefClient(upstream.httpClient()), NO_STORE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        upstream.close();
+        System.setOut(standardOut);
+    }
+
+    private static CrossRefClient unlimitedCrossRefClient(HttpClient httpClient) {
+        Config config = Config.getInstance();
+        return new CrossRefClient(httpClient, RetryPolicy.fromConfig(config),
+                                  CircuitBreaker.fromConfig(CrossRefClient.NAME, config),
+                                  new RateLimiter(CrossRefClient.NAME, Integer.MAX_VALUE, Duration.ofSeconds(1),
+                                                  Duration.ZERO),
+                                  null);
+    }
+
+    @Benchmark
+    public GatewayResponse handleRequestFromStore() {
+        return fromStore.handleRequest(EVENT, null);
+    }
+
+    @Benchmark
+    public GatewayResponse handleRequestWithMockedClient() {
+        return mockedClient.handleRequest(EVENT, null);
+    }
+
+    @Benchmark
+    public GatewayResponse handleRequestWithLocalServer() {
+        return localServer.handleRequest(EVENT, null);
+    }
+}
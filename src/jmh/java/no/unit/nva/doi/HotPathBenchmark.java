@@ -0,0 +1,117 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.MockHttpClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The steps every request goes through before and after the upstream lookup, each measured on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotPathBenchmark {
+
+    public static final String DOI_STRING = "10.1007/s00115-004-1822-4";
+    public static final String DOI_URL = "https://doi.org/" + DOI_STRING;
+    public static final String INVALID_DOI = "https://example.org/not/a/doi";
+    public static final String LOOKUP_BODY = "{\"doi\":\"" + DOI_URL + "\"}";
+    public static final String CONTENT_LOCATION = "Content-Location";
+
+    private CrossRefClient crossRefClient;
+    private String metadata;
+    private String canonical;
+    private CompactMetadataEntry cacheEntry;
+
+    /**
+     * Read the sample metadata, transform it into the canonical representation the store holds, and create a client
+     * that is never asked to send anything.
+     *
+     * @throws IOException when the sample cannot be read.
+     */
+    @Setup
+    public void setUp() throws IOException {
+        metadata = IoUtils.resourceAsString(Paths.get("crossRefSample.json"));
+        canonical = WorkTransformer.transform(metadata, DoiMetadataResolver.CANONICAL_CONTENT_TYPE);
+        crossRefClient = new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus200<>(metadata)));
+        cacheEntry = encodeCacheEntry();
+    }
+
+    @Benchmark
+    public boolean isValidDoiUrl() {
+        return FetchDoiMetadata.isValidDoi(DOI_URL);
+    }
+
+    @Benchmark
+    public boolean isValidDoiString() {
+        return FetchDoiMetadata.isValidDoi(DOI_STRING);
+    }
+
+    @Benchmark
+    public boolean isValidDoiRejected() {
+        return FetchDoiMetadata.isValidDoi(INVALID_DOI);
+    }
+
+    @Benchmark
+    public Optional<Doi> parseDoiUrl() {
+        return Doi.parse(DOI_URL);
+    }
+
+    @Benchmark
+    public DataciteContentType lookupContentType() {
+        return DataciteContentType.lookup(DataciteContentType.DATACITE_XML.getContentType());
+    }
+
+    @Benchmark
+    public DoiLookup parseDoiLookup() {
+        return FetchDoiMetadata.GSON.fromJson(LOOKUP_BODY, DoiLookup.class);
+    }
+
+    @Benchmark
+    public URI createUrlToCrossRef() throws URISyntaxException {
+        return crossRefClient.createUrlToCrossRef(DOI_URL);
+    }
+
+    @Benchmark
+    public String transformWorkToDataciteXml() throws IOException {
+        return WorkTransformer.transform(metadata, DataciteContentType.DATACITE_XML);
+    }
+
+    @Benchmark
+    public GatewayResponse createGatewayResponse() {
+        return new GatewayResponse(metadata, 200, DataciteContentType.CITEPROC_JSON.getContentType(),
+                                   Map.of(CONTENT_LOCATION, CrossRefClient.CROSSREF_LINK));
+    }
+
+    @Benchmark
+    public CompactMetadataEntry encodeCacheEntry() {
+        return CompactMetadataEntry.encode(new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, canonical),
+                                           DoiMetadataResolver.CANONICAL_CONTENT_TYPE, Instant.EPOCH);
+    }
+
+    @Benchmark
+    public MetadataAndContentLocation decodeCacheEntry() {
+        return cacheEntry.decode();
+    }
+}
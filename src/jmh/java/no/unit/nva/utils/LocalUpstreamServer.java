@@ -0,0 +1,86 @@
+package no.unit.nva.utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Stand-in for an upstream registry on the loopback interface. Every request is answered with the same JSON body, so
+ * that benchmarks measure the HTTP round trip and the handling of the response rather than the registry.
+ */
+public final class LocalUpstreamServer implements AutoCloseable {
+
+    /**
+     * Without TCP_NODELAY the response headers and body are held back by Nagle's algorithm waiting for a delayed ACK,
+     * which adds some 40 ms to every round trip on the loopback interface.
+     */
+    public static final String NODELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] body;
+
+    private LocalUpstreamServer(HttpServer server, ExecutorService executor, String body) {
+        this.server = server;
+        this.executor = executor;
+        this.body = body.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Start a server on a free port.
+     *
+     * @param body the JSON body of every response.
+     * @return the running server.
+     * @throws IOException when the server cannot be started.
+     */
+    public static LocalUpstreamServer start(String body) throws IOException {
+        System.setProperty(NODELAY_PROPERTY, Boolean.TRUE.toString());
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        LocalUpstreamServer upstream = new LocalUpstreamServer(server, executor, body);
+        server.createContext("/", upstream::respond);
+        server.setExecutor(executor);
+        server.start();
+        return upstream;
+    }
+
+    private void respond(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        exchange.getResponseHeaders().set(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(body);
+        }
+    }
+
+    public URI getUri() {
+        InetSocketAddress address = server.getAddress();
+        return URI.create("http://" + address.getHostString() + ":" + address.getPort());
+    }
+
+    /**
+     * A client sending every request to this server, whatever host the request was addressed to.
+     *
+     * @return the client.
+     */
+    public HttpClient httpClient() {
+        return new RedirectingHttpClient(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(),
+                                         getUri());
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
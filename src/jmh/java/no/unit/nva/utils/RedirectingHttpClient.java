@@ -0,0 +1,112 @@
+package no.unit.nva.utils;
+
+import java.io.IOException;
+import java.net.Authenticator;
+import java.net.CookieHandler;
+import java.net.ProxySelector;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.PushPromiseHandler;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * Client that sends requests to another host than the one they are addressed to, keeping path, query, method and
+ * headers. It lets the CrossRef and DataCite clients talk to a {@link LocalUpstreamServer} unchanged.
+ */
+public class RedirectingHttpClient extends HttpClient {
+
+    private final HttpClient delegate;
+    private final URI target;
+
+    public RedirectingHttpClient(HttpClient delegate, URI target) {
+        super();
+        this.delegate = delegate;
+        this.target = target;
+    }
+
+    private HttpRequest redirect(HttpRequest request) {
+        URI redirected = target.resolve(request.uri().getRawPath()
+                                            + Optional.ofNullable(request.uri().getRawQuery())
+                                                      .map(query -> "?" + query)
+                                                      .orElse(""));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(redirected)
+                                                 .method(request.method(),
+                                                         request.bodyPublisher().orElse(BodyPublishers.noBody()));
+        request.headers().map().forEach((name, values) -> values.forEach(value -> builder.header(name, value)));
+        request.timeout().ifPresent(builder::timeout);
+        return builder.build();
+    }
+
+    @Override
+    public <T> HttpResponse<T> send(HttpRequest request, BodyHandler<T> responseBodyHandler)
+        throws IOException, InterruptedException {
+        return delegate.send(redirect(request), responseBodyHandler);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            BodyHandler<T> responseBodyHandler) {
+        return delegate.sendAsync(redirect(request), responseBodyHandler);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            BodyHandler<T> responseBodyHandler,
+                                                            PushPromiseHandler<T> pushPromiseHandler) {
+        return delegate.sendAsync(redirect(request), responseBodyHandler, pushPromiseHandler);
+    }
+
+    @Override
+    public Optional<CookieHandler> cookieHandler() {
+        return delegate.cookieHandler();
+    }
+
+    @Override
+    public Optional<Duration> connectTimeout() {
+        return delegate.connectTimeout();
+    }
+
+    @Override
+    public Redirect followRedirects() {
+        return delegate.followRedirects();
+    }
+
+    @Override
+    public Optional<ProxySelector> proxy() {
+        return delegate.proxy();
+    }
+
+    @Override
+    public SSLContext sslContext() {
+        return delegate.sslContext();
+    }
+
+    @Override
+    public SSLParameters sslParameters() {
+        return delegate.sslParameters();
+    }
+
+    @Override
+    public Optional<Authenticator> authenticator() {
+        return delegate.authenticator();
+    }
+
+    @Override
+    public Version version() {
+        return delegate.version();
+    }
+
+    @Override
+    public Optional<Executor> executor() {
+        return delegate.executor();
+    }
+}
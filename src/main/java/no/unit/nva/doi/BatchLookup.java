@@ -0,0 +1,241 @@
+package no.unit.nva.doi;
+
+import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Resolves a list of DOIs concurrently with a bounded number of parallel lookups. Identical DOIs are resolved once,
+ * and every distinct DOI gets its own result or error in the response.
+ *
+ * <p>The lookups of all batches share one pool of threads, so concurrent batches in a container do not add threads
+ * beyond the configured parallelism. A batch ends before the response margin of the invocation: DOIs that are not
+ * resolved by then, or that would start with too little time left, get a 503 result without being looked up.
+ */
+public class BatchLookup {
+
+    public static final String RESULTS = "results";
+    public static final String DOI = "doi";
+    public static final String STATUS = "status";
+    public static final String CONTENT_LOCATION = "contentLocation";
+    public static final String METADATA = "metadata";
+    public static final String ERROR = "error";
+    public static final String TOO_MANY_DOIS = "A batch may contain at most %d DOIs";
+    public static final String NOT_RESOLVED_IN_TIME = "Not resolved before the invocation deadline";
+    public static final String THREAD_NAME = "batch-lookup";
+    /**
+     * The time a lookup needs at least to be started: the response margin and the time an attempt is worth making.
+     */
+    public static final Duration MIN_LOOKUP_TIME =
+        InvocationDeadline.RESPONSE_MARGIN.plus(RetryPolicy.MIN_ATTEMPT_TIME);
+    private static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+
+    private final transient DoiMetadataResolver resolver;
+    private final int maxBatchSize;
+    private final transient ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param resolver     the resolver used for every DOI.
+     * @param parallelism  the maximum number of DOIs resolved at the same time, by all batches together.
+     * @param maxBatchSize the maximum number of distinct DOIs in one batch.
+     */
+    public BatchLookup(DoiMetadataResolver resolver, int parallelism, int maxBatchSize) {
+        this.resolver = resolver;
+        this.maxBatchSize = maxBatchSize;
+        this.executor = Executors.newFixedThreadPool(Math.max(1, parallelism), BatchLookup::newThread);
+    }
+
+    public static BatchLookup fromConfig(DoiMetadataResolver resolver, Config config) {
+        return new BatchLookup(resolver, config.getBatchParallelism(), config.getBatchMaxSize());
+    }
+
+    /**
+     * Resolve all DOIs in the batch.
+     *
+     * @param dois                the DOIs as given by the client.
+     * @param dataciteContentType the requested content type.
+     * @return a JSON object with one entry in "results" for every distinct DOI, in the order they were given.
+     */
+    public JsonObject resolveAll(List<String> dois, DataciteContentType dataciteContentType) {
+        return resolveAll(dois, dataciteContentType, BodyFilter.NONE);
+    }
+
+    /**
+     * Resolve all DOIs in the batch and apply a projection to the metadata of each.
+     *
+     * @param dois                the DOIs as given by the client.
+     * @param dataciteContentType the requested content type.
+     * @param projection          the projection applied to every result.
+     * @return a JSON object with one entry in "results" for every distinct DOI, in the order they were given.
+     */
+    public JsonObject resolveAll(List<String> dois, DataciteContentType dataciteContentType,
+                                 BodyFilter projection) {
+        Map<CacheKey, String> distinctDois = new LinkedHashMap<>();
+        dois.stream()
+            .filter(Objects::nonNull)
+            .forEach(doi -> distinctDois.putIfAbsent(CacheKey.of(doi, dataciteContentType), doi));
+        if (distinctDois.size() > maxBatchSize) {
+            throw new IllegalArgumentException(String.format(TOO_MANY_DOIS, maxBatchSize));
+        }
+
+        List<Future<JsonObject>> futures = new ArrayList<>();
+        for (String doi : distinctDois.values()) {
+            futures.add(executor.submit(lookup(doi, dataciteContentType, projection)));
+        }
+        JsonArray results = new JsonArray();
+        int index = 0;
+        for (String doi : distinctDois.values()) {
+            results.add(await(futures.get(index++), doi));
+        }
+        JsonObject response = new JsonObject();
+        response.add(RESULTS, results);
+        return response;
+    }
+
+    private Callable<JsonObject> lookup(String doi, DataciteContentType dataciteContentType,
+                                        BodyFilter projection) {
+        return () -> hasTimeLeft()
+            ? resolve(doi, dataciteContentType, projection)
+            : errorResult(doi, SERVICE_UNAVAILABLE.getStatusCode(), NOT_RESOLVED_IN_TIME);
+    }
+
+    private static boolean hasTimeLeft() {
+        return InvocationDeadline.remaining().compareTo(MIN_LOOKUP_TIME) > 0;
+    }
+
+    /**
+     * Wait for the result of a lookup until the response margin of the invocation, and give the lookup up after that.
+     */
+    private static JsonObject await(Future<JsonObject> future, String doi) {
+        Duration remaining = InvocationDeadline.remaining();
+        try {
+            if (remaining.compareTo(UNBOUNDED) >= 0) {
+                return future.get();
+            }
+            return future.get(remaining.minus(InvocationDeadline.RESPONSE_MARGIN).toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return errorResult(doi, SERVICE_UNAVAILABLE.getStatusCode(), NOT_RESOLVED_IN_TIME);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Resolve a single DOI into its result entry.
+     *
+     * @param doi                 the DOI as given by the client.
+     * @param dataciteContentType the requested content type.
+     * @param projection          the projection applied to the metadata.
+     * @return the result, with the metadata or the status and message of the error.
+     */
+    protected JsonObject resolve(String doi, DataciteContentType dataciteContentType, BodyFilter projection) {
+        try {
+            return resolveOrThrow(doi, dataciteContentType, projection);
+        } catch (IOException e) {
+            return unavailableResult(doi, e);
+        }
+    }
+
+    /**
+     * Resolve a single DOI into its result entry, but throw the failures of the upstreams instead of turning them
+     * into results, so that the caller can try again.
+     *
+     * @param doi                 the DOI as given by the client.
+     * @param dataciteContentType the requested content type.
+     * @param projection          the projection applied to the metadata.
+     * @return the result, with the metadata or the status and message of an error that is not an upstream failure,
+     *     such as 404 for a DOI no registration agency knows.
+     * @throws IOException when no upstream could be reached or none answered with the metadata.
+     */
+    protected JsonObject resolveOrThrow(String doi, DataciteContentType dataciteContentType, BodyFilter projection)
+        throws IOException {
+        if (!FetchDoiMetadata.isValidDoi(doi)) {
+            return errorResult(doi, BAD_REQUEST.getStatusCode(), FetchDoiMetadata.INVALID_DOI_URL);
+        }
+        try {
+            MetadataAndContentLocation metadata = resolver.resolve(doi, dataciteContentType);
+            JsonObject result = new JsonObject();
+            result.addProperty(DOI, doi);
+            result.addProperty(STATUS, OK.getStatusCode());
+            result.addProperty(CONTENT_LOCATION, metadata.getContentHeader());
+            result.add(METADATA, asJsonElement(FetchDoiMetadata.project(projection, metadata.getJson())));
+            return result;
+        } catch (FileNotFoundException e) {
+            return errorResult(doi, NOT_FOUND.getStatusCode(), e.getMessage());
+        } catch (URISyntaxException | RuntimeException e) {
+            return errorResult(doi, INTERNAL_SERVER_ERROR.getStatusCode(), e.getMessage());
+        }
+    }
+
+    /**
+     * The result of a DOI that could not be resolved because of an upstream failure.
+     *
+     * @param doi   the DOI as given by the client.
+     * @param error the failure.
+     * @return the result, with status 503 and the message of the failure.
+     */
+    protected static JsonObject unavailableResult(String doi, IOException error) {
+        return errorResult(doi, SERVICE_UNAVAILABLE.getStatusCode(), error.getMessage());
+    }
+
+    private static JsonObject errorResult(String doi, int status, String message) {
+        JsonObject result = new JsonObject();
+        result.addProperty(DOI, doi);
+        result.addProperty(STATUS, status);
+        result.addProperty(ERROR, message);
+        return result;
+    }
+
+    /**
+     * Embed JSON metadata as JSON and anything else, such as DataCite XML, as a string.
+     */
+    protected static JsonElement asJsonElement(String metadata) {
+        String trimmed = metadata.trim();
+        if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+            try {
+                return JsonParser.parseString(trimmed);
+            } catch (JsonParseException e) {
+                return new JsonPrimitive(metadata);
+            }
+        }
+        return new JsonPrimitive(metadata);
+    }
+}
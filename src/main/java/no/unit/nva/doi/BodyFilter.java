@@ -0,0 +1,42 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * Copies a metadata document from a reader to a writer, possibly changing it on the way. Implementations must work
+ * in a single streaming pass without holding the whole document in memory.
+ */
+@FunctionalInterface
+public interface BodyFilter {
+
+    /**
+     * Copies the document unchanged.
+     */
+    BodyFilter NONE = Reader::transferTo;
+
+    /**
+     * Copy the document.
+     *
+     * @param in  the document.
+     * @param out where the filtered document is written.
+     * @throws IOException when reading or writing fails, or the document cannot be parsed.
+     */
+    void copy(Reader in, Writer out) throws IOException;
+
+    /**
+     * Filter a document held in memory.
+     *
+     * @param document the document.
+     * @return the filtered document.
+     * @throws IOException when the document cannot be parsed.
+     */
+    default String apply(String document) throws IOException {
+        StringWriter out = new StringWriter(document.length());
+        copy(new StringReader(document), out);
+        return out.toString();
+    }
+}
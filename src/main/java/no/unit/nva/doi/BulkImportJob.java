@@ -0,0 +1,391 @@
+package no.unit.nva.doi;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.ws.rs.core.Response.Status.OK;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+import com.google.gson.JsonObject;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Job entry point resolving every DOI of a newline-delimited input file, for catalogue migrations. The DOIs are
+ * resolved by the shared resolver with a bounded number of parallel lookups, so CrossRef lookups stay behind the rate
+ * limiter of the container, and every input line gets one result line in the NDJSON output, in the order of the input.
+ * Blank lines are skipped.
+ *
+ * <p>The input is read in chunks. After every chunk the output is flushed and a checkpoint with the number of lines
+ * done and the length of the output is written next to the output. The job stops before the invocation times out and
+ * returns its progress, and invoking it again with the same request resumes it where the checkpoint says. It also
+ * stops at a DOI the upstreams keep refusing to look up, so that a resumed job looks it up rather than losing it.
+ *
+ * <p>A resumed job may run in another container, so in Lambda the output and its checkpoint must be on the file
+ * system all containers mount, which is configured as the bulk import directory. Outputs outside it are rejected, and
+ * relative outputs are resolved in it.
+ */
+public class BulkImportJob implements RequestHandler<BulkImportRequest, BulkImportProgress> {
+
+    public static final String SERVICE = "BulkImportJob";
+    public static final String CHECKPOINT_SUFFIX = ".checkpoint";
+    public static final String MISSING_LOCATION = "A bulk import needs an input and an output";
+    public static final String OUTSIDE_DIRECTORY = "The output %s is not in the bulk import directory %s";
+    public static final String INPUT_UNAVAILABLE = "Reading %s failed with status %d";
+    public static final String PROGRESS = "Bulk import of %s: %d lines done, %d resolved, %d failed, %.1f DOIs/s, %s";
+    public static final String COMPLETE = "complete";
+    public static final String TO_BE_RESUMED = "to be resumed";
+    public static final int CHUNKS_PER_WORKER = 4;
+    public static final int TRANSIENT_FAILURE_ROUNDS = 3;
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final String HTTP_PREFIX = "http://";
+    private static final String HTTPS_PREFIX = "https://";
+    private static final String FILE_PREFIX = "file:";
+    private static final char NEWLINE = '\n';
+    private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+    private final transient BatchLookup batchLookup;
+    private final transient HttpClient httpClient;
+    private final int parallelism;
+    private final Duration deadlineReserve;
+    private final Duration transientFailureDelay;
+    private final Path directory;
+
+    public BulkImportJob() {
+        this(new FetchDoiMetadata().getResolver(), SharedHttpClient.getInstance(), Config.getInstance());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param resolver   the resolver used for every DOI.
+     * @param httpClient the client reading inputs given as http(s) URLs.
+     * @param config     the configuration, giving the parallelism, the time kept in reserve for the checkpoint, the
+     *                   longest retry delay, which is the wait before lookups that failed are sent again, and the
+     *                   directory outputs are written to.
+     */
+    public BulkImportJob(DoiMetadataResolver resolver, HttpClient httpClient, Config config) {
+        this.batchLookup = BatchLookup.fromConfig(resolver, config);
+        this.httpClient = httpClient;
+        this.parallelism = Math.max(1, config.getBulkImportParallelism());
+        this.deadlineReserve = Duration.ofMillis(config.getBulkImportDeadlineReserveMillis());
+        this.transientFailureDelay = Duration.ofMillis(config.getRetryMaxDelayMillis());
+        this.directory = Optional.ofNullable(config.getBulkImportDirectory())
+                                 .filter(path -> !path.isBlank())
+                                 .map(path -> Paths.get(path).toAbsolutePath().normalize())
+                                 .orElse(null);
+    }
+
+    @Override
+    public BulkImportProgress handleRequest(BulkImportRequest request, Context context) {
+        Metrics metrics = FetchDoiMetadata.startInvocation(context, SERVICE);
+        try {
+            return run(request);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Resolve the DOIs of the input from the checkpoint on, until the input ends or the invocation is about to time
+     * out.
+     *
+     * @param request the locations of the input and the output, and the requested content type.
+     * @return the progress of the job, which is complete when the whole input has been resolved.
+     * @throws IOException when the input, the output or the checkpoint cannot be read or written.
+     */
+    public BulkImportProgress run(BulkImportRequest request) throws IOException {
+        if (request.getInput() == null || request.getOutput() == null) {
+            throw new IllegalArgumentException(MISSING_LOCATION);
+        }
+        DataciteContentType contentType = DataciteContentType.lookup(
+            Optional.ofNullable(request.getContentType()).orElse(DataciteContentType.CITEPROC_JSON.getContentType()));
+        Path output = outputPath(request.getOutput());
+        Path checkpoint = checkpointOf(output);
+        BulkImportProgress progress = readCheckpoint(checkpoint);
+        if (progress.isComplete()) {
+            return progress;
+        }
+        long started = System.nanoTime();
+        long handledBefore = progress.getResolved() + progress.getFailed();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        try (BufferedReader input = openInput(request.getInput());
+            FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            channel.truncate(progress.getOutputBytes());
+            channel.position(progress.getOutputBytes());
+            Writer writer = new BufferedWriter(Channels.newWriter(channel, UTF_8));
+            skip(input, progress.getPosition());
+            boolean complete = false;
+            boolean refused = false;
+            while (!complete && !refused && hasTimeLeft()) {
+                List<String> lines = readChunk(input);
+                complete = lines.isEmpty();
+                if (!complete) {
+                    refused = !resolveChunk(executor, lines, contentType, writer, channel, progress);
+                    writeCheckpoint(checkpoint, progress);
+                }
+            }
+            progress.setComplete(complete);
+            writeCheckpoint(checkpoint, progress);
+        } finally {
+            executor.shutdownNow();
+        }
+        report(request, progress, progress.getResolved() + progress.getFailed() - handledBefore, started);
+        return progress;
+    }
+
+    /**
+     * The path of the output, which must be in the bulk import directory when one is configured.
+     */
+    private Path outputPath(String location) {
+        if (directory == null) {
+            return Paths.get(location);
+        }
+        Path output = directory.resolve(location).normalize();
+        if (!output.startsWith(directory) || output.equals(directory)) {
+            throw new IllegalArgumentException(String.format(OUTSIDE_DIRECTORY, location, directory));
+        }
+        return output;
+    }
+
+    /**
+     * The checkpoint of the job writing the given output.
+     *
+     * @param output the path of the output.
+     * @return the path of the checkpoint.
+     */
+    public static Path checkpointOf(Path output) {
+        return output.resolveSibling(output.getFileName() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * Open the input, which is either read over HTTP or from the file system.
+     *
+     * @param location a local path, a file URI or an http(s) URL.
+     * @return a reader of the input.
+     * @throws IOException when the input cannot be opened.
+     */
+    protected BufferedReader openInput(String location) throws IOException {
+        if (location.startsWith(HTTP_PREFIX) || location.startsWith(HTTPS_PREFIX)) {
+            HttpResponse<InputStream> response = get(URI.create(location));
+            if (response.statusCode() != OK.getStatusCode()) {
+                response.body().close();
+                throw new IOException(String.format(INPUT_UNAVAILABLE, location, response.statusCode()));
+            }
+            return new BufferedReader(new InputStreamReader(response.body(), UTF_8));
+        }
+        Path path = location.startsWith(FILE_PREFIX) ? Paths.get(URI.create(location)) : Paths.get(location);
+        return Files.newBufferedReader(path, UTF_8);
+    }
+
+    private HttpResponse<InputStream> get(URI uri) throws IOException {
+        try {
+            return httpClient.sendAsync(HttpRequest.newBuilder(uri).GET().build(), BodyHandlers.ofInputStream())
+                             .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+        }
+    }
+
+    private boolean hasTimeLeft() {
+        return InvocationDeadline.remaining().compareTo(deadlineReserve) > 0;
+    }
+
+    private static void skip(BufferedReader input, long lines) throws IOException {
+        long skipped = 0;
+        while (skipped < lines && input.readLine() != null) {
+            skipped++;
+        }
+    }
+
+    private List<String> readChunk(BufferedReader input) throws IOException {
+        int chunkSize = parallelism * CHUNKS_PER_WORKER;
+        List<String> lines = new ArrayList<>(chunkSize);
+        while (lines.size() < chunkSize) {
+            String line = input.readLine();
+            if (line == null) {
+                break;
+            }
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * Resolve the DOIs of a chunk concurrently and write their results in the order of the input. Lookups that fail
+     * for a reason that says nothing about the DOI are sent again, in up to {@link #TRANSIENT_FAILURE_ROUNDS} rounds.
+     * A DOI that the upstreams still refuse to look up, because a circuit breaker is open or a rate limit is reached,
+     * is not written: the chunk ends before its line, so that the checkpoint resumes there.
+     *
+     * @return whether every line of the chunk was written.
+     */
+    private boolean resolveChunk(ExecutorService executor, List<String> lines, DataciteContentType contentType,
+                                 Writer writer, FileChannel channel, BulkImportProgress progress) throws IOException {
+        long started = System.nanoTime();
+        JsonObject[] results = new JsonObject[lines.size()];
+        IOException[] failures = new IOException[lines.size()];
+        List<Integer> pending = new ArrayList<>();
+        for (int index = 0; index < lines.size(); index++) {
+            if (!lines.get(index).isBlank()) {
+                pending.add(index);
+            }
+        }
+        for (int round = 1; !pending.isEmpty(); round++) {
+            if (round > 1) {
+                pause(round - 1);
+            }
+            resolveAll(executor, lines, pending, contentType, results, failures);
+            pending = transientFailures(pending, failures);
+            if (round == TRANSIENT_FAILURE_ROUNDS || !hasTimeLeft()) {
+                break;
+            }
+        }
+        int written = 0;
+        long resolved = 0;
+        long failed = 0;
+        while (written < lines.size() && !(failures[written] instanceof UpstreamUnavailableException)) {
+            JsonObject result = results[written++];
+            if (result == null) {
+                continue;
+            }
+            if (result.get(BatchLookup.STATUS).getAsInt() == OK.getStatusCode()) {
+                resolved++;
+            } else {
+                failed++;
+            }
+            writer.write(FetchDoiMetadata.GSON.toJson(result));
+            writer.write(NEWLINE);
+        }
+        writer.flush();
+        channel.force(false);
+        progress.add(written, resolved, failed, Duration.ofNanos(System.nanoTime() - started), channel.position());
+        return written == lines.size();
+    }
+
+    /**
+     * Resolve the DOIs of the given lines concurrently, keeping the result of every line and the upstream failure
+     * behind it, if any.
+     */
+    private void resolveAll(ExecutorService executor, List<String> lines, List<Integer> indexes,
+                            DataciteContentType contentType, JsonObject[] results, IOException[] failures) {
+        List<Future<JsonObject>> futures = new ArrayList<>();
+        for (int index : indexes) {
+            String doi = lines.get(index).strip();
+            futures.add(executor.submit(() -> batchLookup.resolveOrThrow(doi, contentType, BodyFilter.NONE)));
+        }
+        for (int i = 0; i < indexes.size(); i++) {
+            int index = indexes.get(i);
+            try {
+                results[index] = result(futures.get(i));
+                failures[index] = null;
+            } catch (IOException e) {
+                results[index] = BatchLookup.unavailableResult(lines.get(index).strip(), e);
+                failures[index] = e;
+            }
+        }
+    }
+
+    /**
+     * The lines whose lookup failed for a reason that says nothing about the DOI. A DOI no registration agency knows
+     * is not a failure but a 404 result.
+     */
+    private static List<Integer> transientFailures(List<Integer> indexes, IOException[] failures) {
+        List<Integer> transientFailures = new ArrayList<>();
+        for (int index : indexes) {
+            if (failures[index] != null) {
+                transientFailures.add(index);
+            }
+        }
+        return transientFailures;
+    }
+
+    /**
+     * Wait before the next round of lookups, a little longer after every round.
+     */
+    private void pause(int round) throws IOException {
+        try {
+            Thread.sleep(transientFailureDelay.toMillis() * round);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private static JsonObject result(Future<JsonObject> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Read the checkpoint of a job.
+     *
+     * @param checkpoint the path of the checkpoint.
+     * @return the progress stored in the checkpoint, or the progress of a new job when there is no checkpoint.
+     * @throws IOException when the checkpoint exists but cannot be read.
+     */
+    protected static BulkImportProgress readCheckpoint(Path checkpoint) throws IOException {
+        if (!Files.exists(checkpoint)) {
+            return new BulkImportProgress();
+        }
+        return FetchDoiMetadata.GSON.fromJson(Files.readString(checkpoint, UTF_8), BulkImportProgress.class);
+    }
+
+    /**
+     * Replace the checkpoint in one move, so that an interrupted job never leaves a partly written checkpoint.
+     */
+    private static void writeCheckpoint(Path checkpoint, BulkImportProgress progress) throws IOException {
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + TEMPORARY_SUFFIX);
+        Files.writeString(temporary, FetchDoiMetadata.GSON.toJson(progress), UTF_8);
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Log the progress and record the throughput of this invocation.
+     */
+    private static void report(BulkImportRequest request, BulkImportProgress progress, long handled, long started) {
+        double seconds = (System.nanoTime() - started) / NANOS_PER_SECOND;
+        Metrics.current().putMetric(Metrics.BULK_IMPORT_THROUGHPUT, seconds > 0 ? handled / seconds : 0,
+                                    Metrics.Unit.COUNT_PER_SECOND);
+        System.out.println(String.format(PROGRESS, request.getInput(), progress.getPosition(), progress.getResolved(),
+                                         progress.getFailed(), progress.getDoisPerSecond(),
+                                         progress.isComplete() ? COMPLETE : TO_BE_RESUMED));
+    }
+}
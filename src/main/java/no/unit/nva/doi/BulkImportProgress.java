@@ -0,0 +1,109 @@
+package no.unit.nva.doi;
+
+import java.time.Duration;
+
+/**
+ * How far a bulk import has come. It is stored as the checkpoint of the job after every chunk of DOIs and returned
+ * when an invocation ends, so the caller knows whether to invoke the job again.
+ */
+public class BulkImportProgress {
+
+    private static final double MILLIS_PER_SECOND = 1000.0;
+
+    private long position;
+    private long outputBytes;
+    private long resolved;
+    private long failed;
+    private long elapsedMillis;
+    private boolean complete;
+
+    /**
+     * The number of input lines that have been handled, counting blank lines.
+     *
+     * @return the number of lines to skip when the job is resumed.
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    public void setPosition(long position) {
+        this.position = position;
+    }
+
+    /**
+     * The length of the output holding the results of the handled lines. Anything after it was written after the
+     * last checkpoint and is truncated when the job is resumed.
+     *
+     * @return the length of the output in bytes.
+     */
+    public long getOutputBytes() {
+        return outputBytes;
+    }
+
+    public void setOutputBytes(long outputBytes) {
+        this.outputBytes = outputBytes;
+    }
+
+    public long getResolved() {
+        return resolved;
+    }
+
+    public void setResolved(long resolved) {
+        this.resolved = resolved;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+
+    /**
+     * The time spent resolving DOIs, summed over every invocation of the job.
+     *
+     * @return the elapsed time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+
+    /**
+     * Record a chunk of handled lines.
+     *
+     * @param lines       the number of lines in the chunk.
+     * @param resolved    the number of DOIs in the chunk that were resolved.
+     * @param failed      the number of DOIs in the chunk that could not be resolved.
+     * @param elapsed     the time the chunk took.
+     * @param outputBytes the length of the output after the results of the chunk.
+     */
+    public void add(long lines, long resolved, long failed, Duration elapsed, long outputBytes) {
+        this.position += lines;
+        this.resolved += resolved;
+        this.failed += failed;
+        this.elapsedMillis += elapsed.toMillis();
+        this.outputBytes = outputBytes;
+    }
+
+    /**
+     * The throughput of the job over all its invocations.
+     *
+     * @return the DOIs handled per second, zero before any time has been spent.
+     */
+    public double getDoisPerSecond() {
+        return elapsedMillis == 0 ? 0 : (resolved + failed) * MILLIS_PER_SECOND / elapsedMillis;
+    }
+}
@@ -0,0 +1,53 @@
+package no.unit.nva.doi;
+
+/**
+ * The event starting or resuming a bulk import. The same event is sent again to resume a job that stopped before the
+ * end of its input.
+ */
+public class BulkImportRequest {
+
+    private String input;
+    private String output;
+    private String contentType;
+
+    /**
+     * The newline-delimited DOI file, given as a local path, a file URI or an http(s) URL such as a presigned URL of
+     * an S3-compatible store.
+     *
+     * @return the location of the input.
+     */
+    public String getInput() {
+        return input;
+    }
+
+    public void setInput(String input) {
+        this.input = input;
+    }
+
+    /**
+     * The path of the NDJSON output in the bulk import directory, absolute or relative to it. The checkpoint of the
+     * job is kept next to it.
+     *
+     * @return the path of the output.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    public void setOutput(String output) {
+        this.output = output;
+    }
+
+    /**
+     * The requested content type, as in an Accept header. CSL JSON is used when it is missing.
+     *
+     * @return the content type, or null.
+     */
+    public String getContentType() {
+        return contentType;
+    }
+
+    public void setContentType(String contentType) {
+        this.contentType = contentType;
+    }
+}
@@ -0,0 +1,93 @@
+package no.unit.nva.doi;
+
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Key of a cached metadata entry: the normalized DOI and the requested content type.
+ */
+public final class CacheKey {
+
+    public static final String DOI_SEPARATOR = "/";
+
+    private final String doi;
+    private final DataciteContentType contentType;
+
+    private CacheKey(String doi, DataciteContentType contentType) {
+        this.doi = doi;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Create a key for a DOI given either as a DOI URL or as a DOI string.
+     *
+     * @param doi         a DOI string or URL.
+     * @param contentType the requested content type.
+     * @return a CacheKey where the DOI is reduced to lower case "prefix/suffix".
+     */
+    public static CacheKey of(String doi, DataciteContentType contentType) {
+        return new CacheKey(Doi.parse(doi).map(Doi::toString).orElseGet(() -> doi.trim().toLowerCase(Locale.ROOT)),
+                            contentType);
+    }
+
+    /**
+     * Create a key for a parsed DOI.
+     *
+     * @param doi         the DOI.
+     * @param contentType the requested content type.
+     * @return a CacheKey for the canonical DOI.
+     */
+    public static CacheKey of(Doi doi, DataciteContentType contentType) {
+        return new CacheKey(doi.toString(), contentType);
+    }
+
+    /**
+     * The key of the same DOI in another content type.
+     *
+     * @param otherContentType the content type.
+     * @return a CacheKey for the DOI and the content type.
+     */
+    public CacheKey withContentType(DataciteContentType otherContentType) {
+        return new CacheKey(doi, otherContentType);
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    /**
+     * The registrant prefix of the DOI, e.g. "10.1000" for "10.1000/182".
+     *
+     * @return the part of the normalized DOI before the first separator.
+     */
+    public String getPrefix() {
+        int separator = doi.indexOf(DOI_SEPARATOR);
+        return separator < 0 ? doi : doi.substring(0, separator);
+    }
+
+    public DataciteContentType getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return doi.equals(that.doi) && contentType == that.contentType;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(doi, contentType);
+    }
+
+    @Override
+    public String toString() {
+        return doi + " " + contentType.getContentType();
+    }
+}
@@ -0,0 +1,241 @@
+package no.unit.nva.doi;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Circuit breaker and bulkhead for one upstream. After a number of consecutive failures the circuit opens and
+ * requests fail at once with an {@link UpstreamUnavailableException} instead of waiting for a dependency that is down.
+ * When the open period has passed a single probe request is let through: if it succeeds the circuit closes, otherwise
+ * it opens again. Independently of the circuit, the bulkhead limits the number of requests in flight, so that a slow
+ * upstream cannot tie up every connection and thread of the container.
+ */
+public class CircuitBreaker {
+
+    public static final String CIRCUIT_OPEN = "%s circuit is open";
+    public static final String BULKHEAD_FULL = "%s bulkhead is full";
+    public static final String STATE_CHANGED = "Circuit breaker %s is %s";
+
+    /**
+     * The state of the circuit.
+     */
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String name;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final int maxConcurrentRequests;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Instant openUntil = Instant.MIN;
+    private boolean probeInFlight;
+    private int inFlight;
+
+    private final AtomicLong trips = new AtomicLong();
+    private final AtomicLong rejectedWhileOpen = new AtomicLong();
+    private final AtomicLong rejectedByBulkhead = new AtomicLong();
+
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int maxConcurrentRequests) {
+        this(name, failureThreshold, openDuration, maxConcurrentRequests, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor that allows the clock to be injected.
+     *
+     * @param name                  the name of the upstream, used in messages.
+     * @param failureThreshold      the number of consecutive failures that opens the circuit.
+     * @param openDuration          how long the circuit stays open before a probe is let through.
+     * @param maxConcurrentRequests the number of requests allowed in flight at the same time.
+     * @param clock                 the clock.
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, int maxConcurrentRequests,
+                          Clock clock) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.clock = clock;
+    }
+
+    /**
+     * Create a breaker with the configured threshold, open period and bulkhead size.
+     *
+     * @param name   the name of the upstream.
+     * @param config the configuration.
+     * @return a new CircuitBreaker.
+     */
+    public static CircuitBreaker fromConfig(String name, Config config) {
+        return new CircuitBreaker(name, config.getCircuitBreakerFailureThreshold(),
+                                  Duration.ofSeconds(config.getCircuitBreakerOpenSeconds()),
+                                  config.getBulkheadMaxConcurrentRequests());
+    }
+
+    /**
+     * Send a single request through the breaker. Responses with status 429 or 5xx, transport failures and timeouts
+     * count as failures, cancelled requests count as neither success nor failure.
+     *
+     * <p>The place in the bulkhead is held until the returned future completes, not until the exchange does. The
+     * JDK 11 client does not abort an exchange when its future is cancelled, so a caller that times out or cancels
+     * the returned future gives the place up at once while the exchange may run on in the background.
+     *
+     * @param httpClient  the client sending the request.
+     * @param request     the request.
+     * @param bodyHandler the handler of the response body.
+     * @param <T>         the body type.
+     * @return a future completed with the response, or a future failed with an UpstreamUnavailableException when the
+     *     request is not permitted.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient httpClient, HttpRequest request,
+                                                            BodyHandler<T> bodyHandler) {
+        boolean probe;
+        try {
+            probe = acquire();
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<T>> response;
+        try {
+            response = httpClient.sendAsync(request, bodyHandler);
+        } catch (RuntimeException e) {
+            release(probe, null);
+            throw e;
+        }
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        result.whenComplete((received, error) -> release(probe, verdict(received, error)));
+        response.whenComplete((received, error) -> {
+            if (error == null) {
+                result.complete(received);
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+        return result;
+    }
+
+    private static Boolean verdict(HttpResponse<?> response, Throwable error) {
+        if (error == null) {
+            return !RetryPolicy.isFailure(response.statusCode());
+        }
+        return RetryPolicy.isRetryable(error) ? Boolean.FALSE : null;
+    }
+
+    /**
+     * Take a place in the bulkhead.
+     *
+     * @return whether the request is the probe of a half-open circuit.
+     * @throws UpstreamUnavailableException when the circuit is open or the bulkhead is full.
+     */
+    protected boolean acquire() throws UpstreamUnavailableException {
+        lock.lock();
+        try {
+            if (state == State.OPEN && !clock.instant().isBefore(openUntil)) {
+                changeState(State.HALF_OPEN);
+            }
+            if (state == State.OPEN || state == State.HALF_OPEN && probeInFlight) {
+                rejectedWhileOpen.incrementAndGet();
+                throw new UpstreamUnavailableException(String.format(CIRCUIT_OPEN, name));
+            }
+            if (inFlight >= maxConcurrentRequests) {
+                rejectedByBulkhead.incrementAndGet();
+                throw new UpstreamUnavailableException(String.format(BULKHEAD_FULL, name));
+            }
+            inFlight++;
+            probeInFlight = state == State.HALF_OPEN;
+            return probeInFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Leave the bulkhead and record the outcome of the request.
+     *
+     * @param probe   whether the request was the probe of a half-open circuit.
+     * @param success whether the request succeeded, or null when it ended without an outcome.
+     */
+    protected void release(boolean probe, Boolean success) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (probe) {
+                probeInFlight = false;
+            }
+            if (success == null) {
+                return;
+            }
+            if (success) {
+                consecutiveFailures = 0;
+                if (probe) {
+                    changeState(State.CLOSED);
+                }
+            } else if (probe || state == State.CLOSED && ++consecutiveFailures >= failureThreshold) {
+                open();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void open() {
+        consecutiveFailures = 0;
+        openUntil = clock.instant().plus(openDuration);
+        trips.incrementAndGet();
+        changeState(State.OPEN);
+    }
+
+    private void changeState(State newState) {
+        state = newState;
+        System.out.println(String.format(STATE_CHANGED, name, newState));
+    }
+
+    /**
+     * The state of the circuit. An open circuit whose open period has passed is reported as open until the next
+     * request is let through as probe.
+     *
+     * @return the state.
+     */
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of times the circuit was opened.
+     *
+     * @return the number of trips.
+     */
+    public long getTrips() {
+        return trips.get();
+    }
+
+    public long getRejectedWhileOpen() {
+        return rejectedWhileOpen.get();
+    }
+
+    public long getRejectedByBulkhead() {
+        return rejectedByBulkhead.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
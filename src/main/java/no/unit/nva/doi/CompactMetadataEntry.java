@@ -0,0 +1,244 @@
+package no.unit.nva.doi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Metadata held by the in-memory cache as one byte array instead of Java strings: a small header with the content
+ * type, the fetch time, the source and the validators, followed by the metadata as UTF-8. Metadata of some size is
+ * deflated with a preset dictionary of the keys and values of the formats the cache holds: DataCite JSON, CSL and
+ * DataCite XML as DataCite serves them, and as they are derived from CrossRef works, with the canonical DataCite JSON
+ * last, where matches cost the fewest bits. Even a single small document compresses well that way. It is kept as
+ * UTF-8 when deflating does not make it smaller.
+ *
+ * <p>The content type and the fetch time are at fixed offsets, so that they are read without decoding the entry.
+ */
+public final class CompactMetadataEntry {
+
+    public static final String DICTIONARY_RESOURCE = "metadata-entry-dictionary.txt";
+    public static final String MISSING_DICTIONARY = "Could not read compression dictionary: ";
+    public static final String UNKNOWN_FORMAT = "Unknown cache entry format ";
+    public static final String CORRUPT_ENTRY = "Corrupt cache entry";
+    /**
+     * Metadata shorter than this is not worth deflating.
+     */
+    public static final int MIN_DEFLATE_BYTES = 64;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int CONTENT_TYPE_OFFSET = 1;
+    private static final int FETCHED_AT_OFFSET = 2;
+    private static final int FLAGS_OFFSET = 10;
+    private static final byte DEFLATED = 1;
+    private static final byte NO_METADATA = 2;
+    private static final byte NO_CONTENT_TYPE = -1;
+    private static final byte NO_SOURCE = 0;
+    private static final byte OTHER_SOURCE = 1;
+    private static final int FIRST_KNOWN_SOURCE = 2;
+    private static final List<String> KNOWN_SOURCES =
+        List.of(CrossRefClient.CROSSREF_LINK, DataciteClient.DATACITE_BASE_URL_STRING);
+    private static final String NO_VALIDATOR = "";
+    private static final boolean NO_WRAP = true;
+    private static final byte[] DICTIONARY = readDictionary(DICTIONARY_RESOURCE);
+
+    private final byte[] bytes;
+
+    private CompactMetadataEntry(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Encode metadata.
+     *
+     * @param metadata    the metadata and where it was fetched from.
+     * @param contentType the content type of the metadata, or null.
+     * @param fetchedAt   when the metadata was fetched.
+     * @return the encoded entry.
+     */
+    public static CompactMetadataEntry encode(MetadataAndContentLocation metadata, DataciteContentType contentType,
+                                              Instant fetchedAt) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            byte[] json = metadata.getJson() == null
+                ? new byte[0]
+                : metadata.getJson().getBytes(StandardCharsets.UTF_8);
+            byte[] deflated = json.length < MIN_DEFLATE_BYTES ? null : deflate(json);
+            out.writeByte(FORMAT_VERSION);
+            out.writeByte(contentType == null ? NO_CONTENT_TYPE : contentType.ordinal());
+            out.writeLong(fetchedAt.toEpochMilli());
+            out.writeByte(flags(metadata, deflated));
+            writeSource(out, metadata.getContentHeader());
+            out.writeUTF(orEmpty(metadata.getEtag()));
+            out.writeUTF(orEmpty(metadata.getLastModified()));
+            if (deflated == null) {
+                out.write(json);
+            } else {
+                out.writeInt(json.length);
+                out.write(deflated);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new CompactMetadataEntry(buffer.toByteArray());
+    }
+
+    /**
+     * Decode the metadata.
+     *
+     * @return the metadata and where it was fetched from.
+     */
+    public MetadataAndContentLocation decode() {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException(UNKNOWN_FORMAT + version);
+            }
+            in.skipBytes(FLAGS_OFFSET - CONTENT_TYPE_OFFSET);
+            byte flags = in.readByte();
+            String source = readSource(in);
+            String etag = emptyToNull(in.readUTF());
+            String lastModified = emptyToNull(in.readUTF());
+            String json = null;
+            if ((flags & NO_METADATA) == 0) {
+                byte[] utf8 = (flags & DEFLATED) == 0 ? in.readAllBytes() : inflate(in.readInt(), in.readAllBytes());
+                json = new String(utf8, StandardCharsets.UTF_8);
+            }
+            return new MetadataAndContentLocation(source, json, etag, lastModified);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The content type of the metadata.
+     *
+     * @return the content type, or null when it was not given.
+     */
+    public DataciteContentType getContentType() {
+        byte ordinal = bytes[CONTENT_TYPE_OFFSET];
+        return ordinal == NO_CONTENT_TYPE ? null : DataciteContentType.values()[ordinal];
+    }
+
+    public Instant getFetchedAt() {
+        return Instant.ofEpochMilli(ByteBuffer.wrap(bytes).getLong(FETCHED_AT_OFFSET));
+    }
+
+    public boolean isDeflated() {
+        return (bytes[FLAGS_OFFSET] & DEFLATED) != 0;
+    }
+
+    /**
+     * The length of the encoded entry.
+     *
+     * @return the number of bytes held.
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    protected static byte[] readDictionary(String resource) {
+        try (InputStream stream = CompactMetadataEntry.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IllegalStateException(MISSING_DICTIONARY + resource);
+            }
+            return stream.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(MISSING_DICTIONARY + resource, e);
+        }
+    }
+
+    private static byte flags(MetadataAndContentLocation metadata, byte[] deflated) {
+        if (metadata.getJson() == null) {
+            return NO_METADATA;
+        }
+        return deflated == null ? 0 : DEFLATED;
+    }
+
+    /**
+     * Deflate the metadata into a buffer as large as the metadata itself.
+     *
+     * @return the deflated metadata, or null when it does not get smaller.
+     */
+    private static byte[] deflate(byte[] json) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, NO_WRAP);
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(json);
+            deflater.finish();
+            byte[] buffer = new byte[json.length];
+            int length = 0;
+            while (!deflater.finished() && length < buffer.length) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return deflater.finished() && length < buffer.length ? Arrays.copyOf(buffer, length) : null;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(int length, byte[] deflated) {
+        Inflater inflater = new Inflater(NO_WRAP);
+        try {
+            inflater.setDictionary(DICTIONARY);
+            inflater.setInput(deflated);
+            byte[] json = new byte[length];
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int count = inflater.inflate(json, inflated, length - inflated);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException(CORRUPT_ENTRY);
+                }
+                inflated += count;
+            }
+            return json;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(CORRUPT_ENTRY, e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Write the source as the number of a well-known source, or as the source itself.
+     */
+    private static void writeSource(DataOutputStream out, String source) throws IOException {
+        if (source == null) {
+            out.writeByte(NO_SOURCE);
+            return;
+        }
+        int known = KNOWN_SOURCES.indexOf(source);
+        if (known >= 0) {
+            out.writeByte(FIRST_KNOWN_SOURCE + known);
+        } else {
+            out.writeByte(OTHER_SOURCE);
+            out.writeUTF(source);
+        }
+    }
+
+    private static String readSource(DataInputStream in) throws IOException {
+        byte source = in.readByte();
+        if (source == NO_SOURCE) {
+            return null;
+        }
+        return source == OTHER_SOURCE ? in.readUTF() : KNOWN_SOURCES.get(source - FIRST_KNOWN_SOURCE);
+    }
+
+    private static String orEmpty(String validator) {
+        return validator == null ? NO_VALIDATOR : validator;
+    }
+
+    private static String emptyToNull(String validator) {
+        return NO_VALIDATOR.equals(validator) ? null : validator;
+    }
+}
@@ -1,10 +1,114 @@
 package no.unit.nva.doi;
 
+import java.util.Optional;
+
 public class Config {
 
     public static final String CORS_ALLOW_ORIGIN_HEADER_ENVIRONMENT_NAME = "AllowOrigin";
+    public static final String CACHE_MAX_BYTES_ENVIRONMENT_NAME = "MetadataCacheMaxBytes";
+    public static final String CACHE_TTL_SECONDS_ENVIRONMENT_NAME = "MetadataCacheTtlSeconds";
+    public static final String CACHE_STALE_SECONDS_ENVIRONMENT_NAME = "MetadataCacheStaleSeconds";
+    public static final String AGENCY_CACHE_MAX_ENTRIES_ENVIRONMENT_NAME = "AgencyCacheMaxEntries";
+    public static final String AGENCY_CACHE_TTL_SECONDS_ENVIRONMENT_NAME = "AgencyCacheTtlSeconds";
+    public static final String PREFIX_ROUTER_MAX_PREFIXES_ENVIRONMENT_NAME = "PrefixRouterMaxPrefixes";
+    public static final String HEDGED_LOOKUP_ENABLED_ENVIRONMENT_NAME = "HedgedLookupEnabled";
+    public static final String HEDGE_DELAY_MILLIS_ENVIRONMENT_NAME = "HedgeDelayMillis";
+    public static final String HEDGE_DELAY_PERCENTILE_ENVIRONMENT_NAME = "HedgeDelayPercentile";
+    public static final String BATCH_PARALLELISM_ENVIRONMENT_NAME = "BatchParallelism";
+    public static final String BATCH_MAX_SIZE_ENVIRONMENT_NAME = "BatchMaxSize";
+    public static final String CONNECTION_WARMUP_ENABLED_ENVIRONMENT_NAME = "ConnectionWarmupEnabled";
+    public static final String WARMUP_TIMEOUT_MILLIS_ENVIRONMENT_NAME = "WarmupTimeoutMillis";
+    public static final String INIT_BUDGET_MILLIS_ENVIRONMENT_NAME = "InitBudgetMillis";
+    public static final String METADATA_STORE_DIRECTORY_ENVIRONMENT_NAME = "MetadataStoreDirectory";
+    public static final String METADATA_STORE_TTL_SECONDS_ENVIRONMENT_NAME = "MetadataStoreTtlSeconds";
+    public static final String METADATA_STORE_MAX_BYTES_ENVIRONMENT_NAME = "MetadataStoreMaxBytes";
+    public static final String STREAMING_EXCLUDED_FIELDS_ENVIRONMENT_NAME = "StreamingExcludedFields";
+    public static final String RESPONSE_COMPRESSION_MIN_BYTES_ENVIRONMENT_NAME = "ResponseCompressionMinBytes";
+    public static final String RETRY_MAX_ATTEMPTS_ENVIRONMENT_NAME = "RetryMaxAttempts";
+    public static final String RETRY_BASE_DELAY_MILLIS_ENVIRONMENT_NAME = "RetryBaseDelayMillis";
+    public static final String RETRY_MAX_DELAY_MILLIS_ENVIRONMENT_NAME = "RetryMaxDelayMillis";
+    public static final String CIRCUIT_BREAKER_FAILURE_THRESHOLD_ENVIRONMENT_NAME = "CircuitBreakerFailureThreshold";
+    public static final String CIRCUIT_BREAKER_OPEN_SECONDS_ENVIRONMENT_NAME = "CircuitBreakerOpenSeconds";
+    public static final String BULKHEAD_MAX_CONCURRENT_REQUESTS_ENVIRONMENT_NAME = "BulkheadMaxConcurrentRequests";
+    public static final String CROSSREF_RATE_LIMIT_ENVIRONMENT_NAME = "CrossRefRateLimit";
+    public static final String CROSSREF_RATE_LIMIT_MAX_WAIT_MILLIS_ENVIRONMENT_NAME = "CrossRefRateLimitMaxWaitMillis";
+    public static final String CROSSREF_MAILTO_ENVIRONMENT_NAME = "CrossRefMailto";
+    public static final String METRICS_NAMESPACE_ENVIRONMENT_NAME = "MetricsNamespace";
+    public static final String BULK_IMPORT_PARALLELISM_ENVIRONMENT_NAME = "BulkImportParallelism";
+    public static final String BULK_IMPORT_DEADLINE_RESERVE_MILLIS_ENVIRONMENT_NAME = "BulkImportDeadlineReserveMillis";
+    public static final String BULK_IMPORT_DIRECTORY_ENVIRONMENT_NAME = "BulkImportDirectory";
+    public static final String HOT_DOI_SKETCH_FILE_ENVIRONMENT_NAME = "HotDoiSketchFile";
+    public static final String HOT_DOI_PREFETCH_SIZE_ENVIRONMENT_NAME = "HotDoiPrefetchSize";
+    public static final String HOT_DOI_PERSIST_INTERVAL_SECONDS_ENVIRONMENT_NAME = "HotDoiPersistIntervalSeconds";
+    public static final String HOT_DOI_PREFETCH_TIMEOUT_MILLIS_ENVIRONMENT_NAME = "HotDoiPrefetchTimeoutMillis";
+
+    public static final long DEFAULT_CACHE_MAX_BYTES = 32L * 1024 * 1024;
+    public static final long DEFAULT_CACHE_TTL_SECONDS = 3600;
+    public static final long DEFAULT_CACHE_STALE_SECONDS = 3600;
+    public static final int DEFAULT_AGENCY_CACHE_MAX_ENTRIES = 100_000;
+    public static final long DEFAULT_AGENCY_CACHE_TTL_SECONDS = 86_400;
+    public static final int DEFAULT_PREFIX_ROUTER_MAX_PREFIXES = 50_000;
+    public static final long DEFAULT_HEDGE_DELAY_MILLIS = 300;
+    public static final long DEFAULT_HEDGE_DELAY_PERCENTILE = 95;
+    public static final int DEFAULT_BATCH_PARALLELISM = 8;
+    public static final int DEFAULT_BATCH_MAX_SIZE = 500;
+    public static final long DEFAULT_WARMUP_TIMEOUT_MILLIS = 2000;
+    public static final long DEFAULT_INIT_BUDGET_MILLIS = 3000;
+    public static final long DEFAULT_METADATA_STORE_TTL_SECONDS = 86_400;
+    public static final long DEFAULT_METADATA_STORE_MAX_BYTES = 256L * 1024 * 1024;
+    public static final long DEFAULT_RESPONSE_COMPRESSION_MIN_BYTES = 1024;
+    public static final int DEFAULT_RETRY_MAX_ATTEMPTS = 3;
+    public static final long DEFAULT_RETRY_BASE_DELAY_MILLIS = 100;
+    public static final long DEFAULT_RETRY_MAX_DELAY_MILLIS = 2000;
+    public static final int DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS = 30;
+    public static final int DEFAULT_BULKHEAD_MAX_CONCURRENT_REQUESTS = 32;
+    public static final int DEFAULT_CROSSREF_RATE_LIMIT = 50;
+    public static final long DEFAULT_CROSSREF_RATE_LIMIT_MAX_WAIT_MILLIS = 1000;
+    public static final String DEFAULT_METRICS_NAMESPACE = "NvaDoi";
+    public static final int DEFAULT_BULK_IMPORT_PARALLELISM = 8;
+    public static final long DEFAULT_BULK_IMPORT_DEADLINE_RESERVE_MILLIS = 30_000;
+    public static final int DEFAULT_HOT_DOI_PREFETCH_SIZE = 100;
+    public static final long DEFAULT_HOT_DOI_PERSIST_INTERVAL_SECONDS = 300;
+    public static final long DEFAULT_HOT_DOI_PREFETCH_TIMEOUT_MILLIS = 5000;
 
     private String corsHeader;
+    private long cacheMaxBytes = DEFAULT_CACHE_MAX_BYTES;
+    private long cacheTtlSeconds = DEFAULT_CACHE_TTL_SECONDS;
+    private long cacheStaleSeconds = DEFAULT_CACHE_STALE_SECONDS;
+    private int agencyCacheMaxEntries = DEFAULT_AGENCY_CACHE_MAX_ENTRIES;
+    private long agencyCacheTtlSeconds = DEFAULT_AGENCY_CACHE_TTL_SECONDS;
+    private int prefixRouterMaxPrefixes = DEFAULT_PREFIX_ROUTER_MAX_PREFIXES;
+    private boolean hedgedLookupEnabled;
+    private long hedgeDelayMillis = DEFAULT_HEDGE_DELAY_MILLIS;
+    private double hedgeDelayPercentile = DEFAULT_HEDGE_DELAY_PERCENTILE;
+    private int batchParallelism = DEFAULT_BATCH_PARALLELISM;
+    private int batchMaxSize = DEFAULT_BATCH_MAX_SIZE;
+    private boolean connectionWarmupEnabled;
+    private long warmupTimeoutMillis = DEFAULT_WARMUP_TIMEOUT_MILLIS;
+    private long initBudgetMillis = DEFAULT_INIT_BUDGET_MILLIS;
+    private String metadataStoreDirectory;
+    private long metadataStoreTtlSeconds = DEFAULT_METADATA_STORE_TTL_SECONDS;
+    private long metadataStoreMaxBytes = DEFAULT_METADATA_STORE_MAX_BYTES;
+    private String streamingExcludedFields;
+    private long responseCompressionMinBytes = DEFAULT_RESPONSE_COMPRESSION_MIN_BYTES;
+    private int retryMaxAttempts = DEFAULT_RETRY_MAX_ATTEMPTS;
+    private long retryBaseDelayMillis = DEFAULT_RETRY_BASE_DELAY_MILLIS;
+    private long retryMaxDelayMillis = DEFAULT_RETRY_MAX_DELAY_MILLIS;
+    private int circuitBreakerFailureThreshold = DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD;
+    private long circuitBreakerOpenSeconds = DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS;
+    private int bulkheadMaxConcurrentRequests = DEFAULT_BULKHEAD_MAX_CONCURRENT_REQUESTS;
+    private int crossRefRateLimit = DEFAULT_CROSSREF_RATE_LIMIT;
+    private long crossRefRateLimitMaxWaitMillis = DEFAULT_CROSSREF_RATE_LIMIT_MAX_WAIT_MILLIS;
+    private String crossRefMailto;
+    private String metricsNamespace = DEFAULT_METRICS_NAMESPACE;
+    private int bulkImportParallelism = DEFAULT_BULK_IMPORT_PARALLELISM;
+    private long bulkImportDeadlineReserveMillis = DEFAULT_BULK_IMPORT_DEADLINE_RESERVE_MILLIS;
+    private String bulkImportDirectory;
+    private String hotDoiSketchFile;
+    private int hotDoiPrefetchSize = DEFAULT_HOT_DOI_PREFETCH_SIZE;
+    private long hotDoiPersistIntervalSeconds = DEFAULT_HOT_DOI_PERSIST_INTERVAL_SECONDS;
+    private long hotDoiPrefetchTimeoutMillis = DEFAULT_HOT_DOI_PREFETCH_TIMEOUT_MILLIS;
 
     private static class LazyHolder {
 
@@ -12,6 +116,73 @@ public class Config {
 
         static {
             INSTANCE.setCorsHeader(System.getenv(CORS_ALLOW_ORIGIN_HEADER_ENVIRONMENT_NAME));
+            INSTANCE.setCacheMaxBytes(longFromEnvironment(CACHE_MAX_BYTES_ENVIRONMENT_NAME, DEFAULT_CACHE_MAX_BYTES));
+            INSTANCE.setCacheTtlSeconds(
+                longFromEnvironment(CACHE_TTL_SECONDS_ENVIRONMENT_NAME, DEFAULT_CACHE_TTL_SECONDS));
+            INSTANCE.setCacheStaleSeconds(
+                longFromEnvironment(CACHE_STALE_SECONDS_ENVIRONMENT_NAME, DEFAULT_CACHE_STALE_SECONDS));
+            INSTANCE.setAgencyCacheMaxEntries((int) longFromEnvironment(AGENCY_CACHE_MAX_ENTRIES_ENVIRONMENT_NAME,
+                                                                        DEFAULT_AGENCY_CACHE_MAX_ENTRIES));
+            INSTANCE.setAgencyCacheTtlSeconds(
+                longFromEnvironment(AGENCY_CACHE_TTL_SECONDS_ENVIRONMENT_NAME, DEFAULT_AGENCY_CACHE_TTL_SECONDS));
+            INSTANCE.setPrefixRouterMaxPrefixes((int) longFromEnvironment(PREFIX_ROUTER_MAX_PREFIXES_ENVIRONMENT_NAME,
+                                                                          DEFAULT_PREFIX_ROUTER_MAX_PREFIXES));
+            INSTANCE.setHedgedLookupEnabled(
+                Boolean.parseBoolean(System.getenv(HEDGED_LOOKUP_ENABLED_ENVIRONMENT_NAME)));
+            INSTANCE.setHedgeDelayMillis(
+                longFromEnvironment(HEDGE_DELAY_MILLIS_ENVIRONMENT_NAME, DEFAULT_HEDGE_DELAY_MILLIS));
+            INSTANCE.setHedgeDelayPercentile(
+                longFromEnvironment(HEDGE_DELAY_PERCENTILE_ENVIRONMENT_NAME, DEFAULT_HEDGE_DELAY_PERCENTILE));
+            INSTANCE.setBatchParallelism(
+                (int) longFromEnvironment(BATCH_PARALLELISM_ENVIRONMENT_NAME, DEFAULT_BATCH_PARALLELISM));
+            INSTANCE.setBatchMaxSize(
+                (int) longFromEnvironment(BATCH_MAX_SIZE_ENVIRONMENT_NAME, DEFAULT_BATCH_MAX_SIZE));
+            INSTANCE.setConnectionWarmupEnabled(
+                Boolean.parseBoolean(System.getenv(CONNECTION_WARMUP_ENABLED_ENVIRONMENT_NAME)));
+            INSTANCE.setWarmupTimeoutMillis(
+                longFromEnvironment(WARMUP_TIMEOUT_MILLIS_ENVIRONMENT_NAME, DEFAULT_WARMUP_TIMEOUT_MILLIS));
+            INSTANCE.setInitBudgetMillis(
+                longFromEnvironment(INIT_BUDGET_MILLIS_ENVIRONMENT_NAME, DEFAULT_INIT_BUDGET_MILLIS));
+            INSTANCE.setMetadataStoreDirectory(System.getenv(METADATA_STORE_DIRECTORY_ENVIRONMENT_NAME));
+            INSTANCE.setMetadataStoreTtlSeconds(
+                longFromEnvironment(METADATA_STORE_TTL_SECONDS_ENVIRONMENT_NAME, DEFAULT_METADATA_STORE_TTL_SECONDS));
+            INSTANCE.setMetadataStoreMaxBytes(
+                longFromEnvironment(METADATA_STORE_MAX_BYTES_ENVIRONMENT_NAME, DEFAULT_METADATA_STORE_MAX_BYTES));
+            INSTANCE.setStreamingExcludedFields(System.getenv(STREAMING_EXCLUDED_FIELDS_ENVIRONMENT_NAME));
+            INSTANCE.setResponseCompressionMinBytes(longFromEnvironment(
+                RESPONSE_COMPRESSION_MIN_BYTES_ENVIRONMENT_NAME, DEFAULT_RESPONSE_COMPRESSION_MIN_BYTES));
+            INSTANCE.setRetryMaxAttempts(
+                (int) longFromEnvironment(RETRY_MAX_ATTEMPTS_ENVIRONMENT_NAME, DEFAULT_RETRY_MAX_ATTEMPTS));
+            INSTANCE.setRetryBaseDelayMillis(
+                longFromEnvironment(RETRY_BASE_DELAY_MILLIS_ENVIRONMENT_NAME, DEFAULT_RETRY_BASE_DELAY_MILLIS));
+            INSTANCE.setRetryMaxDelayMillis(
+                longFromEnvironment(RETRY_MAX_DELAY_MILLIS_ENVIRONMENT_NAME, DEFAULT_RETRY_MAX_DELAY_MILLIS));
+            INSTANCE.setCircuitBreakerFailureThreshold((int) longFromEnvironment(
+                CIRCUIT_BREAKER_FAILURE_THRESHOLD_ENVIRONMENT_NAME, DEFAULT_CIRCUIT_BREAKER_FAILURE_THRESHOLD));
+            INSTANCE.setCircuitBreakerOpenSeconds(longFromEnvironment(
+                CIRCUIT_BREAKER_OPEN_SECONDS_ENVIRONMENT_NAME, DEFAULT_CIRCUIT_BREAKER_OPEN_SECONDS));
+            INSTANCE.setBulkheadMaxConcurrentRequests((int) longFromEnvironment(
+                BULKHEAD_MAX_CONCURRENT_REQUESTS_ENVIRONMENT_NAME, DEFAULT_BULKHEAD_MAX_CONCURRENT_REQUESTS));
+            INSTANCE.setCrossRefRateLimit(
+                (int) longFromEnvironment(CROSSREF_RATE_LIMIT_ENVIRONMENT_NAME, DEFAULT_CROSSREF_RATE_LIMIT));
+            INSTANCE.setCrossRefRateLimitMaxWaitMillis(longFromEnvironment(
+                CROSSREF_RATE_LIMIT_MAX_WAIT_MILLIS_ENVIRONMENT_NAME, DEFAULT_CROSSREF_RATE_LIMIT_MAX_WAIT_MILLIS));
+            INSTANCE.setCrossRefMailto(System.getenv(CROSSREF_MAILTO_ENVIRONMENT_NAME));
+            INSTANCE.setMetricsNamespace(Optional.ofNullable(System.getenv(METRICS_NAMESPACE_ENVIRONMENT_NAME))
+                                                 .filter(namespace -> !namespace.isBlank())
+                                                 .orElse(DEFAULT_METRICS_NAMESPACE));
+            INSTANCE.setBulkImportParallelism(
+                (int) longFromEnvironment(BULK_IMPORT_PARALLELISM_ENVIRONMENT_NAME, DEFAULT_BULK_IMPORT_PARALLELISM));
+            INSTANCE.setBulkImportDeadlineReserveMillis(longFromEnvironment(
+                BULK_IMPORT_DEADLINE_RESERVE_MILLIS_ENVIRONMENT_NAME, DEFAULT_BULK_IMPORT_DEADLINE_RESERVE_MILLIS));
+            INSTANCE.setBulkImportDirectory(System.getenv(BULK_IMPORT_DIRECTORY_ENVIRONMENT_NAME));
+            INSTANCE.setHotDoiSketchFile(System.getenv(HOT_DOI_SKETCH_FILE_ENVIRONMENT_NAME));
+            INSTANCE.setHotDoiPrefetchSize(
+                (int) longFromEnvironment(HOT_DOI_PREFETCH_SIZE_ENVIRONMENT_NAME, DEFAULT_HOT_DOI_PREFETCH_SIZE));
+            INSTANCE.setHotDoiPersistIntervalSeconds(longFromEnvironment(
+                HOT_DOI_PERSIST_INTERVAL_SECONDS_ENVIRONMENT_NAME, DEFAULT_HOT_DOI_PERSIST_INTERVAL_SECONDS));
+            INSTANCE.setHotDoiPrefetchTimeoutMillis(longFromEnvironment(
+                HOT_DOI_PREFETCH_TIMEOUT_MILLIS_ENVIRONMENT_NAME, DEFAULT_HOT_DOI_PREFETCH_TIMEOUT_MILLIS));
         }
     }
 
@@ -19,6 +190,18 @@ public class Config {
         return LazyHolder.INSTANCE;
     }
 
+    protected static long longFromEnvironment(String name, long defaultValue) {
+        return parseLong(System.getenv(name), defaultValue);
+    }
+
+    protected static long parseLong(String value, long defaultValue) {
+        return Optional.ofNullable(value)
+                       .map(String::trim)
+                       .filter(v -> v.matches("\\d+"))
+                       .map(Long::parseLong)
+                       .orElse(defaultValue);
+    }
+
     public String getCorsHeader() {
         return corsHeader;
     }
@@ -26,4 +209,292 @@ public class Config {
     public void setCorsHeader(String corsHeader) {
         this.corsHeader = corsHeader;
     }
+
+    public long getCacheMaxBytes() {
+        return cacheMaxBytes;
+    }
+
+    public void setCacheMaxBytes(long cacheMaxBytes) {
+        this.cacheMaxBytes = cacheMaxBytes;
+    }
+
+    public long getCacheTtlSeconds() {
+        return cacheTtlSeconds;
+    }
+
+    public void setCacheTtlSeconds(long cacheTtlSeconds) {
+        this.cacheTtlSeconds = cacheTtlSeconds;
+    }
+
+    public long getCacheStaleSeconds() {
+        return cacheStaleSeconds;
+    }
+
+    public void setCacheStaleSeconds(long cacheStaleSeconds) {
+        this.cacheStaleSeconds = cacheStaleSeconds;
+    }
+
+    public int getAgencyCacheMaxEntries() {
+        return agencyCacheMaxEntries;
+    }
+
+    public void setAgencyCacheMaxEntries(int agencyCacheMaxEntries) {
+        this.agencyCacheMaxEntries = agencyCacheMaxEntries;
+    }
+
+    public long getAgencyCacheTtlSeconds() {
+        return agencyCacheTtlSeconds;
+    }
+
+    public void setAgencyCacheTtlSeconds(long agencyCacheTtlSeconds) {
+        this.agencyCacheTtlSeconds = agencyCacheTtlSeconds;
+    }
+
+    public int getPrefixRouterMaxPrefixes() {
+        return prefixRouterMaxPrefixes;
+    }
+
+    public void setPrefixRouterMaxPrefixes(int prefixRouterMaxPrefixes) {
+        this.prefixRouterMaxPrefixes = prefixRouterMaxPrefixes;
+    }
+
+    public boolean isHedgedLookupEnabled() {
+        return hedgedLookupEnabled;
+    }
+
+    public void setHedgedLookupEnabled(boolean hedgedLookupEnabled) {
+        this.hedgedLookupEnabled = hedgedLookupEnabled;
+    }
+
+    public long getHedgeDelayMillis() {
+        return hedgeDelayMillis;
+    }
+
+    public void setHedgeDelayMillis(long hedgeDelayMillis) {
+        this.hedgeDelayMillis = hedgeDelayMillis;
+    }
+
+    public double getHedgeDelayPercentile() {
+        return hedgeDelayPercentile;
+    }
+
+    public void setHedgeDelayPercentile(double hedgeDelayPercentile) {
+        this.hedgeDelayPercentile = hedgeDelayPercentile;
+    }
+
+    public int getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    public void setBatchParallelism(int batchParallelism) {
+        this.batchParallelism = batchParallelism;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public boolean isConnectionWarmupEnabled() {
+        return connectionWarmupEnabled;
+    }
+
+    public void setConnectionWarmupEnabled(boolean connectionWarmupEnabled) {
+        this.connectionWarmupEnabled = connectionWarmupEnabled;
+    }
+
+    public long getWarmupTimeoutMillis() {
+        return warmupTimeoutMillis;
+    }
+
+    public void setWarmupTimeoutMillis(long warmupTimeoutMillis) {
+        this.warmupTimeoutMillis = warmupTimeoutMillis;
+    }
+
+    public long getInitBudgetMillis() {
+        return initBudgetMillis;
+    }
+
+    public void setInitBudgetMillis(long initBudgetMillis) {
+        this.initBudgetMillis = initBudgetMillis;
+    }
+
+    public String getMetadataStoreDirectory() {
+        return metadataStoreDirectory;
+    }
+
+    public void setMetadataStoreDirectory(String metadataStoreDirectory) {
+        this.metadataStoreDirectory = metadataStoreDirectory;
+    }
+
+    public long getMetadataStoreTtlSeconds() {
+        return metadataStoreTtlSeconds;
+    }
+
+    public void setMetadataStoreTtlSeconds(long metadataStoreTtlSeconds) {
+        this.metadataStoreTtlSeconds = metadataStoreTtlSeconds;
+    }
+
+    public long getMetadataStoreMaxBytes() {
+        return metadataStoreMaxBytes;
+    }
+
+    public void setMetadataStoreMaxBytes(long metadataStoreMaxBytes) {
+        this.metadataStoreMaxBytes = metadataStoreMaxBytes;
+    }
+
+    public String getStreamingExcludedFields() {
+        return streamingExcludedFields;
+    }
+
+    public void setStreamingExcludedFields(String streamingExcludedFields) {
+        this.streamingExcludedFields = streamingExcludedFields;
+    }
+
+    public long getResponseCompressionMinBytes() {
+        return responseCompressionMinBytes;
+    }
+
+    public void setResponseCompressionMinBytes(long responseCompressionMinBytes) {
+        this.responseCompressionMinBytes = responseCompressionMinBytes;
+    }
+
+    public int getRetryMaxAttempts() {
+        return retryMaxAttempts;
+    }
+
+    public void setRetryMaxAttempts(int retryMaxAttempts) {
+        this.retryMaxAttempts = retryMaxAttempts;
+    }
+
+    public long getRetryBaseDelayMillis() {
+        return retryBaseDelayMillis;
+    }
+
+    public void setRetryBaseDelayMillis(long retryBaseDelayMillis) {
+        this.retryBaseDelayMillis = retryBaseDelayMillis;
+    }
+
+    public long getRetryMaxDelayMillis() {
+        return retryMaxDelayMillis;
+    }
+
+    public void setRetryMaxDelayMillis(long retryMaxDelayMillis) {
+        this.retryMaxDelayMillis = retryMaxDelayMillis;
+    }
+
+    public int getCircuitBreakerFailureThreshold() {
+        return circuitBreakerFailureThreshold;
+    }
+
+    public void setCircuitBreakerFailureThreshold(int circuitBreakerFailureThreshold) {
+        this.circuitBreakerFailureThreshold = circuitBreakerFailureThreshold;
+    }
+
+    public long getCircuitBreakerOpenSeconds() {
+        return circuitBreakerOpenSeconds;
+    }
+
+    public void setCircuitBreakerOpenSeconds(long circuitBreakerOpenSeconds) {
+        this.circuitBreakerOpenSeconds = circuitBreakerOpenSeconds;
+    }
+
+    public int getBulkheadMaxConcurrentRequests() {
+        return bulkheadMaxConcurrentRequests;
+    }
+
+    public void setBulkheadMaxConcurrentRequests(int bulkheadMaxConcurrentRequests) {
+        this.bulkheadMaxConcurrentRequests = bulkheadMaxConcurrentRequests;
+    }
+
+    public int getCrossRefRateLimit() {
+        return crossRefRateLimit;
+    }
+
+    public void setCrossRefRateLimit(int crossRefRateLimit) {
+        this.crossRefRateLimit = crossRefRateLimit;
+    }
+
+    public long getCrossRefRateLimitMaxWaitMillis() {
+        return crossRefRateLimitMaxWaitMillis;
+    }
+
+    public void setCrossRefRateLimitMaxWaitMillis(long crossRefRateLimitMaxWaitMillis) {
+        this.crossRefRateLimitMaxWaitMillis = crossRefRateLimitMaxWaitMillis;
+    }
+
+    public String getCrossRefMailto() {
+        return crossRefMailto;
+    }
+
+    public void setCrossRefMailto(String crossRefMailto) {
+        this.crossRefMailto = crossRefMailto;
+    }
+
+    public String getMetricsNamespace() {
+        return metricsNamespace;
+    }
+
+    public void setMetricsNamespace(String metricsNamespace) {
+        this.metricsNamespace = metricsNamespace;
+    }
+
+    public int getBulkImportParallelism() {
+        return bulkImportParallelism;
+    }
+
+    public void setBulkImportParallelism(int bulkImportParallelism) {
+        this.bulkImportParallelism = bulkImportParallelism;
+    }
+
+    public long getBulkImportDeadlineReserveMillis() {
+        return bulkImportDeadlineReserveMillis;
+    }
+
+    public void setBulkImportDeadlineReserveMillis(long bulkImportDeadlineReserveMillis) {
+        this.bulkImportDeadlineReserveMillis = bulkImportDeadlineReserveMillis;
+    }
+
+    public String getBulkImportDirectory() {
+        return bulkImportDirectory;
+    }
+
+    public void setBulkImportDirectory(String bulkImportDirectory) {
+        this.bulkImportDirectory = bulkImportDirectory;
+    }
+
+    public String getHotDoiSketchFile() {
+        return hotDoiSketchFile;
+    }
+
+    public void setHotDoiSketchFile(String hotDoiSketchFile) {
+        this.hotDoiSketchFile = hotDoiSketchFile;
+    }
+
+    public int getHotDoiPrefetchSize() {
+        return hotDoiPrefetchSize;
+    }
+
+    public void setHotDoiPrefetchSize(int hotDoiPrefetchSize) {
+        this.hotDoiPrefetchSize = hotDoiPrefetchSize;
+    }
+
+    public long getHotDoiPersistIntervalSeconds() {
+        return hotDoiPersistIntervalSeconds;
+    }
+
+    public void setHotDoiPersistIntervalSeconds(long hotDoiPersistIntervalSeconds) {
+        this.hotDoiPersistIntervalSeconds = hotDoiPersistIntervalSeconds;
+    }
+
+    public long getHotDoiPrefetchTimeoutMillis() {
+        return hotDoiPrefetchTimeoutMillis;
+    }
+
+    public void setHotDoiPrefetchTimeoutMillis(long hotDoiPrefetchTimeoutMillis) {
+        this.hotDoiPrefetchTimeoutMillis = hotDoiPrefetchTimeoutMillis;
+    }
 }
@@ -1,46 +1,106 @@
 package no.unit.nva.doi;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
-import javax.ws.rs.BadRequestException;
-import javax.ws.rs.NotFoundException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import javax.ws.rs.core.MediaType;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpStatus;
-import org.apache.http.client.utils.URIBuilder;
 import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.message.BasicNameValuePair;
 
 public class CrossRefClient {
 
     public static final String CROSSREF_LINK = "https://api.crossref.org";
     public static final String WORKS = "works";
+    public static final String WORKS_URL = CROSSREF_LINK + "/" + WORKS + "/";
 
-    public static final int TIMEOUT_DURATION = 30;
-    public static final String COULD_NOT_FIND_ENTRY_WITH_DOI = "Could not find entry with DOI:";
+    public static final String NAME = "CrossRef";
+
+    /**
+     * The time allowed for all attempts of a lookup together, cut short to what is left of the invocation. Of the 20
+     * seconds the function is given, it leaves DataCite 11 seconds for a lookup when CrossRef does not answer, and
+     * the response margin to answer with an error when DataCite does not answer either.
+     */
+    public static final int TIMEOUT_DURATION = 8;
+    public static final int ATTEMPT_TIMEOUT_SECONDS = 4;
     public static final String UNKNOWN_ERROR_MESSAGE = "Something went wrong. StatusCode:";
 
     private static final String DOI_EXAMPLES = "10.1000/182, https://doi.org/10.1000/182";
     public static final String ILLEGAL_DOI_MESSAGE = "Illegal DOI:%s. Valid examples:" + DOI_EXAMPLES;
     public static final String FETCH_ERROR = "CrossRefClient failed while trying to fetch:";
+    public static final String MAILTO_PARAMETER = "mailto";
+    public static final String USER_AGENT_FORMAT = "nva-doi-lambda/1.0 (mailto:%s)";
 
     private final transient HttpClient httpClient;
+    private final transient RetryPolicy retryPolicy;
+    private final transient CircuitBreaker circuitBreaker;
+    private final transient RateLimiter rateLimiter;
+    private final String mailto;
+    private final String mailtoQuery;
 
     public CrossRefClient() {
-        this(HttpClient.newHttpClient());
+        this(SharedHttpClient.getInstance());
     }
 
     public CrossRefClient(HttpClient httpClient) {
+        this(httpClient, RetryPolicy.fromConfig(Config.getInstance()),
+             CircuitBreaker.fromConfig(NAME, Config.getInstance()));
+    }
+
+    /**
+     * Constructor that allows the retry policy and the circuit breaker to be injected.
+     *
+     * @param httpClient     the HTTP client.
+     * @param retryPolicy    decides which failed requests are sent again.
+     * @param circuitBreaker stops requests to CrossRef while it keeps failing.
+     */
+    public CrossRefClient(HttpClient httpClient, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        this(httpClient, retryPolicy, circuitBreaker, RateLimiter.fromConfig(NAME, Config.getInstance()),
+             Config.getInstance().getCrossRefMailto());
+    }
+
+    /**
+     * Constructor that also allows the rate limiter and the contact address to be injected. With a contact address
+     * the requests carry it in the mailto parameter and the User-Agent, which gets them served from the CrossRef
+     * polite pool.
+     *
+     * @param httpClient     the HTTP client.
+     * @param retryPolicy    decides which failed requests are sent again.
+     * @param circuitBreaker stops requests to CrossRef while it keeps failing.
+     * @param rateLimiter    keeps the requests within the limits CrossRef announces.
+     * @param mailto         the contact address, or null or blank for anonymous requests.
+     */
+    public CrossRefClient(HttpClient httpClient, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker,
+                          RateLimiter rateLimiter, String mailto) {
         this.httpClient = httpClient;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+        this.rateLimiter = rateLimiter;
+        this.mailto = Objects.isNull(mailto) || mailto.isBlank() ? null : mailto.trim();
+        this.mailtoQuery = this.mailto == null
+            ? ""
+            : "?" + URLEncodedUtils.format(List.of(new BasicNameValuePair(MAILTO_PARAMETER, this.mailto)),
+                                           StandardCharsets.UTF_8);
     }
 
     /**
@@ -48,86 +108,232 @@ public class CrossRefClient {
      * DOI, and the source where the metadata were acquired.
      *
      * @param doi a doi identifier or URL.
-     * @return FetchResult contains the JSON object and the location from where it was fetched.
+     * @return FetchResult contains the JSON object and the location from where it was fetched, or an empty Optional
+     *     when CrossRef does not know the DOI.
      * @throws URISyntaxException when the input cannot be transformed to a valid URI.
+     * @throws IOException        when CrossRef cannot be reached or answers with an error after all retries.
      */
-    public Optional<MetadataAndContentLocation> fetchDataForDoi(String doi) throws URISyntaxException {
+    public Optional<MetadataAndContentLocation> fetchDataForDoi(String doi) throws URISyntaxException, IOException {
         URI targetUri = createUrlToCrossRef(doi);
         return fetchJson(targetUri);
     }
 
-    private Optional<MetadataAndContentLocation> fetchJson(URI doiUri) {
-        HttpRequest request = createRequest(doiUri);
-        try {
-            return Optional.ofNullable(getFromWeb(request))
-                           .map(json -> new MetadataAndContentLocation(CROSSREF_LINK, json));
-        } catch (InterruptedException |
-            ExecutionException |
-            NotFoundException |
-            BadRequestException e) {
-            String details = FETCH_ERROR + doiUri;
-            System.out.println(details);
-            System.out.print(e.getMessage());
+    /**
+     * Non-blocking variant of {@link #fetchDataForDoi(String)} using the default timeout and number of attempts.
+     *
+     * @param doi a doi identifier or URL.
+     * @return a future completed with the metadata, or with an empty Optional when CrossRef does not know the DOI.
+     * @throws URISyntaxException when the input cannot be transformed to a valid URI.
+     */
+    public CompletableFuture<Optional<MetadataAndContentLocation>> fetchDataForDoiAsync(String doi)
+        throws URISyntaxException {
+        return fetchDataForDoiAsync(doi, lookupTimeout(), retryPolicy.getMaxAttempts());
+    }
+
+    /**
+     * Fetch the metadata of a DOI without blocking the calling thread. Errors the {@link RetryPolicy} considers
+     * retryable are retried up to the given number of attempts. The future completes exceptionally with an
+     * IOException when CrossRef answers with an error, or with a TimeoutException when the timeout expires.
+     * Cancelling the future stops waiting for the request in flight and frees its place in the bulkhead; the JDK 11
+     * client does not abort the exchange itself.
+     *
+     * @param doi         a doi identifier or URL.
+     * @param timeout     the time allowed for all attempts together.
+     * @param maxAttempts the maximum number of requests sent.
+     * @return a future completed with the metadata, or with an empty Optional when CrossRef does not know the DOI.
+     * @throws URISyntaxException when the input cannot be transformed to a valid URI.
+     */
+    public CompletableFuture<Optional<MetadataAndContentLocation>> fetchDataForDoiAsync(String doi, Duration timeout,
+                                                                                      int maxAttempts)
+        throws URISyntaxException {
+        return fetchJsonAsync(createRequest(createUrlToCrossRef(doi)), timeout, maxAttempts);
+    }
+
+    /**
+     * Fetch the metadata of a DOI as a stream, so that large work records are never held in memory as a whole. Failed
+     * attempts are retried before any body is read, a partly consumed body is never replayed.
+     *
+     * @param doi a doi identifier or URL.
+     * @return the metadata stream, or an empty Optional when CrossRef does not know the DOI.
+     * @throws URISyntaxException when the input cannot be transformed to a valid URI.
+     * @throws IOException        when the request fails or CrossRef answers with an error.
+     */
+    public Optional<MetadataStream> fetchStreamForDoi(String doi) throws URISyntaxException, IOException {
+        HttpRequest request = createRequest(createUrlToCrossRef(doi));
+        HttpResponse<InputStream> response = awaitResponse(
+            sendAsync(request, BodyHandlers.ofInputStream(), retryPolicy.getMaxAttempts(), lookupTimeout()));
+        if (responseIsSuccessful(response)) {
+            return Optional.of(new MetadataStream(
+                CROSSREF_LINK, new InputStreamReader(response.body(), StandardCharsets.UTF_8),
+                response.headers().firstValue(HttpHeaders.ETAG).orElse(null),
+                response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null)));
+        }
+        response.body().close();
+        if (response.statusCode() == HttpStatus.SC_NOT_FOUND) {
             return Optional.empty();
         }
+        throw new IOException(UNKNOWN_ERROR_MESSAGE + response.statusCode());
     }
 
-    private HttpRequest createRequest(URI doiUri) {
-        return HttpRequest.newBuilder(doiUri)
-                          .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
-                          .timeout(Duration.ofSeconds(TIMEOUT_DURATION))
-                          .GET()
-                          .build();
+    /**
+     * Ask CrossRef whether stored metadata is still current, sending the validators stored with it. Metadata stored
+     * without validators is simply fetched again.
+     *
+     * @param doi    a doi identifier or URL.
+     * @param stored the stored metadata.
+     * @return the new metadata, or an empty Optional when CrossRef answered 304 Not Modified.
+     * @throws URISyntaxException when the input cannot be transformed to a valid URI.
+     * @throws IOException        when the request fails or CrossRef answers with an error.
+     */
+    public Optional<MetadataAndContentLocation> revalidate(String doi, MetadataAndContentLocation stored)
+        throws URISyntaxException, IOException {
+        HttpRequest request = createRequest(createUrlToCrossRef(doi), stored.conditionalHeaders());
+        HttpResponse<String> response = awaitResponse(
+            sendAsync(request, BodyHandlers.ofString(), retryPolicy.getMaxAttempts(), lookupTimeout()));
+        if (response.statusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            return Optional.empty();
+        }
+        if (responseIsSuccessful(response)) {
+            return Optional.of(toMetadata(response));
+        }
+        throw new IOException(UNKNOWN_ERROR_MESSAGE + response.statusCode());
     }
 
-    private String getFromWeb(HttpRequest request)
-        throws InterruptedException, ExecutionException {
-        HttpResponse<String> response = httpClient.sendAsync(request, BodyHandlers.ofString())
-                                                  .get();
-        if (responseIsSuccessful(response)) {
-            return response.body();
-        } else {
-            return handleError(request, response);
+    /**
+     * Wait for a response until the lookup timeout. On timeout the future is cancelled, which gives up waiting and
+     * frees the place of the request in the bulkhead, while the exchange itself runs on until the client ends it.
+     */
+    private static <T> HttpResponse<T> awaitResponse(CompletableFuture<HttpResponse<T>> response)
+        throws IOException {
+        try {
+            return response.get(lookupTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw asIoException(e.getCause());
+        } catch (TimeoutException e) {
+            response.cancel(true);
+            throw new IOException(e);
         }
     }
 
-    private String handleError(HttpRequest request, HttpResponse<String> response) {
-        if (response.statusCode() == HttpStatus.SC_NOT_FOUND) {
-            throw new NotFoundException(COULD_NOT_FIND_ENTRY_WITH_DOI + request.uri().toString());
+    private static IOException asIoException(Throwable cause) {
+        Throwable actual = cause instanceof CompletionException && cause.getCause() != null
+            ? cause.getCause()
+            : cause;
+        return actual instanceof IOException ? (IOException) actual : new IOException(actual);
+    }
+
+    /**
+     * Open a connection to CrossRef ahead of the first lookup.
+     *
+     * @param timeout the time allowed for the connection.
+     * @return a future completed when CrossRef has answered or the attempt failed.
+     */
+    public CompletableFuture<Void> warmUp(Duration timeout) {
+        return SharedHttpClient.warmUp(httpClient, URI.create(CROSSREF_LINK), timeout);
+    }
+
+    private Optional<MetadataAndContentLocation> fetchJson(URI doiUri) throws IOException {
+        try {
+            return fetchJsonAsync(createRequest(doiUri), lookupTimeout(), retryPolicy.getMaxAttempts()).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logFailure(doiUri, e);
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            logFailure(doiUri, e.getCause());
+            throw asIoException(e.getCause());
         }
-        throw new BadRequestException(UNKNOWN_ERROR_MESSAGE + response.statusCode());
     }
 
-    private boolean responseIsSuccessful(HttpResponse<String> response) {
-        int statusCode = response.statusCode();
-        return statusCode >= HttpStatus.SC_OK && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
+    private void logFailure(URI doiUri, Throwable e) {
+        String details = FETCH_ERROR + doiUri;
+        System.out.println(details);
+        System.out.print(e.getMessage());
     }
 
-    protected URI createUrlToCrossRef(String doi)
-        throws URISyntaxException {
-        List<String> doiPathSegments = stripHttpPartFromDoi(doi);
-        List<String> pathSegments = composeAllPathSegments(doiPathSegments);
-        return addPathSegments(pathSegments);
+    private CompletableFuture<Optional<MetadataAndContentLocation>> fetchJsonAsync(HttpRequest request,
+                                                                                 Duration timeout,
+                                                                                 int maxAttempts) {
+        CompletableFuture<HttpResponse<String>> response = sendAsync(request, BodyHandlers.ofString(), maxAttempts,
+                                                                     timeout);
+        CompletableFuture<Optional<MetadataAndContentLocation>> result = response.thenApply(this::toResult);
+        result.whenComplete((metadata, error) -> response.cancel(true));
+        return result.orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    private URI addPathSegments(List<String> pathSegments) throws URISyntaxException {
-        return new URIBuilder(CROSSREF_LINK)
-            .setPathSegments(pathSegments)
-            .build();
+    /**
+     * Send a request when the rate limiter grants it a token, and let the limiter follow the limits announced in
+     * the response. Retries of the request are spaced by the retry policy and do not take further tokens.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request, BodyHandler<T> bodyHandler,
+                                                             int maxAttempts, Duration timeout) {
+        CompletableFuture<HttpResponse<T>> response = rateLimiter.submit(
+            () -> retryPolicy.sendAsync(httpClient, circuitBreaker, request, bodyHandler, maxAttempts, timeout));
+        response.thenAccept(received -> rateLimiter.updateFrom(received.headers()));
+        return response;
     }
 
-    private List<String> composeAllPathSegments(List<String> doiPathSegments) {
-        List<String> pathSegments = new ArrayList<>();
-        pathSegments.add(WORKS);
-        pathSegments.addAll(doiPathSegments);
-        return pathSegments;
+    private Optional<MetadataAndContentLocation> toResult(HttpResponse<String> response) {
+        if (responseIsSuccessful(response)) {
+            return Optional.of(toMetadata(response));
+        }
+        if (response.statusCode() == HttpStatus.SC_NOT_FOUND) {
+            return Optional.empty();
+        }
+        throw new CompletionException(new IOException(UNKNOWN_ERROR_MESSAGE + response.statusCode()));
+    }
+
+    private static MetadataAndContentLocation toMetadata(HttpResponse<String> response) {
+        return new MetadataAndContentLocation(CROSSREF_LINK, response.body(),
+                                              response.headers().firstValue(HttpHeaders.ETAG).orElse(null),
+                                              response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null));
     }
 
-    private List<String> stripHttpPartFromDoi(String doi) {
-        String path = URI.create(doi).getPath();
-        if (Objects.isNull(path) || path.isBlank()) {
-            throw new IllegalArgumentException(ILLEGAL_DOI_MESSAGE + doi);
+    private static Duration lookupTimeout() {
+        return InvocationDeadline.within(Duration.ofSeconds(TIMEOUT_DURATION));
+    }
+
+    private HttpRequest createRequest(URI doiUri) {
+        return createRequest(doiUri, Collections.emptyMap());
+    }
+
+    private HttpRequest createRequest(URI doiUri, Map<String, String> extraHeaders) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(doiUri)
+                                                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON)
+                                                 .timeout(InvocationDeadline.within(
+                                                     Duration.ofSeconds(ATTEMPT_TIMEOUT_SECONDS)))
+                                                 .GET();
+        if (mailto != null) {
+            builder.header(HttpHeaders.USER_AGENT, String.format(USER_AGENT_FORMAT, mailto));
         }
-        return URLEncodedUtils.parsePathSegments(path);
+        extraHeaders.forEach(builder::header);
+        return builder.build();
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    private boolean responseIsSuccessful(HttpResponse<?> response) {
+        int statusCode = response.statusCode();
+        return statusCode >= HttpStatus.SC_OK && statusCode < HttpStatus.SC_MULTIPLE_CHOICES;
+    }
+
+    protected URI createUrlToCrossRef(String doi)
+        throws URISyntaxException {
+        Doi parsed = Doi.parse(doi)
+                        .orElseThrow(() -> new IllegalArgumentException(String.format(ILLEGAL_DOI_MESSAGE, doi)));
+        return new URI(WORKS_URL + parsed.getEncodedPath() + mailtoQuery);
     }
 }
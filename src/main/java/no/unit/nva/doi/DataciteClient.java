@@ -1,36 +1,253 @@
 package no.unit.nva.doi;
 
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
 import java.nio.charset.StandardCharsets;
-import java.util.Scanner;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
 
 public class DataciteClient {
 
     public static final String DATACITE_BASE_URL_STRING = "https://data.datacite.org";
+    public static final String NAME = "DataCite";
+
+    /**
+     * The longest time an attempt is given, cut short to what is left of the invocation, which after a failed CrossRef
+     * lookup is less.
+     */
+    public static final int REQUEST_TIMEOUT_SECONDS = 15;
+    public static final String GZIP = "gzip";
+    public static final String COULD_NOT_FIND_ENTRY_WITH_DOI = "DataCite could not find entry:";
+    public static final String UNKNOWN_ERROR_MESSAGE = "DataCite failed with status code %d for %s";
+    public static final String ILLEGAL_DOI = "Not a DOI:";
+
+    private final transient HttpClient httpClient;
+    private final transient RetryPolicy retryPolicy;
+    private final transient CircuitBreaker circuitBreaker;
+
+    public DataciteClient() {
+        this(SharedHttpClient.getInstance());
+    }
+
+    public DataciteClient(HttpClient httpClient) {
+        this(httpClient, RetryPolicy.fromConfig(Config.getInstance()),
+             CircuitBreaker.fromConfig(NAME, Config.getInstance()));
+    }
+
+    /**
+     * Constructor that allows the retry policy and the circuit breaker to be injected.
+     *
+     * @param httpClient     the HTTP client.
+     * @param retryPolicy    decides which failed requests are sent again.
+     * @param circuitBreaker stops requests to DataCite while it keeps failing.
+     */
+    public DataciteClient(HttpClient httpClient, RetryPolicy retryPolicy, CircuitBreaker circuitBreaker) {
+        this.httpClient = httpClient;
+        this.retryPolicy = retryPolicy;
+        this.circuitBreaker = circuitBreaker;
+    }
 
     protected URL createRequestUrl(String doiUrlString, DataciteContentType dataciteContentType)
         throws MalformedURLException {
-        URL dataciteBaseUrl = new URL(DATACITE_BASE_URL_STRING);
-        URL doiUrl = new URL(doiUrlString);
-        return new URL(dataciteBaseUrl,
-                       String.join("",
-                                   dataciteContentType.getContentType(),
-                                   doiUrl.getPath()));
+        Doi doi = Doi.parse(doiUrlString).orElseThrow(() -> new MalformedURLException(ILLEGAL_DOI + doiUrlString));
+        return new URL(String.join("/", DATACITE_BASE_URL_STRING, dataciteContentType.getContentType(),
+                                   doi.getEncodedPath()));
     }
 
+    /**
+     * Fetch the metadata of a DOI in the requested content type, blocking until DataCite has answered.
+     *
+     * @param doiUrlString        the DOI URL.
+     * @param dataciteContentType the requested content type.
+     * @return the metadata and the location it was fetched from.
+     * @throws IOException when the request fails or DataCite does not answer with 2xx.
+     */
     public MetadataAndContentLocation fetchMetadata(String doiUrlString, DataciteContentType dataciteContentType)
         throws IOException {
-        String json = readStringFromUrl(createRequestUrl(doiUrlString, dataciteContentType));
-        return new MetadataAndContentLocation(DATACITE_BASE_URL_STRING, json);
+        try {
+            return fetchMetadataAsync(doiUrlString, dataciteContentType).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw asIoException(e.getCause());
+        }
+    }
+
+    /**
+     * Fetch the metadata of a DOI in the requested content type without blocking the calling thread. Errors the
+     * {@link RetryPolicy} considers retryable are retried. Cancelling the future gives up the request and frees its
+     * place in the bulkhead, but does not abort an exchange already under way.
+     *
+     * @param doiUrlString        the DOI URL.
+     * @param dataciteContentType the requested content type.
+     * @return a future completed with the metadata, or exceptionally with an IOException.
+     * @throws IOException when the DOI URL cannot be transformed to a DataCite URL.
+     */
+    public CompletableFuture<MetadataAndContentLocation> fetchMetadataAsync(String doiUrlString,
+                                                                            DataciteContentType dataciteContentType)
+        throws IOException {
+        HttpRequest request = createRequest(createRequestUrl(doiUrlString, dataciteContentType));
+        CompletableFuture<HttpResponse<byte[]>> response = retryPolicy.sendAsync(httpClient, circuitBreaker,
+                                                                                 request, BodyHandlers.ofByteArray());
+        CompletableFuture<MetadataAndContentLocation> result = response.thenApply(
+            received -> toMetadata(request, received));
+        result.whenComplete((metadata, error) -> response.cancel(true));
+        return result;
+    }
+
+    /**
+     * Fetch the metadata of a DOI as a stream, so that large documents are never held in memory as a whole. Failed
+     * attempts are retried before any body is read.
+     *
+     * @param doiUrlString        the DOI URL.
+     * @param dataciteContentType the requested content type.
+     * @return the metadata stream.
+     * @throws IOException when the request fails or DataCite does not answer with 2xx.
+     */
+    public MetadataStream fetchMetadataStream(String doiUrlString, DataciteContentType dataciteContentType)
+        throws IOException {
+        HttpRequest request = createRequest(createRequestUrl(doiUrlString, dataciteContentType));
+        HttpResponse<InputStream> response = retryPolicy.send(httpClient, circuitBreaker, request,
+                                                              BodyHandlers.ofInputStream());
+        InputStream body = response.body();
+        try {
+            checkStatus(request, response);
+            InputStream content = isGzipped(response) ? new GZIPInputStream(body) : body;
+            return new MetadataStream(DATACITE_BASE_URL_STRING, new InputStreamReader(content, StandardCharsets.UTF_8),
+                                      response.headers().firstValue(HttpHeaders.ETAG).orElse(null),
+                                      response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null));
+        } catch (IOException e) {
+            body.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Ask DataCite whether stored metadata is still current, sending the validators stored with it. Metadata stored
+     * without validators is simply fetched again.
+     *
+     * @param doiUrlString        the DOI URL.
+     * @param dataciteContentType the requested content type.
+     * @param stored              the stored metadata.
+     * @return the new metadata, or an empty Optional when DataCite answered 304 Not Modified.
+     * @throws IOException when the request fails or DataCite answers with an error.
+     */
+    public Optional<MetadataAndContentLocation> revalidate(String doiUrlString,
+                                                           DataciteContentType dataciteContentType,
+                                                           MetadataAndContentLocation stored) throws IOException {
+        HttpRequest request = createRequest(createRequestUrl(doiUrlString, dataciteContentType),
+                                            stored.conditionalHeaders());
+        HttpResponse<byte[]> response = retryPolicy.send(httpClient, circuitBreaker, request,
+                                                         BodyHandlers.ofByteArray());
+        if (response.statusCode() == HttpStatus.SC_NOT_MODIFIED) {
+            return Optional.empty();
+        }
+        return Optional.of(readMetadata(request, response));
+    }
+
+    /**
+     * Open a connection to DataCite ahead of the first lookup.
+     *
+     * @param timeout the time allowed for the connection.
+     * @return a future completed when DataCite has answered or the attempt failed.
+     */
+    public CompletableFuture<Void> warmUp(Duration timeout) {
+        return SharedHttpClient.warmUp(httpClient, URI.create(DATACITE_BASE_URL_STRING), timeout);
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    protected HttpRequest createRequest(URL url) throws MalformedURLException {
+        return createRequest(url, Collections.emptyMap());
+    }
+
+    protected HttpRequest createRequest(URL url, Map<String, String> extraHeaders) throws MalformedURLException {
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(url.toURI())
+                                                     .header(HttpHeaders.ACCEPT_ENCODING, GZIP)
+                                                     .timeout(InvocationDeadline.within(
+                                                         Duration.ofSeconds(REQUEST_TIMEOUT_SECONDS)))
+                                                     .GET();
+            extraHeaders.forEach(builder::header);
+            return builder.build();
+        } catch (URISyntaxException e) {
+            throw new MalformedURLException(e.getMessage());
+        }
+    }
+
+    private MetadataAndContentLocation toMetadata(HttpRequest request, HttpResponse<byte[]> response) {
+        try {
+            return readMetadata(request, response);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static MetadataAndContentLocation readMetadata(HttpRequest request, HttpResponse<byte[]> response)
+        throws IOException {
+        return new MetadataAndContentLocation(DATACITE_BASE_URL_STRING, readBody(request, response),
+                                              response.headers().firstValue(HttpHeaders.ETAG).orElse(null),
+                                              response.headers().firstValue(HttpHeaders.LAST_MODIFIED).orElse(null));
+    }
+
+    protected static String readBody(HttpRequest request, HttpResponse<byte[]> response) throws IOException {
+        checkStatus(request, response);
+        byte[] body = response.body();
+        if (isGzipped(response)) {
+            try (InputStream gunzipped = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = gunzipped.readAllBytes();
+            }
+        }
+        return new String(body, StandardCharsets.UTF_8);
     }
 
-    protected String readStringFromUrl(URL url) throws IOException {
-        try (Scanner scanner = new Scanner(url.openStream(),
-                                           StandardCharsets.UTF_8.toString())) {
-            scanner.useDelimiter("\\A");
-            return scanner.hasNext() ? scanner.next() : "";
+    private static void checkStatus(HttpRequest request, HttpResponse<?> response) throws IOException {
+        int statusCode = response.statusCode();
+        if (statusCode == HttpStatus.SC_NOT_FOUND) {
+            throw new FileNotFoundException(COULD_NOT_FIND_ENTRY_WITH_DOI + request.uri());
         }
+        if (statusCode < HttpStatus.SC_OK || statusCode >= HttpStatus.SC_MULTIPLE_CHOICES) {
+            throw new IOException(String.format(UNKNOWN_ERROR_MESSAGE, statusCode, request.uri()));
+        }
+    }
+
+    private static boolean isGzipped(HttpResponse<?> response) {
+        return response.headers()
+                       .firstValue(HttpHeaders.CONTENT_ENCODING)
+                       .map(GZIP::equalsIgnoreCase)
+                       .orElse(false);
+    }
+
+    private static IOException asIoException(Throwable cause) {
+        Throwable actual = cause instanceof CompletionException && cause.getCause() != null
+            ? cause.getCause()
+            : cause;
+        return actual instanceof IOException ? (IOException) actual : new IOException(actual);
     }
 }
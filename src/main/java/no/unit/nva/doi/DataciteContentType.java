@@ -15,6 +15,7 @@ public enum DataciteContentType {
 
     public static final String DataciteContentTypeNotFound =
         "Datacite Content Type not found for '%s', expected one of '%s'.";
+    private static final String JSON_SUFFIX = "+json";
     private final String contentType;
 
     DataciteContentType(String contentType) {
@@ -47,4 +48,8 @@ public enum DataciteContentType {
     public String getContentType() {
         return contentType;
     }
+
+    public boolean isJson() {
+        return contentType.endsWith(JSON_SUFFIX);
+    }
 }
@@ -0,0 +1,274 @@
+package no.unit.nva.doi;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * A DOI in canonical form: the prefix and the case-folded suffix joined by a separator, e.g. "10.1000/182". DOIs are
+ * case-insensitive, so two DOIs differing only in case are equal.
+ *
+ * <p>A DOI is parsed in a single pass from a DOI string ("10.1000/182"), a DOI string with a scheme ("doi:10.1000/182")
+ * or a DOI URL ("https://doi.org/10.1000/182", "http://dx.doi.org/10.1000/182"). Percent-escapes in the path of a DOI
+ * URL are decoded, and the query and fragment are ignored. Parsing avoids regular expressions and URI/URL allocation.
+ * Besides the Doi and the Optional it returns, it only allocates strings that differ from the input: the DOI cut out
+ * of a URL, a scheme or whitespace, the decoded DOI and its buffers for input with percent-escapes, the lower-case
+ * copy for a DOI with upper-case letters, and the encoded path for a DOI with characters that are not safe in a URL
+ * path. A DOI string that is already canonical is kept as it is.
+ */
+public final class Doi {
+
+    public static final char SEPARATOR = '/';
+    public static final String DOI_SCHEME = "doi:";
+    public static final String HTTPS = "https://";
+    public static final String HTTP = "http://";
+    public static final String DX_SUBDOMAIN = "dx.";
+    public static final String DOI_HOST = "doi.org/";
+    public static final String DIRECTORY_INDICATOR = "10";
+
+    private static final int NOT_FOUND = -1;
+    private static final int RADIX = 16;
+    private static final String PATH_SAFE = "-._~!$&'()*+,;=:@/";
+
+    private final String value;
+    private final int separator;
+    private final String encodedPath;
+
+    private Doi(String value, int separator) {
+        this.value = value;
+        this.separator = separator;
+        this.encodedPath = encode(value);
+    }
+
+    /**
+     * Parse a DOI given either as a DOI string or as a DOI URL. Surrounding whitespace is ignored.
+     *
+     * @param text a DOI string or URL.
+     * @return the DOI, or an empty Optional when the text is not a DOI.
+     */
+    public static Optional<Doi> parse(String text) {
+        if (text == null) {
+            return Optional.empty();
+        }
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        int resolverEnd = afterResolver(text, start, end);
+        boolean url = resolverEnd != NOT_FOUND;
+        int prefixStart = url ? resolverEnd : afterScheme(text, start, end);
+        int separator = endOfPrefix(text, prefixStart, end);
+        if (separator == NOT_FOUND) {
+            return Optional.empty();
+        }
+        int suffixEnd = url ? endOfPath(text, separator + 1, end) : end;
+        if (suffixEnd <= separator + 1) {
+            return Optional.empty();
+        }
+        int escape = text.indexOf('%', separator + 1);
+        String doi;
+        if (url && escape != NOT_FOUND && escape < suffixEnd) {
+            Optional<String> decoded = decode(text, prefixStart, suffixEnd);
+            if (decoded.isEmpty()) {
+                return Optional.empty();
+            }
+            doi = decoded.get();
+        } else {
+            doi = text.substring(prefixStart, suffixEnd);
+        }
+        return containsControlCharacter(doi, 0, doi.length())
+            ? Optional.empty()
+            : Optional.of(new Doi(doi.toLowerCase(Locale.ROOT), separator - prefixStart));
+    }
+
+    private static int afterResolver(String text, int start, int end) {
+        int position;
+        if (startsWith(text, start, end, HTTPS)) {
+            position = start + HTTPS.length();
+        } else if (startsWith(text, start, end, HTTP)) {
+            position = start + HTTP.length();
+        } else {
+            return NOT_FOUND;
+        }
+        if (startsWith(text, position, end, DX_SUBDOMAIN)) {
+            position += DX_SUBDOMAIN.length();
+        }
+        return startsWith(text, position, end, DOI_HOST) ? position + DOI_HOST.length() : NOT_FOUND;
+    }
+
+    private static int afterScheme(String text, int start, int end) {
+        return startsWith(text, start, end, DOI_SCHEME) ? start + DOI_SCHEME.length() : start;
+    }
+
+    /**
+     * The prefix is the directory indicator "10" followed by one or more dot-separated numbers.
+     */
+    private static int endOfPrefix(String text, int start, int end) {
+        if (!startsWith(text, start, end, DIRECTORY_INDICATOR)) {
+            return NOT_FOUND;
+        }
+        int position = start + DIRECTORY_INDICATOR.length();
+        boolean hasSubdivision = false;
+        while (position < end && text.charAt(position) == '.') {
+            int digits = position + 1;
+            while (digits < end && isAsciiDigit(text.charAt(digits))) {
+                digits++;
+            }
+            if (digits == position + 1) {
+                return NOT_FOUND;
+            }
+            position = digits;
+            hasSubdivision = true;
+        }
+        return hasSubdivision && position < end && text.charAt(position) == SEPARATOR ? position : NOT_FOUND;
+    }
+
+    private static int endOfPath(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '?' || c == '#') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private static boolean containsControlCharacter(String text, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < ' ' || c == '\u007f') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decode the percent-escapes of a URL path. Runs of escapes are decoded together, since a character outside ASCII
+     * is escaped as several UTF-8 bytes.
+     *
+     * @return the decoded text, or an empty Optional when an escape is malformed.
+     */
+    private static Optional<String> decode(String text, int start, int end) {
+        StringBuilder decoded = new StringBuilder(end - start);
+        ByteArrayOutputStream escaped = new ByteArrayOutputStream();
+        int position = start;
+        while (position < end) {
+            if (text.charAt(position) != '%') {
+                decoded.append(text.charAt(position++));
+                continue;
+            }
+            escaped.reset();
+            while (position < end && text.charAt(position) == '%') {
+                int high = position + 2 < end ? Character.digit(text.charAt(position + 1), RADIX) : NOT_FOUND;
+                int low = position + 2 < end ? Character.digit(text.charAt(position + 2), RADIX) : NOT_FOUND;
+                if (high == NOT_FOUND || low == NOT_FOUND) {
+                    return Optional.empty();
+                }
+                escaped.write(high * RADIX + low);
+                position += 3;
+            }
+            decoded.append(escaped.toString(StandardCharsets.UTF_8));
+        }
+        return Optional.of(decoded.toString());
+    }
+
+    private static String encode(String value) {
+        if (isPathSafe(value)) {
+            return value;
+        }
+        StringBuilder encoded = new StringBuilder(value.length() * 2);
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xff);
+            if (c < 0x80 && isPathSafe(c)) {
+                encoded.append(c);
+            } else {
+                encoded.append('%')
+                       .append(Character.toUpperCase(Character.forDigit(c >> 4, RADIX)))
+                       .append(Character.toUpperCase(Character.forDigit(c & 0xf, RADIX)));
+            }
+        }
+        return encoded.toString();
+    }
+
+    private static boolean isPathSafe(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isPathSafe(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isPathSafe(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || isAsciiDigit(c) || PATH_SAFE.indexOf(c) >= 0;
+    }
+
+    private static boolean isAsciiDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean startsWith(String text, int position, int end, String expected) {
+        return end - position >= expected.length()
+            && text.regionMatches(true, position, expected, 0, expected.length());
+    }
+
+    /**
+     * The registrant prefix, e.g. "10.1000" for "10.1000/182".
+     *
+     * @return the part of the DOI before the first separator.
+     */
+    public String getPrefix() {
+        return value.substring(0, separator);
+    }
+
+    /**
+     * The case-folded suffix, e.g. "182" for "10.1000/182".
+     *
+     * @return the part of the DOI after the first separator.
+     */
+    public String getSuffix() {
+        return value.substring(separator + 1);
+    }
+
+    /**
+     * The DOI percent-encoded for use as a URL path, keeping the separators so that the suffix may span several path
+     * segments like it does on the resolvers.
+     *
+     * @return the encoded DOI, the canonical DOI itself when nothing needs encoding.
+     */
+    public String getEncodedPath() {
+        return encodedPath;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Doi)) {
+            return false;
+        }
+        return value.equals(((Doi) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return value.hashCode();
+    }
+
+    /**
+     * The canonical DOI, e.g. "10.1000/182".
+     *
+     * @return the prefix and the case-folded suffix joined by a separator.
+     */
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -1,8 +1,13 @@
 package no.unit.nva.doi;
 
+import java.util.List;
+
 public class DoiLookup {
 
     private String doi;
+    private List<String> dois;
+    private List<String> fields;
+    private String profile;
 
     public String getDoi() {
         return doi;
@@ -11,4 +16,32 @@ public class DoiLookup {
     public void setDoi(String doi) {
         this.doi = doi;
     }
+
+    public List<String> getDois() {
+        return dois;
+    }
+
+    public void setDois(List<String> dois) {
+        this.dois = dois;
+    }
+
+    public boolean isBatch() {
+        return dois != null && !dois.isEmpty();
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
 }
@@ -0,0 +1,592 @@
+package no.unit.nva.doi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PushbackReader;
+import java.net.URISyntaxException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Resolves the metadata of a DOI from the metadata store, CrossRef or DataCite. Stored metadata that has expired but
+ * is still within its stale window is served as it is, while it is revalidated with the agency it came from in the
+ * background.
+ *
+ * <p>CrossRef works are stored in one canonical representation, DataCite JSON, which they are transformed into. The
+ * other content types of a CrossRef DOI are derived from it by {@link WorkTransformer} when they are first asked for,
+ * and stored as well, so a CrossRef DOI is fetched once whatever content types clients ask for. DataCite serves every
+ * content type natively, with fields that {@link WorkTransformer} does not carry over, so DataCite DOIs are fetched
+ * from DataCite in each content type that is asked for.
+ */
+public class DoiMetadataResolver {
+
+    /**
+     * Streamed DataCite documents longer than this are passed through without being stored.
+     */
+    public static final int STREAM_CAPTURE_MAX_CHARS = 256 * 1024;
+    public static final String REVALIDATION_FAILED = "Revalidation failed for ";
+
+    /**
+     * The content type of the canonical representation of a CrossRef work, from which its other content types are
+     * derived.
+     */
+    public static final DataciteContentType CANONICAL_CONTENT_TYPE = DataciteContentType.DATACITE_JSON;
+
+    private final transient DataciteClient dataciteClient;
+    private final transient CrossRefClient crossRefClient;
+    private final transient MetadataStore metadataStore;
+    private final transient RegistrationAgencyCache agencyCache;
+    private final transient PrefixRouter prefixRouter;
+    private final transient HedgedLookup hedgedLookup;
+    private final transient Executor revalidationExecutor;
+    private final transient SingleFlight<CacheKey, MetadataAndContentLocation> upstreamLookups =
+        new SingleFlight<>();
+    private final transient Set<CacheKey> revalidating = ConcurrentHashMap.newKeySet();
+    private final AtomicLong notModified = new AtomicLong();
+    private final AtomicLong refreshed = new AtomicLong();
+    private final AtomicLong revalidationFailures = new AtomicLong();
+    private final AtomicLong derivations = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param dataciteClient the DataCite client.
+     * @param crossRefClient the CrossRef client.
+     * @param metadataStore  the store consulted before the clients are called.
+     * @param agencyCache    remembers which agency answered for earlier lookups of a DOI.
+     * @param prefixRouter   guesses the agency of DOIs that have not been looked up before.
+     * @param hedgedLookup   queries both agencies concurrently when neither the DOI nor its prefix is known.
+     */
+    public DoiMetadataResolver(DataciteClient dataciteClient, CrossRefClient crossRefClient,
+                               MetadataStore metadataStore, RegistrationAgencyCache agencyCache,
+                               PrefixRouter prefixRouter, HedgedLookup hedgedLookup) {
+        this(dataciteClient, crossRefClient, metadataStore, agencyCache, prefixRouter, hedgedLookup,
+             ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor that allows the executor running background revalidations to be injected.
+     *
+     * @param dataciteClient       the DataCite client.
+     * @param crossRefClient       the CrossRef client.
+     * @param metadataStore        the store consulted before the clients are called.
+     * @param agencyCache          remembers which agency answered for earlier lookups of a DOI.
+     * @param prefixRouter         guesses the agency of DOIs that have not been looked up before.
+     * @param hedgedLookup         queries both agencies concurrently when neither the DOI nor its prefix is known.
+     * @param revalidationExecutor runs the revalidation of stale metadata.
+     */
+    public DoiMetadataResolver(DataciteClient dataciteClient, CrossRefClient crossRefClient,
+                               MetadataStore metadataStore, RegistrationAgencyCache agencyCache,
+                               PrefixRouter prefixRouter, HedgedLookup hedgedLookup,
+                               Executor revalidationExecutor) {
+        this.dataciteClient = dataciteClient;
+        this.crossRefClient = crossRefClient;
+        this.metadataStore = metadataStore;
+        this.agencyCache = agencyCache;
+        this.prefixRouter = prefixRouter;
+        this.hedgedLookup = hedgedLookup;
+        this.revalidationExecutor = revalidationExecutor;
+    }
+
+    /**
+     * Create a resolver with fresh caches and the metadata store described by the configuration.
+     *
+     * @param dataciteClient the DataCite client.
+     * @param crossRefClient the CrossRef client.
+     * @param config         the configuration.
+     * @return a new DoiMetadataResolver.
+     */
+    public static DoiMetadataResolver fromConfig(DataciteClient dataciteClient, CrossRefClient crossRefClient,
+                                                 Config config) {
+        return new DoiMetadataResolver(dataciteClient, crossRefClient, TieredMetadataStore.fromConfig(config),
+                                       RegistrationAgencyCache.fromConfig(config), PrefixRouter.fromConfig(config),
+                                       HedgedLookup.fromConfig(crossRefClient, dataciteClient, config));
+    }
+
+    /**
+     * Look up the metadata of a DOI. A content type of a CrossRef DOI that is not stored is derived from the stored
+     * canonical representation, and only when that is missing too is the DOI fetched. Concurrent lookups of the same
+     * DOI and content type that miss the store share one upstream lookup.
+     *
+     * @param doiUrl              a DOI string or URL.
+     * @param dataciteContentType the requested content type.
+     * @return the metadata and the location it was fetched from.
+     * @throws IOException        when DataCite cannot be reached.
+     * @throws URISyntaxException when the DOI cannot be transformed to a valid URI.
+     */
+    public MetadataAndContentLocation resolve(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        System.out.println("getDoiMetadata(doi:" + doiUrl + ")");
+        CacheKey cacheKey = CacheKey.of(doiUrl, dataciteContentType);
+        Optional<MetadataAndContentLocation> cached = fromStore(cacheKey, doiUrl);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Optional<MetadataAndContentLocation> work = storedWork(cacheKey, doiUrl);
+        if (work.isPresent()) {
+            return derive(cacheKey, work.get());
+        }
+        return inContentType(cacheKey, fetchShared(cacheKey, () -> fetchAndStore(cacheKey, doiUrl)));
+    }
+
+    /**
+     * Look up the metadata of a DOI as a stream. Metadata found in the store, derived representations and upstream
+     * documents up to {@link #STREAM_CAPTURE_MAX_CHARS} are returned in memory, see
+     * {@link MetadataStream#getMetadata()}, so that a failure to read them is noticed before anything is sent.
+     * Upstream lookups are shared and hedged like those of {@link #resolve(String, DataciteContentType)}. CrossRef
+     * works are read as they arrive and transformed. Only a larger DataCite document is passed through from the
+     * upstream connection as it arrives, and it is not stored.
+     *
+     * @param doiUrl              a DOI string or URL.
+     * @param dataciteContentType the requested content type.
+     * @return the metadata stream, which the caller must close.
+     * @throws IOException        when neither agency can deliver the metadata.
+     * @throws URISyntaxException when the DOI cannot be transformed to a valid URI.
+     */
+    public MetadataStream resolveStream(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        CacheKey cacheKey = CacheKey.of(doiUrl, dataciteContentType);
+        Optional<MetadataAndContentLocation> cached = fromStore(cacheKey, doiUrl);
+        if (cached.isPresent()) {
+            return MetadataStream.of(cached.get());
+        }
+        Optional<MetadataAndContentLocation> work = storedWork(cacheKey, doiUrl);
+        if (work.isPresent()) {
+            return MetadataStream.of(derive(cacheKey, work.get()));
+        }
+        try {
+            return MetadataStream.of(inContentType(cacheKey, upstreamLookups.execute(
+                cacheKey, () -> fetchStreamAndStore(cacheKey, doiUrl))));
+        } catch (LargeMetadata large) {
+            Optional<MetadataStream> passThrough = large.claim();
+            if (passThrough.isPresent()) {
+                return passThrough.get();
+            }
+            try {
+                return MetadataStream.of(inContentType(cacheKey, fetchStreamAndStore(cacheKey, doiUrl)));
+            } catch (LargeMetadata ours) {
+                return ours.claim().orElseThrow();
+            }
+        }
+    }
+
+    /**
+     * The stored canonical representation of a CrossRef work, when another content type of it is asked for. The
+     * lookup is part of the one for the content type asked for, and is not recorded in the metrics itself.
+     */
+    private Optional<MetadataAndContentLocation> storedWork(CacheKey cacheKey, String doiUrl) {
+        CacheKey canonicalKey = cacheKey.withContentType(CANONICAL_CONTENT_TYPE);
+        if (canonicalKey.equals(cacheKey)) {
+            return Optional.empty();
+        }
+        return stored(canonicalKey, doiUrl).map(StoredMetadata::getMetadata)
+                                           .filter(DoiMetadataResolver::isCrossRefWork);
+    }
+
+    /**
+     * Run an upstream lookup that never passes large documents through, or wait for the one running. When the lookup
+     * waited for has passed a large document through to its own client, the call is run on its own.
+     */
+    private MetadataAndContentLocation fetchShared(CacheKey cacheKey,
+                                                   SingleFlight.Call<MetadataAndContentLocation> call)
+        throws IOException, URISyntaxException {
+        try {
+            return upstreamLookups.execute(cacheKey, call);
+        } catch (LargeMetadata e) {
+            return call.call();
+        }
+    }
+
+    /**
+     * Fetch the metadata for a streamed lookup and store it. Lookups that are hedged fetch it in memory, others stream
+     * it from the agency that is known or guessed to have it. CrossRef works are transformed into the canonical
+     * representation as they are read. DataCite documents are read into memory, unless they are larger than
+     * {@link #STREAM_CAPTURE_MAX_CHARS}, in which case the open stream is handed over in a {@link LargeMetadata}
+     * failure.
+     */
+    private MetadataAndContentLocation fetchStreamAndStore(CacheKey cacheKey, String doiUrl)
+        throws IOException, URISyntaxException {
+        if (isHedged(cacheKey)) {
+            return fetchAndStore(cacheKey, doiUrl);
+        }
+        MetadataStream stream = openUpstreamStream(cacheKey, doiUrl);
+        if (agencyOf(stream.getContentLocation()) == RegistrationAgency.CROSSREF) {
+            return readWork(cacheKey.withContentType(CANONICAL_CONTENT_TYPE), stream);
+        }
+        char[] head = new char[STREAM_CAPTURE_MAX_CHARS + 1];
+        int length = 0;
+        int read = 0;
+        try {
+            while (length < head.length && (read = stream.getReader().read(head, length, head.length - length)) >= 0) {
+                length += read;
+            }
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        if (read >= 0) {
+            PushbackReader rest = new PushbackReader(stream.getReader(), length);
+            rest.unread(head, 0, length);
+            throw new LargeMetadata(new MetadataStream(stream.getContentLocation(), rest, stream.getEtag(),
+                                                       stream.getLastModified()));
+        }
+        stream.close();
+        MetadataAndContentLocation metadata = stream.withMetadata(new String(head, 0, length));
+        metadataStore.put(cacheKey, metadata);
+        return metadata;
+    }
+
+    private boolean isHedged(CacheKey cacheKey) {
+        return hedgedLookup.isEnabled()
+            && agencyCache.lookup(cacheKey).or(() -> prefixRouter.route(cacheKey)).isEmpty();
+    }
+
+    private MetadataStream openUpstreamStream(CacheKey cacheKey, String doiUrl)
+        throws IOException, URISyntaxException {
+        Optional<RegistrationAgency> routerGuess = prefixRouter.route(cacheKey);
+        Optional<RegistrationAgency> knownAgency = agencyCache.lookup(cacheKey).or(() -> routerGuess);
+        MetadataStream stream = knownAgency.orElse(RegistrationAgency.CROSSREF) == RegistrationAgency.DATACITE
+            ? streamFromDataciteFirst(doiUrl, cacheKey.getContentType())
+            : streamFromCrossRefFirst(doiUrl, cacheKey.getContentType());
+        RegistrationAgency actual = agencyOf(stream.getContentLocation());
+        agencyCache.record(cacheKey, actual);
+        prefixRouter.recordOutcome(cacheKey, routerGuess, actual);
+        return stream;
+    }
+
+    /**
+     * Read a CrossRef work from an upstream stream, transforming it into the canonical representation as it is read,
+     * and store it. The body is never held as a whole: the fields of the work are picked from the stream and the rest,
+     * such as the reference list, is skipped. Nothing can be sent before the end of the work, since the fields the
+     * derived representations start with may come last in it.
+     */
+    private MetadataAndContentLocation readWork(CacheKey canonicalKey, MetadataStream stream) throws IOException {
+        try (MetadataStream upstream = stream) {
+            MetadataAndContentLocation metadata = upstream.withMetadata(
+                WorkTransformer.render(WorkTransformer.read(upstream.getReader()), CANONICAL_CONTENT_TYPE));
+            metadataStore.put(canonicalKey, metadata);
+            return metadata;
+        }
+    }
+
+    private Optional<MetadataAndContentLocation> fromStore(CacheKey cacheKey, String doiUrl) {
+        long started = System.nanoTime();
+        Optional<StoredMetadata> stored = stored(cacheKey, doiUrl);
+        Metrics.current().recordCacheLookup(started, stored.isPresent());
+        return stored.map(StoredMetadata::getMetadata);
+    }
+
+    /**
+     * Look up stored metadata, and revalidate it in the background when it is stale.
+     */
+    private Optional<StoredMetadata> stored(CacheKey cacheKey, String doiUrl) {
+        Optional<StoredMetadata> stored = metadataStore.lookup(cacheKey);
+        stored.filter(metadata -> !metadata.isFresh())
+              .ifPresent(stale -> revalidateInBackground(cacheKey, doiUrl, stale.getMetadata()));
+        return stored;
+    }
+
+    private void revalidateInBackground(CacheKey cacheKey, String doiUrl, MetadataAndContentLocation stale) {
+        if (!revalidating.add(cacheKey)) {
+            return;
+        }
+        try {
+            revalidationExecutor.execute(() -> {
+                try {
+                    revalidate(cacheKey, doiUrl, stale);
+                } finally {
+                    revalidating.remove(cacheKey);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            revalidating.remove(cacheKey);
+        }
+    }
+
+    /**
+     * Ask the agency the stale metadata came from whether it has changed, and store the answer. Representations
+     * derived from a CrossRef work carry the validators of the work, and CrossRef is asked about the work. DataCite is
+     * asked about the content type of the stale metadata itself. Metadata that has not changed is stored again, which
+     * starts a new time-to-live. A changed work replaces the canonical representation and the stale one, changed
+     * DataCite metadata replaces the stale metadata. When the agency cannot be reached the stale metadata is left as
+     * it is.
+     *
+     * @param cacheKey the key of the stale metadata.
+     * @param doiUrl   a DOI string or URL.
+     * @param stale    the stale metadata.
+     */
+    protected void revalidate(CacheKey cacheKey, String doiUrl, MetadataAndContentLocation stale) {
+        try {
+            Optional<MetadataAndContentLocation> changed;
+            if (isCrossRefWork(stale)) {
+                changed = crossRefClient.revalidate(doiUrl, stale);
+                if (changed.isPresent()) {
+                    MetadataAndContentLocation canonical = canonical(changed.get());
+                    metadataStore.put(cacheKey.withContentType(CANONICAL_CONTENT_TYPE), canonical);
+                    derive(cacheKey, canonical);
+                }
+            } else {
+                changed = dataciteClient.revalidate(doiUrl, cacheKey.getContentType(), stale);
+                changed.ifPresent(metadata -> metadataStore.put(cacheKey, metadata));
+            }
+            if (changed.isEmpty()) {
+                metadataStore.put(cacheKey, stale);
+            }
+            (changed.isPresent() ? refreshed : notModified).incrementAndGet();
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            revalidationFailures.incrementAndGet();
+            System.out.println(REVALIDATION_FAILED + cacheKey + ": " + e.getMessage());
+        }
+    }
+
+    private MetadataStream streamFromCrossRefFirst(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        Optional<MetadataStream> crossRefResult;
+        try {
+            crossRefResult = crossRefClient.fetchStreamForDoi(doiUrl);
+        } catch (IOException crossRefFailure) {
+            try {
+                return dataciteClient.fetchMetadataStream(doiUrl, dataciteContentType);
+            } catch (IOException e) {
+                crossRefFailure.addSuppressed(e);
+                throw crossRefFailure;
+            }
+        }
+        if (crossRefResult.isPresent()) {
+            return crossRefResult.get();
+        }
+        return dataciteClient.fetchMetadataStream(doiUrl, dataciteContentType);
+    }
+
+    private MetadataStream streamFromDataciteFirst(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        try {
+            return dataciteClient.fetchMetadataStream(doiUrl, dataciteContentType);
+        } catch (IOException e) {
+            Optional<MetadataStream> crossRefResult = crossRefClient.fetchStreamForDoi(doiUrl);
+            if (crossRefResult.isPresent()) {
+                return crossRefResult.get();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fetch the metadata in the content type of a key and store it. A CrossRef work is stored in the canonical
+     * representation, which is returned for the caller to derive the content type from.
+     */
+    private MetadataAndContentLocation fetchAndStore(CacheKey cacheKey, String doiUrl)
+        throws IOException, URISyntaxException {
+        MetadataAndContentLocation metadata = fetchFromUpstream(cacheKey, doiUrl);
+        if (isCrossRefWork(metadata)) {
+            MetadataAndContentLocation canonical = canonical(metadata);
+            metadataStore.put(cacheKey.withContentType(CANONICAL_CONTENT_TYPE), canonical);
+            return canonical;
+        }
+        metadataStore.put(cacheKey, metadata);
+        return metadata;
+    }
+
+    /**
+     * The canonical representation of a CrossRef work.
+     */
+    private static MetadataAndContentLocation canonical(MetadataAndContentLocation work) throws IOException {
+        return new MetadataAndContentLocation(work.getContentHeader(),
+                                              WorkTransformer.transform(work.getJson(), CANONICAL_CONTENT_TYPE),
+                                              work.getEtag(), work.getLastModified());
+    }
+
+    /**
+     * Fetched metadata in the content type of a key: DataCite metadata was fetched in it, the content type of a
+     * CrossRef work is derived from its canonical representation.
+     */
+    private MetadataAndContentLocation inContentType(CacheKey cacheKey, MetadataAndContentLocation fetched)
+        throws IOException {
+        return isCrossRefWork(fetched) ? derive(cacheKey, fetched) : fetched;
+    }
+
+    /**
+     * The content type of a key derived from the canonical representation of a CrossRef work, and stored unless the
+     * key is for the canonical representation itself. The derived representation keeps the location and the
+     * validators of the canonical one.
+     */
+    private MetadataAndContentLocation derive(CacheKey cacheKey, MetadataAndContentLocation canonical)
+        throws IOException {
+        if (cacheKey.getContentType() == CANONICAL_CONTENT_TYPE) {
+            return canonical;
+        }
+        MetadataAndContentLocation derived = new MetadataAndContentLocation(
+            canonical.getContentHeader(), WorkTransformer.transform(canonical.getJson(), cacheKey.getContentType()),
+            canonical.getEtag(), canonical.getLastModified());
+        metadataStore.put(cacheKey, derived);
+        derivations.incrementAndGet();
+        return derived;
+    }
+
+    private MetadataAndContentLocation fetchFromUpstream(CacheKey cacheKey, String doiUrl)
+        throws IOException, URISyntaxException {
+        Optional<RegistrationAgency> routerGuess = prefixRouter.route(cacheKey);
+        Optional<RegistrationAgency> knownAgency = agencyCache.lookup(cacheKey).or(() -> routerGuess);
+        MetadataAndContentLocation metadata;
+        if (knownAgency.isEmpty() && hedgedLookup.isEnabled()) {
+            metadata = hedgedLookup.fetch(doiUrl, cacheKey.getContentType());
+        } else if (knownAgency.orElse(RegistrationAgency.CROSSREF) == RegistrationAgency.DATACITE) {
+            metadata = fetchFromDataciteFirst(doiUrl, cacheKey.getContentType());
+        } else {
+            metadata = fetchFromCrossRefFirst(doiUrl, cacheKey.getContentType());
+        }
+        RegistrationAgency actual = agencyOf(metadata.getContentHeader());
+        agencyCache.record(cacheKey, actual);
+        prefixRouter.recordOutcome(cacheKey, routerGuess, actual);
+        return metadata;
+    }
+
+    /**
+     * Ask CrossRef first and DataCite when CrossRef does not know the DOI. When CrossRef fails, or its circuit breaker
+     * is open, DataCite is still asked, but if it cannot deliver either the CrossRef failure is reported rather than a
+     * misleading not found.
+     */
+    private MetadataAndContentLocation fetchFromCrossRefFirst(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        Optional<MetadataAndContentLocation> crossRefResult;
+        try {
+            crossRefResult = crossRefClient.fetchDataForDoi(doiUrl);
+        } catch (IOException crossRefFailure) {
+            try {
+                return dataciteClient.fetchMetadata(doiUrl, dataciteContentType);
+            } catch (IOException e) {
+                crossRefFailure.addSuppressed(e);
+                throw crossRefFailure;
+            }
+        }
+        if (crossRefResult.isPresent()) {
+            return crossRefResult.get();
+        }
+        return dataciteClient.fetchMetadata(doiUrl, dataciteContentType);
+    }
+
+    /**
+     * Ask DataCite first and CrossRef when DataCite cannot deliver. When DataCite does not know the DOI and CrossRef
+     * fails, the CrossRef failure is reported rather than a misleading not found.
+     */
+    private MetadataAndContentLocation fetchFromDataciteFirst(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        try {
+            return dataciteClient.fetchMetadata(doiUrl, dataciteContentType);
+        } catch (IOException e) {
+            Optional<MetadataAndContentLocation> crossRefResult;
+            try {
+                crossRefResult = crossRefClient.fetchDataForDoi(doiUrl);
+            } catch (IOException crossRefFailure) {
+                throw combined(e, crossRefFailure);
+            }
+            if (crossRefResult.isPresent()) {
+                return crossRefResult.get();
+            }
+            throw e;
+        }
+    }
+
+    private static IOException combined(IOException dataciteFailure, IOException crossRefFailure) {
+        if (dataciteFailure instanceof FileNotFoundException) {
+            crossRefFailure.addSuppressed(dataciteFailure);
+            return crossRefFailure;
+        }
+        dataciteFailure.addSuppressed(crossRefFailure);
+        return dataciteFailure;
+    }
+
+    private static boolean isCrossRefWork(MetadataAndContentLocation metadata) {
+        return agencyOf(metadata.getContentHeader()) == RegistrationAgency.CROSSREF;
+    }
+
+    private static RegistrationAgency agencyOf(String contentLocation) {
+        return CrossRefClient.CROSSREF_LINK.equals(contentLocation)
+            ? RegistrationAgency.CROSSREF
+            : RegistrationAgency.DATACITE;
+    }
+
+    public MetadataStore getMetadataStore() {
+        return metadataStore;
+    }
+
+    public RegistrationAgencyCache getAgencyCache() {
+        return agencyCache;
+    }
+
+    public PrefixRouter getPrefixRouter() {
+        return prefixRouter;
+    }
+
+    public HedgedLookup getHedgedLookup() {
+        return hedgedLookup;
+    }
+
+    /**
+     * The table of upstream lookups in flight, which concurrent lookups of the same DOI and content type share.
+     *
+     * @return the table.
+     */
+    public SingleFlight<CacheKey, MetadataAndContentLocation> getUpstreamLookups() {
+        return upstreamLookups;
+    }
+
+    /**
+     * Number of revalidations the upstream answered with 304 Not Modified.
+     *
+     * @return the number of revalidations that extended stored metadata.
+     */
+    public long getNotModified() {
+        return notModified.get();
+    }
+
+    /**
+     * Number of revalidations that replaced stored metadata with changed metadata.
+     *
+     * @return the number of refreshed entries.
+     */
+    public long getRefreshed() {
+        return refreshed.get();
+    }
+
+    public long getRevalidationFailures() {
+        return revalidationFailures.get();
+    }
+
+    /**
+     * Number of representations derived from a canonical representation rather than fetched.
+     *
+     * @return the number of derived representations.
+     */
+    public long getDerivations() {
+        return derivations.get();
+    }
+
+    /**
+     * Failure of a streamed lookup that found a document too large to read into memory, carrying the open stream. The
+     * stream is claimed by one of the lookups the failure reaches, the lookup that ran the call or one that waited
+     * for it. The others make their own lookup.
+     */
+    private static final class LargeMetadata extends IOException {
+
+        private static final long serialVersionUID = 1L;
+        private static final String TOO_LARGE = "Metadata too large to share";
+
+        private final transient AtomicReference<MetadataStream> stream;
+
+        LargeMetadata(MetadataStream stream) {
+            super(TOO_LARGE);
+            this.stream = new AtomicReference<>(stream);
+        }
+
+        Optional<MetadataStream> claim() {
+            return Optional.ofNullable(stream.getAndSet(null));
+        }
+    }
+}
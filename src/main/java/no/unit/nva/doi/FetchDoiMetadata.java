@@ -2,6 +2,7 @@ package no.unit.nva.doi;
 
 import static javax.ws.rs.core.Response.Status.BAD_REQUEST;
 import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 import static javax.ws.rs.core.Response.Status.OK;
 import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
 import static no.unit.nva.doi.GatewayResponse.errorGatewayResponse;
@@ -10,74 +11,192 @@ import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
 
 /**
  * Handler for requests to Lambda function.
  */
 public class FetchDoiMetadata implements RequestHandler<Map<String, Object>, GatewayResponse> {
 
+    /**
+     * Started when the handler class is loaded, which is the beginning of the Lambda init phase.
+     */
+    private static final StartupTimer STARTUP_TIMER = new StartupTimer();
+
     public static final String INVALID_DOI_URL = "The property 'doi' is not a valid DOI";
     public static final String MISSING_ACCEPT_HEADER = "Missing Accept header";
-    public static final Pattern DOI_URL_PATTERN =
-        Pattern.compile("^https?://(dx\\.)?doi\\.org/(10(?:\\.[0-9]+)+)/(.+)$",
-            Pattern.CASE_INSENSITIVE);
-
-    public static final Pattern DOI_STRING_PATTERN =
-        Pattern.compile("^(doi:)?(10(?:\\.[0-9]+)+)/(.+)$", Pattern.CASE_INSENSITIVE);
 
     public static final String HEADERS = "headers";
     public static final String BODY = "body";
+    public static final String IS_BASE64_ENCODED = "isBase64Encoded";
+    public static final String SERVICE = "FetchDoiMetadata";
+    public static final String SOURCE = "source";
+    public static final String SCHEDULED_EVENT_SOURCE = "aws.events";
+    public static final String PREFETCHED = "prefetched";
+
+    public static final Gson GSON = new GsonBuilder().create();
+
+    private final transient DoiMetadataResolver resolver;
+    private final transient BatchLookup batchLookup;
+    private final transient ResponseEncoder responseEncoder;
+    private final transient HotDoiTracker hotDois;
 
     /**
-     * Connection object handling the direct communication via http for (mock)-testing to be injected.
+     * Resolver shared by all handler instances in the same Lambda container, so that its caches survive between warm
+     * invocations. It is created and warmed up during the init phase, when the runtime constructs the handler, and the
+     * hot DOIs of earlier containers are prefetched into its metadata store with what is left of the init-time budget.
      */
-    public static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static class SharedResolverHolder {
 
-    private final transient DataciteClient dataciteClient;
-    private transient CrossRefClient crossRefClient;
+        private static final DataciteClient DATACITE_CLIENT = new DataciteClient();
+        private static final CrossRefClient CROSSREF_CLIENT = new CrossRefClient();
+        private static final DoiMetadataResolver INSTANCE =
+            DoiMetadataResolver.fromConfig(DATACITE_CLIENT, CROSSREF_CLIENT, Config.getInstance());
+        private static final HotDoiTracker HOT_DOIS = HotDoiTracker.fromConfig(Config.getInstance());
+
+        static {
+            Warmup.fromConfig(CROSSREF_CLIENT, DATACITE_CLIENT, Config.getInstance()).run();
+            Duration prefetchTimeout = Duration.ofMillis(Config.getInstance().getHotDoiPrefetchTimeoutMillis());
+            Duration initLeft = STARTUP_TIMER.remaining(Duration.ofMillis(Config.getInstance().getInitBudgetMillis()));
+            HOT_DOIS.prefetch(INSTANCE, initLeft.compareTo(prefetchTimeout) < 0 ? initLeft : prefetchTimeout);
+        }
+    }
 
     public FetchDoiMetadata() {
-        this(new DataciteClient(), new CrossRefClient());
+        this(SharedResolverHolder.INSTANCE, SharedResolverHolder.HOT_DOIS);
+        STARTUP_TIMER.markInitialized();
     }
 
     public FetchDoiMetadata(DataciteClient dataciteClient, CrossRefClient crossRefClient) {
-        this.dataciteClient = dataciteClient;
-        this.crossRefClient = crossRefClient;
+        this(DoiMetadataResolver.fromConfig(dataciteClient, crossRefClient, Config.getInstance()));
+    }
+
+    /**
+     * Constructor that allows the metadata store to be injected.
+     *
+     * @param dataciteClient the DataCite client.
+     * @param crossRefClient the CrossRef client.
+     * @param metadataStore  the store consulted before the clients are called.
+     */
+    public FetchDoiMetadata(DataciteClient dataciteClient, CrossRefClient crossRefClient,
+                            MetadataStore metadataStore) {
+        this(new DoiMetadataResolver(dataciteClient, crossRefClient, metadataStore,
+                                     RegistrationAgencyCache.fromConfig(Config.getInstance()),
+                                     PrefixRouter.fromConfig(Config.getInstance()),
+                                     HedgedLookup.fromConfig(crossRefClient, dataciteClient, Config.getInstance())));
+    }
+
+    public FetchDoiMetadata(DoiMetadataResolver resolver) {
+        this(resolver, HotDoiTracker.fromConfig(Config.getInstance()));
+    }
+
+    /**
+     * Constructor that allows the tracker of hot DOIs to be injected.
+     *
+     * @param resolver the resolver.
+     * @param hotDois  records the looked-up DOIs and prefetches the hot ones on the scheduled warm-up event.
+     */
+    public FetchDoiMetadata(DoiMetadataResolver resolver, HotDoiTracker hotDois) {
+        this.resolver = resolver;
+        this.batchLookup = BatchLookup.fromConfig(resolver, Config.getInstance());
+        this.responseEncoder = ResponseEncoder.fromConfig(Config.getInstance());
+        this.hotDois = hotDois;
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public GatewayResponse handleRequest(Map<String, Object> input, Context context) {
+        Metrics metrics = startInvocation(context, SERVICE);
+        try {
+            return handle(input);
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    /**
+     * Start the deadline and the metrics of an invocation, and report the init time on the first one.
+     *
+     * @param context the Lambda context, or null when the handler is called outside Lambda.
+     * @param service the name of the handler.
+     * @return the metrics of the invocation, which the handler flushes when it is done.
+     */
+    protected static Metrics startInvocation(Context context, String service) {
+        reportStartup();
+        InvocationDeadline.start(context);
+        Metrics metrics = Metrics.start(context, service);
+        if (metrics.isColdStart()) {
+            STARTUP_TIMER.getInitDuration()
+                         .ifPresent(duration -> metrics.putMetric(Metrics.INIT_TIME, duration.toMillis(),
+                                                                  Metrics.Unit.MILLISECONDS));
+        }
+        return metrics;
+    }
+
+    /**
+     * Handle an event in an invocation that has been started.
+     *
+     * @param input the API Gateway event.
+     * @return the response.
+     */
+    @SuppressWarnings("unchecked")
+    protected GatewayResponse handle(Map<String, Object> input) {
+        if (SCHEDULED_EVENT_SOURCE.equals(input.get(SOURCE))) {
+            return warmUp();
+        }
+        Metrics metrics = Metrics.current();
+        Map<String, String> headers = (Map<String, String>) input.get(HEADERS);
         DoiLookup doiLookup;
         DataciteContentType dataciteContentType;
+        BodyFilter projection;
 
         try {
-            Map<String, String> headers = (Map<String, String>) input.get(HEADERS);
             System.out.println(headers);
+            long started = System.nanoTime();
             dataciteContentType = DataciteContentType.lookup(
                 Optional.ofNullable(headers.get(HttpHeaders.ACCEPT))
                         .orElseThrow(() -> new IllegalArgumentException(MISSING_ACCEPT_HEADER))
             );
-            doiLookup = GSON.fromJson((String) input.get(BODY), DoiLookup.class);
+            doiLookup = GSON.fromJson(requestBody(input), DoiLookup.class);
+            metrics.putDuration(Metrics.PARSE_TIME, started);
+            started = System.nanoTime();
             validate(doiLookup);
+            projection = projectionFor(doiLookup, dataciteContentType);
+            metrics.putDuration(Metrics.VALIDATE_TIME, started);
         } catch (Exception e) {
             System.out.println(e.getMessage());
             return errorGatewayResponse(e.getMessage(), BAD_REQUEST.getStatusCode());
         }
 
+        if (doiLookup.isBatch()) {
+            doiLookup.getDois().stream().filter(Objects::nonNull).forEach(hotDois::record);
+            return lookupBatch(doiLookup, dataciteContentType, projection, headers);
+        }
+
+        hotDois.record(doiLookup.getDoi());
         try {
             MetadataAndContentLocation doiMetadata = lookupDoiMetadata(doiLookup.getDoi(), dataciteContentType);
+            long started = System.nanoTime();
             Map<String, String> contentHeaderMap = doiMetadata.contentLocationAsHeaderEntry();
-            return new GatewayResponse(doiMetadata.getJson(), OK.getStatusCode(),
+            GatewayResponse response = new GatewayResponse(project(projection, doiMetadata.getJson()),
+                OK.getStatusCode(),
                 dataciteContentType.getContentType(),
                 contentHeaderMap);
+            return serialized(metrics, started, responseEncoder.encode(response, headers, true));
+        } catch (FileNotFoundException e) {
+            System.out.println(e.getMessage());
+            return errorGatewayResponse(e.getMessage(), NOT_FOUND.getStatusCode());
         } catch (IOException e) {
             System.out.println(e.getMessage());
             return errorGatewayResponse(e.getMessage(), SERVICE_UNAVAILABLE.getStatusCode());
@@ -87,26 +206,132 @@ public class FetchDoiMetadata implements RequestHandler<Map<String, Object>, Gat
         }
     }
 
+    /**
+     * The body of an API Gateway event. API Gateway base64-encodes the body when the API treats the content type of
+     * the request as binary, and says so in {@code isBase64Encoded}.
+     *
+     * @param event the API Gateway event.
+     * @return the body as it was sent, or null when the event has none.
+     */
+    protected static String requestBody(Map<String, Object> event) {
+        String body = (String) event.get(BODY);
+        Object base64Encoded = event.get(IS_BASE64_ENCODED);
+        if (body == null || !Boolean.TRUE.equals(base64Encoded) && !Boolean.TRUE.toString().equals(base64Encoded)) {
+            return body;
+        }
+        return new String(Base64.getDecoder().decode(body), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Log the init time of the container against the init-time budget, on the first invocation only.
+     */
+    protected static void reportStartup() {
+        STARTUP_TIMER.reportOnce(Duration.ofMillis(Config.getInstance().getInitBudgetMillis()))
+                     .ifPresent(System.out::println);
+    }
+
+    public DoiMetadataResolver getResolver() {
+        return resolver;
+    }
+
+    public ResponseEncoder getResponseEncoder() {
+        return responseEncoder;
+    }
+
+    public HotDoiTracker getHotDois() {
+        return hotDois;
+    }
+
+    /**
+     * Handle the scheduled warm-up event: share the lookups recorded in the container and prefetch the hot DOIs, so
+     * that their metadata is fresh in the store when user traffic arrives.
+     */
+    private GatewayResponse warmUp() {
+        try {
+            hotDois.persist();
+        } catch (IOException e) {
+            System.out.println(HotDoiTracker.PERSIST_FAILED + e.getMessage());
+        }
+        int prefetched = hotDois.prefetch(resolver,
+                                          Duration.ofMillis(Config.getInstance().getHotDoiPrefetchTimeoutMillis()));
+        return new GatewayResponse(GSON.toJson(Map.of(PREFETCHED, prefetched)), OK.getStatusCode(),
+                                   MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * The projection requested in the lookup. Projections only apply to JSON content types.
+     *
+     * @param doiLookup           the lookup.
+     * @param dataciteContentType the requested content type.
+     * @return the projection, or {@link BodyFilter#NONE} when no projection applies.
+     * @throws IllegalArgumentException when the lookup names an unknown profile.
+     */
+    protected static BodyFilter projectionFor(DoiLookup doiLookup, DataciteContentType dataciteContentType) {
+        Optional<JsonProjection> projection = JsonProjection.of(doiLookup.getFields(), doiLookup.getProfile());
+        return dataciteContentType.isJson() && projection.isPresent() ? projection.get() : BodyFilter.NONE;
+    }
+
+    /**
+     * Apply a projection to metadata held in memory.
+     *
+     * @param projection the projection.
+     * @param metadata   the metadata.
+     * @return the projected metadata.
+     * @throws UncheckedIOException when the metadata is not valid JSON.
+     */
+    protected static String project(BodyFilter projection, String metadata) {
+        if (projection == BodyFilter.NONE) {
+            return metadata;
+        }
+        try {
+            return projection.apply(metadata);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Record the time spent turning the metadata into the response, and the size of the response body.
+     */
+    private static GatewayResponse serialized(Metrics metrics, long started, GatewayResponse response) {
+        metrics.putDuration(Metrics.SERIALIZATION_TIME, started);
+        Optional.ofNullable(response.getBody())
+                .ifPresent(body -> metrics.putMetric(Metrics.RESPONSE_SIZE, Metrics.utf8Length(body),
+                                                     Metrics.Unit.BYTES));
+        return response;
+    }
+
+    private GatewayResponse lookupBatch(DoiLookup doiLookup, DataciteContentType dataciteContentType,
+                                        BodyFilter projection, Map<String, String> headers) {
+        try {
+            JsonObject results = batchLookup.resolveAll(doiLookup.getDois(), dataciteContentType, projection);
+            long started = System.nanoTime();
+            GatewayResponse response = new GatewayResponse(GSON.toJson(results), OK.getStatusCode(),
+                                                           MediaType.APPLICATION_JSON);
+            return serialized(Metrics.current(), started, responseEncoder.encode(response, headers, false));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return responseEncoder.encode(errorGatewayResponse(e.getMessage(), BAD_REQUEST.getStatusCode()),
+                                          headers, false);
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            return responseEncoder.encode(
+                errorGatewayResponse(e.getMessage(), INTERNAL_SERVER_ERROR.getStatusCode()), headers, false);
+        }
+    }
+
     private MetadataAndContentLocation lookupDoiMetadata(String doiUrl, DataciteContentType dataciteContentType)
         throws IOException, URISyntaxException {
-        System.out.println("getDoiMetadata(doi:" + doiUrl + ")");
-        Optional<MetadataAndContentLocation> crossRefResult = crossRefClient.fetchDataForDoi(doiUrl);
-        if (crossRefResult.isEmpty()) {
-            return dataciteClient.fetchMetadata(doiUrl, dataciteContentType);
-        } else {
-            return crossRefResult.get();
-        }
+        return resolver.resolve(doiUrl, dataciteContentType);
     }
 
     private void validate(DoiLookup doiLookup) {
-        if (!isValidDoi(doiLookup.getDoi())) {
+        if (!doiLookup.isBatch() && !isValidDoi(doiLookup.getDoi())) {
             throw new IllegalStateException(INVALID_DOI_URL);
         }
     }
 
-    private boolean isValidDoi(String doi) {
-        Matcher urlMatcher = DOI_URL_PATTERN.matcher(doi);
-        Matcher stringMatcher = DOI_STRING_PATTERN.matcher(doi);
-        return urlMatcher.find() || stringMatcher.find();
+    protected static boolean isValidDoi(String doi) {
+        return Doi.parse(doi).isPresent();
     }
 }
\ No newline at end of file
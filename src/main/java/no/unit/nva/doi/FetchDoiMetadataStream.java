@@ -0,0 +1,264 @@
+package no.unit.nva.doi;
+
+import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
+import static javax.ws.rs.core.Response.Status.NOT_FOUND;
+import static javax.ws.rs.core.Response.Status.OK;
+import static javax.ws.rs.core.Response.Status.SERVICE_UNAVAILABLE;
+import static no.unit.nva.doi.GatewayResponse.errorGatewayResponse;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
+import com.google.gson.reflect.TypeToken;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.core.HttpHeaders;
+
+/**
+ * Streaming variant of {@link FetchDoiMetadata} for API Gateway proxy events. The metadata of a single DOI is copied
+ * from the upstream connection into the response with a bounded buffer, instead of being read into a String and
+ * copied into a {@link GatewayResponse}. Batch lookups and invalid requests are handled by {@link FetchDoiMetadata}.
+ *
+ * <p>Metadata the resolver holds in memory, because it was found in the store or derived from a stored
+ * representation, is filtered and encoded like {@link FetchDoiMetadata} does, with an ETag that conditional requests
+ * are answered from. Only metadata too large for the resolver to read into memory is streamed from the upstream
+ * connection. Its status code is sent before the body, so a failure while the body is copied fails the invocation,
+ * which API Gateway answers with 502 Bad Gateway, instead of sending a truncated body as 200 OK. Streamed bodies are
+ * gzip-compressed on the way when the client accepts it, but carry no ETag, since the hash of the body is not known
+ * when the headers are sent.
+ *
+ * <p>A CrossRef work is never copied through. Its fields are read from the connection as they arrive, skipping the
+ * ones that are not kept, such as the reference list, and the much smaller representation derived from them is sent.
+ * Hedged lookups read the body of whichever agency answers first into memory, like {@link FetchDoiMetadata} does.
+ */
+public class FetchDoiMetadataStream implements RequestStreamHandler {
+
+    public static final int BUFFER_SIZE = 8192;
+    public static final String STREAM_INTERRUPTED = "Streaming the metadata was interrupted:";
+    public static final String SERVICE = "FetchDoiMetadataStream";
+    private static final String STATUS_CODE_PREFIX = "{\"statusCode\":";
+    private static final String HEADERS_PREFIX = ",\"headers\":";
+    private static final String IS_BASE64_ENCODED_PREFIX = ",\"isBase64Encoded\":";
+    private static final String BODY_PREFIX = ",\"body\":\"";
+    private static final String BODY_SUFFIX = "\"}";
+    private static final Type EVENT_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    private final transient FetchDoiMetadata fetchDoiMetadata;
+    private final transient BodyFilter bodyFilter;
+
+    public FetchDoiMetadataStream() {
+        this(new FetchDoiMetadata(), JsonFieldFilter.excluding(Config.getInstance().getStreamingExcludedFields()));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param fetchDoiMetadata the handler for everything but single DOI lookups, and the source of the resolver.
+     * @param bodyFilter       the filter applied to JSON metadata on its way through, unless the request asks for a
+     *                         projection.
+     */
+    public FetchDoiMetadataStream(FetchDoiMetadata fetchDoiMetadata, BodyFilter bodyFilter) {
+        this.fetchDoiMetadata = fetchDoiMetadata;
+        this.bodyFilter = bodyFilter;
+    }
+
+    @Override
+    public void handleRequest(InputStream input, OutputStream output, Context context) throws IOException {
+        Metrics metrics = FetchDoiMetadata.startInvocation(context, SERVICE);
+        try {
+            handle(input, output);
+        } finally {
+            metrics.flush();
+        }
+    }
+
+    private void handle(InputStream input, OutputStream output) throws IOException {
+        long started = System.nanoTime();
+        Map<String, Object> event = FetchDoiMetadata.GSON.fromJson(
+            new InputStreamReader(input, StandardCharsets.UTF_8), EVENT_TYPE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+        Optional<DoiLookupRequest> lookup = singleLookup(event);
+        if (lookup.isEmpty()) {
+            writeResponse(writer, fetchDoiMetadata.handle(event));
+            return;
+        }
+        Metrics.current().putDuration(Metrics.PARSE_TIME, started);
+        fetchDoiMetadata.getHotDois().record(lookup.get().doi);
+        MetadataStream stream;
+        try {
+            stream = fetchDoiMetadata.getResolver().resolveStream(lookup.get().doi, lookup.get().contentType);
+        } catch (FileNotFoundException e) {
+            System.out.println(e.getMessage());
+            writeResponse(writer, errorGatewayResponse(e.getMessage(), NOT_FOUND.getStatusCode()));
+            return;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            writeResponse(writer, errorGatewayResponse(e.getMessage(), SERVICE_UNAVAILABLE.getStatusCode()));
+            return;
+        } catch (Exception e) {
+            System.out.println(e.getMessage());
+            writeResponse(writer, errorGatewayResponse(e.getMessage(), INTERNAL_SERVER_ERROR.getStatusCode()));
+            return;
+        }
+        Optional<MetadataAndContentLocation> inMemory = stream.getMetadata();
+        if (inMemory.isPresent()) {
+            writeResponse(writer, encode(inMemory.get(), lookup.get()));
+            return;
+        }
+        writeStream(writer, output, stream, lookup.get(), filterFor(lookup.get()));
+    }
+
+    /**
+     * The response for metadata held in memory, with an ETag of the filtered body, or 304 Not Modified when the
+     * request names that ETag.
+     */
+    private GatewayResponse encode(MetadataAndContentLocation metadata, DoiLookupRequest lookup) {
+        String body;
+        try {
+            body = filterFor(lookup).apply(metadata.getJson());
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+            return errorGatewayResponse(e.getMessage(), SERVICE_UNAVAILABLE.getStatusCode());
+        }
+        GatewayResponse response = new GatewayResponse(body, OK.getStatusCode(), lookup.contentType.getContentType(),
+                                                       metadata.contentLocationAsHeaderEntry());
+        return fetchDoiMetadata.getResponseEncoder().encode(response, lookup.requestHeaders, true);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Optional<DoiLookupRequest> singleLookup(Map<String, Object> event) {
+        try {
+            Map<String, String> headers = (Map<String, String>) event.get(FetchDoiMetadata.HEADERS);
+            DataciteContentType contentType = DataciteContentType.lookup(headers.get(HttpHeaders.ACCEPT));
+            DoiLookup doiLookup = FetchDoiMetadata.GSON.fromJson(FetchDoiMetadata.requestBody(event),
+                                                                 DoiLookup.class);
+            if (doiLookup.isBatch() || !FetchDoiMetadata.isValidDoi(doiLookup.getDoi())) {
+                return Optional.empty();
+            }
+            BodyFilter projection = FetchDoiMetadata.projectionFor(doiLookup, contentType);
+            return Optional.of(new DoiLookupRequest(doiLookup.getDoi(), contentType, projection, headers));
+        } catch (Exception e) {
+            return Optional.empty();
+        }
+    }
+
+    private BodyFilter filterFor(DoiLookupRequest lookup) {
+        if (lookup.projection != BodyFilter.NONE) {
+            return lookup.projection;
+        }
+        return lookup.contentType.isJson() ? bodyFilter : BodyFilter.NONE;
+    }
+
+    private void writeStream(Writer writer, OutputStream output, MetadataStream stream, DoiLookupRequest lookup,
+                             BodyFilter filter)
+        throws IOException {
+        try (stream) {
+            ResponseEncoder responseEncoder = fetchDoiMetadata.getResponseEncoder();
+            boolean gzip = responseEncoder.acceptsGzip(lookup.requestHeaders);
+            Map<String, String> headers = new HashMap<>(responseEncoder.cacheHeaders());
+            headers.put(HttpHeaders.CONTENT_LOCATION, stream.getContentLocation());
+            headers.put(ResponseEncoder.VARY, ResponseEncoder.ACCEPT_ENCODING);
+            if (gzip) {
+                headers.put(ResponseEncoder.CONTENT_ENCODING, ResponseEncoder.GZIP);
+            }
+            writePrefix(writer, new GatewayResponse(null, OK.getStatusCode(), lookup.contentType.getContentType(),
+                                                    headers, gzip));
+            try {
+                if (gzip) {
+                    copyCompressed(writer, output, stream.getReader(), filter);
+                } else {
+                    filter.copy(stream.getReader(), new JsonStringWriter(writer));
+                }
+            } catch (IOException e) {
+                System.out.println(STREAM_INTERRUPTED + e.getMessage());
+                throw e;
+            }
+            writer.write(BODY_SUFFIX);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Copy the body gzip-compressed and base64-encoded. Base64 needs no escaping inside a JSON string, so the encoded
+     * bytes go straight to the output, past the writer, which is flushed first.
+     */
+    private static void copyCompressed(Writer writer, OutputStream output, Reader reader, BodyFilter filter)
+        throws IOException {
+        writer.flush();
+        OutputStream base64 = Base64.getEncoder().wrap(new UnclosableOutputStream(output));
+        try (Writer body = new OutputStreamWriter(new GZIPOutputStream(base64, BUFFER_SIZE),
+                                                  StandardCharsets.UTF_8)) {
+            filter.copy(reader, body);
+        }
+    }
+
+    private static void writeResponse(Writer writer, GatewayResponse response) throws IOException {
+        writePrefix(writer, response);
+        if (response.getBody() != null) {
+            new JsonStringWriter(writer).write(response.getBody());
+        }
+        writer.write(BODY_SUFFIX);
+        writer.flush();
+    }
+
+    private static void writePrefix(Writer writer, GatewayResponse response) throws IOException {
+        writer.write(STATUS_CODE_PREFIX);
+        writer.write(Integer.toString(response.getStatusCode()));
+        writer.write(HEADERS_PREFIX);
+        writer.write(FetchDoiMetadata.GSON.toJson(response.getHeaders()));
+        writer.write(IS_BASE64_ENCODED_PREFIX);
+        writer.write(response.getIsBase64Encoded().toString());
+        writer.write(BODY_PREFIX);
+    }
+
+    private static class DoiLookupRequest {
+
+        private final String doi;
+        private final DataciteContentType contentType;
+        private final BodyFilter projection;
+        private final Map<String, String> requestHeaders;
+
+        DoiLookupRequest(String doi, DataciteContentType contentType, BodyFilter projection,
+                         Map<String, String> requestHeaders) {
+            this.doi = doi;
+            this.contentType = contentType;
+            this.projection = projection;
+            this.requestHeaders = requestHeaders;
+        }
+    }
+
+    /**
+     * Lets the compressed body be finished by closing its streams without closing the response.
+     */
+    private static class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
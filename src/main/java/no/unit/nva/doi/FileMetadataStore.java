@@ -0,0 +1,364 @@
+package no.unit.nva.doi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Metadata store keeping one gzip-compressed file per entry in a local directory, typically below /tmp in the Lambda
+ * container. A file holds the expiry time, the time the metadata was fetched, the normalized DOI, the content
+ * location, the upstream validators and the metadata. The fetch time goes with the metadata when it is copied to a
+ * faster store, so that its freshness there is judged from the original fetch. Files written in an older format are
+ * treated as misses. Files are written to a temporary file first and then moved in place, so readers never see a
+ * partially written entry.
+ *
+ * <p>The store keeps a running estimate of the size of its files. When a put takes it over the byte budget, and on
+ * the first put of the container, the directory is swept: expired entries are deleted, and then the oldest entries
+ * until the store is back below nine tenths of its budget.
+ */
+public class FileMetadataStore implements MetadataStore {
+
+    public static final String FILE_SUFFIX = ".gz";
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String FILE_GLOB = "*" + FILE_SUFFIX;
+    public static final String STORE_ERROR = "FileMetadataStore failed for ";
+    private static final int FORMAT_VERSION = 3;
+    private static final String NO_VALIDATOR = "";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String HEX_FORMAT = "%02x";
+    private static final long SWEEP_TARGET_NUMERATOR = 9;
+    private static final long SWEEP_TARGET_DENOMINATOR = 10;
+
+    private final Path directory;
+    private final Duration timeToLive;
+    private final long maxBytes;
+    private final Clock clock;
+    private final ReentrantLock sweepLock = new ReentrantLock();
+    private final AtomicBoolean swept = new AtomicBoolean();
+    private final AtomicLong sizeInBytes = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public FileMetadataStore(Path directory, Duration timeToLive) {
+        this(directory, timeToLive, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor that allows the clock to be injected.
+     *
+     * @param directory  the directory holding the entries. It is created when the first entry is stored.
+     * @param timeToLive how long an entry is served after it was stored.
+     * @param clock      the clock used for expiry.
+     */
+    public FileMetadataStore(Path directory, Duration timeToLive, Clock clock) {
+        this(directory, timeToLive, Long.MAX_VALUE, clock);
+    }
+
+    /**
+     * Constructor for a store with a byte budget.
+     *
+     * @param directory  the directory holding the entries. It is created when the first entry is stored.
+     * @param timeToLive how long an entry is served after it was stored.
+     * @param maxBytes   upper limit for the size of all files in the directory.
+     * @param clock      the clock used for expiry.
+     */
+    public FileMetadataStore(Path directory, Duration timeToLive, long maxBytes, Clock clock) {
+        this.directory = directory;
+        this.timeToLive = timeToLive;
+        this.maxBytes = maxBytes;
+        this.clock = clock;
+    }
+
+    /**
+     * Create a store in the configured directory.
+     *
+     * @param config the configuration.
+     * @return a new FileMetadataStore.
+     */
+    public static FileMetadataStore fromConfig(Config config) {
+        return new FileMetadataStore(Paths.get(config.getMetadataStoreDirectory()),
+                                     Duration.ofSeconds(config.getMetadataStoreTtlSeconds()),
+                                     config.getMetadataStoreMaxBytes(), Clock.systemUTC());
+    }
+
+    @Override
+    public Optional<MetadataAndContentLocation> get(CacheKey key) {
+        return lookup(key).map(StoredMetadata::getMetadata);
+    }
+
+    /**
+     * Get an entry that has not expired, together with the time it was fetched.
+     *
+     * @param key the key.
+     * @return the metadata, which is always fresh, or an empty Optional.
+     */
+    @Override
+    public Optional<StoredMetadata> lookup(CacheKey key) {
+        Path file = fileFor(key);
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            Optional<StoredMetadata> entry = readEntry(key, in);
+            if (entry.isEmpty()) {
+                Files.deleteIfExists(file);
+                misses.incrementAndGet();
+                return entry;
+            }
+            hits.incrementAndGet();
+            return entry;
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        } catch (IOException e) {
+            logError(key, e);
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    private Optional<StoredMetadata> readEntry(CacheKey key, DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            return Optional.empty();
+        }
+        Instant expiresAt = Instant.ofEpochMilli(in.readLong());
+        Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+        String doi = in.readUTF();
+        if (!clock.instant().isBefore(expiresAt) || !doi.equals(key.getDoi())) {
+            return Optional.empty();
+        }
+        String contentLocation = in.readUTF();
+        String etag = readValidator(in);
+        String lastModified = readValidator(in);
+        byte[] metadata = new byte[in.readInt()];
+        in.readFully(metadata);
+        return Optional.of(new StoredMetadata(new MetadataAndContentLocation(
+            contentLocation, new String(metadata, StandardCharsets.UTF_8), etag, lastModified), true, fetchedAt));
+    }
+
+    private static String readValidator(DataInputStream in) throws IOException {
+        String validator = in.readUTF();
+        return validator.isEmpty() ? null : validator;
+    }
+
+    @Override
+    public void put(CacheKey key, MetadataAndContentLocation value) {
+        put(key, value, clock.instant());
+    }
+
+    /**
+     * Store an entry fetched earlier, which expires a time-to-live after it was fetched.
+     *
+     * @param key       the key.
+     * @param value     the metadata.
+     * @param fetchedAt when the metadata was fetched from the upstream.
+     */
+    @Override
+    public void put(CacheKey key, MetadataAndContentLocation value, Instant fetchedAt) {
+        Path temporaryFile = null;
+        try {
+            Files.createDirectories(directory);
+            temporaryFile = Files.createTempFile(directory, null, TEMP_FILE_SUFFIX);
+            try (DataOutputStream out =
+                     new DataOutputStream(new GZIPOutputStream(Files.newOutputStream(temporaryFile)))) {
+                writeEntry(key, value, fetchedAt, out);
+            }
+            Path file = fileFor(key);
+            long replaced = sizeOf(file);
+            long written = Files.size(temporaryFile);
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (sizeInBytes.addAndGet(written - replaced) > maxBytes || !swept.get()) {
+                sweep();
+            }
+        } catch (IOException e) {
+            logError(key, e);
+            deleteQuietly(temporaryFile);
+        }
+    }
+
+    private static long sizeOf(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Delete the expired entries and then the oldest entries until the store is below nine tenths of its budget, and
+     * measure the size of what is left. Nothing is done while another thread is sweeping.
+     */
+    protected void sweep() {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            List<StoredFile> files = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, FILE_GLOB)) {
+                for (Path file : entries) {
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    files.add(new StoredFile(file, attributes.lastModifiedTime().toMillis(), attributes.size()));
+                }
+            }
+            files.sort(Comparator.comparingLong(StoredFile::getModified));
+            long total = files.stream().mapToLong(StoredFile::getSize).sum();
+            long target = maxBytes / SWEEP_TARGET_DENOMINATOR * SWEEP_TARGET_NUMERATOR;
+            for (StoredFile file : files) {
+                if (total > target || isExpired(file.getPath())) {
+                    Files.deleteIfExists(file.getPath());
+                    total -= file.getSize();
+                    evictions.incrementAndGet();
+                }
+            }
+            sizeInBytes.set(total);
+            swept.set(true);
+        } catch (IOException e) {
+            errors.incrementAndGet();
+            System.out.println(STORE_ERROR + directory + ": " + e.getMessage());
+        } finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the entry in a file has expired, or cannot be read and is as good as expired.
+     */
+    private boolean isExpired(Path file) {
+        try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(file)))) {
+            return in.readInt() != FORMAT_VERSION || !clock.instant().isBefore(Instant.ofEpochMilli(in.readLong()));
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * A file of the store with the attributes the sweep orders and counts it by.
+     */
+    private static final class StoredFile {
+
+        private final Path path;
+        private final long modified;
+        private final long size;
+
+        private StoredFile(Path path, long modified, long size) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+        }
+
+        private Path getPath() {
+            return path;
+        }
+
+        private long getModified() {
+            return modified;
+        }
+
+        private long getSize() {
+            return size;
+        }
+    }
+
+    private void writeEntry(CacheKey key, MetadataAndContentLocation value, Instant fetchedAt, DataOutputStream out)
+        throws IOException {
+        byte[] metadata = value.getJson().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(FORMAT_VERSION);
+        out.writeLong(fetchedAt.plus(timeToLive).toEpochMilli());
+        out.writeLong(fetchedAt.toEpochMilli());
+        out.writeUTF(key.getDoi());
+        out.writeUTF(value.getContentHeader());
+        out.writeUTF(Optional.ofNullable(value.getEtag()).orElse(NO_VALIDATOR));
+        out.writeUTF(Optional.ofNullable(value.getLastModified()).orElse(NO_VALIDATOR));
+        out.writeInt(metadata.length);
+        out.write(metadata);
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.out.println(STORE_ERROR + file + ": " + e.getMessage());
+        }
+    }
+
+    private void logError(CacheKey key, IOException e) {
+        errors.incrementAndGet();
+        System.out.println(STORE_ERROR + key + ": " + e.getMessage());
+    }
+
+    /**
+     * The file holding the entry for a key. The name is a hash of the key, since DOI suffixes may contain
+     * characters that are not allowed in file names.
+     *
+     * @param key the key.
+     * @return the path of the file.
+     */
+    protected Path fileFor(CacheKey key) {
+        try {
+            byte[] hash = MessageDigest.getInstance(HASH_ALGORITHM)
+                                       .digest(key.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : hash) {
+                name.append(String.format(HEX_FORMAT, b));
+            }
+            return directory.resolve(name.append(FILE_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * Number of entries deleted by sweeps, because they had expired or the store was over its budget.
+     *
+     * @return the number of evictions.
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Estimated size of the files of the store.
+     *
+     * @return the size in bytes.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes.get();
+    }
+}
@@ -20,6 +20,7 @@ public class GatewayResponse {
     private final transient Map<String, String> customHeaders;
     private transient Map<String, String> headers;
     private final int statusCode;
+    private final boolean isBase64Encoded;
 
     /**
      * GatewayResponse constructor.
@@ -32,9 +33,19 @@ public class GatewayResponse {
      * Constructor that allows to add some custom headers in the response.
      */
     public GatewayResponse(final String body, final int status, String contentType, Map<String, String> customHeaders) {
+        this(body, status, contentType, customHeaders, false);
+    }
+
+    /**
+     * Constructor for responses whose body is base64-encoded binary content, which API Gateway decodes before
+     * sending it to the client.
+     */
+    public GatewayResponse(final String body, final int status, String contentType, Map<String, String> customHeaders,
+                           boolean isBase64Encoded) {
         this.statusCode = status;
         this.body = body;
         this.customHeaders = customHeaders;
+        this.isBase64Encoded = isBase64Encoded;
         generateHeaders(contentType);
     }
 
@@ -50,6 +61,10 @@ public class GatewayResponse {
         return statusCode;
     }
 
+    public Boolean getIsBase64Encoded() {
+        return isBase64Encoded;
+    }
+
     private void generateHeaders(String contentType) {
         Map<String, String> headers = new ConcurrentHashMap<>();
         headers.put(HttpHeaders.CONTENT_TYPE, contentType);
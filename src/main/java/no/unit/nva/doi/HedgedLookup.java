@@ -0,0 +1,239 @@
+package no.unit.nva.doi;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queries CrossRef and DataCite concurrently for DOIs where the registration agency is unknown. CrossRef is asked
+ * first. DataCite is asked when CrossRef has not answered within the hedge delay, or as soon as CrossRef reports that
+ * it does not know the DOI. The first successful answer wins. A DataCite request still pending then is given up,
+ * which frees its place in the bulkhead; the JDK 11 client does not abort its exchange.
+ *
+ * <p>The hedge delay is the configured percentile of the recently observed CrossRef latencies, or the configured
+ * fixed delay until enough latencies have been observed. Every CrossRef request is left to complete and its latency
+ * observed, whether it answers, does not know the DOI, fails or times out, and whether or not DataCite won the race,
+ * so that slow answers are not left out of the percentile. Both requests use the non-blocking client APIs, so a lookup
+ * only parks the calling thread.
+ */
+public class HedgedLookup {
+
+    public static final int LATENCY_SAMPLES = 256;
+    public static final int MIN_SAMPLES_FOR_PERCENTILE = 20;
+
+    private static final int BOTH_FAILED = 2;
+
+    private final transient CrossRefClient crossRefClient;
+    private final transient DataciteClient dataciteClient;
+    private final transient LatencyTracker crossRefLatencies = new LatencyTracker(LATENCY_SAMPLES);
+    private final boolean enabled;
+    private final Duration fixedDelay;
+    private final double delayPercentile;
+
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong hedgedRequests = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param crossRefClient  the CrossRef client.
+     * @param dataciteClient  the DataCite client.
+     * @param enabled         whether the resolver should use hedged lookups at all.
+     * @param fixedDelay      the hedge delay used until enough CrossRef latencies have been observed.
+     * @param delayPercentile the percentile of the observed CrossRef latencies used as hedge delay.
+     */
+    public HedgedLookup(CrossRefClient crossRefClient, DataciteClient dataciteClient, boolean enabled,
+                        Duration fixedDelay, double delayPercentile) {
+        this.crossRefClient = crossRefClient;
+        this.dataciteClient = dataciteClient;
+        this.enabled = enabled;
+        this.fixedDelay = fixedDelay;
+        this.delayPercentile = delayPercentile;
+    }
+
+    /**
+     * Create a hedged lookup configured according to the configuration.
+     *
+     * @param crossRefClient the CrossRef client.
+     * @param dataciteClient the DataCite client.
+     * @param config         the configuration.
+     * @return a new HedgedLookup.
+     */
+    public static HedgedLookup fromConfig(CrossRefClient crossRefClient, DataciteClient dataciteClient,
+                                          Config config) {
+        return new HedgedLookup(crossRefClient, dataciteClient, config.isHedgedLookupEnabled(),
+                                Duration.ofMillis(config.getHedgeDelayMillis()), config.getHedgeDelayPercentile());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The delay after which DataCite is asked if CrossRef has not answered.
+     *
+     * @return the hedge delay.
+     */
+    public Duration hedgeDelay() {
+        return crossRefLatencies.getSampleCount() < MIN_SAMPLES_FOR_PERCENTILE
+            ? fixedDelay
+            : crossRefLatencies.percentile(delayPercentile);
+    }
+
+    /**
+     * Fetch the metadata from whichever agency answers successfully first.
+     *
+     * @param doiUrl              a DOI string or URL.
+     * @param dataciteContentType the requested content type.
+     * @return the metadata and the location it was fetched from.
+     * @throws IOException        when DataCite fails and CrossRef does not know the DOI.
+     * @throws URISyntaxException when the DOI cannot be transformed to a valid URI.
+     */
+    public MetadataAndContentLocation fetch(String doiUrl, DataciteContentType dataciteContentType)
+        throws IOException, URISyntaxException {
+        lookups.incrementAndGet();
+        Race race = new Race(doiUrl, dataciteContentType);
+        race.start();
+        try {
+            MetadataAndContentLocation metadata = race.result.get();
+            if (race.wonByHedge) {
+                hedgeWins.incrementAndGet();
+            }
+            return metadata;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static IOException unwrap(Throwable cause) {
+        Throwable actual = actual(cause);
+        if (actual instanceof IOException) {
+            return (IOException) actual;
+        }
+        if (actual instanceof RuntimeException) {
+            throw (RuntimeException) actual;
+        }
+        return new IOException(actual);
+    }
+
+    private static Throwable actual(Throwable cause) {
+        return cause instanceof CompletionException && cause.getCause() != null
+            ? cause.getCause()
+            : cause;
+    }
+
+    public long getLookups() {
+        return lookups.get();
+    }
+
+    public long getHedgedRequests() {
+        return hedgedRequests.get();
+    }
+
+    public long getHedgeWins() {
+        return hedgeWins.get();
+    }
+
+    private class Race {
+
+        private final String doiUrl;
+        private final DataciteContentType dataciteContentType;
+        private final CompletableFuture<MetadataAndContentLocation> result = new CompletableFuture<>();
+        private final AtomicBoolean dataciteStarted = new AtomicBoolean();
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile Throwable crossRefFailure;
+        private volatile Throwable dataciteFailure;
+        private volatile boolean wonByHedge;
+        private volatile CompletableFuture<?> crossRefRequest;
+        private volatile CompletableFuture<?> dataciteRequest;
+
+        Race(String doiUrl, DataciteContentType dataciteContentType) {
+            this.doiUrl = doiUrl;
+            this.dataciteContentType = dataciteContentType;
+        }
+
+        void start() throws URISyntaxException {
+            long startTime = System.nanoTime();
+            CompletableFuture<Optional<MetadataAndContentLocation>> crossRef =
+                crossRefClient.fetchDataForDoiAsync(doiUrl);
+            crossRefRequest = crossRef;
+            crossRef.whenComplete((metadata, error) -> onCrossRefDone(metadata, error, startTime));
+            Executor delayed = CompletableFuture.delayedExecutor(hedgeDelay().toMillis(), TimeUnit.MILLISECONDS);
+            delayed.execute(this::startDatacite);
+            result.whenComplete((metadata, error) -> cancelDatacite());
+        }
+
+        private void onCrossRefDone(Optional<MetadataAndContentLocation> metadata, Throwable error,
+                                    long startTime) {
+            crossRefLatencies.record(Duration.ofNanos(System.nanoTime() - startTime));
+            if (metadata != null && metadata.isPresent()) {
+                result.complete(metadata.get());
+            } else {
+                crossRefFailure = error;
+                startDatacite();
+                onFailure();
+            }
+        }
+
+        private void startDatacite() {
+            if (result.isDone() || !dataciteStarted.compareAndSet(false, true)) {
+                return;
+            }
+            if (!crossRefRequest.isDone()) {
+                hedgedRequests.incrementAndGet();
+            }
+            try {
+                CompletableFuture<MetadataAndContentLocation> datacite =
+                    dataciteClient.fetchMetadataAsync(doiUrl, dataciteContentType);
+                dataciteRequest = datacite;
+                datacite.whenComplete(this::onDataciteDone);
+            } catch (IOException e) {
+                onDataciteDone(null, e);
+            }
+        }
+
+        private void onDataciteDone(MetadataAndContentLocation metadata, Throwable error) {
+            if (error == null) {
+                wonByHedge = !crossRefRequest.isDone();
+                result.complete(metadata);
+            } else {
+                dataciteFailure = error;
+                onFailure();
+            }
+        }
+
+        /**
+         * When both agencies failed, report the DataCite failure, unless DataCite only does not know the DOI while
+         * CrossRef failed, which says nothing about whether the DOI exists.
+         */
+        private void onFailure() {
+            if (failures.incrementAndGet() == BOTH_FAILED) {
+                boolean unknownToDatacite = actual(dataciteFailure) instanceof FileNotFoundException;
+                result.completeExceptionally(unknownToDatacite && crossRefFailure != null
+                                                 ? crossRefFailure
+                                                 : dataciteFailure);
+            }
+        }
+
+        private void cancelDatacite() {
+            CompletableFuture<?> datacite = dataciteRequest;
+            if (datacite != null) {
+                datacite.cancel(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package no.unit.nva.doi;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Compact frequency sketch of looked-up DOIs: a count-min sketch estimating how often every DOI was seen, and the
+ * top-K DOIs by estimate kept in a min-heap, so the least frequent of them is the one replaced by a DOI that has
+ * become more frequent. Its size is fixed by its dimensions, however many distinct DOIs are recorded.
+ *
+ * <p>Sketches with the same dimensions can be merged by adding their counters, which lets every container contribute
+ * its lookups to one persisted sketch. Halving the counters ages the sketch, so DOIs that were hot long ago give way
+ * to the ones that are hot now. The sketch is not thread-safe.
+ */
+public class HotDoiSketch {
+
+    public static final int DEFAULT_WIDTH = 2048;
+    public static final int DEFAULT_DEPTH = 4;
+    public static final String INCOMPATIBLE_SKETCH = "Cannot merge a %dx%d sketch into a %dx%d sketch";
+    public static final String UNKNOWN_FORMAT = "Unknown sketch format ";
+    public static final String CORRUPT_SKETCH = "Corrupt sketch: %s %d out of bounds";
+    /**
+     * Upper bounds of a sketch read from a file, checked before anything is allocated for it.
+     */
+    public static final int MAX_WIDTH = 1 << 20;
+    public static final int MAX_DEPTH = 16;
+    public static final int MAX_COUNTERS = 1 << 20;
+    public static final int MAX_CAPACITY = 100_000;
+    public static final int MAX_DOI_BYTES = 2048;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private final int width;
+    private final int depth;
+    private final int capacity;
+    private final long[] counters;
+    private final Map<String, Candidate> candidates = new HashMap<>();
+    private final PriorityQueue<Candidate> heap = new PriorityQueue<>(
+        Comparator.comparingLong(Candidate::getCount).thenComparing(Candidate::getDoi));
+    private long total;
+
+    /**
+     * A DOI among the top K, with the estimate it had when it was last recorded.
+     */
+    private static final class Candidate {
+
+        private final String doi;
+        private final long count;
+
+        private Candidate(String doi, long count) {
+            this.doi = doi;
+            this.count = count;
+        }
+
+        private String getDoi() {
+            return doi;
+        }
+
+        private long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param width    the number of counters per row. More counters mean fewer collisions and better estimates.
+     * @param depth    the number of rows, each with its own hash function.
+     * @param capacity the number of top DOIs kept, K.
+     */
+    public HotDoiSketch(int width, int depth, int capacity) {
+        this.width = Math.max(1, width);
+        this.depth = Math.max(1, depth);
+        this.capacity = Math.max(1, capacity);
+        this.counters = new long[this.width * this.depth];
+    }
+
+    /**
+     * Record a lookup of a DOI.
+     *
+     * @param doi the canonical DOI.
+     */
+    public void add(String doi) {
+        int hash = doi.hashCode();
+        int secondHash = fnv(doi);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            int index = index(row, hash, secondHash);
+            counters[index]++;
+            estimate = Math.min(estimate, counters[index]);
+        }
+        total++;
+        offer(doi, estimate);
+    }
+
+    /**
+     * The estimated number of lookups of a DOI, which is never lower than the real number.
+     *
+     * @param doi the canonical DOI.
+     * @return the estimate.
+     */
+    public long estimate(String doi) {
+        int hash = doi.hashCode();
+        int secondHash = fnv(doi);
+        long estimate = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[index(row, hash, secondHash)]);
+        }
+        return estimate;
+    }
+
+    /**
+     * The top DOIs, most frequent first.
+     *
+     * @return at most K DOIs.
+     */
+    public List<String> hottest() {
+        return candidates.values()
+                         .stream()
+                         .sorted(Comparator.comparingLong(Candidate::getCount).reversed()
+                                           .thenComparing(Candidate::getDoi))
+                         .map(Candidate::getDoi)
+                         .collect(Collectors.toList());
+    }
+
+    /**
+     * Add the lookups recorded in another sketch with the same dimensions to this one.
+     *
+     * @param other the other sketch.
+     * @throws IllegalArgumentException when the dimensions differ.
+     */
+    public void merge(HotDoiSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException(String.format(INCOMPATIBLE_SKETCH, other.depth, other.width, depth,
+                                                             width));
+        }
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] += other.counters[index];
+        }
+        total += other.total;
+        Set<String> dois = new TreeSet<>(candidates.keySet());
+        dois.addAll(other.candidates.keySet());
+        rebuildCandidates(dois);
+    }
+
+    /**
+     * Halve every counter, so that older lookups weigh half as much as the ones recorded from now on.
+     */
+    public void halve() {
+        for (int index = 0; index < counters.length; index++) {
+            counters[index] >>= 1;
+        }
+        total >>= 1;
+        rebuildCandidates(new TreeSet<>(candidates.keySet()));
+    }
+
+    /**
+     * Forget every lookup.
+     */
+    public void clear() {
+        Arrays.fill(counters, 0);
+        total = 0;
+        candidates.clear();
+        heap.clear();
+    }
+
+    /**
+     * The number of lookups recorded, after halving.
+     *
+     * @return the total of the lookups.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Write the sketch: the format version, the dimensions, the counters and the top DOIs, whose estimates are read
+     * back from the counters.
+     *
+     * @param out the output.
+     * @throws IOException when the output fails.
+     */
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeInt(capacity);
+        out.writeLong(total);
+        for (long counter : counters) {
+            out.writeLong(counter);
+        }
+        out.writeInt(candidates.size());
+        for (Candidate candidate : candidates.values()) {
+            byte[] doi = candidate.getDoi().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(doi.length);
+            out.write(doi);
+        }
+    }
+
+    /**
+     * Read a sketch written by {@link #writeTo(DataOutputStream)}.
+     *
+     * @param in the input.
+     * @return the sketch.
+     * @throws IOException when the input fails, holds another format or has values out of bounds.
+     */
+    public static HotDoiSketch readFrom(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException(UNKNOWN_FORMAT + version);
+        }
+        int width = checked("width", in.readInt(), 1, MAX_WIDTH);
+        int depth = checked("depth", in.readInt(), 1, MAX_DEPTH);
+        checked("counters", (long) width * depth, 1, MAX_COUNTERS);
+        int capacity = checked("capacity", in.readInt(), 1, MAX_CAPACITY);
+        HotDoiSketch sketch = new HotDoiSketch(width, depth, capacity);
+        sketch.total = checked("total", in.readLong(), 0, Long.MAX_VALUE);
+        for (int index = 0; index < sketch.counters.length; index++) {
+            sketch.counters[index] = checked("counter", in.readLong(), 0, Long.MAX_VALUE);
+        }
+        int candidateCount = checked("candidates", in.readInt(), 0, capacity);
+        List<String> dois = new ArrayList<>(candidateCount);
+        for (int candidate = 0; candidate < candidateCount; candidate++) {
+            byte[] doi = new byte[checked("DOI length", in.readInt(), 1, MAX_DOI_BYTES)];
+            in.readFully(doi);
+            dois.add(new String(doi, StandardCharsets.UTF_8));
+        }
+        sketch.rebuildCandidates(dois);
+        return sketch;
+    }
+
+    private static int checked(String name, int value, int min, int max) throws IOException {
+        return (int) checked(name, (long) value, min, max);
+    }
+
+    private static long checked(String name, long value, long min, long max) throws IOException {
+        if (value < min || value > max) {
+            throw new IOException(String.format(CORRUPT_SKETCH, name, value));
+        }
+        return value;
+    }
+
+    /**
+     * Keep a DOI among the top K when its estimate is higher than the lowest estimate there.
+     */
+    private void offer(String doi, long estimate) {
+        Candidate current = candidates.get(doi);
+        if (current != null) {
+            heap.remove(current);
+        } else if (candidates.size() >= capacity) {
+            if (heap.isEmpty() || heap.peek().getCount() >= estimate) {
+                return;
+            }
+            candidates.remove(heap.poll().getDoi());
+        }
+        Candidate candidate = new Candidate(doi, estimate);
+        candidates.put(doi, candidate);
+        heap.add(candidate);
+    }
+
+    private void rebuildCandidates(Iterable<String> dois) {
+        candidates.clear();
+        heap.clear();
+        for (String doi : dois) {
+            offer(doi, estimate(doi));
+        }
+    }
+
+    /**
+     * The counter of a DOI in a row, from the two hashes combined as h1 + row * h2. Both hashes are stable across
+     * JVMs, so a persisted sketch is read back with the same counters.
+     */
+    private int index(int row, int hash, int secondHash) {
+        return Math.floorMod(hash + row * secondHash, width) + row * width;
+    }
+
+    private static int fnv(String doi) {
+        int hash = FNV_OFFSET_BASIS;
+        for (int position = 0; position < doi.length(); position++) {
+            hash = (hash ^ doi.charAt(position)) * FNV_PRIME;
+        }
+        return hash | 1;
+    }
+}
@@ -0,0 +1,296 @@
+package no.unit.nva.doi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the DOIs looked up in the container with a {@link HotDoiSketch}, and prefetches the hottest of them
+ * into the metadata store of a new container, so that it does not have to go to CrossRef for them when user traffic
+ * arrives. The lookups recorded in the container are merged into a sketch file every persist interval, on a background
+ * thread so that requests do not wait for the file, and on the scheduled warm-up event. When the file is on storage
+ * shared by the containers, every container prefetches the hot set of all of them; without a file, the warm-up event
+ * refreshes the hot set of the container itself.
+ */
+public class HotDoiTracker {
+
+    public static final String PERSIST_FAILED = "Persisting the hot DOI sketch failed: ";
+    public static final String READ_FAILED = "Reading the hot DOI sketch failed, starting over: ";
+    public static final String PREFETCHED = "Prefetched %d of %d hot DOIs";
+    /**
+     * The persisted sketch is halved when it holds this many lookups per counter of a row.
+     */
+    public static final long AGING_LOOKUPS_PER_COUNTER = 16;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final String THREAD_NAME = "hot-doi-persist";
+    private static final Executor PERSIST_EXECUTOR = Executors.newSingleThreadExecutor(HotDoiTracker::newThread);
+
+    private final Path file;
+    private final int capacity;
+    private final Duration persistInterval;
+    private final int parallelism;
+    private final Clock clock;
+    private final Executor persistExecutor;
+    private final HotDoiSketch recent;
+    private final ReentrantLock sketchLock = new ReentrantLock();
+    private final ReentrantLock persistLock = new ReentrantLock();
+    private final AtomicBoolean persistPending = new AtomicBoolean();
+    private volatile Instant lastPersisted;
+
+    /**
+     * Constructor.
+     *
+     * @param file            the sketch file shared with other containers, or null to keep the sketch in memory.
+     * @param capacity        the number of hot DOIs tracked and prefetched.
+     * @param persistInterval how often the recorded lookups are merged into the file.
+     * @param parallelism     the maximum number of DOIs prefetched at the same time.
+     * @param clock           the clock telling when the lookups are due to be persisted.
+     */
+    public HotDoiTracker(Path file, int capacity, Duration persistInterval, int parallelism, Clock clock) {
+        this(file, capacity, persistInterval, parallelism, clock, PERSIST_EXECUTOR);
+    }
+
+    /**
+     * Constructor that allows the executor persisting the lookups that are due to be injected.
+     *
+     * @param file            the sketch file shared with other containers, or null to keep the sketch in memory.
+     * @param capacity        the number of hot DOIs tracked and prefetched.
+     * @param persistInterval how often the recorded lookups are merged into the file.
+     * @param parallelism     the maximum number of DOIs prefetched at the same time.
+     * @param clock           the clock telling when the lookups are due to be persisted.
+     * @param persistExecutor runs the merges into the file that recording a lookup makes due.
+     */
+    public HotDoiTracker(Path file, int capacity, Duration persistInterval, int parallelism, Clock clock,
+                         Executor persistExecutor) {
+        this.file = file;
+        this.capacity = capacity;
+        this.persistInterval = persistInterval;
+        this.parallelism = Math.max(1, parallelism);
+        this.clock = clock;
+        this.persistExecutor = persistExecutor;
+        this.recent = newSketch();
+        this.lastPersisted = clock.instant();
+    }
+
+    /**
+     * Create a tracker persisting to the configured sketch file, if any.
+     *
+     * @param config the configuration.
+     * @return a new HotDoiTracker.
+     */
+    public static HotDoiTracker fromConfig(Config config) {
+        Path file = Optional.ofNullable(config.getHotDoiSketchFile())
+                            .filter(name -> !name.isBlank())
+                            .map(Paths::get)
+                            .orElse(null);
+        return new HotDoiTracker(file, config.getHotDoiPrefetchSize(),
+                                 Duration.ofSeconds(config.getHotDoiPersistIntervalSeconds()),
+                                 config.getBatchParallelism(), Clock.systemUTC());
+    }
+
+    /**
+     * Record a lookup, and hand the recorded lookups to the persist executor when they are due. Invalid DOIs are
+     * ignored.
+     *
+     * @param doi the DOI as given by the client.
+     */
+    public void record(String doi) {
+        Optional<Doi> parsed = Doi.parse(doi);
+        if (parsed.isEmpty()) {
+            return;
+        }
+        sketchLock.lock();
+        try {
+            recent.add(parsed.get().toString());
+        } finally {
+            sketchLock.unlock();
+        }
+        if (file != null && !clock.instant().isBefore(lastPersisted.plus(persistInterval))
+            && persistPending.compareAndSet(false, true)) {
+            persistExecutor.execute(this::persistQuietly);
+        }
+    }
+
+    /**
+     * Merge the lookups recorded since the last time into the sketch file. Nothing is done while another thread is
+     * persisting, or when there is no file.
+     *
+     * @return whether the file was written.
+     * @throws IOException when the file cannot be written. The lookups are kept for the next time then.
+     */
+    public boolean persist() throws IOException {
+        if (file == null || !persistLock.tryLock()) {
+            return false;
+        }
+        try {
+            lastPersisted = clock.instant();
+            HotDoiSketch delta = takeRecent();
+            try {
+                HotDoiSketch merged = readPersisted().orElseGet(this::newSketch);
+                merged.merge(delta);
+                if (merged.getTotal() > merged.getWidth() * AGING_LOOKUPS_PER_COUNTER) {
+                    merged.halve();
+                }
+                write(merged);
+                return true;
+            } catch (IOException e) {
+                restore(delta);
+                throw e;
+            }
+        } finally {
+            persistLock.unlock();
+        }
+    }
+
+    /**
+     * The DOIs to prefetch: the hottest of the sketch file, or of the container itself when there is no file.
+     *
+     * @return the hot DOIs, most frequent first.
+     */
+    public List<String> hotSet() {
+        if (file != null) {
+            return readPersisted().map(HotDoiSketch::hottest).orElse(List.of());
+        }
+        sketchLock.lock();
+        try {
+            return recent.hottest();
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    /**
+     * Resolve the hot DOIs with a bounded number of parallel lookups, so that their canonical metadata is in the
+     * metadata store. Lookups that fail or are not done within the timeout are left to the first request for them.
+     * Nothing is looked up without time to do so.
+     *
+     * @param resolver the resolver filling the metadata store.
+     * @param timeout  the longest time to wait for the lookups.
+     * @return the number of DOIs prefetched.
+     */
+    public int prefetch(DoiMetadataResolver resolver, Duration timeout) {
+        if (timeout.isZero() || timeout.isNegative()) {
+            return 0;
+        }
+        List<String> dois = hotSet();
+        if (dois.isEmpty()) {
+            return 0;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, dois.size()));
+        List<CompletableFuture<Boolean>> lookups =
+            dois.stream()
+                .map(doi -> CompletableFuture.supplyAsync(() -> prefetch(resolver, doi), executor))
+                .collect(Collectors.toList());
+        try {
+            CompletableFuture.allOf(lookups.toArray(CompletableFuture[]::new))
+                             .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println(e.getMessage());
+        } finally {
+            executor.shutdownNow();
+        }
+        int prefetched = (int) lookups.stream().filter(lookup -> lookup.getNow(false)).count();
+        System.out.println(String.format(PREFETCHED, prefetched, dois.size()));
+        return prefetched;
+    }
+
+    private static boolean prefetch(DoiMetadataResolver resolver, String doi) {
+        try {
+            resolver.resolve(doi, DoiMetadataResolver.CANONICAL_CONTENT_TYPE);
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void persistQuietly() {
+        try {
+            persist();
+        } catch (IOException e) {
+            System.out.println(PERSIST_FAILED + e.getMessage());
+        } finally {
+            persistPending.set(false);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, THREAD_NAME);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private HotDoiSketch newSketch() {
+        return new HotDoiSketch(HotDoiSketch.DEFAULT_WIDTH, HotDoiSketch.DEFAULT_DEPTH, capacity);
+    }
+
+    private HotDoiSketch takeRecent() {
+        HotDoiSketch delta = newSketch();
+        sketchLock.lock();
+        try {
+            delta.merge(recent);
+            recent.clear();
+        } finally {
+            sketchLock.unlock();
+        }
+        return delta;
+    }
+
+    private void restore(HotDoiSketch delta) {
+        sketchLock.lock();
+        try {
+            recent.merge(delta);
+        } finally {
+            sketchLock.unlock();
+        }
+    }
+
+    /**
+     * Read the sketch file. A missing file is a new sketch, while a file that cannot be read or has other dimensions
+     * is logged and replaced by the next write.
+     */
+    private Optional<HotDoiSketch> readPersisted() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            HotDoiSketch persisted = HotDoiSketch.readFrom(in);
+            return persisted.getWidth() == HotDoiSketch.DEFAULT_WIDTH
+                && persisted.getDepth() == HotDoiSketch.DEFAULT_DEPTH ? Optional.of(persisted) : Optional.empty();
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        } catch (IOException e) {
+            System.out.println(READ_FAILED + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void write(HotDoiSketch sketch) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temporary = file.resolveSibling(file.getFileName() + TEMP_FILE_SUFFIX);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            sketch.writeTo(out);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,92 @@
+package no.unit.nva.doi;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * The deadline of the invocation being handled, taken from the Lambda context when the handler is entered. A Lambda
+ * container handles one invocation at a time, so the deadline is held per container rather than passed down to the
+ * upstream clients with every call.
+ */
+public final class InvocationDeadline {
+
+    /**
+     * The time kept back from the invocation to answer with an error when an upstream does not answer in time, rather
+     * than being stopped by Lambda, which API Gateway answers with 502 Bad Gateway.
+     */
+    public static final Duration RESPONSE_MARGIN = Duration.ofSeconds(1);
+    /**
+     * The shortest timeout handed out, since a request cannot be sent without time to wait for it.
+     */
+    public static final Duration MIN_TIMEOUT = Duration.ofMillis(1);
+    private static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+    private static final long NO_DEADLINE = Long.MAX_VALUE;
+    private static volatile long deadlineNanos = NO_DEADLINE;
+
+    private InvocationDeadline() {
+    }
+
+    /**
+     * Start the deadline of a new invocation.
+     *
+     * @param context the Lambda context, or null when the handler is called outside Lambda.
+     */
+    public static void start(Context context) {
+        start(context == null ? 0 : context.getRemainingTimeInMillis());
+    }
+
+    /**
+     * Start the deadline of a new invocation.
+     *
+     * @param remainingMillis the time left of the invocation, or zero or less when it is not known.
+     */
+    public static void start(long remainingMillis) {
+        deadlineNanos = remainingMillis > 0
+            ? System.nanoTime() + Duration.ofMillis(remainingMillis).toNanos()
+            : NO_DEADLINE;
+    }
+
+    /**
+     * The time left of the current invocation.
+     *
+     * @return the remaining time, which is unbounded when no deadline is known.
+     */
+    public static Duration remaining() {
+        long deadline = deadlineNanos;
+        if (deadline == NO_DEADLINE) {
+            return UNBOUNDED;
+        }
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * A timeout shortened to end before the response margin of the current invocation.
+     *
+     * @param timeout the timeout wanted.
+     * @return the timeout, or the time left of the invocation less the response margin when that is shorter, but
+     *     never less than {@link #MIN_TIMEOUT}.
+     */
+    public static Duration within(Duration timeout) {
+        return within(timeout, remaining());
+    }
+
+    /**
+     * A timeout shortened to end before the response margin of a given remaining time.
+     *
+     * @param timeout   the timeout wanted.
+     * @param remaining the time left, which is unbounded when no deadline is known.
+     * @return the timeout, or the remaining time less the response margin when that is shorter, but never less than
+     *     {@link #MIN_TIMEOUT}.
+     */
+    public static Duration within(Duration timeout, Duration remaining) {
+        if (remaining.compareTo(UNBOUNDED) >= 0) {
+            return timeout;
+        }
+        Duration left = remaining.minus(RESPONSE_MARGIN);
+        if (left.compareTo(timeout) >= 0) {
+            return timeout;
+        }
+        return left.compareTo(MIN_TIMEOUT) > 0 ? left : MIN_TIMEOUT;
+    }
+}
@@ -0,0 +1,43 @@
+package no.unit.nva.doi;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Streaming filter that drops the named fields, at any depth, from a JSON document. Large fields such as the
+ * reference list of a CrossRef work are skipped token by token and never materialized.
+ */
+public class JsonFieldFilter extends StreamingJsonFilter {
+
+    private static final String SEPARATOR = ",";
+
+    private final Set<String> excludedFields;
+
+    public JsonFieldFilter(Set<String> excludedFields) {
+        super();
+        this.excludedFields = Set.copyOf(excludedFields);
+    }
+
+    /**
+     * Create a filter dropping the fields in a comma separated list.
+     *
+     * @param excludedFields the field names, or null.
+     * @return a filter dropping the fields, or {@link BodyFilter#NONE} when the list is empty.
+     */
+    public static BodyFilter excluding(String excludedFields) {
+        if (excludedFields == null || excludedFields.isBlank()) {
+            return BodyFilter.NONE;
+        }
+        return new JsonFieldFilter(Arrays.stream(excludedFields.split(SEPARATOR))
+                                         .map(String::trim)
+                                         .filter(field -> !field.isEmpty())
+                                         .collect(Collectors.toSet()));
+    }
+
+    @Override
+    protected boolean keep(Deque<String> path, String name) {
+        return !excludedFields.contains(name);
+    }
+}
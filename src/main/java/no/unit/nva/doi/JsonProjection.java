@@ -0,0 +1,64 @@
+package no.unit.nva.doi;
+
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Streaming filter that keeps only the requested top-level fields of a metadata record, which is CSL or DataCite JSON
+ * by the time it is projected. Kept fields are copied with everything below them.
+ */
+public class JsonProjection extends StreamingJsonFilter {
+
+    public static final String SLIM_PROFILE = "slim";
+    public static final String UNKNOWN_PROFILE = "Unknown profile '%s', expected one of %s";
+
+    /**
+     * Named projections. The slim profile covers title, contributors, dates, container and identifiers, in both the
+     * CSL/CrossRef and the DataCite JSON vocabulary.
+     */
+    public static final Map<String, Set<String>> PROFILES = Map.of(
+        SLIM_PROFILE, Set.of(
+            "title", "subtitle", "author", "editor", "issued", "published-print", "published-online", "created",
+            "container-title", "short-container-title", "volume", "issue", "page", "publisher", "type",
+            "DOI", "ISSN", "ISBN", "URL",
+            "doi", "url", "identifiers", "titles", "creators", "dates", "publicationYear", "types", "container"));
+
+    private final Set<String> fields;
+
+    public JsonProjection(Set<String> fields) {
+        super();
+        this.fields = Set.copyOf(fields);
+    }
+
+    /**
+     * Create the projection requested by a caller.
+     *
+     * @param fields  the requested fields, or null.
+     * @param profile the name of a profile, or null.
+     * @return the projection on the union of the fields and the profile, or empty when neither was requested.
+     * @throws IllegalArgumentException when the profile is unknown.
+     */
+    public static Optional<JsonProjection> of(List<String> fields, String profile) {
+        Set<String> projected = new HashSet<>();
+        if (fields != null) {
+            projected.addAll(fields);
+        }
+        if (profile != null) {
+            Set<String> profileFields = PROFILES.get(profile);
+            if (profileFields == null) {
+                throw new IllegalArgumentException(String.format(UNKNOWN_PROFILE, profile, PROFILES.keySet()));
+            }
+            projected.addAll(profileFields);
+        }
+        return projected.isEmpty() ? Optional.empty() : Optional.of(new JsonProjection(projected));
+    }
+
+    @Override
+    protected boolean keep(Deque<String> path, String name) {
+        return !path.isEmpty() || fields.contains(name);
+    }
+}
@@ -0,0 +1,71 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writer that escapes everything written to it as the contents of a JSON string, so that a document can be streamed
+ * into a string value of an enclosing JSON object. The enclosing quotes are not written.
+ */
+public class JsonStringWriter extends Writer {
+
+    private static final char FIRST_PRINTABLE = 0x20;
+    private static final char LINE_SEPARATOR = '\u2028';
+    private static final char PARAGRAPH_SEPARATOR = '\u2029';
+    private static final String UNICODE_ESCAPE = "\\u%04x";
+
+    private final Writer out;
+
+    public JsonStringWriter(Writer out) {
+        super(out);
+        this.out = out;
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        int unescapedFrom = offset;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            String replacement = escape(buffer[i]);
+            if (replacement != null) {
+                out.write(buffer, unescapedFrom, i - unescapedFrom);
+                out.write(replacement);
+                unescapedFrom = i + 1;
+            }
+        }
+        out.write(buffer, unescapedFrom, end - unescapedFrom);
+    }
+
+    private static String escape(char c) {
+        switch (c) {
+            case '"':
+                return "\\\"";
+            case '\\':
+                return "\\\\";
+            case '\n':
+                return "\\n";
+            case '\r':
+                return "\\r";
+            case '\t':
+                return "\\t";
+            case LINE_SEPARATOR:
+            case PARAGRAPH_SEPARATOR:
+                return String.format(UNICODE_ESCAPE, (int) c);
+            default:
+                return c < FIRST_PRINTABLE ? String.format(UNICODE_ESCAPE, (int) c) : null;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Does not close the underlying writer, since the enclosing document continues after the string.
+     */
+    @Override
+    public void close() throws IOException {
+        out.flush();
+    }
+}
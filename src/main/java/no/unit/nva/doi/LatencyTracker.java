@@ -0,0 +1,74 @@
+package no.unit.nva.doi;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps the most recent latencies of an upstream service in a ring buffer and answers percentile queries over them.
+ */
+public class LatencyTracker {
+
+    private static final double HUNDRED_PERCENT = 100.0;
+
+    private final long[] samples;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int next;
+    private int count;
+
+    public LatencyTracker(int capacity) {
+        this.samples = new long[capacity];
+    }
+
+    /**
+     * Record one observed latency.
+     *
+     * @param latency the latency.
+     */
+    public void record(Duration latency) {
+        lock.lock();
+        try {
+            samples[next] = latency.toMillis();
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of latencies currently held.
+     *
+     * @return the number of samples.
+     */
+    public int getSampleCount() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The latency below which the given share of the recorded latencies fall.
+     *
+     * @param percentile a percentile between 0 and 100.
+     * @return the latency, or zero when nothing has been recorded.
+     */
+    public Duration percentile(double percentile) {
+        long[] sorted;
+        lock.lock();
+        try {
+            sorted = Arrays.copyOf(samples, count);
+        } finally {
+            lock.unlock();
+        }
+        if (sorted.length == 0) {
+            return Duration.ZERO;
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / HUNDRED_PERCENT * sorted.length) - 1;
+        return Duration.ofMillis(sorted[Math.max(0, Math.min(rank, sorted.length - 1))]);
+    }
+}
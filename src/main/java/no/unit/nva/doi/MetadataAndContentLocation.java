@@ -1,17 +1,35 @@
 package no.unit.nva.doi;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import javax.ws.rs.core.HttpHeaders;
 
 public class MetadataAndContentLocation {
 
     private final String contentHeader;
     private final String json;
+    private final String etag;
+    private final String lastModified;
 
     public MetadataAndContentLocation(String contentHeader, String json) {
+        this(contentHeader, json, null, null);
+    }
+
+    /**
+     * Constructor that keeps the validators the upstream sent with the metadata.
+     *
+     * @param contentHeader the location the metadata was fetched from.
+     * @param json          the metadata.
+     * @param etag          the ETag header of the upstream response, or null.
+     * @param lastModified  the Last-Modified header of the upstream response, or null.
+     */
+    public MetadataAndContentLocation(String contentHeader, String json, String etag, String lastModified) {
         this.contentHeader = contentHeader;
         this.json = json;
+        this.etag = etag;
+        this.lastModified = lastModified;
     }
 
     public String getContentHeader() {
@@ -22,7 +40,51 @@ public class MetadataAndContentLocation {
         return json;
     }
 
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
     public Map<String, String> contentLocationAsHeaderEntry() {
         return Collections.singletonMap(HttpHeaders.CONTENT_LOCATION, getContentHeader());
     }
+
+    /**
+     * The headers that ask the upstream to answer 304 Not Modified when this copy of the metadata is still current.
+     *
+     * @return If-None-Match and If-Modified-Since, for the validators that are known.
+     */
+    public Map<String, String> conditionalHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        if (etag != null) {
+            headers.put(HttpHeaders.IF_NONE_MATCH, etag);
+        }
+        if (lastModified != null) {
+            headers.put(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+        }
+        return headers;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetadataAndContentLocation)) {
+            return false;
+        }
+        MetadataAndContentLocation that = (MetadataAndContentLocation) o;
+        return Objects.equals(contentHeader, that.contentHeader)
+            && Objects.equals(json, that.json)
+            && Objects.equals(etag, that.etag)
+            && Objects.equals(lastModified, that.lastModified);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contentHeader, json, etag, lastModified);
+    }
 }
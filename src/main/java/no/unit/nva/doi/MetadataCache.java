@@ -0,0 +1,264 @@
+package no.unit.nva.doi;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded in-memory LRU cache of DOI metadata. Entries are held as {@link CompactMetadataEntry} byte arrays rather
+ * than strings, which fits several times more DOIs into the same memory at the cost of decoding an entry on every
+ * hit. Entries are evicted when the estimated size of all entries exceeds the byte budget, or when they are older
+ * than the time-to-live and the stale window that follows it. During the stale window an entry is only returned by
+ * {@link #lookup(CacheKey)}, marked as stale, so that it can be served while it is revalidated. One instance is meant
+ * to live for the lifetime of the Lambda container so that warm invocations can reuse earlier lookups.
+ */
+public class MetadataCache implements MetadataStore {
+
+    /**
+     * Rough per-entry overhead of the map node, the key, the entry object and the array header.
+     */
+    public static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int BYTES_PER_CHAR = 2;
+    private static final boolean ACCESS_ORDER = true;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final long maxBytes;
+    private final Duration timeToLive;
+    private final Duration staleWindow;
+    private final Clock clock;
+    private final Map<CacheKey, CompactMetadataEntry> entries =
+        new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, ACCESS_ORDER);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private long sizeInBytes;
+
+    public MetadataCache(long maxBytes, Duration timeToLive) {
+        this(maxBytes, timeToLive, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor that allows the clock to be injected.
+     *
+     * @param maxBytes   upper limit for the estimated size of all cached entries.
+     * @param timeToLive how long an entry is served after it was stored.
+     * @param clock      the clock used for expiry.
+     */
+    public MetadataCache(long maxBytes, Duration timeToLive, Clock clock) {
+        this(maxBytes, timeToLive, Duration.ZERO, clock);
+    }
+
+    /**
+     * Constructor for a cache that keeps expired entries for a while, so they can be served while they are
+     * revalidated.
+     *
+     * @param maxBytes    upper limit for the estimated size of all cached entries.
+     * @param timeToLive  how long an entry is fresh after it was stored.
+     * @param staleWindow how long an entry is kept after it has expired.
+     * @param clock       the clock used for expiry.
+     */
+    public MetadataCache(long maxBytes, Duration timeToLive, Duration staleWindow, Clock clock) {
+        this.maxBytes = maxBytes;
+        this.timeToLive = timeToLive;
+        this.staleWindow = staleWindow;
+        this.clock = clock;
+    }
+
+    /**
+     * Create a cache sized according to the configuration.
+     *
+     * @param config the configuration.
+     * @return a new MetadataCache.
+     */
+    public static MetadataCache fromConfig(Config config) {
+        return new MetadataCache(config.getCacheMaxBytes(), Duration.ofSeconds(config.getCacheTtlSeconds()),
+                                 Duration.ofSeconds(config.getCacheStaleSeconds()), Clock.systemUTC());
+    }
+
+    /**
+     * Get a cached entry that has not expired.
+     *
+     * @param key the key.
+     * @return the cached metadata, or an empty Optional.
+     */
+    @Override
+    public Optional<MetadataAndContentLocation> get(CacheKey key) {
+        return find(key).filter(StoredMetadata::isFresh).map(StoredMetadata::getMetadata);
+    }
+
+    /**
+     * Get a cached entry that is fresh or within its stale window.
+     *
+     * @param key the key.
+     * @return the cached metadata and whether it is fresh, or an empty Optional.
+     */
+    @Override
+    public Optional<StoredMetadata> lookup(CacheKey key) {
+        Optional<StoredMetadata> found = find(key);
+        if (found.isPresent() && !found.get().isFresh()) {
+            staleHits.incrementAndGet();
+        }
+        return found;
+    }
+
+    /**
+     * Look the entry up and update the access order and the counters under the lock, but decode it after the lock is
+     * released, so that inflating one entry does not hold back lookups of other entries.
+     */
+    private Optional<StoredMetadata> find(CacheKey key) {
+        CompactMetadataEntry entry;
+        boolean fresh;
+        lock.lock();
+        try {
+            entry = entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            Instant now = clock.instant();
+            Instant expiresAt = entry.getFetchedAt().plus(timeToLive);
+            if (!now.isBefore(expiresAt.plus(staleWindow))) {
+                remove(key, entry);
+                expirations.incrementAndGet();
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            fresh = now.isBefore(expiresAt);
+            if (fresh) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return Optional.of(new StoredMetadata(entry.decode(), fresh, entry.getFetchedAt()));
+    }
+
+    /**
+     * Store an entry, evicting the least recently used entries if the cache grows beyond its byte budget. Entries
+     * that are larger than the whole budget are not stored.
+     *
+     * @param key   the key.
+     * @param value the metadata.
+     */
+    @Override
+    public void put(CacheKey key, MetadataAndContentLocation value) {
+        put(key, value, clock.instant());
+    }
+
+    /**
+     * Store an entry fetched earlier, which expires a time-to-live after it was fetched.
+     *
+     * @param key       the key.
+     * @param value     the metadata.
+     * @param fetchedAt when the metadata was fetched from the upstream.
+     */
+    @Override
+    public void put(CacheKey key, MetadataAndContentLocation value, Instant fetchedAt) {
+        CompactMetadataEntry entry = CompactMetadataEntry.encode(value, key.getContentType(), fetchedAt);
+        long entrySize = sizeOf(key, entry);
+        if (entrySize > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            CompactMetadataEntry previous = entries.remove(key);
+            if (previous != null) {
+                sizeInBytes -= sizeOf(key, previous);
+            }
+            entries.put(key, entry);
+            sizeInBytes += entrySize;
+            evictLeastRecentlyUsed();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Iterator<Map.Entry<CacheKey, CompactMetadataEntry>> eldest = entries.entrySet().iterator();
+        while (sizeInBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<CacheKey, CompactMetadataEntry> entry = eldest.next();
+            sizeInBytes -= sizeOf(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(CacheKey key, CompactMetadataEntry entry) {
+        entries.remove(key);
+        sizeInBytes -= sizeOf(key, entry);
+    }
+
+    protected static long estimateSize(CacheKey key, MetadataAndContentLocation value) {
+        return sizeOf(key, CompactMetadataEntry.encode(value, key.getContentType(), Instant.EPOCH));
+    }
+
+    private static long sizeOf(CacheKey key, CompactMetadataEntry entry) {
+        return ENTRY_OVERHEAD_BYTES + (long) key.getDoi().length() * BYTES_PER_CHAR + entry.size();
+    }
+
+    /**
+     * Number of entries currently held, including entries that have expired but not yet been removed.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimated size of all entries currently held.
+     *
+     * @return the size in bytes.
+     */
+    public long getSizeInBytes() {
+        lock.lock();
+        try {
+            return sizeInBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getExpirations() {
+        return expirations.get();
+    }
+
+    /**
+     * Number of lookups that found an expired entry within its stale window.
+     *
+     * @return the number of stale hits.
+     */
+    public long getStaleHits() {
+        return staleHits.get();
+    }
+}
@@ -0,0 +1,52 @@
+package no.unit.nva.doi;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Key/value store for DOI metadata, keyed by the normalized DOI and the content type. Implementations decide where
+ * the metadata lives and for how long, and must be safe for concurrent use. A store that cannot be reached should
+ * behave as a miss rather than fail the lookup.
+ */
+public interface MetadataStore {
+
+    /**
+     * Get the stored metadata for a key.
+     *
+     * @param key the key.
+     * @return the metadata, or an empty Optional when nothing usable is stored.
+     */
+    Optional<MetadataAndContentLocation> get(CacheKey key);
+
+    /**
+     * Get the stored metadata for a key, including metadata that has expired but may still be served while it is
+     * revalidated. Stores that do not keep expired metadata only find fresh metadata.
+     *
+     * @param key the key.
+     * @return the metadata and whether it is fresh, or an empty Optional when nothing usable is stored.
+     */
+    default Optional<StoredMetadata> lookup(CacheKey key) {
+        return get(key).map(StoredMetadata::fresh);
+    }
+
+    /**
+     * Store the metadata for a key, replacing what was stored before.
+     *
+     * @param key   the key.
+     * @param value the metadata and the location it was fetched from.
+     */
+    void put(CacheKey key, MetadataAndContentLocation value);
+
+    /**
+     * Store metadata that was fetched earlier, for example copied from another store, so that its freshness is judged
+     * from when it was fetched rather than from when it was stored. Stores that do not keep the fetch time store it as
+     * if it was fetched now.
+     *
+     * @param key       the key.
+     * @param value     the metadata and the location it was fetched from.
+     * @param fetchedAt when the metadata was fetched from the upstream.
+     */
+    default void put(CacheKey key, MetadataAndContentLocation value, Instant fetchedAt) {
+        put(key, value);
+    }
+}
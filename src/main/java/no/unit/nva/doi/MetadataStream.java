@@ -0,0 +1,99 @@
+package no.unit.nva.doi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.Optional;
+
+/**
+ * Metadata of a DOI that is read as it arrives instead of being held in memory, and the location it is read from.
+ * The stream must be closed to release the upstream connection. Metadata that is already in memory is wrapped in a
+ * stream too, and can be taken as it is from {@link #getMetadata()}.
+ */
+public class MetadataStream implements Closeable {
+
+    private final String contentLocation;
+    private final Reader reader;
+    private final String etag;
+    private final String lastModified;
+    private final MetadataAndContentLocation metadata;
+
+    public MetadataStream(String contentLocation, Reader reader) {
+        this(contentLocation, reader, null, null);
+    }
+
+    /**
+     * Constructor that keeps the validators the upstream sent with the metadata.
+     *
+     * @param contentLocation the location the metadata is read from.
+     * @param reader          the metadata.
+     * @param etag            the ETag header of the upstream response, or null.
+     * @param lastModified    the Last-Modified header of the upstream response, or null.
+     */
+    public MetadataStream(String contentLocation, Reader reader, String etag, String lastModified) {
+        this.contentLocation = contentLocation;
+        this.reader = reader;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.metadata = null;
+    }
+
+    private MetadataStream(MetadataAndContentLocation metadata) {
+        this.contentLocation = metadata.getContentHeader();
+        this.reader = new StringReader(metadata.getJson());
+        this.etag = metadata.getEtag();
+        this.lastModified = metadata.getLastModified();
+        this.metadata = metadata;
+    }
+
+    /**
+     * A stream over metadata held in memory.
+     *
+     * @param metadata the metadata.
+     * @return the stream.
+     */
+    public static MetadataStream of(MetadataAndContentLocation metadata) {
+        return new MetadataStream(metadata);
+    }
+
+    public String getContentLocation() {
+        return contentLocation;
+    }
+
+    public Reader getReader() {
+        return reader;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * The metadata, when it is held in memory.
+     *
+     * @return the metadata, or an empty Optional when it is read from an upstream connection.
+     */
+    public Optional<MetadataAndContentLocation> getMetadata() {
+        return Optional.ofNullable(metadata);
+    }
+
+    /**
+     * The metadata read from the stream, with the location and the validators of the stream.
+     *
+     * @param metadata the metadata read from the stream, possibly transformed.
+     * @return the metadata to store.
+     */
+    public MetadataAndContentLocation withMetadata(String metadata) {
+        return new MetadataAndContentLocation(contentLocation, metadata, etag, lastModified);
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
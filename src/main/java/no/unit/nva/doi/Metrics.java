@@ -0,0 +1,367 @@
+package no.unit.nva.doi;
+
+import com.amazonaws.services.lambda.runtime.Context;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.http.HttpHeaders;
+
+/**
+ * Metrics of the invocation being handled, written to standard out as lines in the CloudWatch embedded metric format
+ * when the invocation ends. CloudWatch extracts the metrics from the lines, and the request and trace ids in them tie
+ * the lines to the other logs and the trace of the invocation.
+ *
+ * <p>Like {@link InvocationDeadline}, the metrics of the current invocation are held per container, since a container
+ * handles one invocation at a time. Work that may complete after the invocation has ended takes the metrics with it
+ * when it starts, so that late results are not counted in the next invocation.
+ */
+public class Metrics {
+
+    public static final String PARSE_TIME = "ParseTime";
+    public static final String VALIDATE_TIME = "ValidateTime";
+    public static final String CACHE_LOOKUP_TIME = "CacheLookupTime";
+    public static final String CACHE_HIT = "CacheHit";
+    public static final String SERIALIZATION_TIME = "SerializationTime";
+    public static final String RESPONSE_SIZE = "ResponseSize";
+    public static final String COLD_START = "ColdStart";
+    public static final String INIT_TIME = "InitTime";
+    public static final String CALL_TIME = "CallTime";
+    public static final String PAYLOAD_SIZE = "PayloadSize";
+    public static final String FAILURE = "Failure";
+    public static final String STATUS_CODES = "StatusCodes";
+    public static final String BULK_IMPORT_THROUGHPUT = "BulkImportThroughput";
+    public static final String COALESCED = "Coalesced";
+    public static final String RATE_LIMIT_SHED = "RateLimitShed";
+    public static final String RATE_LIMIT_WAIT = "RateLimitWait";
+
+    public static final String SERVICE_DIMENSION = "Service";
+    public static final String REQUEST_ID = "RequestId";
+    public static final String TRACE_ID = "TraceId";
+    public static final String TRACE_HEADER_PROPERTY = "com.amazonaws.xray.traceHeader";
+    public static final String TRACE_HEADER_ENVIRONMENT_NAME = "_X_AMZN_TRACE_ID";
+
+    /**
+     * CloudWatch accepts at most 100 values per metric in one line. Further values are written in further lines.
+     */
+    public static final int MAX_VALUES = 100;
+
+    private static final AtomicBoolean FIRST_INVOCATION = new AtomicBoolean(true);
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+    private static volatile Metrics current = new Metrics(Config.DEFAULT_METRICS_NAMESPACE, null, null, null, false);
+
+    /**
+     * The unit of a metric.
+     */
+    public enum Unit {
+        MILLISECONDS("Milliseconds"),
+        BYTES("Bytes"),
+        COUNT("Count"),
+        COUNT_PER_SECOND("Count/Second");
+
+        private final String name;
+
+        Unit(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final String namespace;
+    private final String service;
+    private final String requestId;
+    private final String traceId;
+    private final boolean coldStart;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Unit> units = new LinkedHashMap<>();
+    private final Map<String, List<Double>> values = new LinkedHashMap<>();
+    private final Map<String, List<Object>> properties = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     *
+     * @param namespace the CloudWatch namespace of the metrics.
+     * @param service   the value of the Service dimension, the name of the handler.
+     * @param requestId the request id of the invocation, or null when it is not known.
+     * @param traceId   the X-Ray trace header of the invocation, or null when it is not traced.
+     * @param coldStart whether the invocation is the first in its container.
+     */
+    public Metrics(String namespace, String service, String requestId, String traceId, boolean coldStart) {
+        this.namespace = namespace;
+        this.service = service;
+        this.requestId = requestId;
+        this.traceId = traceId;
+        this.coldStart = coldStart;
+        putMetric(COLD_START, coldStart ? 1 : 0, Unit.COUNT);
+    }
+
+    /**
+     * Start the metrics of a new invocation.
+     *
+     * @param context the Lambda context, or null when the handler is called outside Lambda.
+     * @param service the name of the handler.
+     * @return the metrics of the invocation.
+     */
+    public static Metrics start(Context context, String service) {
+        Metrics metrics = new Metrics(Config.getInstance().getMetricsNamespace(), service,
+                                      context == null ? null : context.getAwsRequestId(), traceId(),
+                                      FIRST_INVOCATION.getAndSet(false));
+        current = metrics;
+        return metrics;
+    }
+
+    /**
+     * The metrics of the invocation being handled.
+     *
+     * @return the metrics.
+     */
+    public static Metrics current() {
+        return current;
+    }
+
+    private static String traceId() {
+        return Optional.ofNullable(System.getProperty(TRACE_HEADER_PROPERTY))
+                       .orElseGet(() -> System.getenv(TRACE_HEADER_ENVIRONMENT_NAME));
+    }
+
+    /**
+     * Record a value of a metric.
+     *
+     * @param name  the name of the metric.
+     * @param value the value.
+     * @param unit  the unit, which should be the same for every value of the metric.
+     */
+    public void putMetric(String name, double value, Unit unit) {
+        lock.lock();
+        try {
+            units.putIfAbsent(name, unit);
+            values.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the time elapsed since a start time, in milliseconds.
+     *
+     * @param name       the name of the metric.
+     * @param startNanos the start time, from {@link System#nanoTime()}.
+     */
+    public void putDuration(String name, long startNanos) {
+        putMetric(name, (System.nanoTime() - startNanos) / NANOS_PER_MILLI, Unit.MILLISECONDS);
+    }
+
+    /**
+     * Record a value that is logged with the metrics, but is not a metric itself.
+     *
+     * @param name  the name of the property.
+     * @param value the value, a String, Number or Boolean.
+     */
+    public void putProperty(String name, Object value) {
+        lock.lock();
+        try {
+            properties.computeIfAbsent(name, key -> new ArrayList<>()).add(value);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record a lookup in the metadata store. The CacheHit metric is 1 for hits and 0 for misses, so that its average
+     * is the hit ratio.
+     *
+     * @param startNanos the start time of the lookup.
+     * @param hit        whether the metadata was found.
+     */
+    public void recordCacheLookup(long startNanos, boolean hit) {
+        putDuration(CACHE_LOOKUP_TIME, startNanos);
+        putMetric(CACHE_HIT, hit ? 1 : 0, Unit.COUNT);
+    }
+
+    /**
+     * Record a call to an upstream, including its retries: its duration, whether it failed, the status code and the
+     * size of the payload when it is known.
+     *
+     * @param upstream   the name of the upstream, which prefixes the metric names.
+     * @param startNanos the start time of the call.
+     * @param response   the last response, or null when the call failed without one.
+     * @param error      the failure, or null when there is a response.
+     */
+    public void recordUpstreamCall(String upstream, long startNanos, HttpResponse<?> response, Throwable error) {
+        putDuration(upstream + CALL_TIME, startNanos);
+        putMetric(upstream + FAILURE, response == null || RetryPolicy.isFailure(response.statusCode()) ? 1 : 0,
+                  Unit.COUNT);
+        if (response == null) {
+            return;
+        }
+        putProperty(upstream + STATUS_CODES, response.statusCode());
+        payloadSize(response).ifPresent(size -> putMetric(upstream + PAYLOAD_SIZE, size, Unit.BYTES));
+    }
+
+    private static Optional<Long> payloadSize(HttpResponse<?> response) {
+        OptionalLong contentLength = response.headers().firstValueAsLong(HttpHeaders.CONTENT_LENGTH);
+        if (contentLength.isPresent()) {
+            return Optional.of(contentLength.getAsLong());
+        }
+        Object body = response.body();
+        if (body instanceof byte[]) {
+            return Optional.of((long) ((byte[]) body).length);
+        }
+        if (body instanceof CharSequence) {
+            return Optional.of(utf8Length((CharSequence) body));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * The length of a text in UTF-8, without encoding it.
+     *
+     * @param text the text.
+     * @return the number of bytes.
+     */
+    public static long utf8Length(CharSequence text) {
+        long length = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Write the metrics to standard out.
+     */
+    public void flush() {
+        toEmf(System.currentTimeMillis()).forEach(System.out::println);
+    }
+
+    /**
+     * The metrics in the CloudWatch embedded metric format. Every line holds at most {@link #MAX_VALUES} values of a
+     * metric or property, so there are as many lines as it takes to hold all values of the one with the most.
+     *
+     * @param timestamp the time of the metrics, in milliseconds since the epoch.
+     * @return the JSON lines, at least one.
+     */
+    public List<String> toEmf(long timestamp) {
+        lock.lock();
+        try {
+            int mostValues = Math.max(values.values().stream().mapToInt(List::size).max().orElse(0),
+                                      properties.values().stream().mapToInt(List::size).max().orElse(0));
+            List<String> lines = new ArrayList<>();
+            int from = 0;
+            do {
+                lines.add(toEmf(timestamp, from, from + MAX_VALUES));
+                from += MAX_VALUES;
+            } while (from < mostValues);
+            return lines;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * One line of the metrics, with the values from and up to indexes of every metric and property that has them.
+     */
+    private String toEmf(long timestamp, int from, int to) {
+        JsonObject root = new JsonObject();
+        JsonArray definitions = new JsonArray();
+        units.forEach((name, unit) -> {
+            if (values.get(name).size() > from) {
+                JsonObject definition = new JsonObject();
+                definition.addProperty("Name", name);
+                definition.addProperty("Unit", unit.getName());
+                definitions.add(definition);
+            }
+        });
+        JsonArray dimensionSet = new JsonArray();
+        dimensionSet.add(SERVICE_DIMENSION);
+        JsonArray dimensions = new JsonArray();
+        dimensions.add(dimensionSet);
+        JsonObject directive = new JsonObject();
+        directive.addProperty("Namespace", namespace);
+        directive.add("Dimensions", dimensions);
+        directive.add("Metrics", definitions);
+        JsonArray directives = new JsonArray();
+        directives.add(directive);
+        JsonObject metadata = new JsonObject();
+        metadata.addProperty("Timestamp", timestamp);
+        metadata.add("CloudWatchMetrics", directives);
+        root.add("_aws", metadata);
+
+        root.addProperty(SERVICE_DIMENSION, Optional.ofNullable(service).orElse(""));
+        Optional.ofNullable(requestId).ifPresent(id -> root.addProperty(REQUEST_ID, id));
+        Optional.ofNullable(traceId).ifPresent(id -> root.addProperty(TRACE_ID, id));
+        properties.forEach((name, propertyValues) -> slice(propertyValues, from, to)
+            .ifPresent(slice -> root.add(name, toJson(slice))));
+        values.forEach((name, metricValues) -> slice(metricValues, from, to)
+            .ifPresent(slice -> root.add(name, slice.size() == 1 ? new JsonPrimitive(slice.get(0)) : toJson(slice))));
+        return root.toString();
+    }
+
+    private static <T> Optional<List<T>> slice(List<T> list, int from, int to) {
+        return list.size() > from
+            ? Optional.of(list.subList(from, Math.min(to, list.size())))
+            : Optional.empty();
+    }
+
+    private static JsonArray toJson(List<?> list) {
+        JsonArray array = new JsonArray();
+        list.forEach(value -> array.add(toJson(value)));
+        return array;
+    }
+
+    private static JsonPrimitive toJson(Object value) {
+        if (value instanceof Number) {
+            return new JsonPrimitive((Number) value);
+        }
+        if (value instanceof Boolean) {
+            return new JsonPrimitive((Boolean) value);
+        }
+        return new JsonPrimitive(String.valueOf(value));
+    }
+
+    /**
+     * The values recorded for a metric.
+     *
+     * @param name the name of the metric.
+     * @return the values, empty when none were recorded.
+     */
+    public List<Double> getValues(String name) {
+        lock.lock();
+        try {
+            return Collections.unmodifiableList(new ArrayList<>(values.getOrDefault(name, List.of())));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isColdStart() {
+        return coldStart;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+}
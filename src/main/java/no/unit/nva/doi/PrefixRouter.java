@@ -0,0 +1,116 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes a DOI to the registration agency of its registrant prefix ("10.xxxx"). The router is seeded from a local
+ * prefix table and learns the agency of further prefixes from the answers observed by the resolver. It counts how
+ * often its guess was right.
+ */
+public class PrefixRouter {
+
+    public static final String PREFIX_TABLE_RESOURCE = "registration-agency-prefixes.properties";
+    public static final String MISSING_PREFIX_TABLE = "Could not read prefix table: ";
+
+    private final Map<String, RegistrationAgency> agencies = new ConcurrentHashMap<>();
+    private final int maxPrefixes;
+
+    private final AtomicLong guesses = new AtomicLong();
+    private final AtomicLong correctGuesses = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param seed        the initial prefix table.
+     * @param maxPrefixes upper limit for the number of known prefixes. Learned prefixes beyond the limit are ignored.
+     */
+    public PrefixRouter(Map<String, RegistrationAgency> seed, int maxPrefixes) {
+        this.maxPrefixes = maxPrefixes;
+        this.agencies.putAll(seed);
+    }
+
+    /**
+     * Create a router seeded from the prefix table on the classpath.
+     *
+     * @param config the configuration.
+     * @return a new PrefixRouter.
+     */
+    public static PrefixRouter fromConfig(Config config) {
+        return new PrefixRouter(readPrefixTable(PREFIX_TABLE_RESOURCE), config.getPrefixRouterMaxPrefixes());
+    }
+
+    protected static Map<String, RegistrationAgency> readPrefixTable(String resource) {
+        try (InputStream stream = PrefixRouter.class.getClassLoader().getResourceAsStream(resource)) {
+            if (stream == null) {
+                throw new IllegalStateException(MISSING_PREFIX_TABLE + resource);
+            }
+            Properties properties = new Properties();
+            properties.load(stream);
+            Map<String, RegistrationAgency> table = new ConcurrentHashMap<>();
+            properties.stringPropertyNames().forEach(prefix -> table.put(
+                prefix, RegistrationAgency.valueOf(properties.getProperty(prefix).trim().toUpperCase(Locale.ROOT))));
+            return table;
+        } catch (IOException e) {
+            throw new UncheckedIOException(MISSING_PREFIX_TABLE + resource, e);
+        }
+    }
+
+    /**
+     * Guess the registration agency of a DOI from its prefix.
+     *
+     * @param key the key of the lookup.
+     * @return the agency known for the prefix, or an empty Optional.
+     */
+    public Optional<RegistrationAgency> route(CacheKey key) {
+        return Optional.ofNullable(agencies.get(key.getPrefix()));
+    }
+
+    /**
+     * Record which agency actually answered, scoring the guess that was made and learning the prefix.
+     *
+     * @param key    the key of the lookup.
+     * @param guess  the guess returned by {@link #route(CacheKey)} for the lookup.
+     * @param actual the agency that had the metadata.
+     */
+    public void recordOutcome(CacheKey key, Optional<RegistrationAgency> guess, RegistrationAgency actual) {
+        guess.ifPresent(agency -> {
+            guesses.incrementAndGet();
+            if (agency == actual) {
+                correctGuesses.incrementAndGet();
+            }
+        });
+        if (agencies.containsKey(key.getPrefix()) || agencies.size() < maxPrefixes) {
+            agencies.put(key.getPrefix(), actual);
+        }
+    }
+
+    public int getKnownPrefixes() {
+        return agencies.size();
+    }
+
+    public long getGuesses() {
+        return guesses.get();
+    }
+
+    public long getCorrectGuesses() {
+        return correctGuesses.get();
+    }
+
+    /**
+     * Share of the guesses that named the agency that actually answered.
+     *
+     * @return the accuracy between 0 and 1, or 0 when no guesses have been made.
+     */
+    public double getAccuracy() {
+        long total = guesses.get();
+        return total == 0 ? 0 : (double) correctGuesses.get() / total;
+    }
+}
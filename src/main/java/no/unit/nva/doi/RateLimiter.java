@@ -0,0 +1,271 @@
+package no.unit.nva.doi;
+
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Token bucket limiting the requests sent to an upstream, shared by all lookups in the container. The bucket holds
+ * as many tokens as the upstream allows per interval and refills at the allowed rate. A request finding the bucket
+ * empty waits for its token, unless the wait would be longer than the maximum wait or the remaining time of the
+ * invocation, in which case it is shed with an {@link UpstreamUnavailableException}. The limit and interval are
+ * taken from the X-Rate-Limit-Limit and X-Rate-Limit-Interval headers of the responses, so the bucket follows the
+ * limits the upstream announces. Every request records the RateLimitShed metric of the upstream, 1 when it is shed
+ * and 0 otherwise, and a request that has to wait records how long in RateLimitWait.
+ *
+ * <p>The bucket is kept in its GCRA form: a single timestamp telling when it would be full again, which makes taking
+ * a token and computing the wait for it one comparison.
+ */
+public class RateLimiter {
+
+    public static final String RATE_LIMIT_LIMIT = "X-Rate-Limit-Limit";
+    public static final String RATE_LIMIT_INTERVAL = "X-Rate-Limit-Interval";
+    public static final String RATE_LIMITED = "%s rate limit would delay the request by %d ms";
+    private static final String MILLISECONDS_SUFFIX = "ms";
+    private static final String SECONDS_SUFFIX = "s";
+    private static final String MINUTES_SUFFIX = "m";
+
+    private final String name;
+    private final Duration maxWait;
+    private final transient Supplier<Duration> remainingTime;
+    private final transient LongSupplier nanoTime;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private int limit;
+    private Duration interval;
+    private long nanosPerToken;
+    private long theoreticalArrivalNanos;
+
+    private final AtomicLong delayed = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+
+    /**
+     * Constructor using the remaining time of the current invocation as budget.
+     *
+     * @param name     the name of the upstream, used in messages.
+     * @param limit    the number of requests allowed per interval until the upstream announces its own limit.
+     * @param interval the interval.
+     * @param maxWait  the longest a request waits for its token.
+     */
+    public RateLimiter(String name, int limit, Duration interval, Duration maxWait) {
+        this(name, limit, interval, maxWait, InvocationDeadline::remaining, System::nanoTime);
+    }
+
+    /**
+     * Constructor that allows the budget and the time source to be injected.
+     *
+     * @param name          the name of the upstream, used in messages.
+     * @param limit         the number of requests allowed per interval until the upstream announces its own limit.
+     * @param interval      the interval.
+     * @param maxWait       the longest a request waits for its token.
+     * @param remainingTime the time left of the current invocation.
+     * @param nanoTime      the time source, in nanoseconds.
+     */
+    public RateLimiter(String name, int limit, Duration interval, Duration maxWait, Supplier<Duration> remainingTime,
+                       LongSupplier nanoTime) {
+        this.name = name;
+        this.maxWait = maxWait;
+        this.remainingTime = remainingTime;
+        this.nanoTime = nanoTime;
+        this.theoreticalArrivalNanos = nanoTime.getAsLong();
+        setLimit(limit, interval);
+    }
+
+    /**
+     * Create a limiter for CrossRef with the configured initial limit and maximum wait.
+     *
+     * @param name   the name of the upstream.
+     * @param config the configuration.
+     * @return a new RateLimiter.
+     */
+    public static RateLimiter fromConfig(String name, Config config) {
+        return new RateLimiter(name, config.getCrossRefRateLimit(), Duration.ofSeconds(1),
+                               Duration.ofMillis(config.getCrossRefRateLimitMaxWaitMillis()));
+    }
+
+    /**
+     * Start a call when a token is available. The call is started at once when the bucket has a token, later when
+     * it has to wait, and not at all when the wait is too long. Cancelling the returned future before the call has
+     * started means it is never started.
+     *
+     * @param call starts the call.
+     * @param <T>  the result type.
+     * @return the future of the call, or a future failed with an UpstreamUnavailableException when it was shed.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call) {
+        Duration wait;
+        try {
+            wait = reserve();
+        } catch (UpstreamUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        if (wait.isZero()) {
+            return call.get();
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        CompletableFuture.delayedExecutor(wait.toNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<T> started = call.get();
+            result.whenComplete((value, error) -> started.cancel(true));
+            started.whenComplete((value, error) -> {
+                if (error == null) {
+                    result.complete(value);
+                } else {
+                    result.completeExceptionally(error);
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * Take a token.
+     *
+     * @return how long the caller has to wait before using the token.
+     * @throws UpstreamUnavailableException when the wait would be too long. No token is taken then.
+     */
+    public Duration reserve() throws UpstreamUnavailableException {
+        lock.lock();
+        try {
+            long now = nanoTime.getAsLong();
+            long burstTolerance = nanosPerToken * (limit - 1);
+            long wait = Math.max(0, theoreticalArrivalNanos - burstTolerance - now);
+            Duration waitDuration = Duration.ofNanos(wait);
+            Metrics metrics = Metrics.current();
+            if (waitDuration.compareTo(maxWait) > 0 || waitDuration.compareTo(remainingTime.get()) > 0) {
+                shed.incrementAndGet();
+                metrics.putMetric(name + Metrics.RATE_LIMIT_SHED, 1, Metrics.Unit.COUNT);
+                throw new UpstreamUnavailableException(String.format(RATE_LIMITED, name, waitDuration.toMillis()));
+            }
+            theoreticalArrivalNanos = Math.max(theoreticalArrivalNanos, now) + nanosPerToken;
+            metrics.putMetric(name + Metrics.RATE_LIMIT_SHED, 0, Metrics.Unit.COUNT);
+            if (wait > 0) {
+                delayed.incrementAndGet();
+                waitNanos.addAndGet(wait);
+                metrics.putMetric(name + Metrics.RATE_LIMIT_WAIT, waitDuration.toMillis(), Metrics.Unit.MILLISECONDS);
+            }
+            return waitDuration;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Follow the limit an upstream announces in its response headers. Headers that are missing or cannot be read
+     * leave the limit as it is.
+     *
+     * @param headers the response headers.
+     */
+    public void updateFrom(HttpHeaders headers) {
+        Optional<Integer> announcedLimit = headers.firstValue(RATE_LIMIT_LIMIT)
+                                                  .map(String::trim)
+                                                  .filter(value -> value.matches("\\d+"))
+                                                  .map(Integer::parseInt)
+                                                  .filter(value -> value > 0);
+        Optional<Duration> announcedInterval = headers.firstValue(RATE_LIMIT_INTERVAL)
+                                                      .flatMap(RateLimiter::parseInterval);
+        if (announcedLimit.isEmpty() || announcedInterval.isEmpty()) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (announcedLimit.get() != limit || !announcedInterval.get().equals(interval)) {
+                setLimit(announcedLimit.get(), announcedInterval.get());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Read an interval given as a number with the unit ms, s or m, where s is assumed when the unit is missing.
+     *
+     * @param value the header value.
+     * @return the interval, or an empty Optional when the value cannot be read.
+     */
+    protected static Optional<Duration> parseInterval(String value) {
+        String interval = value.trim().toLowerCase(Locale.ROOT);
+        String number = interval.replaceAll("[a-z]+$", "");
+        if (!number.matches("\\d+") || Long.parseLong(number) == 0) {
+            return Optional.empty();
+        }
+        long amount = Long.parseLong(number);
+        switch (interval.substring(number.length())) {
+            case MILLISECONDS_SUFFIX:
+                return Optional.of(Duration.ofMillis(amount));
+            case "":
+            case SECONDS_SUFFIX:
+                return Optional.of(Duration.ofSeconds(amount));
+            case MINUTES_SUFFIX:
+                return Optional.of(Duration.ofMinutes(amount));
+            default:
+                return Optional.empty();
+        }
+    }
+
+    private void setLimit(int limit, Duration interval) {
+        this.limit = Math.max(1, limit);
+        this.interval = interval;
+        this.nanosPerToken = Math.max(1, interval.toNanos() / this.limit);
+    }
+
+    /**
+     * The number of requests allowed per interval.
+     *
+     * @return the current limit.
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Duration getInterval() {
+        lock.lock();
+        try {
+            return interval;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of requests that had to wait for their token.
+     *
+     * @return the number of delayed requests.
+     */
+    public long getDelayed() {
+        return delayed.get();
+    }
+
+    /**
+     * Number of requests that were refused because their wait would have been too long.
+     *
+     * @return the number of shed requests.
+     */
+    public long getShed() {
+        return shed.get();
+    }
+
+    /**
+     * The time requests have spent waiting for their tokens altogether.
+     *
+     * @return the total wait.
+     */
+    public Duration getTotalWait() {
+        return Duration.ofNanos(waitNanos.get());
+    }
+}
@@ -0,0 +1,9 @@
+package no.unit.nva.doi;
+
+/**
+ * The registration agencies the service can fetch metadata from.
+ */
+public enum RegistrationAgency {
+    CROSSREF,
+    DATACITE
+}
@@ -0,0 +1,140 @@
+package no.unit.nva.doi;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Remembers which registration agency answered for a DOI, so that repeated lookups of DataCite DOIs do not first pay
+ * for a CrossRef request that ends in 404. The number of remembered DOIs is bounded and entries expire after a
+ * time-to-live. Knowledge about whole registrant prefixes is kept by {@link PrefixRouter}.
+ */
+public class RegistrationAgencyCache {
+
+    private static final boolean ACCESS_ORDER = true;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final Duration timeToLive;
+    private final Clock clock;
+    private final Map<String, AgencyEntry> entries;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public RegistrationAgencyCache(int maxEntries, Duration timeToLive) {
+        this(maxEntries, timeToLive, Clock.systemUTC());
+    }
+
+    /**
+     * Constructor that allows the clock to be injected.
+     *
+     * @param maxEntries upper limit for the number of remembered DOIs.
+     * @param timeToLive how long an observation is trusted.
+     * @param clock      the clock used for expiry.
+     */
+    public RegistrationAgencyCache(int maxEntries, Duration timeToLive, Clock clock) {
+        this.timeToLive = timeToLive;
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(INITIAL_CAPACITY, LOAD_FACTOR, ACCESS_ORDER) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AgencyEntry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Create a cache sized according to the configuration.
+     *
+     * @param config the configuration.
+     * @return a new RegistrationAgencyCache.
+     */
+    public static RegistrationAgencyCache fromConfig(Config config) {
+        return new RegistrationAgencyCache(config.getAgencyCacheMaxEntries(),
+                                           Duration.ofSeconds(config.getAgencyCacheTtlSeconds()));
+    }
+
+    /**
+     * Look up the agency that answered for the DOI.
+     *
+     * @param key the key of the lookup.
+     * @return the remembered agency, or an empty Optional.
+     */
+    public Optional<RegistrationAgency> lookup(CacheKey key) {
+        lock.lock();
+        try {
+            Optional<RegistrationAgency> agency = find(key.getDoi());
+            (agency.isPresent() ? hits : misses).incrementAndGet();
+            return agency;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Remember that the agency answered for the DOI.
+     *
+     * @param key    the key of the lookup.
+     * @param agency the agency that had the metadata.
+     */
+    public void record(CacheKey key, RegistrationAgency agency) {
+        lock.lock();
+        try {
+            entries.put(key.getDoi(), new AgencyEntry(agency, clock.instant().plus(timeToLive)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Optional<RegistrationAgency> find(String key) {
+        AgencyEntry entry = entries.get(key);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (!clock.instant().isBefore(entry.expiresAt)) {
+            entries.remove(key);
+            return Optional.empty();
+        }
+        return Optional.of(entry.agency);
+    }
+
+    /**
+     * Number of remembered DOIs.
+     *
+     * @return the number of entries.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class AgencyEntry {
+
+        private final RegistrationAgency agency;
+        private final Instant expiresAt;
+
+        AgencyEntry(RegistrationAgency agency, Instant expiresAt) {
+            this.agency = agency;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
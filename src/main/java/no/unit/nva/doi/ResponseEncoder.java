@@ -0,0 +1,211 @@
+package no.unit.nva.doi;
+
+import static javax.ws.rs.core.Response.Status.OK;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import javax.ws.rs.core.HttpHeaders;
+
+/**
+ * Adds cache validators, cache lifetime and content encoding to successful responses. The ETag is a strong validator
+ * computed from a SHA-256 hash of the body, a request with a matching If-None-Match header is answered with 304 Not
+ * Modified and no body, and bodies are gzip-compressed and base64-encoded for API Gateway when the client accepts it.
+ */
+public class ResponseEncoder {
+
+    public static final String GZIP = "gzip";
+    public static final String ETAG = "ETag";
+    public static final String IF_NONE_MATCH = "If-None-Match";
+    public static final String ACCEPT_ENCODING = "Accept-Encoding";
+    public static final String CONTENT_ENCODING = "Content-Encoding";
+    public static final String VARY = "Vary";
+    public static final String CACHE_CONTROL_FORMAT = "public, max-age=%d";
+    public static final String GZIP_ETAG_SUFFIX = "-gzip";
+    public static final int NOT_MODIFIED = 304;
+    private static final String ANY = "*";
+    private static final String WEAK_PREFIX = "W/";
+    private static final String QUALITY_PARAMETER = "q=";
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    private final long compressionMinBytes;
+    private final long maxAgeSeconds;
+
+    /**
+     * Constructor.
+     *
+     * @param compressionMinBytes the smallest body that is compressed, or a negative number to never compress.
+     * @param maxAgeSeconds       how long clients and CDNs may reuse a successful response.
+     */
+    public ResponseEncoder(long compressionMinBytes, long maxAgeSeconds) {
+        this.compressionMinBytes = compressionMinBytes;
+        this.maxAgeSeconds = maxAgeSeconds;
+    }
+
+    /**
+     * Create an encoder that lets responses be reused for as long as the metadata cache keeps them.
+     *
+     * @param config the configuration.
+     * @return a new ResponseEncoder.
+     */
+    public static ResponseEncoder fromConfig(Config config) {
+        return new ResponseEncoder(config.getResponseCompressionMinBytes(), config.getCacheTtlSeconds());
+    }
+
+    /**
+     * Encode a response for the request it answers. Responses other than 200 OK are returned as they are.
+     *
+     * @param response       the response.
+     * @param requestHeaders the headers of the request, or null.
+     * @param cacheable      whether clients and CDNs may reuse the response without revalidating it.
+     * @return the encoded response.
+     */
+    public GatewayResponse encode(GatewayResponse response, Map<String, String> requestHeaders, boolean cacheable) {
+        if (response.getStatusCode() != OK.getStatusCode() || response.getBody() == null) {
+            return response;
+        }
+        byte[] body = response.getBody().getBytes(StandardCharsets.UTF_8);
+        boolean compress = acceptsGzip(requestHeaders) && body.length >= compressionMinBytes;
+        String hash = hash(body);
+        String etag = '"' + (compress ? hash + GZIP_ETAG_SUFFIX : hash) + '"';
+
+        Map<String, String> headers = new HashMap<>(response.getHeaders());
+        headers.remove(HttpHeaders.CONTENT_TYPE);
+        headers.put(ETAG, etag);
+        headers.put(VARY, ACCEPT_ENCODING);
+        if (cacheable) {
+            headers.putAll(cacheHeaders());
+        }
+        String contentType = response.getHeaders().get(HttpHeaders.CONTENT_TYPE);
+        if (header(requestHeaders, IF_NONE_MATCH).map(ifNoneMatch -> matches(ifNoneMatch, etag)).orElse(false)) {
+            return new GatewayResponse(null, NOT_MODIFIED, contentType, headers);
+        }
+        if (!compress) {
+            return new GatewayResponse(response.getBody(), response.getStatusCode(), contentType, headers);
+        }
+        headers.put(CONTENT_ENCODING, GZIP);
+        return new GatewayResponse(Base64.getEncoder().encodeToString(gzip(body)), response.getStatusCode(),
+                                   contentType, headers, true);
+    }
+
+    /**
+     * The headers that let clients and CDNs reuse a successful response.
+     *
+     * @return the Cache-Control header.
+     */
+    public Map<String, String> cacheHeaders() {
+        return Map.of(HttpHeaders.CACHE_CONTROL, String.format(CACHE_CONTROL_FORMAT, maxAgeSeconds));
+    }
+
+    /**
+     * Whether a request accepts gzip-encoded responses and compression is enabled.
+     *
+     * @param requestHeaders the headers of the request, or null.
+     * @return true when the response may be gzip-encoded.
+     */
+    public boolean acceptsGzip(Map<String, String> requestHeaders) {
+        if (compressionMinBytes < 0) {
+            return false;
+        }
+        Optional<String> acceptEncoding = header(requestHeaders, ACCEPT_ENCODING);
+        if (acceptEncoding.isEmpty()) {
+            return false;
+        }
+        boolean any = false;
+        for (String coding : acceptEncoding.get().split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (GZIP.equals(name)) {
+                return accepted;
+            }
+            any = any || ANY.equals(name) && accepted;
+        }
+        return any;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith(QUALITY_PARAMETER)) {
+                try {
+                    return Double.parseDouble(parameter.substring(QUALITY_PARAMETER.length()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Whether an If-None-Match header matches an entity tag, using the weak comparison RFC 7232 prescribes for
+     * If-None-Match.
+     *
+     * @param ifNoneMatch the value of the If-None-Match header.
+     * @param etag        the entity tag of the current representation.
+     * @return true when the client already has the representation.
+     */
+    public static boolean matches(String ifNoneMatch, String etag) {
+        String opaqueTag = stripWeakPrefix(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (ANY.equals(tag) || stripWeakPrefix(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String stripWeakPrefix(String tag) {
+        return tag.startsWith(WEAK_PREFIX) ? tag.substring(WEAK_PREFIX.length()) : tag;
+    }
+
+    /**
+     * Look up a request header by name, ignoring case, since API Gateway passes header names on as the client sent
+     * them.
+     *
+     * @param requestHeaders the headers of the request, or null.
+     * @param name           the header name.
+     * @return the header value, or empty when the header is missing.
+     */
+    public static Optional<String> header(Map<String, String> requestHeaders, String name) {
+        if (requestHeaders == null) {
+            return Optional.empty();
+        }
+        return requestHeaders.entrySet().stream()
+                             .filter(entry -> name.equalsIgnoreCase(entry.getKey()))
+                             .map(Map.Entry::getValue)
+                             .filter(Objects::nonNull)
+                             .findFirst();
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return compressed.toByteArray();
+    }
+}
@@ -0,0 +1,410 @@
+package no.unit.nva.doi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpStatus;
+
+/**
+ * Decides whether a failed upstream request is sent again and how long to wait before it is. Rate limiting (429) and
+ * the gateway errors 502, 503 and 504 are retried, as are transport failures and timeouts, since they say nothing
+ * about the DOI. Other errors are terminal. The wait grows exponentially with full jitter, is at least as long as a
+ * Retry-After header asks for, and a retry is only made when the remaining time of the invocation leaves room for
+ * another attempt. Every attempt is given up before the response margin of the invocation, so that a slow upstream
+ * is answered with an error rather than with the invocation being stopped.
+ */
+public class RetryPolicy {
+
+    /**
+     * The time an attempt needs at least to be worth making.
+     */
+    public static final Duration MIN_ATTEMPT_TIME = Duration.ofSeconds(1);
+    public static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final Set<Integer> RETRYABLE_STATUS_CODES = Set.of(SC_TOO_MANY_REQUESTS,
+                                                                      HttpStatus.SC_BAD_GATEWAY,
+                                                                      HttpStatus.SC_SERVICE_UNAVAILABLE,
+                                                                      HttpStatus.SC_GATEWAY_TIMEOUT);
+    private static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+
+    /**
+     * What became of an upstream request or of one of its failed attempts.
+     */
+    public enum Outcome {
+        /**
+         * The upstream answered, possibly with an error that is about the request, such as 404.
+         */
+        ANSWERED,
+        /**
+         * A failed attempt was followed by another one.
+         */
+        RETRIED,
+        /**
+         * The request failed in a way that another attempt would not fix.
+         */
+        TERMINAL,
+        /**
+         * The request failed with a retryable error on its last attempt.
+         */
+        ATTEMPTS_EXHAUSTED,
+        /**
+         * The request failed with a retryable error, but the wait would not leave time for another attempt.
+         */
+        BUDGET_EXHAUSTED
+    }
+
+    private final int maxAttempts;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final transient Supplier<Duration> remainingTime;
+    private final transient DoubleSupplier jitter;
+    private final Clock clock;
+    private final Map<Outcome, AtomicLong> outcomes = new EnumMap<>(Outcome.class);
+
+    /**
+     * Constructor using the remaining time of the current invocation as budget.
+     *
+     * @param maxAttempts the default maximum number of attempts of a request.
+     * @param baseDelay   the longest wait before the first retry.
+     * @param maxDelay    the longest wait before any retry.
+     */
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay) {
+        this(maxAttempts, baseDelay, maxDelay, InvocationDeadline::remaining,
+             () -> ThreadLocalRandom.current().nextDouble(), Clock.systemUTC());
+    }
+
+    /**
+     * Constructor that allows the budget, the jitter and the clock to be injected.
+     *
+     * @param maxAttempts   the default maximum number of attempts of a request.
+     * @param baseDelay     the longest wait before the first retry.
+     * @param maxDelay      the longest wait before any retry.
+     * @param remainingTime the time left of the current invocation.
+     * @param jitter        random numbers between 0 inclusive and 1 exclusive.
+     * @param clock         the clock used to read Retry-After dates.
+     */
+    public RetryPolicy(int maxAttempts, Duration baseDelay, Duration maxDelay, Supplier<Duration> remainingTime,
+                       DoubleSupplier jitter, Clock clock) {
+        this.maxAttempts = maxAttempts;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay;
+        this.remainingTime = remainingTime;
+        this.jitter = jitter;
+        this.clock = clock;
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome, new AtomicLong());
+        }
+    }
+
+    /**
+     * Create a policy with the configured number of attempts and delays.
+     *
+     * @param config the configuration.
+     * @return a new RetryPolicy.
+     */
+    public static RetryPolicy fromConfig(Config config) {
+        return new RetryPolicy(config.getRetryMaxAttempts(), Duration.ofMillis(config.getRetryBaseDelayMillis()),
+                               Duration.ofMillis(config.getRetryMaxDelayMillis()));
+    }
+
+    /**
+     * Send a request, and send it again while it fails with a retryable error and the policy allows it. The future
+     * completes with the last response, whatever its status, or exceptionally with the last failure. Cancelling the
+     * future gives up the attempt in flight, which frees its place in the bulkhead, and any retry not yet sent. The
+     * exchange of the attempt in flight is not aborted, as the JDK 11 client goes on with it until it completes. The
+     * call is recorded in the metrics of the invocation under the name of the circuit breaker.
+     *
+     * @param httpClient  the client sending the request.
+     * @param breaker     the circuit breaker of the upstream, which every attempt passes.
+     * @param request     the request.
+     * @param bodyHandler the handler of the response body.
+     * @param maxAttempts the maximum number of attempts.
+     * @param timeout     the time allowed for all attempts together, on top of the budget of the invocation.
+     * @param <T>         the body type.
+     * @return a future completed with the last response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient httpClient, CircuitBreaker breaker,
+                                                            HttpRequest request, BodyHandler<T> bodyHandler,
+                                                            int maxAttempts, Duration timeout) {
+        CompletableFuture<HttpResponse<T>> result = new CompletableFuture<>();
+        long deadline = timeout.compareTo(UNBOUNDED) < 0 ? System.nanoTime() + timeout.toNanos() : Long.MAX_VALUE;
+        Attempt<T> attempt = new Attempt<>(httpClient, breaker, request, bodyHandler, maxAttempts, deadline, result);
+        Metrics metrics = Metrics.current();
+        long started = System.nanoTime();
+        result.whenComplete((response, error) -> metrics.recordUpstreamCall(breaker.getName(), started, response,
+                                                                            error));
+        attempt.send(1);
+        return result;
+    }
+
+    /**
+     * Send a request with the default number of attempts, limited only by the budget of the invocation.
+     *
+     * @param httpClient  the client sending the request.
+     * @param breaker     the circuit breaker of the upstream, which every attempt passes.
+     * @param request     the request.
+     * @param bodyHandler the handler of the response body.
+     * @param <T>         the body type.
+     * @return a future completed with the last response.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpClient httpClient, CircuitBreaker breaker,
+                                                            HttpRequest request, BodyHandler<T> bodyHandler) {
+        return sendAsync(httpClient, breaker, request, bodyHandler, maxAttempts, UNBOUNDED);
+    }
+
+    /**
+     * Blocking variant of {@link #sendAsync(HttpClient, CircuitBreaker, HttpRequest, BodyHandler)}.
+     *
+     * @param httpClient  the client sending the request.
+     * @param breaker     the circuit breaker of the upstream, which every attempt passes.
+     * @param request     the request.
+     * @param bodyHandler the handler of the response body.
+     * @param <T>         the body type.
+     * @return the last response.
+     * @throws IOException when the last attempt failed or the calling thread was interrupted.
+     */
+    public <T> HttpResponse<T> send(HttpClient httpClient, CircuitBreaker breaker, HttpRequest request,
+                                    BodyHandler<T> bodyHandler) throws IOException {
+        CompletableFuture<HttpResponse<T>> response = sendAsync(httpClient, breaker, request, bodyHandler);
+        try {
+            return response.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.cancel(true);
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = unwrap(e.getCause());
+            throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        }
+    }
+
+    /**
+     * The attempts of one request.
+     *
+     * @param <T> the body type.
+     */
+    private class Attempt<T> {
+
+        private final HttpClient httpClient;
+        private final CircuitBreaker breaker;
+        private final HttpRequest request;
+        private final BodyHandler<T> bodyHandler;
+        private final int maxAttempts;
+        private final long deadline;
+        private final CompletableFuture<HttpResponse<T>> result;
+
+        Attempt(HttpClient httpClient, CircuitBreaker breaker, HttpRequest request, BodyHandler<T> bodyHandler,
+                int maxAttempts, long deadline, CompletableFuture<HttpResponse<T>> result) {
+            this.httpClient = httpClient;
+            this.breaker = breaker;
+            this.request = request;
+            this.bodyHandler = bodyHandler;
+            this.maxAttempts = maxAttempts;
+            this.deadline = deadline;
+            this.result = result;
+        }
+
+        void send(int attempt) {
+            if (result.isDone()) {
+                return;
+            }
+            CompletableFuture<HttpResponse<T>> inFlight = breaker.sendAsync(httpClient, request, bodyHandler);
+            Duration remaining = remainingTime.get();
+            if (remaining.compareTo(UNBOUNDED) < 0) {
+                inFlight.orTimeout(InvocationDeadline.within(remaining, remaining).toMillis(), TimeUnit.MILLISECONDS);
+            }
+            result.whenComplete((response, error) -> inFlight.cancel(true));
+            inFlight.whenComplete((response, error) -> onDone(attempt, response, error));
+        }
+
+        private void onDone(int attempt, HttpResponse<T> response, Throwable error) {
+            if (result.isDone()) {
+                return;
+            }
+            if (error == null && !isFailure(response.statusCode())) {
+                record(Outcome.ANSWERED);
+                result.complete(response);
+                return;
+            }
+            Duration untilDeadline = Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+            Optional<Duration> delay = nextDelay(attempt, maxAttempts, min(remainingTime.get(), untilDeadline),
+                                                 response, error);
+            if (delay.isEmpty()) {
+                complete(result, response, error);
+                return;
+            }
+            closeQuietly(response);
+            CompletableFuture.delayedExecutor(delay.get().toMillis(), TimeUnit.MILLISECONDS)
+                             .execute(() -> send(attempt + 1));
+        }
+    }
+
+    private static <T> void complete(CompletableFuture<HttpResponse<T>> result, HttpResponse<T> response,
+                                     Throwable error) {
+        if (error == null) {
+            result.complete(response);
+        } else {
+            result.completeExceptionally(unwrap(error));
+        }
+    }
+
+    /**
+     * Decide whether a failed attempt is followed by another one, and record the outcome.
+     *
+     * @param attempt     the number of the failed attempt, starting at 1.
+     * @param maxAttempts the maximum number of attempts.
+     * @param remaining   the time left for the request.
+     * @param response    the response of the failed attempt, or null when it failed without one.
+     * @param error       the failure of the attempt, or null when it got a response.
+     * @return the time to wait before the next attempt, or an empty Optional when there is none.
+     */
+    public Optional<Duration> nextDelay(int attempt, int maxAttempts, Duration remaining, HttpResponse<?> response,
+                                        Throwable error) {
+        if (!(error == null ? isRetryable(response.statusCode()) : isRetryable(error))) {
+            return giveUp(Outcome.TERMINAL);
+        }
+        if (attempt >= maxAttempts) {
+            return giveUp(Outcome.ATTEMPTS_EXHAUSTED);
+        }
+        Duration backoff = backoff(attempt);
+        Duration delay = Optional.ofNullable(response)
+                                 .flatMap(this::retryAfter)
+                                 .filter(retryAfter -> retryAfter.compareTo(backoff) > 0)
+                                 .orElse(backoff);
+        if (delay.plus(MIN_ATTEMPT_TIME).compareTo(remaining) > 0) {
+            return giveUp(Outcome.BUDGET_EXHAUSTED);
+        }
+        record(Outcome.RETRIED);
+        return Optional.of(delay);
+    }
+
+    private Optional<Duration> giveUp(Outcome outcome) {
+        record(outcome);
+        return Optional.empty();
+    }
+
+    /**
+     * The wait before the retry following an attempt: a random duration up to the base delay doubled for every
+     * earlier attempt, and never more than the maximum delay.
+     *
+     * @param attempt the number of the failed attempt, starting at 1.
+     * @return the wait.
+     */
+    protected Duration backoff(int attempt) {
+        long ceiling = baseDelay.toMillis();
+        for (int i = 1; i < attempt && ceiling < maxDelay.toMillis(); i++) {
+            ceiling *= 2;
+        }
+        return Duration.ofMillis((long) (jitter.getAsDouble() * Math.min(ceiling, maxDelay.toMillis())));
+    }
+
+    /**
+     * The wait a response asks for in its Retry-After header, given either in seconds or as an HTTP date.
+     *
+     * @param response the response.
+     * @return the wait, or an empty Optional when the header is missing or cannot be read.
+     */
+    public Optional<Duration> retryAfter(HttpResponse<?> response) {
+        return response.headers()
+                       .firstValue(HttpHeaders.RETRY_AFTER)
+                       .map(String::trim)
+                       .flatMap(this::parseRetryAfter);
+    }
+
+    private Optional<Duration> parseRetryAfter(String value) {
+        if (value.matches("\\d+")) {
+            return Optional.of(Duration.ofSeconds(Long.parseLong(value)));
+        }
+        try {
+            Duration wait = Duration.between(clock.instant(),
+                                             ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME));
+            return Optional.of(wait.isNegative() ? Duration.ZERO : wait);
+        } catch (DateTimeParseException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether a status code is a failure of the upstream rather than an answer about the request.
+     *
+     * @param statusCode the status code.
+     * @return true for 429 and 5xx.
+     */
+    public static boolean isFailure(int statusCode) {
+        return statusCode == SC_TOO_MANY_REQUESTS || statusCode >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    public static boolean isRetryable(int statusCode) {
+        return RETRYABLE_STATUS_CODES.contains(statusCode);
+    }
+
+    /**
+     * Whether a request that failed without a response is worth sending again.
+     *
+     * @param error the failure.
+     * @return true for transport failures and timeouts, but not for requests an open circuit breaker refused.
+     */
+    public static boolean isRetryable(Throwable error) {
+        Throwable actual = unwrap(error);
+        return actual instanceof IOException && !(actual instanceof UpstreamUnavailableException)
+            || actual instanceof TimeoutException;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    private static void closeQuietly(HttpResponse<?> response) {
+        if (response != null && response.body() instanceof Closeable) {
+            try {
+                ((Closeable) response.body()).close();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+    }
+
+    private void record(Outcome outcome) {
+        outcomes.get(outcome).incrementAndGet();
+    }
+
+    /**
+     * Number of times an outcome was recorded.
+     *
+     * @param outcome the outcome.
+     * @return the count.
+     */
+    public long getCount(Outcome outcome) {
+        return outcomes.get(outcome).get();
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+}
@@ -0,0 +1,52 @@
+package no.unit.nva.doi;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Keep-alive HTTP client shared by the default CrossRef and DataCite clients in the container, so that the container
+ * starts a single selector thread and reuses its connections between invocations.
+ */
+public final class SharedHttpClient {
+
+    public static final int CONNECT_TIMEOUT_SECONDS = 5;
+
+    private static class LazyHolder {
+
+        private static final HttpClient INSTANCE = HttpClient.newBuilder()
+                                                             .version(HttpClient.Version.HTTP_2)
+                                                             .followRedirects(HttpClient.Redirect.NORMAL)
+                                                             .connectTimeout(
+                                                                 Duration.ofSeconds(CONNECT_TIMEOUT_SECONDS))
+                                                             .build();
+    }
+
+    private SharedHttpClient() {
+    }
+
+    public static HttpClient getInstance() {
+        return LazyHolder.INSTANCE;
+    }
+
+    /**
+     * Send a HEAD request to a host so that DNS resolution, the TCP connection and the TLS handshake are done before
+     * the first real request. The answer itself is ignored.
+     *
+     * @param httpClient the client whose connection pool should be warmed.
+     * @param uri        any URI on the host.
+     * @param timeout    the time allowed for the request.
+     * @return a future completed when the host has answered, failed or timed out. It never completes exceptionally.
+     */
+    public static CompletableFuture<Void> warmUp(HttpClient httpClient, URI uri, Duration timeout) {
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                                         .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                                         .timeout(timeout)
+                                         .build();
+        return httpClient.sendAsync(request, BodyHandlers.discarding())
+                         .handle((response, error) -> null);
+    }
+}
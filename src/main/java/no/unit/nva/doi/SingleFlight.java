@@ -0,0 +1,106 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table of calls in flight. Callers asking for a key while a call for the same key is running wait for that call and
+ * share its result or failure instead of making their own. Every call records the Coalesced metric, 1 for a caller
+ * that waited for another call and 0 for one that made its own, so that its average is the share of coalesced calls.
+ *
+ * @param <K> the key type.
+ * @param <V> the result type.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * A lookup that may fail the same ways as a DOI lookup.
+     *
+     * @param <V> the result type.
+     */
+    @FunctionalInterface
+    public interface Call<V> {
+
+        V call() throws IOException, URISyntaxException;
+    }
+
+    /**
+     * Run the call, unless a call for the same key is already running, in which case wait for that one.
+     *
+     * @param key  the key.
+     * @param call the call to run when no call for the key is running.
+     * @return the result of the call.
+     * @throws IOException        when the call failed with an IOException.
+     * @throws URISyntaxException when the call failed with a URISyntaxException.
+     */
+    public V execute(K key, Call<V> call) throws IOException, URISyntaxException {
+        CompletableFuture<V> ours = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, ours);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            Metrics.current().putMetric(Metrics.COALESCED, 1, Metrics.Unit.COUNT);
+            return await(running);
+        }
+        calls.incrementAndGet();
+        Metrics.current().putMetric(Metrics.COALESCED, 0, Metrics.Unit.COUNT);
+        try {
+            V result = call.call();
+            ours.complete(result);
+            return result;
+        } catch (IOException | URISyntaxException | RuntimeException e) {
+            ours.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, ours);
+        }
+    }
+
+    private V await(CompletableFuture<V> running) throws IOException, URISyntaxException {
+        try {
+            return running.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof URISyntaxException) {
+                throw (URISyntaxException) cause;
+            }
+            throw (RuntimeException) cause;
+        }
+    }
+
+    /**
+     * Number of calls that were actually run.
+     *
+     * @return the number of calls.
+     */
+    public long getCalls() {
+        return calls.get();
+    }
+
+    /**
+     * Number of callers that shared the result of a call already running instead of running their own.
+     *
+     * @return the number of coalesced callers.
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,71 @@
+package no.unit.nva.doi;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures the time spent initializing the function in a fresh container, from loading the handler class until the
+ * handler is ready, and reports it once against the configured init-time budget.
+ */
+public class StartupTimer {
+
+    public static final String INIT_REPORT = "Init took %d ms of a %d ms budget";
+    public static final String OVER_BUDGET = " (over budget)";
+
+    private final long startedAt;
+    private volatile long initializedAt;
+    private final AtomicBoolean initialized = new AtomicBoolean();
+    private final AtomicBoolean reported = new AtomicBoolean();
+
+    public StartupTimer() {
+        this.startedAt = System.nanoTime();
+    }
+
+    /**
+     * Mark the end of initialization. Only the first call has any effect.
+     */
+    public void markInitialized() {
+        if (initialized.compareAndSet(false, true)) {
+            initializedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * The time spent initializing.
+     *
+     * @return the duration, or empty when initialization has not been marked as finished.
+     */
+    public Optional<Duration> getInitDuration() {
+        return initialized.get()
+            ? Optional.of(Duration.ofNanos(initializedAt - startedAt))
+            : Optional.empty();
+    }
+
+    /**
+     * The part of the init-time budget that is left.
+     *
+     * @param budget the time initialization is allowed to take.
+     * @return the budget minus the time spent since loading the handler class, or zero when it is used up.
+     */
+    public Duration remaining(Duration budget) {
+        Duration left = budget.minus(Duration.ofNanos(System.nanoTime() - startedAt));
+        return left.isNegative() ? Duration.ZERO : left;
+    }
+
+    /**
+     * Describe the init time compared to the budget, the first time it is asked for after initialization.
+     *
+     * @param budget the time initialization is allowed to take.
+     * @return the report on the first call after initialization, and empty otherwise.
+     */
+    public Optional<String> reportOnce(Duration budget) {
+        Optional<Duration> initDuration = getInitDuration();
+        if (initDuration.isEmpty() || !reported.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+        Duration duration = initDuration.get();
+        String report = String.format(INIT_REPORT, duration.toMillis(), budget.toMillis());
+        return Optional.of(duration.compareTo(budget) > 0 ? report + OVER_BUDGET : report);
+    }
+}
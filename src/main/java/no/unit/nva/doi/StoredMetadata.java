@@ -0,0 +1,53 @@
+package no.unit.nva.doi;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Metadata found in a {@link MetadataStore}, together with whether it is still within its time-to-live and, when the
+ * store keeps it, when it was fetched. Metadata that is no longer fresh may be served while it is revalidated with the
+ * upstream.
+ */
+public class StoredMetadata {
+
+    private final MetadataAndContentLocation metadata;
+    private final boolean fresh;
+    private final Instant fetchedAt;
+
+    public StoredMetadata(MetadataAndContentLocation metadata, boolean fresh) {
+        this(metadata, fresh, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param metadata  the metadata.
+     * @param fresh     whether the metadata is within its time-to-live.
+     * @param fetchedAt when the metadata was fetched from the upstream, or null when the store does not know.
+     */
+    public StoredMetadata(MetadataAndContentLocation metadata, boolean fresh, Instant fetchedAt) {
+        this.metadata = metadata;
+        this.fresh = fresh;
+        this.fetchedAt = fetchedAt;
+    }
+
+    public static StoredMetadata fresh(MetadataAndContentLocation metadata) {
+        return new StoredMetadata(metadata, true);
+    }
+
+    public static StoredMetadata stale(MetadataAndContentLocation metadata) {
+        return new StoredMetadata(metadata, false);
+    }
+
+    public MetadataAndContentLocation getMetadata() {
+        return metadata;
+    }
+
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    public Optional<Instant> getFetchedAt() {
+        return Optional.ofNullable(fetchedAt);
+    }
+}
@@ -0,0 +1,94 @@
+package no.unit.nva.doi;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Body filter copying a JSON document token by token and leaving out the object fields that a subclass does not
+ * keep. Fields that are left out are skipped by the reader without being built into a tree. The document is read to
+ * its end, so that a reader watching the input sees all of it, and anything but whitespace after it is rejected.
+ */
+public abstract class StreamingJsonFilter implements BodyFilter {
+
+    public static final String UNEXPECTED_TOKEN = "Unexpected JSON token ";
+
+    @Override
+    public void copy(Reader in, Writer out) throws IOException {
+        JsonReader reader = new JsonReader(in);
+        JsonWriter writer = new JsonWriter(out);
+        writer.setSerializeNulls(true);
+        copyValue(reader, writer, new ArrayDeque<>());
+        JsonToken end = reader.peek();
+        if (end != JsonToken.END_DOCUMENT) {
+            throw new IOException(UNEXPECTED_TOKEN + end);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Decide whether a field is copied.
+     *
+     * @param path the names of the fields enclosing the object the field belongs to, outermost first. Array
+     *             elements have the path of the array.
+     * @param name the name of the field.
+     * @return true when the field should be copied.
+     */
+    protected abstract boolean keep(Deque<String> path, String name);
+
+    private void copyValue(JsonReader reader, JsonWriter writer, Deque<String> path) throws IOException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT:
+                copyObject(reader, writer, path);
+                break;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                writer.beginArray();
+                while (reader.hasNext()) {
+                    copyValue(reader, writer, path);
+                }
+                reader.endArray();
+                writer.endArray();
+                break;
+            case STRING:
+                writer.value(reader.nextString());
+                break;
+            case NUMBER:
+                writer.jsonValue(reader.nextString());
+                break;
+            case BOOLEAN:
+                writer.value(reader.nextBoolean());
+                break;
+            case NULL:
+                reader.nextNull();
+                writer.nullValue();
+                break;
+            default:
+                throw new IOException(UNEXPECTED_TOKEN + token);
+        }
+    }
+
+    private void copyObject(JsonReader reader, JsonWriter writer, Deque<String> path) throws IOException {
+        reader.beginObject();
+        writer.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (keep(path, name)) {
+                writer.name(name);
+                path.addLast(name);
+                copyValue(reader, writer, path);
+                path.removeLast();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        writer.endObject();
+    }
+}
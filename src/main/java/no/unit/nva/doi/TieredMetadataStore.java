@@ -0,0 +1,91 @@
+package no.unit.nva.doi;
+
+import java.util.Optional;
+
+/**
+ * Read-through metadata store with two tiers. The first tier is the in-memory cache of the container, the second a
+ * slower store that outlives it or is shared with other containers. Entries found only in the second tier are copied
+ * to the first with the time they were fetched, so that the first tier judges their freshness from the original
+ * fetch, and new entries are written to both.
+ */
+public class TieredMetadataStore implements MetadataStore {
+
+    private final transient MetadataStore firstTier;
+    private final transient MetadataStore secondTier;
+
+    public TieredMetadataStore(MetadataStore firstTier, MetadataStore secondTier) {
+        this.firstTier = firstTier;
+        this.secondTier = secondTier;
+    }
+
+    /**
+     * Create the metadata store described by the configuration: the in-memory cache, backed by a file store when a
+     * store directory is configured.
+     *
+     * @param config the configuration.
+     * @return a new MetadataStore.
+     */
+    public static MetadataStore fromConfig(Config config) {
+        MetadataCache cache = MetadataCache.fromConfig(config);
+        String directory = config.getMetadataStoreDirectory();
+        if (directory == null || directory.isBlank()) {
+            return cache;
+        }
+        return new TieredMetadataStore(cache, FileMetadataStore.fromConfig(config));
+    }
+
+    @Override
+    public Optional<MetadataAndContentLocation> get(CacheKey key) {
+        Optional<MetadataAndContentLocation> cached = firstTier.get(key);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<StoredMetadata> stored = secondTier.lookup(key);
+        stored.ifPresent(value -> copyToFirstTier(key, value));
+        return stored.map(StoredMetadata::getMetadata);
+    }
+
+    /**
+     * Get fresh metadata from the first tier, or else copy the metadata of the second tier to the first and judge it
+     * there, from the time it was fetched. A copy that is as old as the entry it replaces is as stale, so that it is
+     * revalidated rather than served for the time-to-live of the second tier.
+     *
+     * @param key the key.
+     * @return the metadata and whether it is fresh, or an empty Optional when nothing usable is stored.
+     */
+    @Override
+    public Optional<StoredMetadata> lookup(CacheKey key) {
+        Optional<StoredMetadata> cached = firstTier.lookup(key);
+        if (cached.isPresent() && cached.get().isFresh()) {
+            return cached;
+        }
+        Optional<StoredMetadata> stored = secondTier.lookup(key);
+        if (stored.isEmpty()) {
+            return cached;
+        }
+        copyToFirstTier(key, stored.get());
+        return firstTier.lookup(key).or(() -> cached);
+    }
+
+    private void copyToFirstTier(CacheKey key, StoredMetadata stored) {
+        if (stored.getFetchedAt().isPresent()) {
+            firstTier.put(key, stored.getMetadata(), stored.getFetchedAt().get());
+        } else {
+            firstTier.put(key, stored.getMetadata());
+        }
+    }
+
+    @Override
+    public void put(CacheKey key, MetadataAndContentLocation value) {
+        firstTier.put(key, value);
+        secondTier.put(key, value);
+    }
+
+    public MetadataStore getFirstTier() {
+        return firstTier;
+    }
+
+    public MetadataStore getSecondTier() {
+        return secondTier;
+    }
+}
@@ -0,0 +1,15 @@
+package no.unit.nva.doi;
+
+import java.io.IOException;
+
+/**
+ * Thrown without contacting an upstream when its circuit breaker is open, its bulkhead is full or its rate limit would
+ * hold the request back for too long. It is an IOException, so callers fall back to the other agency or fail the same
+ * way as when the upstream cannot be reached, only without waiting for it.
+ */
+public class UpstreamUnavailableException extends IOException {
+
+    public UpstreamUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,88 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+
+import com.google.gson.JsonObject;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Work done once per container during the Lambda init phase, where the CPU is not throttled and the time is not
+ * billed to the first request. Loads and initializes the classes on the lookup path and, when enabled, opens the
+ * connections to CrossRef and DataCite so that DNS and the TLS handshake are out of the way.
+ */
+public class Warmup {
+
+    public static final String SAMPLE_DOI = "https://doi.org/10.1000/182";
+    public static final String WARMUP_FAILED = "Connection warm-up did not finish:";
+
+    private final transient CrossRefClient crossRefClient;
+    private final transient DataciteClient dataciteClient;
+    private final boolean connectionsEnabled;
+    private final Duration timeout;
+
+    /**
+     * Constructor.
+     *
+     * @param crossRefClient     the CrossRef client whose connection should be opened.
+     * @param dataciteClient     the DataCite client whose connection should be opened.
+     * @param connectionsEnabled whether connections should be opened at all.
+     * @param timeout            the longest time to wait for the connections.
+     */
+    public Warmup(CrossRefClient crossRefClient, DataciteClient dataciteClient, boolean connectionsEnabled,
+                  Duration timeout) {
+        this.crossRefClient = crossRefClient;
+        this.dataciteClient = dataciteClient;
+        this.connectionsEnabled = connectionsEnabled;
+        this.timeout = timeout;
+    }
+
+    public static Warmup fromConfig(CrossRefClient crossRefClient, DataciteClient dataciteClient, Config config) {
+        return new Warmup(crossRefClient, dataciteClient, config.isConnectionWarmupEnabled(),
+                          Duration.ofMillis(config.getWarmupTimeoutMillis()));
+    }
+
+    /**
+     * Run the warm-up. Failures are logged and otherwise ignored, the first request will simply pay for them.
+     *
+     * @return whether the connections were opened.
+     */
+    public boolean run() {
+        loadClasses();
+        return connectionsEnabled && openConnections();
+    }
+
+    private void loadClasses() {
+        DoiLookup doiLookup = FetchDoiMetadata.GSON.fromJson(FetchDoiMetadata.GSON.toJson(sampleLookup()),
+                                                             DoiLookup.class);
+        FetchDoiMetadata.isValidDoi(doiLookup.getDoi());
+        CacheKey.of(doiLookup.getDoi(), DataciteContentType.lookup(CITEPROC_JSON.getContentType()));
+        JsonObject json = BatchLookup.asJsonElement(FetchDoiMetadata.GSON.toJson(doiLookup)).getAsJsonObject();
+        new GatewayResponse(json.toString(), 0, MediaType.APPLICATION_JSON);
+    }
+
+    private static DoiLookup sampleLookup() {
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDoi(SAMPLE_DOI);
+        return doiLookup;
+    }
+
+    private boolean openConnections() {
+        try {
+            CompletableFuture.allOf(crossRefClient.warmUp(timeout), dataciteClient.warmUp(timeout))
+                             .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println(WARMUP_FAILED + e.getMessage());
+            return false;
+        } catch (ExecutionException | TimeoutException e) {
+            System.out.println(WARMUP_FAILED + e.getMessage());
+            return false;
+        }
+    }
+}
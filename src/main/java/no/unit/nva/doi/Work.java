@@ -0,0 +1,214 @@
+package no.unit.nva.doi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bibliographic fields of a work that the CSL and DataCite representations are made of. It is read from CrossRef
+ * works JSON or DataCite JSON by {@link WorkTransformer}, and everything else the agencies deliver, like the reference
+ * list, is skipped.
+ */
+public class Work {
+
+    private String doi;
+    private String url;
+    private String type;
+    private String cslType;
+    private String resourceTypeGeneral;
+    private String agency;
+    private final List<String> titles = new ArrayList<>();
+    private final List<String> subtitles = new ArrayList<>();
+    private final List<String> containerTitles = new ArrayList<>();
+    private final List<Contributor> authors = new ArrayList<>();
+    private final List<Contributor> editors = new ArrayList<>();
+    private final List<Integer> issued = new ArrayList<>();
+    private String publisher;
+    private String volume;
+    private String issue;
+    private String page;
+    private String language;
+    private final List<String> issns = new ArrayList<>();
+    private final List<String> isbns = new ArrayList<>();
+
+    /**
+     * A person or organization that authored or edited a work. Organizations only have a name.
+     */
+    public static class Contributor {
+
+        private String given;
+        private String family;
+        private String name;
+        private String orcid;
+
+        public String getGiven() {
+            return given;
+        }
+
+        public void setGiven(String given) {
+            this.given = given;
+        }
+
+        public String getFamily() {
+            return family;
+        }
+
+        public void setFamily(String family) {
+            this.family = family;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getOrcid() {
+            return orcid;
+        }
+
+        public void setOrcid(String orcid) {
+            this.orcid = orcid;
+        }
+
+        public boolean isPerson() {
+            return family != null;
+        }
+    }
+
+    public String getDoi() {
+        return doi;
+    }
+
+    public void setDoi(String doi) {
+        this.doi = doi;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    /**
+     * The CSL type, when the source names it. Otherwise it follows from the type.
+     *
+     * @return the CSL type, or null.
+     */
+    public String getCslType() {
+        return cslType;
+    }
+
+    public void setCslType(String cslType) {
+        this.cslType = cslType;
+    }
+
+    /**
+     * The DataCite resource type, when the source names it. Otherwise it follows from the type.
+     *
+     * @return the DataCite resource type, or null.
+     */
+    public String getResourceTypeGeneral() {
+        return resourceTypeGeneral;
+    }
+
+    public void setResourceTypeGeneral(String resourceTypeGeneral) {
+        this.resourceTypeGeneral = resourceTypeGeneral;
+    }
+
+    public String getAgency() {
+        return agency;
+    }
+
+    public void setAgency(String agency) {
+        this.agency = agency;
+    }
+
+    public List<String> getTitles() {
+        return titles;
+    }
+
+    public List<String> getSubtitles() {
+        return subtitles;
+    }
+
+    public List<String> getContainerTitles() {
+        return containerTitles;
+    }
+
+    public List<Contributor> getAuthors() {
+        return authors;
+    }
+
+    public List<Contributor> getEditors() {
+        return editors;
+    }
+
+    /**
+     * The date of issue as year, month and day, of which month and day may be missing.
+     *
+     * @return the date parts, empty when the date is unknown.
+     */
+    public List<Integer> getIssued() {
+        return issued;
+    }
+
+    public String getPublisher() {
+        return publisher;
+    }
+
+    public void setPublisher(String publisher) {
+        this.publisher = publisher;
+    }
+
+    public String getVolume() {
+        return volume;
+    }
+
+    public void setVolume(String volume) {
+        this.volume = volume;
+    }
+
+    public String getIssue() {
+        return issue;
+    }
+
+    public void setIssue(String issue) {
+        this.issue = issue;
+    }
+
+    public String getPage() {
+        return page;
+    }
+
+    public void setPage(String page) {
+        this.page = page;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public void setLanguage(String language) {
+        this.language = language;
+    }
+
+    public List<String> getIssns() {
+        return issns;
+    }
+
+    public List<String> getIsbns() {
+        return isbns;
+    }
+}
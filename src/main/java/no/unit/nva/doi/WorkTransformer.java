@@ -0,0 +1,920 @@
+package no.unit.nva.doi;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Transforms metadata into the content types clients ask for: CSL JSON, DataCite JSON and DataCite XML. CrossRef only
+ * serves its own works format, so without the transformation a CrossRef DOI would be answered with works JSON whatever
+ * content type was asked for.
+ *
+ * <p>CrossRef works JSON and DataCite JSON are read as a stream into a {@link Work}, skipping the fields no
+ * representation needs, like the reference list that makes up most of a large work record. The two formats hardly
+ * share field names, so one reader takes either. The representations are written from the Work, so one upstream fetch
+ * serves all of them.
+ */
+public final class WorkTransformer {
+
+    public static final String DOI_RESOLVER = "https://doi.org/";
+    public static final String DATACITE_NAMESPACE = "http://datacite.org/schema/kernel-4";
+    public static final String DATACITE_SCHEMA_LOCATION =
+        DATACITE_NAMESPACE + " http://schema.datacite.org/meta/kernel-4/metadata.xsd";
+    public static final String XSI_NAMESPACE = "http://www.w3.org/2001/XMLSchema-instance";
+    public static final String ORCID = "ORCID";
+    public static final String ORCID_SCHEME_URI = "https://orcid.org";
+    public static final String CROSSREF_AGENCY = "crossref";
+    public static final String MESSAGE = "message";
+    public static final String ISSUED = "Issued";
+    public static final String EDITOR = "Editor";
+    public static final String SUBTITLE = "Subtitle";
+    public static final String ISSN = "ISSN";
+    public static final String ISBN = "ISBN";
+    public static final String IS_PART_OF = "IsPartOf";
+    public static final String PERSONAL = "Personal";
+    public static final String ORGANIZATIONAL = "Organizational";
+    public static final String DEFAULT_CSL_TYPE = "article";
+    public static final String DEFAULT_RESOURCE_TYPE_GENERAL = "Text";
+    public static final String DEFAULT_CONTAINER_TYPE = "Series";
+
+    /**
+     * CSL types of the CrossRef work types.
+     */
+    public static final Map<String, String> CSL_TYPES = Map.ofEntries(
+        Map.entry("journal-article", "article-journal"),
+        Map.entry("book-chapter", "chapter"),
+        Map.entry("book-section", "chapter"),
+        Map.entry("book-part", "chapter"),
+        Map.entry("proceedings-article", "paper-conference"),
+        Map.entry("book", "book"),
+        Map.entry("monograph", "book"),
+        Map.entry("edited-book", "book"),
+        Map.entry("reference-book", "book"),
+        Map.entry("dissertation", "thesis"),
+        Map.entry("report", "report"),
+        Map.entry("dataset", "dataset"),
+        Map.entry("posted-content", "article"),
+        Map.entry("reference-entry", "entry"));
+
+    /**
+     * DataCite resource types of the CrossRef work types.
+     */
+    public static final Map<String, String> RESOURCE_TYPES_GENERAL = Map.ofEntries(
+        Map.entry("journal-article", "JournalArticle"),
+        Map.entry("book-chapter", "BookChapter"),
+        Map.entry("book-section", "BookChapter"),
+        Map.entry("book-part", "BookChapter"),
+        Map.entry("proceedings-article", "ConferencePaper"),
+        Map.entry("book", "Book"),
+        Map.entry("monograph", "Book"),
+        Map.entry("edited-book", "Book"),
+        Map.entry("reference-book", "Book"),
+        Map.entry("dissertation", "Dissertation"),
+        Map.entry("report", "Report"),
+        Map.entry("dataset", "Dataset"),
+        Map.entry("posted-content", "Preprint"));
+
+    /**
+     * DataCite container types of the CrossRef work types.
+     */
+    public static final Map<String, String> CONTAINER_TYPES = Map.of(
+        "journal-article", "Journal",
+        "book-chapter", "Book",
+        "book-section", "Book",
+        "book-part", "Book",
+        "proceedings-article", "Proceedings");
+
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final String PAGE_SEPARATORS = "-\u2013";
+    private static final String DATE_SEPARATOR = "-";
+    private static final int MAX_DATE_PARTS = 3;
+    private static final int RADIX = 10;
+
+    private WorkTransformer() {
+    }
+
+    /**
+     * Transform CrossRef works JSON or DataCite JSON held in memory.
+     *
+     * @param worksJson   the works JSON, with or without the envelope around the work, or DataCite JSON.
+     * @param contentType the content type to transform into.
+     * @return the representation of the work in the content type.
+     * @throws IOException when the works JSON cannot be read.
+     */
+    public static String transform(String worksJson, DataciteContentType contentType) throws IOException {
+        return render(read(new StringReader(worksJson)), contentType);
+    }
+
+    /**
+     * Read the fields of a work from CrossRef works JSON or DataCite JSON without holding the whole document in memory.
+     *
+     * @param reader the works JSON, with or without the envelope around the work, or DataCite JSON.
+     * @return the work.
+     * @throws IOException when the JSON cannot be read or is malformed.
+     */
+    public static Work read(Reader reader) throws IOException {
+        Work work = new Work();
+        try (JsonReader json = new JsonReader(reader)) {
+            readWork(json, work);
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e);
+        }
+        return work;
+    }
+
+    private static void readWork(JsonReader json, Work work) throws IOException {
+        json.beginObject();
+        while (json.hasNext()) {
+            readField(json, json.nextName(), work);
+        }
+        json.endObject();
+    }
+
+    private static void readField(JsonReader json, String name, Work work) throws IOException {
+        switch (name) {
+            case MESSAGE:
+                readWork(json, work);
+                break;
+            case "DOI":
+                work.setDoi(nextString(json));
+                break;
+            case "URL":
+                work.setUrl(nextString(json));
+                break;
+            case "type":
+                work.setType(nextString(json));
+                break;
+            case "title":
+                readStrings(json, work.getTitles());
+                break;
+            case "subtitle":
+                readStrings(json, work.getSubtitles());
+                break;
+            case "container-title":
+                readStrings(json, work.getContainerTitles());
+                break;
+            case "author":
+                readContributors(json, work.getAuthors());
+                break;
+            case "editor":
+                readContributors(json, work.getEditors());
+                break;
+            case "issued":
+                readDate(json, work.getIssued());
+                break;
+            case "publisher":
+                work.setPublisher(nextName(json));
+                break;
+            case "volume":
+                work.setVolume(nextString(json));
+                break;
+            case "issue":
+                work.setIssue(nextString(json));
+                break;
+            case "page":
+                work.setPage(nextString(json));
+                break;
+            case "language":
+                work.setLanguage(nextString(json));
+                break;
+            case ISSN:
+                readStrings(json, work.getIssns());
+                break;
+            case ISBN:
+                readStrings(json, work.getIsbns());
+                break;
+            default:
+                readDataciteField(json, name, work);
+        }
+    }
+
+    private static void readDataciteField(JsonReader json, String name, Work work) throws IOException {
+        switch (name) {
+            case "doi":
+                work.setDoi(nextString(json));
+                break;
+            case "url":
+                work.setUrl(nextString(json));
+                break;
+            case "types":
+                readTypes(readObject(json), work);
+                break;
+            case "titles":
+                readObjects(json, title -> readTitle(title, work));
+                break;
+            case "creators":
+                readNames(json, work.getAuthors(), null);
+                break;
+            case "contributors":
+                readNames(json, work.getEditors(), EDITOR);
+                break;
+            case "container":
+                readContainer(readObject(json), work);
+                break;
+            case "publicationYear":
+                readPublicationYear(nextString(json), work);
+                break;
+            case "dates":
+                readObjects(json, date -> readIssued(date, work));
+                break;
+            case "identifiers":
+                readObjects(json, identifier -> readIdentifier(identifier, work));
+                break;
+            case "relatedIdentifiers":
+                readObjects(json, identifier -> readRelatedIdentifier(identifier, work));
+                break;
+            case "agency":
+                work.setAgency(nextString(json));
+                break;
+            default:
+                json.skipValue();
+        }
+    }
+
+    private static String nextString(JsonReader json) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return null;
+        }
+        if (json.peek() != JsonToken.STRING && json.peek() != JsonToken.NUMBER) {
+            json.skipValue();
+            return null;
+        }
+        return json.nextString();
+    }
+
+    /**
+     * Read a name given either as a string or, like the publisher in recent DataCite JSON, as an object with a name.
+     */
+    private static String nextName(JsonReader json) throws IOException {
+        return json.peek() == JsonToken.BEGIN_OBJECT ? readObject(json).get("name") : nextString(json);
+    }
+
+    private static void readStrings(JsonReader json, List<String> values) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            Optional.ofNullable(nextString(json)).ifPresent(values::add);
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            Optional.ofNullable(nextString(json)).ifPresent(values::add);
+        }
+        json.endArray();
+    }
+
+    private static void readContributors(JsonReader json, List<Work.Contributor> contributors) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            Work.Contributor contributor = new Work.Contributor();
+            json.beginObject();
+            while (json.hasNext()) {
+                readContributorField(json, json.nextName(), contributor);
+            }
+            json.endObject();
+            if (contributor.isPerson() || contributor.getName() != null) {
+                contributors.add(contributor);
+            }
+        }
+        json.endArray();
+    }
+
+    private static void readContributorField(JsonReader json, String name, Work.Contributor contributor)
+        throws IOException {
+        switch (name) {
+            case "given":
+                contributor.setGiven(nextString(json));
+                break;
+            case "family":
+                contributor.setFamily(nextString(json));
+                break;
+            case "name":
+                contributor.setName(nextString(json));
+                break;
+            case ORCID:
+                contributor.setOrcid(nextString(json));
+                break;
+            default:
+                json.skipValue();
+        }
+    }
+
+    /**
+     * Read the first date of a CrossRef date, {"date-parts": [[year, month, day]]}, where month and day are optional
+     * and the parts may be null when the date is unknown.
+     */
+    private static void readDate(JsonReader json, List<Integer> dateParts) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            if ("date-parts".equals(json.nextName()) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                readDateParts(json, dateParts);
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+    }
+
+    private static void readDateParts(JsonReader json, List<Integer> dateParts) throws IOException {
+        json.beginArray();
+        if (json.hasNext() && json.peek() == JsonToken.BEGIN_ARRAY) {
+            json.beginArray();
+            while (json.hasNext()) {
+                if (json.peek() == JsonToken.NUMBER) {
+                    dateParts.add(json.nextInt());
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endArray();
+        }
+        while (json.hasNext()) {
+            json.skipValue();
+        }
+        json.endArray();
+    }
+
+    /**
+     * Read the string values of an object. Nested values are skipped.
+     */
+    private static Map<String, String> readObject(JsonReader json) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        if (json.peek() != JsonToken.BEGIN_OBJECT) {
+            json.skipValue();
+            return values;
+        }
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            Optional.ofNullable(nextString(json)).ifPresent(value -> values.put(name, value));
+        }
+        json.endObject();
+        return values;
+    }
+
+    private static void readObjects(JsonReader json, Consumer<Map<String, String>> consumer) throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            consumer.accept(readObject(json));
+        }
+        json.endArray();
+    }
+
+    private static void readTypes(Map<String, String> types, Work work) {
+        work.setType(types.get("resourceType"));
+        work.setCslType(types.get("citeproc"));
+        work.setResourceTypeGeneral(types.get("resourceTypeGeneral"));
+    }
+
+    private static void readTitle(Map<String, String> title, Work work) {
+        String text = title.get("title");
+        String titleType = title.get("titleType");
+        if (text != null && titleType == null) {
+            work.getTitles().add(text);
+        } else if (text != null && SUBTITLE.equals(titleType)) {
+            work.getSubtitles().add(text);
+        }
+    }
+
+    /**
+     * Read DataCite creators or contributors. Contributors are only kept when they have the given contributor type.
+     */
+    private static void readNames(JsonReader json, List<Work.Contributor> contributors, String contributorType)
+        throws IOException {
+        if (json.peek() != JsonToken.BEGIN_ARRAY) {
+            json.skipValue();
+            return;
+        }
+        json.beginArray();
+        while (json.hasNext()) {
+            Work.Contributor contributor = new Work.Contributor();
+            Map<String, String> values = new HashMap<>();
+            if (json.peek() != JsonToken.BEGIN_OBJECT) {
+                json.skipValue();
+                continue;
+            }
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if ("nameIdentifiers".equals(name)) {
+                    readObjects(json, identifier -> readOrcid(identifier, contributor));
+                } else {
+                    Optional.ofNullable(nextString(json)).ifPresent(value -> values.put(name, value));
+                }
+            }
+            json.endObject();
+            boolean organization = ORGANIZATIONAL.equals(values.get("nameType"))
+                || values.get("familyName") == null;
+            contributor.setName(values.get("name"));
+            if (!organization) {
+                contributor.setFamily(values.get("familyName"));
+                contributor.setGiven(values.get("givenName"));
+            }
+            boolean wanted = contributorType == null || contributorType.equals(values.get("contributorType"));
+            if (wanted && (contributor.isPerson() || contributor.getName() != null)) {
+                contributors.add(contributor);
+            }
+        }
+        json.endArray();
+    }
+
+    private static void readOrcid(Map<String, String> identifier, Work.Contributor contributor) {
+        if (ORCID.equals(identifier.get("nameIdentifierScheme"))) {
+            contributor.setOrcid(identifier.get("nameIdentifier"));
+        }
+    }
+
+    private static void readContainer(Map<String, String> container, Work work) {
+        Optional.ofNullable(container.get("title")).ifPresent(title -> addIfAbsent(work.getContainerTitles(), title));
+        Optional.ofNullable(container.get("volume")).ifPresent(work::setVolume);
+        Optional.ofNullable(container.get("issue")).ifPresent(work::setIssue);
+        String firstPage = container.get("firstPage");
+        String lastPage = container.get("lastPage");
+        if (firstPage != null) {
+            work.setPage(lastPage == null ? firstPage : firstPage + DATE_SEPARATOR + lastPage);
+        }
+        if (ISSN.equals(container.get("identifierType")) && container.get("identifier") != null) {
+            addIfAbsent(work.getIssns(), container.get("identifier"));
+        }
+    }
+
+    /**
+     * The publication year only stands in for the date of issue when no date of issue is read.
+     */
+    private static void readPublicationYear(String year, Work work) {
+        if (year != null && work.getIssued().isEmpty()) {
+            work.getIssued().addAll(parseDate(year));
+        }
+    }
+
+    private static void readIssued(Map<String, String> date, Work work) {
+        List<Integer> dateParts = ISSUED.equals(date.get("dateType")) && date.get("date") != null
+            ? parseDate(date.get("date"))
+            : List.of();
+        if (!dateParts.isEmpty()) {
+            work.getIssued().clear();
+            work.getIssued().addAll(dateParts);
+        }
+    }
+
+    /**
+     * Parse the year, month and day at the start of an ISO 8601 date, e.g. "2005-05" or "2005-05-01T12:00:00Z".
+     */
+    private static List<Integer> parseDate(String date) {
+        List<Integer> dateParts = new ArrayList<>(MAX_DATE_PARTS);
+        int position = 0;
+        while (dateParts.size() < MAX_DATE_PARTS) {
+            int end = position;
+            while (end < date.length() && date.charAt(end) >= '0' && date.charAt(end) <= '9') {
+                end++;
+            }
+            if (end == position) {
+                break;
+            }
+            dateParts.add(Integer.parseInt(date, position, end, RADIX));
+            if (end == date.length() || !date.startsWith(DATE_SEPARATOR, end)) {
+                break;
+            }
+            position = end + 1;
+        }
+        return dateParts;
+    }
+
+    private static void readIdentifier(Map<String, String> identifier, Work work) {
+        if (ISBN.equals(identifier.get("identifierType")) && identifier.get("identifier") != null) {
+            addIfAbsent(work.getIsbns(), identifier.get("identifier"));
+        }
+    }
+
+    private static void readRelatedIdentifier(Map<String, String> identifier, Work work) {
+        if (ISSN.equals(identifier.get("relatedIdentifierType"))
+            && IS_PART_OF.equals(identifier.get("relationType"))
+            && identifier.get("relatedIdentifier") != null) {
+            addIfAbsent(work.getIssns(), identifier.get("relatedIdentifier"));
+        }
+    }
+
+    private static void addIfAbsent(List<String> values, String value) {
+        if (!values.contains(value)) {
+            values.add(value);
+        }
+    }
+
+    /**
+     * Write a work in a content type.
+     *
+     * @param work        the work.
+     * @param contentType the content type.
+     * @return the representation of the work.
+     */
+    public static String render(Work work, DataciteContentType contentType) {
+        StringWriter writer = new StringWriter();
+        try {
+            write(work, contentType, writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Write a work in a content type to a writer.
+     *
+     * @param work        the work.
+     * @param contentType the content type.
+     * @param writer      the writer, which is flushed but not closed.
+     * @throws IOException when the writer fails.
+     */
+    public static void write(Work work, DataciteContentType contentType, Writer writer) throws IOException {
+        switch (contentType) {
+            case DATACITE_JSON:
+                writeDataciteJson(work, new JsonWriter(writer));
+                break;
+            case DATACITE_XML:
+                writeDataciteXml(work, writer);
+                break;
+            default:
+                writeCsl(work, new JsonWriter(writer));
+        }
+        writer.flush();
+    }
+
+    private static void writeCsl(Work work, JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("id").value(work.getDoi());
+        json.name("type").value(cslType(work));
+        json.name("DOI").value(work.getDoi());
+        writeIfPresent(json, "URL", work.getUrl());
+        writeIfPresent(json, "title", first(work.getTitles()));
+        writeIfPresent(json, "container-title", first(work.getContainerTitles()));
+        writeIfPresent(json, "publisher", work.getPublisher());
+        writeIfPresent(json, "volume", work.getVolume());
+        writeIfPresent(json, "issue", work.getIssue());
+        writeIfPresent(json, "page", work.getPage());
+        writeIfPresent(json, "language", work.getLanguage());
+        writeIfPresent(json, ISSN, first(work.getIssns()));
+        writeIfPresent(json, ISBN, first(work.getIsbns()));
+        writeCslNames(json, "author", work.getAuthors());
+        writeCslNames(json, "editor", work.getEditors());
+        if (!work.getIssued().isEmpty()) {
+            json.name("issued").beginObject().name("date-parts").beginArray().beginArray();
+            for (Integer part : work.getIssued()) {
+                json.value(part);
+            }
+            json.endArray().endArray().endObject();
+        }
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeCslNames(JsonWriter json, String name, List<Work.Contributor> contributors)
+        throws IOException {
+        if (contributors.isEmpty()) {
+            return;
+        }
+        json.name(name).beginArray();
+        for (Work.Contributor contributor : contributors) {
+            json.beginObject();
+            if (contributor.isPerson()) {
+                json.name("family").value(contributor.getFamily());
+                writeIfPresent(json, "given", contributor.getGiven());
+            } else {
+                json.name("literal").value(contributor.getName());
+            }
+            writeIfPresent(json, ORCID, contributor.getOrcid());
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeDataciteJson(Work work, JsonWriter json) throws IOException {
+        json.beginObject();
+        json.name("id").value(DOI_RESOLVER + work.getDoi());
+        json.name("doi").value(work.getDoi());
+        writeIfPresent(json, "url", work.getUrl());
+        json.name("types").beginObject()
+            .name("resourceTypeGeneral").value(resourceTypeGeneral(work));
+        writeIfPresent(json, "resourceType", work.getType());
+        json.name("citeproc").value(cslType(work)).endObject();
+        writeDataciteNames(json, "creators", work.getAuthors(), null);
+        json.name("titles").beginArray();
+        for (String title : work.getTitles()) {
+            json.beginObject().name("title").value(title).endObject();
+        }
+        for (String subtitle : work.getSubtitles()) {
+            json.beginObject().name("title").value(subtitle).name("titleType").value(SUBTITLE).endObject();
+        }
+        json.endArray();
+        writeIfPresent(json, "publisher", work.getPublisher());
+        writeDataciteContainer(work, json);
+        if (!work.getIssued().isEmpty()) {
+            json.name("publicationYear").value(work.getIssued().get(0));
+            json.name("dates").beginArray().beginObject()
+                .name("date").value(date(work.getIssued()))
+                .name("dateType").value(ISSUED)
+                .endObject().endArray();
+        }
+        writeIfPresent(json, "language", work.getLanguage());
+        writeDataciteNames(json, "contributors", work.getEditors(), EDITOR);
+        json.name("identifiers").beginArray();
+        for (String isbn : work.getIsbns()) {
+            json.beginObject().name("identifier").value(isbn).name("identifierType").value(ISBN).endObject();
+        }
+        json.endArray();
+        json.name("relatedIdentifiers").beginArray();
+        for (String issn : work.getIssns()) {
+            json.beginObject()
+                .name("relatedIdentifier").value(issn)
+                .name("relatedIdentifierType").value(ISSN)
+                .name("relationType").value(IS_PART_OF)
+                .endObject();
+        }
+        json.endArray();
+        json.name("schemaVersion").value(DATACITE_NAMESPACE);
+        // DataCite JSON names its agency, so a work without one was read from CrossRef works JSON.
+        json.name("agency").value(Optional.ofNullable(work.getAgency()).orElse(CROSSREF_AGENCY));
+        json.endObject();
+        json.flush();
+    }
+
+    private static void writeDataciteContainer(Work work, JsonWriter json) throws IOException {
+        String containerTitle = first(work.getContainerTitles());
+        if (containerTitle == null) {
+            return;
+        }
+        json.name("container").beginObject()
+            .name("type").value(byType(CONTAINER_TYPES, work, DEFAULT_CONTAINER_TYPE))
+            .name("title").value(containerTitle);
+        String issn = first(work.getIssns());
+        if (issn != null) {
+            json.name("identifier").value(issn).name("identifierType").value(ISSN);
+        }
+        writeIfPresent(json, "volume", work.getVolume());
+        writeIfPresent(json, "issue", work.getIssue());
+        writeIfPresent(json, "firstPage", firstPage(work.getPage()));
+        writeIfPresent(json, "lastPage", lastPage(work.getPage()));
+        json.endObject();
+    }
+
+    private static void writeDataciteNames(JsonWriter json, String name, List<Work.Contributor> contributors,
+                                           String contributorType) throws IOException {
+        json.name(name).beginArray();
+        for (Work.Contributor contributor : contributors) {
+            json.beginObject();
+            json.name("nameType").value(contributor.isPerson() ? PERSONAL : ORGANIZATIONAL);
+            json.name("name").value(displayName(contributor));
+            if (contributor.isPerson()) {
+                writeIfPresent(json, "givenName", contributor.getGiven());
+                json.name("familyName").value(contributor.getFamily());
+            }
+            if (contributorType != null) {
+                json.name("contributorType").value(contributorType);
+            }
+            if (contributor.getOrcid() != null) {
+                json.name("nameIdentifiers").beginArray().beginObject()
+                    .name("nameIdentifier").value(contributor.getOrcid())
+                    .name("nameIdentifierScheme").value(ORCID)
+                    .name("schemeUri").value(ORCID_SCHEME_URI)
+                    .endObject().endArray();
+            }
+            json.endObject();
+        }
+        json.endArray();
+    }
+
+    private static void writeDataciteXml(Work work, Writer writer) throws IOException {
+        try {
+            XMLStreamWriter xml = XML_OUTPUT_FACTORY.createXMLStreamWriter(writer);
+            xml.writeStartDocument("UTF-8", "1.0");
+            xml.writeStartElement("resource");
+            xml.writeDefaultNamespace(DATACITE_NAMESPACE);
+            xml.writeNamespace("xsi", XSI_NAMESPACE);
+            xml.writeAttribute(XSI_NAMESPACE, "schemaLocation", DATACITE_SCHEMA_LOCATION);
+            writeElement(xml, "identifier", work.getDoi(), "identifierType", "DOI");
+            writeXmlNames(xml, "creators", "creator", work.getAuthors(), null);
+            xml.writeStartElement("titles");
+            for (String title : work.getTitles()) {
+                writeElement(xml, "title", title);
+            }
+            for (String subtitle : work.getSubtitles()) {
+                writeElement(xml, "title", subtitle, "titleType", SUBTITLE);
+            }
+            xml.writeEndElement();
+            writeElement(xml, "publisher", work.getPublisher());
+            if (!work.getIssued().isEmpty()) {
+                writeElement(xml, "publicationYear", String.valueOf(work.getIssued().get(0)));
+            }
+            writeElement(xml, "resourceType", Optional.ofNullable(work.getType()).orElse(""), "resourceTypeGeneral",
+                         resourceTypeGeneral(work));
+            writeXmlNames(xml, "contributors", "contributor", work.getEditors(), EDITOR);
+            if (!work.getIssued().isEmpty()) {
+                xml.writeStartElement("dates");
+                writeElement(xml, "date", date(work.getIssued()), "dateType", ISSUED);
+                xml.writeEndElement();
+            }
+            writeElement(xml, "language", work.getLanguage());
+            if (!work.getIsbns().isEmpty()) {
+                xml.writeStartElement("alternateIdentifiers");
+                for (String isbn : work.getIsbns()) {
+                    writeElement(xml, "alternateIdentifier", isbn, "alternateIdentifierType", ISBN);
+                }
+                xml.writeEndElement();
+            }
+            if (!work.getIssns().isEmpty()) {
+                xml.writeStartElement("relatedIdentifiers");
+                for (String issn : work.getIssns()) {
+                    xml.writeStartElement("relatedIdentifier");
+                    xml.writeAttribute("relatedIdentifierType", ISSN);
+                    xml.writeAttribute("relationType", IS_PART_OF);
+                    xml.writeCharacters(issn);
+                    xml.writeEndElement();
+                }
+                xml.writeEndElement();
+            }
+            seriesInformation(work).ifPresent(series -> writeXmlDescription(xml, series));
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.flush();
+        } catch (XMLStreamException | UncheckedIOException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void writeXmlDescription(XMLStreamWriter xml, String series) {
+        try {
+            xml.writeStartElement("descriptions");
+            writeElement(xml, "description", series, "descriptionType", "SeriesInformation");
+            xml.writeEndElement();
+        } catch (XMLStreamException e) {
+            throw new UncheckedIOException(new IOException(e));
+        }
+    }
+
+    private static void writeXmlNames(XMLStreamWriter xml, String listName, String itemName,
+                                      List<Work.Contributor> contributors, String contributorType)
+        throws XMLStreamException {
+        if (contributors.isEmpty()) {
+            return;
+        }
+        xml.writeStartElement(listName);
+        for (Work.Contributor contributor : contributors) {
+            xml.writeStartElement(itemName);
+            if (contributorType != null) {
+                xml.writeAttribute("contributorType", contributorType);
+            }
+            writeElement(xml, itemName + "Name", displayName(contributor), "nameType",
+                         contributor.isPerson() ? PERSONAL : ORGANIZATIONAL);
+            if (contributor.isPerson()) {
+                writeElement(xml, "givenName", contributor.getGiven());
+                writeElement(xml, "familyName", contributor.getFamily());
+            }
+            if (contributor.getOrcid() != null) {
+                xml.writeStartElement("nameIdentifier");
+                xml.writeAttribute("nameIdentifierScheme", ORCID);
+                xml.writeAttribute("schemeURI", ORCID_SCHEME_URI);
+                xml.writeCharacters(contributor.getOrcid());
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+        }
+        xml.writeEndElement();
+    }
+
+    private static void writeElement(XMLStreamWriter xml, String name, String text) throws XMLStreamException {
+        if (text != null) {
+            xml.writeStartElement(name);
+            xml.writeCharacters(text);
+            xml.writeEndElement();
+        }
+    }
+
+    private static void writeElement(XMLStreamWriter xml, String name, String text, String attribute,
+                                     String attributeValue) throws XMLStreamException {
+        if (text != null) {
+            xml.writeStartElement(name);
+            xml.writeAttribute(attribute, attributeValue);
+            xml.writeCharacters(text);
+            xml.writeEndElement();
+        }
+    }
+
+    private static void writeIfPresent(JsonWriter json, String name, String value) throws IOException {
+        if (value != null) {
+            json.name(name).value(value);
+        }
+    }
+
+    private static String cslType(Work work) {
+        return Optional.ofNullable(work.getCslType())
+                       .orElseGet(() -> byType(CSL_TYPES, work, DEFAULT_CSL_TYPE));
+    }
+
+    private static String resourceTypeGeneral(Work work) {
+        return Optional.ofNullable(work.getResourceTypeGeneral())
+                       .orElseGet(() -> byType(RESOURCE_TYPES_GENERAL, work, DEFAULT_RESOURCE_TYPE_GENERAL));
+    }
+
+    private static String byType(Map<String, String> types, Work work, String defaultType) {
+        return work.getType() == null ? defaultType : types.getOrDefault(work.getType(), defaultType);
+    }
+
+    private static String displayName(Work.Contributor contributor) {
+        if (!contributor.isPerson()) {
+            return contributor.getName();
+        }
+        return contributor.getGiven() == null
+            ? contributor.getFamily()
+            : contributor.getFamily() + ", " + contributor.getGiven();
+    }
+
+    /**
+     * The date of issue in ISO 8601, with as many parts as are known.
+     */
+    private static String date(List<Integer> dateParts) {
+        return dateParts.stream()
+                        .map(part -> part < 10 ? "0" + part : String.valueOf(part))
+                        .collect(Collectors.joining(DATE_SEPARATOR));
+    }
+
+    /**
+     * The container, volume, issue and pages in the form DataCite uses for series information, e.g. "Der Nervenarzt,
+     * 76(5), 569-580".
+     */
+    private static Optional<String> seriesInformation(Work work) {
+        String containerTitle = first(work.getContainerTitles());
+        if (containerTitle == null) {
+            return Optional.empty();
+        }
+        StringBuilder series = new StringBuilder(containerTitle);
+        if (work.getVolume() != null) {
+            series.append(", ").append(work.getVolume());
+            if (work.getIssue() != null) {
+                series.append('(').append(work.getIssue()).append(')');
+            }
+        }
+        if (work.getPage() != null) {
+            series.append(", ").append(work.getPage());
+        }
+        return Optional.of(series.toString());
+    }
+
+    private static String firstPage(String page) {
+        if (page == null) {
+            return null;
+        }
+        int separator = pageSeparator(page);
+        return separator < 0 ? page : page.substring(0, separator);
+    }
+
+    private static String lastPage(String page) {
+        if (page == null) {
+            return null;
+        }
+        int separator = pageSeparator(page);
+        return separator < 0 ? null : page.substring(separator + 1);
+    }
+
+    private static int pageSeparator(String page) {
+        for (int i = 0; i < page.length(); i++) {
+            if (PAGE_SEPARATORS.indexOf(page.charAt(i)) >= 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String first(List<String> values) {
+        return values.isEmpty() ? null : values.get(0);
+    }
+}
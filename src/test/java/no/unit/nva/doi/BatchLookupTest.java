@@ -0,0 +1,204 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.MockHttpClient;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BatchLookupTest extends AbstractLambdaTest {
+
+    public static final String SEEDED_DATACITE_DOI = "https://doi.org/10.5061/dryad.1";
+    public static final String SAME_DATACITE_DOI = "doi:10.5061/DRYAD.1";
+    public static final String OTHER_DATACITE_DOI = "10.5061/dryad.2";
+    public static final String INVALID_DOI = "https://doi.org/lets^Go^Wild";
+    public static final String XML_METADATA = "<resource/>";
+    public static final Duration SHORT_WAIT = Duration.ofMillis(200);
+
+    @Test
+    @DisplayName("resolveAll resolves identical DOIs only once and keeps the order of the request")
+    public void resolveAllResolvesIdenticalDoisOnlyOnceAndKeepsTheOrderOfTheRequest() {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        BatchLookup batchLookup = new BatchLookup(resolver(dataciteClient), 4, 10);
+
+        JsonObject response = batchLookup.resolveAll(
+            Arrays.asList(SEEDED_DATACITE_DOI, SAME_DATACITE_DOI, null, OTHER_DATACITE_DOI), DATACITE_JSON);
+
+        JsonArray results = response.getAsJsonArray(BatchLookup.RESULTS);
+        assertThat(results.size(), is(2));
+        assertThat(dataciteClient.getRequestCount(), is(2));
+        JsonObject first = results.get(0).getAsJsonObject();
+        assertThat(first.get(BatchLookup.DOI).getAsString(), is(equalTo(SEEDED_DATACITE_DOI)));
+        assertThat(first.get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(first.get(BatchLookup.CONTENT_LOCATION).getAsString(),
+                   is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(first.getAsJsonObject(BatchLookup.METADATA).get("id").getAsString(),
+                   is(equalTo(SEEDED_DATACITE_DOI)));
+        assertThat(results.get(1).getAsJsonObject().get(BatchLookup.DOI).getAsString(),
+                   is(equalTo(OTHER_DATACITE_DOI)));
+    }
+
+    @Test
+    @DisplayName("resolveAll applies the projection to the metadata of every result")
+    public void resolveAllAppliesTheProjectionToTheMetadataOfEveryResult() {
+        BatchLookup batchLookup = new BatchLookup(resolver(new FakeDataciteClient()), 4, 10);
+        BodyFilter projection = JsonProjection.of(List.of("doi"), null).orElseThrow();
+
+        JsonObject response = batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI), DATACITE_JSON, projection);
+
+        JsonObject first = response.getAsJsonArray(BatchLookup.RESULTS).get(0).getAsJsonObject();
+        assertThat(first.getAsJsonObject(BatchLookup.METADATA).size(), is(0));
+    }
+
+    @Test
+    @DisplayName("resolveAll reports invalid and failing DOIs per item")
+    public void resolveAllReportsInvalidAndFailingDoisPerItem() {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new IOException(ERROR_MESSAGE));
+        BatchLookup batchLookup = new BatchLookup(resolver(dataciteClient), 4, 10);
+
+        JsonArray results = batchLookup.resolveAll(List.of(INVALID_DOI, SEEDED_DATACITE_DOI), CITEPROC_JSON)
+                                       .getAsJsonArray(BatchLookup.RESULTS);
+
+        JsonObject invalid = results.get(0).getAsJsonObject();
+        assertThat(invalid.get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_BAD_REQUEST));
+        assertThat(invalid.get(BatchLookup.ERROR).getAsString(), is(equalTo(FetchDoiMetadata.INVALID_DOI_URL)));
+        JsonObject failed = results.get(1).getAsJsonObject();
+        assertThat(failed.get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        assertThat(failed.get(BatchLookup.ERROR).getAsString(), is(equalTo(ERROR_MESSAGE)));
+    }
+
+    @Test
+    @DisplayName("resolveAll reports DOIs no agency knows per item as not found")
+    public void resolveAllReportsDoisNoAgencyKnowsPerItemAsNotFound() {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+        BatchLookup batchLookup = new BatchLookup(resolver(dataciteClient), 4, 10);
+
+        JsonArray results = batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI), CITEPROC_JSON)
+                                       .getAsJsonArray(BatchLookup.RESULTS);
+
+        JsonObject notFound = results.get(0).getAsJsonObject();
+        assertThat(notFound.get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_NOT_FOUND));
+        assertThat(notFound.get(BatchLookup.ERROR).getAsString(), is(equalTo(ERROR_MESSAGE)));
+    }
+
+    @Test
+    @DisplayName("resolveAll reports unexpected failures per item as internal errors")
+    public void resolveAllReportsUnexpectedFailuresPerItemAsInternalErrors() {
+        DataciteClient dataciteClient = new FakeDataciteClient() {
+            @Override
+            public MetadataAndContentLocation fetchMetadata(String doiUrlString,
+                                                            DataciteContentType dataciteContentType) {
+                throw new IllegalStateException(ERROR_MESSAGE);
+            }
+        };
+        BatchLookup batchLookup = new BatchLookup(resolver(dataciteClient), 1, 10);
+
+        JsonObject result = batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI), CITEPROC_JSON)
+                                       .getAsJsonArray(BatchLookup.RESULTS)
+                                       .get(0)
+                                       .getAsJsonObject();
+
+        assertThat(result.get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+    }
+
+    @Test
+    @DisplayName("resolveAll does not start lookups without time left in the invocation")
+    public void resolveAllDoesNotStartLookupsWithoutTimeLeftInTheInvocation() {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        BatchLookup batchLookup = new BatchLookup(resolver(dataciteClient), 4, 10);
+
+        InvocationDeadline.start(BatchLookup.MIN_LOOKUP_TIME.toMillis() / 2);
+        JsonArray results;
+        try {
+            results = batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI, OTHER_DATACITE_DOI), DATACITE_JSON)
+                                 .getAsJsonArray(BatchLookup.RESULTS);
+        } finally {
+            InvocationDeadline.start(null);
+        }
+
+        assertThat(results.size(), is(2));
+        assertThat(results.get(1).getAsJsonObject().get(BatchLookup.STATUS).getAsInt(),
+                   is(HttpStatus.SC_SERVICE_UNAVAILABLE));
+        assertThat(results.get(1).getAsJsonObject().get(BatchLookup.ERROR).getAsString(),
+                   is(equalTo(BatchLookup.NOT_RESOLVED_IN_TIME)));
+        assertThat(dataciteClient.getRequestCount(), is(0));
+    }
+
+    @Test
+    @DisplayName("resolveAll gives up lookups that are not done before the response margin")
+    public void resolveAllGivesUpLookupsThatAreNotDoneBeforeTheResponseMargin() {
+        DataciteClient hangingClient = new FakeDataciteClient() {
+            @Override
+            public CompletableFuture<MetadataAndContentLocation> fetchMetadataAsync(
+                String doiUrlString, DataciteContentType dataciteContentType) {
+                super.fetchMetadataAsync(doiUrlString, dataciteContentType);
+                return new CompletableFuture<>();
+            }
+        };
+        BatchLookup batchLookup = new BatchLookup(resolver(hangingClient), 4, 10);
+
+        InvocationDeadline.start(BatchLookup.MIN_LOOKUP_TIME.plus(SHORT_WAIT).toMillis());
+        JsonObject result;
+        try {
+            result = batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI), DATACITE_JSON)
+                                .getAsJsonArray(BatchLookup.RESULTS)
+                                .get(0)
+                                .getAsJsonObject();
+        } finally {
+            InvocationDeadline.start(null);
+        }
+
+        assertThat(result.get(BatchLookup.ERROR).getAsString(), is(equalTo(BatchLookup.NOT_RESOLVED_IN_TIME)));
+    }
+
+    @Test
+    @DisplayName("resolveAll rejects batches with more distinct DOIs than allowed")
+    public void resolveAllRejectsBatchesWithMoreDistinctDoisThanAllowed() {
+        BatchLookup batchLookup = new BatchLookup(resolver(new FakeDataciteClient()), 4, 1);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI, OTHER_DATACITE_DOI), CITEPROC_JSON));
+    }
+
+    @Test
+    @DisplayName("asJsonElement embeds JSON as JSON and everything else as a string")
+    public void asJsonElementEmbedsJsonAsJsonAndEverythingElseAsAString() {
+        assertThat(BatchLookup.asJsonElement(FakeDataciteClient.DATACITE_JSON).isJsonObject(), is(true));
+        assertThat(BatchLookup.asJsonElement("[1,2]").isJsonArray(), is(true));
+        assertThat(BatchLookup.asJsonElement("{broken").getAsString(), is(equalTo("{broken")));
+        assertThat(BatchLookup.asJsonElement(XML_METADATA).getAsString(), is(equalTo(XML_METADATA)));
+    }
+
+    @Test
+    @DisplayName("fromConfig uses the configured batch limits")
+    public void fromConfigUsesTheConfiguredBatchLimits() {
+        Config config = new Config();
+        config.setBatchMaxSize(1);
+        BatchLookup batchLookup = BatchLookup.fromConfig(resolver(new FakeDataciteClient()), config);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> batchLookup.resolveAll(List.of(SEEDED_DATACITE_DOI, OTHER_DATACITE_DOI), CITEPROC_JSON));
+    }
+
+    private DoiMetadataResolver resolver(DataciteClient dataciteClient) {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        return DoiMetadataResolver.fromConfig(dataciteClient, new CrossRefClient(crossRefHttpClient), new Config());
+    }
+}
@@ -0,0 +1,297 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.MockHttpClient;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BulkImportJobTest extends AbstractLambdaTest {
+
+    public static final String FIRST_DOI = "https://doi.org/10.5061/dryad.1";
+    public static final String SECOND_DOI = "10.5061/dryad.2";
+    public static final String INVALID_DOI = "https://doi.org/lets^Go^Wild";
+    public static final String INPUT = FIRST_DOI + "\n\n  " + SECOND_DOI + "  \n" + INVALID_DOI + "\n";
+    public static final String INPUT_URL = "https://bucket.example.org/dois.txt";
+    public static final long SHORT_DEADLINE_MILLIS = 1;
+
+    @TempDir
+    Path directory;
+
+    @AfterEach
+    public void clearDeadline() {
+        InvocationDeadline.start(null);
+    }
+
+    @Test
+    @DisplayName("run writes one NDJSON result for every DOI of the input in the order of the input")
+    public void runWritesOneNdjsonResultForEveryDoiOfTheInputInTheOrderOfTheInput() throws IOException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        BulkImportJob job = job(dataciteClient, notFound());
+
+        BulkImportProgress progress = job.run(request(inputFile().toString()));
+
+        List<JsonObject> results = results();
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).get(BatchLookup.DOI).getAsString(), is(equalTo(FIRST_DOI)));
+        assertThat(results.get(0).getAsJsonObject(BatchLookup.METADATA),
+                   is(equalTo(JsonParser.parseString(FakeDataciteClient.DATACITE_JSON))));
+        assertThat(results.get(1).get(BatchLookup.DOI).getAsString(), is(equalTo(SECOND_DOI)));
+        assertThat(results.get(2).get(BatchLookup.STATUS).getAsInt(), is(400));
+        assertThat(progress.isComplete(), is(true));
+        assertThat(progress.getPosition(), is(4L));
+        assertThat(progress.getResolved(), is(2L));
+        assertThat(progress.getFailed(), is(1L));
+        assertThat(progress.getOutputBytes(), is(Files.size(output())));
+    }
+
+    @Test
+    @DisplayName("run does nothing for a job whose checkpoint says it is complete")
+    public void runDoesNothingForAJobWhoseCheckpointSaysItIsComplete() throws IOException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        BulkImportJob job = job(dataciteClient, notFound());
+        BulkImportRequest request = request(inputFile().toString());
+        job.run(request);
+        int requestCount = dataciteClient.getRequestCount();
+
+        BulkImportProgress progress = job.run(request);
+
+        assertThat(progress.isComplete(), is(true));
+        assertThat(dataciteClient.getRequestCount(), is(requestCount));
+        assertThat(results().size(), is(3));
+    }
+
+    @Test
+    @DisplayName("run resumes from the checkpoint and drops output written after it")
+    public void runResumesFromTheCheckpointAndDropsOutputWrittenAfterIt() throws IOException {
+        BulkImportJob job = job(new FakeDataciteClient(), notFound());
+        String firstResult = "{\"doi\":\"" + FIRST_DOI + "\",\"status\":200}\n";
+        Files.writeString(output(), firstResult + "{\"doi\":\"half", StandardCharsets.UTF_8);
+        Files.writeString(BulkImportJob.checkpointOf(output()),
+                          "{\"position\":1,\"outputBytes\":" + firstResult.length() + ",\"resolved\":1}");
+
+        BulkImportProgress progress = job.run(request(inputFile().toString()));
+
+        List<JsonObject> results = results();
+        assertThat(results.size(), is(3));
+        assertThat(results.get(0).has(BatchLookup.METADATA), is(false));
+        assertThat(results.get(1).get(BatchLookup.DOI).getAsString(), is(equalTo(SECOND_DOI)));
+        assertThat(progress.getPosition(), is(4L));
+        assertThat(progress.getResolved(), is(2L));
+    }
+
+    @Test
+    @DisplayName("run stops before the invocation times out and can be resumed")
+    public void runStopsBeforeTheInvocationTimesOutAndCanBeResumed() throws IOException {
+        BulkImportJob job = job(new FakeDataciteClient(), notFound());
+        BulkImportRequest request = request(inputFile().toString());
+
+        InvocationDeadline.start(SHORT_DEADLINE_MILLIS);
+        BulkImportProgress stopped = job.run(request);
+        InvocationDeadline.start(null);
+        BulkImportProgress resumed = job.run(request);
+
+        assertThat(stopped.isComplete(), is(false));
+        assertThat(stopped.getPosition(), is(0L));
+        assertThat(BulkImportJob.readCheckpoint(BulkImportJob.checkpointOf(output())).isComplete(), is(true));
+        assertThat(resumed.isComplete(), is(true));
+        assertThat(results().size(), is(3));
+    }
+
+    @Test
+    @DisplayName("run reads the input over HTTP and from file URIs")
+    public void runReadsTheInputOverHttpAndFromFileUris() throws IOException {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(
+            new HttpResponseStatus200<>(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8))));
+        BulkImportJob job = job(new FakeDataciteClient(), httpClient);
+
+        job.run(request(INPUT_URL));
+        Files.delete(BulkImportJob.checkpointOf(output()));
+        BulkImportProgress fromFileUri = job.run(request(inputFile().toUri().toString()));
+
+        assertThat(httpClient.getLastRequest().uri().toString(), is(equalTo(INPUT_URL)));
+        assertThat(fromFileUri.getResolved(), is(2L));
+        assertThat(results().size(), is(3));
+    }
+
+    @Test
+    @DisplayName("run throws IOException when the input cannot be read")
+    public void runThrowsIoExceptionWhenTheInputCannotBeRead() {
+        BulkImportJob job = job(new FakeDataciteClient(), notFound());
+
+        assertThrows(IOException.class, () -> job.run(request(INPUT_URL)));
+        assertThrows(UncheckedIOException.class,
+            () -> job.handleRequest(request(directory.resolve("missing.txt").toString()), mockLambdaContext));
+    }
+
+    @Test
+    @DisplayName("handleRequest returns the progress and rejects requests without input or output")
+    public void handleRequestReturnsTheProgressAndRejectsRequestsWithoutInputOrOutput() throws IOException {
+        BulkImportJob job = job(new FakeDataciteClient(), notFound());
+        BulkImportRequest request = new BulkImportRequest();
+        request.setInput(inputFile().toString());
+        request.setOutput(output().toString());
+
+        BulkImportProgress progress = job.handleRequest(request, mockLambdaContext);
+
+        assertThat(progress.isComplete(), is(true));
+        assertThat(request.getContentType(), is((String) null));
+        assertThrows(IllegalArgumentException.class,
+            () -> job.handleRequest(new BulkImportRequest(), mockLambdaContext));
+    }
+
+    @Test
+    @DisplayName("run writes relative outputs into the bulk import directory and rejects outputs outside it")
+    public void runWritesRelativeOutputsIntoTheBulkImportDirectoryAndRejectsOutputsOutsideIt() throws IOException {
+        BulkImportJob job = job(new FakeDataciteClient(), notFound(), directory.toString());
+        BulkImportRequest request = request(inputFile().toString());
+        request.setOutput(output().getFileName().toString());
+
+        BulkImportProgress progress = job.run(request);
+
+        assertThat(progress.isComplete(), is(true));
+        assertThat(results().size(), is(3));
+        request.setOutput("../" + output().getFileName());
+        assertThrows(IllegalArgumentException.class, () -> job.run(request));
+        request.setOutput(directory.getParent().resolve(output().getFileName()).toString());
+        assertThrows(IllegalArgumentException.class, () -> job.run(request));
+    }
+
+    @Test
+    @DisplayName("run looks up DOIs again that failed for a reason that says nothing about the DOI")
+    public void runLooksUpDoisAgainThatFailedForAReasonThatSaysNothingAboutTheDoi() throws IOException {
+        AtomicInteger failuresLeft = new AtomicInteger(2);
+        FakeDataciteClient dataciteClient = new FakeDataciteClient() {
+            @Override
+            public CompletableFuture<MetadataAndContentLocation> fetchMetadataAsync(
+                String doiUrlString, DataciteContentType dataciteContentType) {
+                CompletableFuture<MetadataAndContentLocation> metadata =
+                    super.fetchMetadataAsync(doiUrlString, dataciteContentType);
+                return failuresLeft.getAndDecrement() > 0
+                    ? CompletableFuture.failedFuture(new IOException(ERROR_MESSAGE))
+                    : metadata;
+            }
+        };
+        BulkImportJob job = job(dataciteClient, notFound());
+
+        BulkImportProgress progress = job.run(request(inputFile().toString()));
+
+        assertThat(progress.isComplete(), is(true));
+        assertThat(progress.getResolved(), is(2L));
+        assertThat(dataciteClient.getRequestCount(), is(4));
+        assertThat(results().get(1).get(BatchLookup.STATUS).getAsInt(), is(200));
+    }
+
+    @Test
+    @DisplayName("run stops at a DOI the upstreams keep refusing and resumes there")
+    public void runStopsAtADoiTheUpstreamsKeepRefusingAndResumesThere() throws IOException {
+        FakeDataciteClient refusing = new FakeDataciteClient(new UpstreamUnavailableException(ERROR_MESSAGE));
+        BulkImportRequest request = request(inputFile().toString());
+
+        BulkImportProgress stopped = job(refusing, notFound()).run(request);
+        BulkImportProgress resumed = job(new FakeDataciteClient(), notFound()).run(request);
+
+        assertThat(stopped.isComplete(), is(false));
+        assertThat(stopped.getPosition(), is(0L));
+        assertThat(stopped.getFailed(), is(0L));
+        assertThat(refusing.getRequestCount(), is(2 * BulkImportJob.TRANSIENT_FAILURE_ROUNDS));
+        assertThat(resumed.isComplete(), is(true));
+        assertThat(resumed.getResolved(), is(2L));
+        assertThat(results().size(), is(3));
+    }
+
+    @Test
+    @DisplayName("run writes DOIs DataCite does not know as failures without looking them up again")
+    public void runWritesDoisDataCiteDoesNotKnowAsFailuresWithoutLookingThemUpAgain() throws IOException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+
+        BulkImportProgress progress = job(dataciteClient, notFound()).run(request(inputFile().toString()));
+
+        assertThat(progress.isComplete(), is(true));
+        assertThat(progress.getFailed(), is(3L));
+        assertThat(dataciteClient.getRequestCount(), is(2));
+        assertThat(results().get(0).get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("getDoisPerSecond relates the DOIs handled to the time spent")
+    public void getDoisPerSecondRelatesTheDoisHandledToTheTimeSpent() {
+        BulkImportProgress progress = new BulkImportProgress();
+        assertThat(progress.getDoisPerSecond(), is(0.0));
+
+        progress.setResolved(30);
+        progress.setFailed(10);
+        progress.setElapsedMillis(2000);
+
+        assertThat(progress.getDoisPerSecond(), is(20.0));
+    }
+
+    private BulkImportJob job(DataciteClient dataciteClient, HttpClient httpClient) {
+        return job(dataciteClient, httpClient, null);
+    }
+
+    private BulkImportJob job(DataciteClient dataciteClient, HttpClient httpClient, String bulkImportDirectory) {
+        Config config = new Config();
+        config.setBulkImportDirectory(bulkImportDirectory);
+        config.setRetryMaxDelayMillis(1);
+        config.setBulkImportParallelism(2);
+        config.setBulkImportDeadlineReserveMillis(Config.DEFAULT_BULK_IMPORT_DEADLINE_RESERVE_MILLIS);
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        return new BulkImportJob(
+            DoiMetadataResolver.fromConfig(dataciteClient, new CrossRefClient(crossRefHttpClient), config),
+            httpClient, config);
+    }
+
+    private static MockHttpClient<InputStream> notFound() {
+        return new MockHttpClient<>(
+            new HttpResponseStatus404<>(new ByteArrayInputStream(ERROR_MESSAGE.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private BulkImportRequest request(String input) {
+        BulkImportRequest request = new BulkImportRequest();
+        request.setInput(input);
+        request.setOutput(output().toString());
+        request.setContentType(DATACITE_JSON.getContentType());
+        return request;
+    }
+
+    private Path inputFile() throws IOException {
+        return Files.writeString(directory.resolve("dois.txt"), INPUT, StandardCharsets.UTF_8);
+    }
+
+    private Path output() {
+        return directory.resolve("results.ndjson");
+    }
+
+    private List<JsonObject> results() throws IOException {
+        return Files.readAllLines(output(), StandardCharsets.UTF_8).stream()
+                    .map(line -> JsonParser.parseString(line).getAsJsonObject())
+                    .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,65 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_XML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CacheKeyTest {
+
+    public static final String DOI_STRING = "10.1093/afraf/ady029";
+    public static final String DOI_URL = "https://doi.org/10.1093/AFRAF/ady029";
+    public static final String DOI_DX_URL = "http://dx.doi.org/10.1093/afraf/ady029";
+    public static final String DOI_WITH_PREFIX = "doi:10.1093/afraf/ADY029";
+
+    @Test
+    @DisplayName("CacheKey normalizes DOI URLs and DOI strings to the same lower case DOI")
+    public void cacheKeyNormalizesDoiUrlsAndDoiStringsToTheSameLowerCaseDoi() {
+        CacheKey expected = CacheKey.of(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(CacheKey.of(DOI_URL, CITEPROC_JSON), is(equalTo(expected)));
+        assertThat(CacheKey.of(DOI_DX_URL, CITEPROC_JSON), is(equalTo(expected)));
+        assertThat(CacheKey.of(DOI_WITH_PREFIX, CITEPROC_JSON), is(equalTo(expected)));
+        assertThat(CacheKey.of(DOI_URL, CITEPROC_JSON).hashCode(), is(equalTo(expected.hashCode())));
+        assertThat(expected.getDoi(), is(equalTo(DOI_STRING)));
+    }
+
+    @Test
+    @DisplayName("CacheKey differs for different content types")
+    public void cacheKeyDiffersForDifferentContentTypes() {
+        CacheKey key = CacheKey.of(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(key, is(not(equalTo(CacheKey.of(DOI_STRING, DATACITE_XML)))));
+        assertThat(key.equals(DOI_STRING), is(false));
+        assertThat(key.equals(key), is(true));
+        assertThat(key.getContentType(), is(CITEPROC_JSON));
+        assertThat(key.toString(), is(equalTo(DOI_STRING + " " + CITEPROC_JSON.getContentType())));
+    }
+
+    @Test
+    @DisplayName("CacheKey lower cases values that are not recognized as DOIs")
+    public void cacheKeyLowerCasesValuesThatAreNotRecognizedAsDois() {
+        assertThat(CacheKey.of(" Not-A-Doi ", CITEPROC_JSON).getDoi(), is(equalTo("not-a-doi")));
+    }
+
+    @Test
+    @DisplayName("CacheKey for a parsed DOI equals the key for the DOI string")
+    public void cacheKeyForAParsedDoiEqualsTheKeyForTheDoiString() {
+        Doi doi = Doi.parse(DOI_URL).orElseThrow();
+
+        assertThat(CacheKey.of(doi, CITEPROC_JSON), is(equalTo(CacheKey.of(DOI_STRING, CITEPROC_JSON))));
+    }
+
+    @Test
+    @DisplayName("CacheKey with another content type keeps the DOI")
+    public void cacheKeyWithAnotherContentTypeKeepsTheDoi() {
+        CacheKey key = CacheKey.of(DOI_URL, CITEPROC_JSON).withContentType(DATACITE_XML);
+
+        assertThat(key, is(equalTo(CacheKey.of(DOI_STRING, DATACITE_XML))));
+    }
+}
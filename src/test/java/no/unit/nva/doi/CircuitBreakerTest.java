@@ -0,0 +1,141 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import no.unit.nva.doi.CircuitBreaker.State;
+import no.unit.nva.utils.AbstractHttpResponse;
+import no.unit.nva.utils.DelayedMockHttpClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus503;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.MutableClock;
+import no.unit.nva.utils.PendingMockHttpClient;
+import no.unit.nva.utils.SequenceMockHttpClient;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CircuitBreakerTest {
+
+    public static final String NAME = "Upstream";
+    public static final int FAILURE_THRESHOLD = 2;
+    public static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+    public static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://example.org/")).build();
+
+    @Test
+    @DisplayName("sendAsync opens the circuit after consecutive failures and then fails fast")
+    public void sendAsyncOpensTheCircuitAfterConsecutiveFailuresAndThenFailsFast() {
+        CircuitBreaker breaker = new CircuitBreaker(NAME, FAILURE_THRESHOLD, OPEN_DURATION, 10, new MutableClock());
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus503<>(""));
+
+        send(breaker, httpClient);
+        send(breaker, httpClient);
+        CompletableFuture<HttpResponse<String>> rejected = breaker.sendAsync(httpClient, REQUEST,
+                                                                            BodyHandlers.ofString());
+
+        CompletionException exception = assertThrows(CompletionException.class, rejected::join);
+        assertThat(exception.getCause() instanceof UpstreamUnavailableException, is(true));
+        assertThat(httpClient.getRequestCount(), is(FAILURE_THRESHOLD));
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.getTrips(), is(1L));
+        assertThat(breaker.getRejectedWhileOpen(), is(1L));
+    }
+
+    @Test
+    @DisplayName("sendAsync does not count answers about the request as failures")
+    public void sendAsyncDoesNotCountAnswersAboutTheRequestAsFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(NAME, FAILURE_THRESHOLD, OPEN_DURATION, 10, new MutableClock());
+        List<AbstractHttpResponse<String>> responses = List.of(new HttpResponseStatus503<>(""),
+                                                               new HttpResponseStatus404<>(""),
+                                                               new HttpResponseStatus503<>(""));
+        SequenceMockHttpClient<String> httpClient = new SequenceMockHttpClient<>(responses);
+
+        send(breaker, httpClient);
+        send(breaker, httpClient);
+        send(breaker, httpClient);
+
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    @DisplayName("sendAsync lets one probe through after the open period and closes the circuit when it succeeds")
+    public void sendAsyncLetsOneProbeThroughAfterTheOpenPeriodAndClosesTheCircuitWhenItSucceeds() {
+        MutableClock clock = new MutableClock();
+        CircuitBreaker breaker = new CircuitBreaker(NAME, 1, OPEN_DURATION, 10, clock);
+        List<AbstractHttpResponse<String>> responses = List.of(new HttpResponseStatus503<>(""),
+                                                               new HttpResponseStatus503<>(""),
+                                                               new HttpResponseStatus200<>(""));
+        SequenceMockHttpClient<String> httpClient = new SequenceMockHttpClient<>(responses);
+
+        send(breaker, httpClient);
+        clock.advance(OPEN_DURATION);
+        send(breaker, httpClient);
+        assertThat(breaker.getState(), is(State.OPEN));
+        assertThat(breaker.getTrips(), is(2L));
+
+        clock.advance(OPEN_DURATION);
+        send(breaker, httpClient);
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    @DisplayName("sendAsync rejects requests when the bulkhead is full and frees places of cancelled requests")
+    public void sendAsyncRejectsRequestsWhenTheBulkheadIsFullAndFreesPlacesOfCancelledRequests() {
+        CircuitBreaker breaker = new CircuitBreaker(NAME, FAILURE_THRESHOLD, OPEN_DURATION, 1, new MutableClock());
+        DelayedMockHttpClient<String> httpClient = new DelayedMockHttpClient<>(new HttpResponseStatus200<>(""),
+                                                                               Duration.ofSeconds(5));
+
+        CompletableFuture<HttpResponse<String>> first = breaker.sendAsync(httpClient, REQUEST,
+                                                                         BodyHandlers.ofString());
+        CompletableFuture<HttpResponse<String>> second = breaker.sendAsync(httpClient, REQUEST,
+                                                                          BodyHandlers.ofString());
+        first.cancel(true);
+        CompletableFuture<HttpResponse<String>> third = breaker.sendAsync(httpClient, REQUEST,
+                                                                         BodyHandlers.ofString());
+        third.cancel(true);
+
+        assertThat(second.isCompletedExceptionally(), is(true));
+        assertThat(httpClient.getRequestCount(), is(2));
+        assertThat(breaker.getRejectedByBulkhead(), is(1L));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    @Test
+    @DisplayName("sendAsync frees the place of a cancelled request while its exchange is still under way")
+    public void sendAsyncFreesThePlaceOfACancelledRequestWhileItsExchangeIsStillUnderWay() {
+        CircuitBreaker breaker = new CircuitBreaker(NAME, FAILURE_THRESHOLD, OPEN_DURATION, 1, new MutableClock());
+        PendingMockHttpClient<String> httpClient = new PendingMockHttpClient<>(new HttpResponseStatus200<>(""));
+
+        breaker.sendAsync(httpClient, REQUEST, BodyHandlers.ofString()).cancel(true);
+        CompletableFuture<HttpResponse<String>> second = breaker.sendAsync(httpClient, REQUEST,
+                                                                          BodyHandlers.ofString());
+
+        assertThat(httpClient.getExchanges().get(0).isDone(), is(false));
+        assertThat(second.isDone(), is(false));
+        assertThat(httpClient.getRequestCount(), is(2));
+        assertThat(breaker.getRejectedByBulkhead(), is(0L));
+    }
+
+    @Test
+    @DisplayName("fromConfig names the breaker after the upstream")
+    public void fromConfigNamesTheBreakerAfterTheUpstream() {
+        CircuitBreaker breaker = CircuitBreaker.fromConfig(CrossRefClient.NAME, new Config());
+
+        assertThat(breaker.getName(), is(CrossRefClient.NAME));
+        assertThat(breaker.getState(), is(State.CLOSED));
+    }
+
+    private static void send(CircuitBreaker breaker, MockHttpClient<String> httpClient) {
+        breaker.sendAsync(httpClient, REQUEST, BodyHandlers.ofString()).join();
+    }
+}
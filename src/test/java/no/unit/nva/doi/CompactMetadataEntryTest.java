@@ -0,0 +1,109 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.zip.Deflater;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractLambdaTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class CompactMetadataEntryTest extends AbstractLambdaTest {
+
+    public static final Instant FETCHED_AT = Instant.parse("2020-01-15T10:15:30.123Z");
+    public static final String ETAG = "\"v1\"";
+    public static final String LAST_MODIFIED = "Wed, 15 Jan 2020 10:15:30 GMT";
+    public static final String OTHER_SOURCE = "https://api.test.crossref.org";
+    public static final String SHORT_METADATA = "{\"title\":\"A title \u00e6\u00f8\u00e5\"}";
+
+    @Test
+    @DisplayName("decode returns the metadata, source and validators that were encoded")
+    public void decodeReturnsTheMetadataSourceAndValidatorsThatWereEncoded() throws IOException {
+        MetadataAndContentLocation metadata = new MetadataAndContentLocation(
+            CrossRefClient.CROSSREF_LINK, IoUtils.resourceAsString(CrossRefSamplePath), ETAG, LAST_MODIFIED);
+
+        CompactMetadataEntry entry = CompactMetadataEntry.encode(metadata, CITEPROC_JSON, FETCHED_AT);
+
+        assertThat(entry.decode(), is(equalTo(metadata)));
+        assertThat(entry.decode().hashCode(), is(metadata.hashCode()));
+        assertThat(entry.getContentType(), is(CITEPROC_JSON));
+        assertThat(entry.getFetchedAt(), is(equalTo(FETCHED_AT)));
+        assertThat(entry.isDeflated(), is(true));
+    }
+
+    @Test
+    @DisplayName("encode holds the canonical representation of the CrossRef sample in a third of its UTF-8 bytes")
+    public void encodeHoldsTheCanonicalRepresentationOfTheCrossRefSampleInAThirdOfItsUtf8Bytes() throws IOException {
+        String json = WorkTransformer.transform(IoUtils.resourceAsString(CrossRefSamplePath),
+                                                DoiMetadataResolver.CANONICAL_CONTENT_TYPE);
+        byte[] utf8 = json.getBytes(StandardCharsets.UTF_8);
+
+        CompactMetadataEntry entry = CompactMetadataEntry.encode(
+            new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, json),
+            DoiMetadataResolver.CANONICAL_CONTENT_TYPE, FETCHED_AT);
+
+        assertTrue(entry.size() * 3 < utf8.length);
+        assertTrue(entry.size() < deflatedWithoutDictionary(utf8));
+    }
+
+    @Test
+    @DisplayName("encode deflates small documents better with the dictionary than without")
+    public void encodeDeflatesSmallDocumentsBetterWithTheDictionaryThanWithout() throws IOException {
+        byte[] json = IoUtils.resourceAsString(Paths.get("dataciteResponse.json")).getBytes(StandardCharsets.UTF_8);
+
+        CompactMetadataEntry entry = CompactMetadataEntry.encode(
+            new MetadataAndContentLocation(DataciteClient.DATACITE_BASE_URL_STRING, new String(json,
+                StandardCharsets.UTF_8)), DATACITE_JSON, FETCHED_AT);
+
+        assertThat(entry.isDeflated(), is(true));
+        assertTrue(entry.size() < deflatedWithoutDictionary(json));
+    }
+
+    @Test
+    @DisplayName("encode keeps short metadata, missing values and unknown sources as they are")
+    public void encodeKeepsShortMetadataMissingValuesAndUnknownSourcesAsTheyAre() {
+        MetadataAndContentLocation shortMetadata = new MetadataAndContentLocation(OTHER_SOURCE, SHORT_METADATA);
+        MetadataAndContentLocation empty = new MetadataAndContentLocation(null, null);
+
+        CompactMetadataEntry shortEntry = CompactMetadataEntry.encode(shortMetadata, DATACITE_JSON, FETCHED_AT);
+        CompactMetadataEntry emptyEntry = CompactMetadataEntry.encode(empty, null, FETCHED_AT);
+
+        assertThat(shortEntry.isDeflated(), is(false));
+        assertThat(shortEntry.decode(), is(equalTo(shortMetadata)));
+        assertThat(emptyEntry.decode(), is(equalTo(empty)));
+        assertThat(emptyEntry.getContentType(), is((DataciteContentType) null));
+    }
+
+    @Test
+    @DisplayName("readDictionary throws IllegalStateException for a missing resource")
+    public void readDictionaryThrowsIllegalStateExceptionForAMissingResource() {
+        assertThrows(IllegalStateException.class, () -> CompactMetadataEntry.readDictionary("missing.txt"));
+        assertTrue(CompactMetadataEntry.readDictionary(CompactMetadataEntry.DICTIONARY_RESOURCE).length > 0);
+    }
+
+    private static int deflatedWithoutDictionary(byte[] json) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            deflater.setInput(json);
+            deflater.finish();
+            byte[] buffer = new byte[json.length * 2];
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return length;
+        } finally {
+            deflater.end();
+        }
+    }
+}
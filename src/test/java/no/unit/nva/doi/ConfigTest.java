@@ -0,0 +1,36 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ConfigTest {
+
+    public static final long DEFAULT_VALUE = 42L;
+
+    @Test
+    @DisplayName("parseLong returns the parsed value for numeric strings")
+    public void parseLongReturnsTheParsedValueForNumericStrings() {
+        assertThat(Config.parseLong(" 100 ", DEFAULT_VALUE), is(100L));
+    }
+
+    @Test
+    @DisplayName("parseLong returns the default value for missing or non numeric strings")
+    public void parseLongReturnsTheDefaultValueForMissingOrNonNumericStrings() {
+        assertThat(Config.parseLong(null, DEFAULT_VALUE), is(DEFAULT_VALUE));
+        assertThat(Config.parseLong("ten", DEFAULT_VALUE), is(DEFAULT_VALUE));
+        assertThat(Config.longFromEnvironment("NoSuchVariableForConfigTest", DEFAULT_VALUE), is(DEFAULT_VALUE));
+    }
+
+    @Test
+    @DisplayName("Config exposes cache settings")
+    public void configExposesCacheSettings() {
+        Config config = new Config();
+        config.setCacheMaxBytes(DEFAULT_VALUE);
+        config.setCacheTtlSeconds(DEFAULT_VALUE);
+        assertThat(config.getCacheMaxBytes(), is(DEFAULT_VALUE));
+        assertThat(config.getCacheTtlSeconds(), is(DEFAULT_VALUE));
+    }
+}
@@ -5,14 +5,37 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.jupiter.api.Assertions.assertThrows;
-import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import javax.ws.rs.core.HttpHeaders;
 import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractHttpResponse;
 import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.DelayedMockHttpClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus304;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus500;
+import no.unit.nva.utils.HttpResponseStatus503;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.SequenceMockHttpClient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -21,7 +44,12 @@ public class CrossRefClientTest extends AbstractLambdaTest {
 
     private CrossRefClient crossRefClient;
 
-    public static final String ILLEGAL_DOI_STRING = "doi:" + DOI_STRING;
+    public static final String ILLEGAL_DOI_STRING = "https://example.org/" + DOI_STRING;
+    public static final String DOI_WITH_SCHEME = "doi:" + DOI_STRING;
+    public static final String OLD_ETAG = "\"1\"";
+    public static final String NEW_ETAG = "\"2\"";
+    public static final String LAST_MODIFIED = "Wed, 15 Jan 2020 10:15:30 GMT";
+    public static final String MAILTO = "support@example.org";
 
     @BeforeEach
     void before() throws IOException {
@@ -39,6 +67,24 @@ public class CrossRefClientTest extends AbstractLambdaTest {
         assertThat(output, is(equalTo(expected)));
     }
 
+    @DisplayName("createTargetUrl returns a valid Url for DOI strings with the doi scheme")
+    @Test
+    public void createTargetUrlReturnsAValidUrlForDoiStringsWithTheDoiScheme() throws URISyntaxException {
+        String expected = String.join("/", CrossRefClient.CROSSREF_LINK, WORKS, DOI_STRING);
+
+        assertThat(crossRefClient.createUrlToCrossRef(DOI_WITH_SCHEME).toString(), is(equalTo(expected)));
+    }
+
+    @DisplayName("createTargetUrl percent-encodes the DOI and keeps the separators of the suffix")
+    @Test
+    public void createTargetUrlPercentEncodesTheDoiAndKeepsTheSeparatorsOfTheSuffix() throws URISyntaxException {
+        String output = crossRefClient.createUrlToCrossRef("10.1002/(SICI)1097-4571(199806)49:8<693::AID>3.0.CO;2-0")
+                                      .toString();
+
+        assertThat(output, is(equalTo(String.join("/", CrossRefClient.CROSSREF_LINK, WORKS,
+            "10.1002/(sici)1097-4571(199806)49:8%3C693::aid%3E3.0.co;2-0"))));
+    }
+
     @DisplayName("createTargetUrl returns a valid Url for DOI strings that are DOI DX URLs")
     @Test
     public void createTargetUrlReturnsAValidUrlForDoiStringThatIsDoiDxUrl()
@@ -66,7 +112,7 @@ public class CrossRefClientTest extends AbstractLambdaTest {
     @Test
     @DisplayName("fetchDataForDoi returns an empty Optional for a non existing URL")
     public void fetchDataForDoiReturnAnEmptyOptionalForANonExistingUrl()
-        throws URISyntaxException {
+        throws IOException, URISyntaxException {
 
         CrossRefClient crossRefClient = crossRefClientReceives404();
 
@@ -75,12 +121,25 @@ public class CrossRefClientTest extends AbstractLambdaTest {
     }
 
     @Test
-    @DisplayName("fetchDataForDoi returns an empty Optional for an unknown error")
-    public void fetchDataForDoiReturnAnEmptyOptionalForAnUnknownError()
-        throws URISyntaxException {
+    @DisplayName("fetchDataForDoi throws IOException for an unknown error instead of reporting the DOI as not found")
+    public void fetchDataForDoiThrowsIoExceptionForAnUnknownError() {
         CrossRefClient crossRefClient = crossRefClientReceives500();
-        Optional<String> result = crossRefClient.fetchDataForDoi(DOI_STRING).map(MetadataAndContentLocation::getJson);
-        assertTrue(result.isEmpty());
+        IOException exception = assertThrows(IOException.class, () -> crossRefClient.fetchDataForDoi(DOI_STRING));
+        assertThat(exception.getMessage(), is(equalTo(CrossRefClient.UNKNOWN_ERROR_MESSAGE + 500)));
+        assertThat(crossRefClient.getRetryPolicy().getCount(RetryPolicy.Outcome.TERMINAL), is(1L));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoi retries when CrossRef is unavailable")
+    public void fetchDataForDoiRetriesWhenCrossRefIsUnavailable() throws IOException, URISyntaxException {
+        List<AbstractHttpResponse<String>> responses = List.of(
+            new HttpResponseStatus503<>(ERROR_MESSAGE), new HttpResponseStatus200<>(ERROR_MESSAGE));
+        SequenceMockHttpClient<String> httpClient = new SequenceMockHttpClient<>(responses);
+
+        Optional<MetadataAndContentLocation> result = new CrossRefClient(httpClient).fetchDataForDoi(DOI_STRING);
+
+        assertThat(result.isPresent(), is(true));
+        assertThat(httpClient.getRequestCount(), is(2));
     }
 
     @Test
@@ -88,6 +147,186 @@ public class CrossRefClientTest extends AbstractLambdaTest {
         assertThrows(IllegalArgumentException.class, () -> crossRefClient.fetchDataForDoi(ILLEGAL_DOI_STRING));
     }
 
+    @Test
+    @DisplayName("fetchDataForDoiAsync completes with the metadata for an existing URL")
+    public void fetchDataForDoiAsyncCompletesWithTheMetadataForAnExistingUrl() throws Exception {
+        Optional<MetadataAndContentLocation> result = crossRefClient.fetchDataForDoiAsync(DOI_STRING).get();
+
+        assertThat(result.isPresent(), is(true));
+        assertThat(result.get().getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoiAsync completes with an empty Optional for a non existing URL")
+    public void fetchDataForDoiAsyncCompletesWithAnEmptyOptionalForANonExistingUrl() throws Exception {
+        Optional<MetadataAndContentLocation> result = crossRefClientReceives404().fetchDataForDoiAsync(DOI_STRING)
+                                                                                 .get();
+
+        assertThat(result.isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoiAsync retries retryable server errors and then completes exceptionally")
+    public void fetchDataForDoiAsyncRetriesRetryableServerErrorsAndThenCompletesExceptionally()
+        throws URISyntaxException {
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus503<>(ERROR_MESSAGE));
+        CompletableFuture<Optional<MetadataAndContentLocation>> result = new CrossRefClient(httpClient)
+            .fetchDataForDoiAsync(DOI_STRING, Duration.ofSeconds(3), 3);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertThat(exception.getCause() instanceof IOException, is(true));
+        assertThat(httpClient.getRequestCount(), is(3));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoiAsync completes exceptionally when the timeout expires")
+    public void fetchDataForDoiAsyncCompletesExceptionallyWhenTheTimeoutExpires() throws URISyntaxException {
+        DelayedMockHttpClient<String> httpClient = new DelayedMockHttpClient<>(
+            new HttpResponseStatus200<>(ERROR_MESSAGE), Duration.ofSeconds(5));
+        CompletableFuture<Optional<MetadataAndContentLocation>> result = new CrossRefClient(httpClient)
+            .fetchDataForDoiAsync(DOI_STRING, Duration.ofMillis(10), 1);
+
+        ExecutionException exception = assertThrows(ExecutionException.class, result::get);
+        assertThat(exception.getCause() instanceof TimeoutException, is(true));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoiAsync can be cancelled while the request is in flight")
+    public void fetchDataForDoiAsyncCanBeCancelledWhileTheRequestIsInFlight() throws URISyntaxException {
+        DelayedMockHttpClient<String> httpClient = new DelayedMockHttpClient<>(
+            new HttpResponseStatus200<>(ERROR_MESSAGE), Duration.ofSeconds(5));
+        CompletableFuture<Optional<MetadataAndContentLocation>> result = new CrossRefClient(httpClient)
+            .fetchDataForDoiAsync(DOI_STRING);
+
+        assertThat(result.cancel(true), is(true));
+        assertThrows(CancellationException.class, result::join);
+    }
+
+    @Test
+    @DisplayName("fetchStreamForDoi streams the metadata for an existing URL")
+    public void fetchStreamForDoiStreamsTheMetadataForAnExistingUrl() throws IOException, URISyntaxException {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(ERROR_MESSAGE.getBytes(StandardCharsets.UTF_8))));
+
+        try (MetadataStream stream = new CrossRefClient(httpClient).fetchStreamForDoi(DOI_STRING).orElseThrow()) {
+            assertThat(stream.getContentLocation(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+            assertThat(new BufferedReader(stream.getReader()).readLine(), is(equalTo(ERROR_MESSAGE)));
+        }
+    }
+
+    @Test
+    @DisplayName("fetchStreamForDoi keeps the validators CrossRef sent with the metadata")
+    public void fetchStreamForDoiKeepsTheValidatorsCrossRefSentWithTheMetadata()
+        throws IOException, URISyntaxException {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(new byte[0]), Map.of(HttpHeaders.ETAG, List.of(NEW_ETAG),
+                                                          HttpHeaders.LAST_MODIFIED, List.of(LAST_MODIFIED))));
+
+        try (MetadataStream stream = new CrossRefClient(httpClient).fetchStreamForDoi(DOI_STRING).orElseThrow()) {
+            MetadataAndContentLocation metadata = stream.withMetadata("{}");
+            assertThat(metadata.getEtag(), is(equalTo(NEW_ETAG)));
+            assertThat(metadata.getLastModified(), is(equalTo(LAST_MODIFIED)));
+            assertThat(metadata.getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        }
+    }
+
+    @Test
+    @DisplayName("fetchStreamForDoi returns an empty Optional for a non existing URL")
+    public void fetchStreamForDoiReturnsAnEmptyOptionalForANonExistingUrl() throws IOException, URISyntaxException {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(new HttpResponseStatus404<>(
+            new ByteArrayInputStream(new byte[0])));
+
+        assertThat(new CrossRefClient(httpClient).fetchStreamForDoi(DOI_STRING), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("fetchStreamForDoi throws IOException when CrossRef fails")
+    public void fetchStreamForDoiThrowsIoExceptionWhenCrossRefFails() {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(new HttpResponseStatus500<>(
+            new ByteArrayInputStream(new byte[0])));
+
+        assertThrows(IOException.class, () -> new CrossRefClient(httpClient).fetchStreamForDoi(DOI_STRING));
+    }
+
+    @Test
+    @DisplayName("fetchStreamForDoi throws IOException when the request fails")
+    public void fetchStreamForDoiThrowsIoExceptionWhenTheRequestFails() {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(null)) {
+            @Override
+            public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                    BodyHandler<T> responseBodyHandler) {
+                return CompletableFuture.failedFuture(new IOException(ERROR_MESSAGE));
+            }
+        };
+
+        assertThrows(IOException.class, () -> new CrossRefClient(httpClient).fetchStreamForDoi(DOI_STRING));
+    }
+
+    @Test
+    @DisplayName("revalidate sends the stored ETag and returns changed metadata with its validators")
+    public void revalidateSendsTheStoredEtagAndReturnsChangedMetadataWithItsValidators()
+        throws IOException, URISyntaxException {
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            "{}", Map.of(HttpHeaders.ETAG, List.of(NEW_ETAG))));
+        MetadataAndContentLocation stored = new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, "{}",
+                                                                           OLD_ETAG, null);
+
+        Optional<MetadataAndContentLocation> changed = new CrossRefClient(httpClient).revalidate(DOI_STRING, stored);
+
+        HttpRequest request = httpClient.getLastRequest();
+        assertThat(request.headers().firstValue(HttpHeaders.IF_NONE_MATCH).get(), is(equalTo(OLD_ETAG)));
+        assertThat(request.headers().firstValue(HttpHeaders.IF_MODIFIED_SINCE), is(Optional.empty()));
+        assertThat(changed.get().getEtag(), is(equalTo(NEW_ETAG)));
+        assertThat(changed.get().getLastModified(), is((String) null));
+    }
+
+    @Test
+    @DisplayName("revalidate returns empty when CrossRef answers NotModified and throws when it fails")
+    public void revalidateReturnsEmptyWhenCrossRefAnswersNotModifiedAndThrowsWhenItFails()
+        throws IOException, URISyntaxException {
+        MetadataAndContentLocation stored = new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, "{}",
+                                                                           OLD_ETAG, null);
+        CrossRefClient notModified = new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus304<>("")));
+        CrossRefClient failing = new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus500<>("")));
+
+        assertThat(notModified.revalidate(DOI_STRING, stored), is(Optional.empty()));
+        assertThrows(IOException.class, () -> failing.revalidate(DOI_STRING, stored));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoi asks for the polite pool and follows the rate limit CrossRef announces")
+    public void fetchDataForDoiAsksForThePolitePoolAndFollowsTheRateLimitCrossRefAnnounces()
+        throws IOException, URISyntaxException {
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            "{}", Map.of(RateLimiter.RATE_LIMIT_LIMIT, List.of("5"),
+                         RateLimiter.RATE_LIMIT_INTERVAL, List.of("2s"))));
+        Config config = new Config();
+        CrossRefClient client = new CrossRefClient(httpClient, RetryPolicy.fromConfig(config),
+                                                   CircuitBreaker.fromConfig(CrossRefClient.NAME, config),
+                                                   RateLimiter.fromConfig(CrossRefClient.NAME, config), MAILTO);
+
+        client.fetchDataForDoi(DOI_STRING);
+
+        HttpRequest request = httpClient.getLastRequest();
+        assertThat(request.uri().getQuery(), is(equalTo(CrossRefClient.MAILTO_PARAMETER + "=" + MAILTO)));
+        assertThat(request.headers().firstValue(HttpHeaders.USER_AGENT).get(),
+                   is(equalTo(String.format(CrossRefClient.USER_AGENT_FORMAT, MAILTO))));
+        assertThat(client.getRateLimiter().getLimit(), is(5));
+        assertThat(client.getRateLimiter().getInterval(), is(Duration.ofSeconds(2)));
+    }
+
+    @Test
+    @DisplayName("fetchDataForDoi sends anonymous requests without a contact address")
+    public void fetchDataForDoiSendsAnonymousRequestsWithoutAContactAddress() throws IOException, URISyntaxException {
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>("{}"));
+
+        new CrossRefClient(httpClient).fetchDataForDoi(DOI_STRING);
+
+        HttpRequest request = httpClient.getLastRequest();
+        assertThat(request.uri().getQuery(), is((String) null));
+        assertThat(request.headers().firstValue(HttpHeaders.USER_AGENT), is(Optional.empty()));
+    }
+
     private void targetURlReturnsAValidUrlForDoiStrings(String doiPrefix)
         throws URISyntaxException {
         String doiURL = String.join("/", doiPrefix, DOI_STRING);
@@ -1,49 +1,243 @@
 package no.unit.nva.doi;
 
-import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.ArgumentMatchers.anyString;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.http.HttpRequest;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import org.junit.Assert;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+import no.unit.nva.utils.AbstractHttpResponse;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus304;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus500;
+import no.unit.nva.utils.HttpResponseStatus503;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.SequenceMockHttpClient;
+import org.apache.http.HttpHeaders;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 public class DataciteClientTest {
 
-    public static final String EXAMPLE_URL = "http://example.org";
+    public static final String DOI_URL = "https://doi.org/10.5061/dryad.1";
     public static final String DATACITE_RESPONSE_FILE = "src/test/resources/dataciteResponse.json";
     public static final String EMPTY_RESPONSE_FILE = "src/test/resources/emptyResponse";
+    public static final String OLD_ETAG = "\"1\"";
+    public static final String NEW_ETAG = "\"2\"";
+    public static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+    public static final long REMAINING_MILLIS = 5000;
 
     @Test
     public void testMockUrl() throws IOException {
-        DataciteClient dataciteClient = mock(DataciteClient.class);
-        when(dataciteClient.createRequestUrl(anyString(), any(DataciteContentType.class))).thenCallRealMethod();
-        when(dataciteClient.fetchMetadata(anyString(), any(DataciteContentType.class))).thenCallRealMethod();
-        when(dataciteClient.readStringFromUrl(any(URL.class))).thenReturn(new String());
+        DataciteClient dataciteClient = dataciteClientReturning(new byte[0]);
 
         MetadataAndContentLocation metadata = dataciteClient
-            .fetchMetadata(EXAMPLE_URL, DataciteContentType.CITEPROC_JSON);
+            .fetchMetadata(DOI_URL, DataciteContentType.CITEPROC_JSON);
 
-        Assert.assertNotNull(metadata);
+        assertThat(metadata.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
     }
 
     @Test
     public void testValidResponseUrl() throws IOException {
-        DataciteClient dataciteClient = mock(DataciteClient.class);
-        when(dataciteClient.readStringFromUrl(any(URL.class))).thenCallRealMethod();
-        String stringFromUrl = dataciteClient
-            .readStringFromUrl(Paths.get(DATACITE_RESPONSE_FILE).toUri().toURL());
-        Assert.assertNotNull(stringFromUrl);
+        byte[] body = Files.readAllBytes(Paths.get(DATACITE_RESPONSE_FILE));
+        DataciteClient dataciteClient = dataciteClientReturning(body);
+
+        String json = dataciteClient.fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON).getJson();
+
+        assertThat(json, is(equalTo(new String(body, StandardCharsets.UTF_8))));
     }
 
     @Test
     public void testEmptyResponseUrl() throws IOException {
-        DataciteClient dataciteClient = mock(DataciteClient.class);
-        when(dataciteClient.readStringFromUrl(any(URL.class))).thenCallRealMethod();
-        String stringFromUrl = dataciteClient.readStringFromUrl(Paths.get(EMPTY_RESPONSE_FILE).toUri().toURL());
-        Assert.assertEquals(new String(), stringFromUrl);
+        byte[] body = Files.readAllBytes(Paths.get(EMPTY_RESPONSE_FILE));
+        DataciteClient dataciteClient = dataciteClientReturning(body);
+
+        String json = dataciteClient.fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON).getJson();
+
+        assertThat(json, is(equalTo(new String())));
+    }
+
+    @Test
+    @DisplayName("fetchMetadata decompresses gzip encoded responses")
+    public void fetchMetadataDecompressesGzipEncodedResponses() throws IOException {
+        byte[] body = Files.readAllBytes(Paths.get(DATACITE_RESPONSE_FILE));
+        Map<String, List<String>> headers = Map.of(HttpHeaders.CONTENT_ENCODING, List.of(DataciteClient.GZIP));
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(gzip(body), headers));
+
+        String json = new DataciteClient(httpClient)
+            .fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON)
+            .getJson();
+
+        assertThat(json, is(equalTo(new String(body, StandardCharsets.UTF_8))));
+    }
+
+    @Test
+    @DisplayName("fetchMetadata throws FileNotFoundException when DataCite does not know the DOI")
+    public void fetchMetadataThrowsFileNotFoundExceptionWhenDataCiteDoesNotKnowTheDoi() {
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus404<>(new byte[0]));
+        DataciteClient dataciteClient = new DataciteClient(httpClient);
+
+        assertThrows(FileNotFoundException.class,
+            () -> dataciteClient.fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON));
+    }
+
+    @Test
+    @DisplayName("fetchMetadata throws IOException when DataCite fails")
+    public void fetchMetadataThrowsIoExceptionWhenDataCiteFails() {
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus500<>(new byte[0]));
+        DataciteClient dataciteClient = new DataciteClient(httpClient);
+
+        IOException exception = assertThrows(IOException.class,
+            () -> dataciteClient.fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON));
+        assertThat(exception instanceof FileNotFoundException, is(false));
+    }
+
+    @Test
+    @DisplayName("fetchMetadata retries when DataCite is unavailable")
+    public void fetchMetadataRetriesWhenDataCiteIsUnavailable() throws IOException {
+        byte[] body = "{}".getBytes(StandardCharsets.UTF_8);
+        List<AbstractHttpResponse<byte[]>> responses = List.of(new HttpResponseStatus503<>(new byte[0]),
+                                                               new HttpResponseStatus200<>(body));
+        SequenceMockHttpClient<byte[]> httpClient = new SequenceMockHttpClient<>(responses);
+        DataciteClient dataciteClient = new DataciteClient(httpClient);
+
+        MetadataAndContentLocation result = dataciteClient.fetchMetadata(DOI_URL, DataciteContentType.DATACITE_JSON);
+
+        assertThat(result.getJson(), is(equalTo("{}")));
+        assertThat(httpClient.getRequestCount(), is(2));
+        assertThat(dataciteClient.getRetryPolicy().getCount(RetryPolicy.Outcome.RETRIED), is(1L));
+    }
+
+    @Test
+    @DisplayName("fetchMetadataStream streams and decompresses gzip encoded responses")
+    public void fetchMetadataStreamStreamsAndDecompressesGzipEncodedResponses() throws IOException {
+        byte[] body = Files.readAllBytes(Paths.get(DATACITE_RESPONSE_FILE));
+        Map<String, List<String>> headers = Map.of(HttpHeaders.CONTENT_ENCODING, List.of(DataciteClient.GZIP));
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(
+            new HttpResponseStatus200<>(new ByteArrayInputStream(gzip(body)), headers));
+
+        try (MetadataStream stream = new DataciteClient(httpClient)
+            .fetchMetadataStream(DOI_URL, DataciteContentType.DATACITE_JSON)) {
+            StringWriter json = new StringWriter();
+            stream.getReader().transferTo(json);
+            assertThat(json.toString(), is(equalTo(new String(body, StandardCharsets.UTF_8))));
+            assertThat(stream.getContentLocation(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        }
+    }
+
+    @Test
+    @DisplayName("fetchMetadataStream throws FileNotFoundException when DataCite does not know the DOI")
+    public void fetchMetadataStreamThrowsFileNotFoundExceptionWhenDataCiteDoesNotKnowTheDoi() {
+        MockHttpClient<InputStream> httpClient = new MockHttpClient<>(
+            new HttpResponseStatus404<>(new ByteArrayInputStream(new byte[0])));
+        DataciteClient dataciteClient = new DataciteClient(httpClient);
+
+        assertThrows(FileNotFoundException.class,
+            () -> dataciteClient.fetchMetadataStream(DOI_URL, DataciteContentType.DATACITE_JSON));
+    }
+
+    @Test
+    @DisplayName("createRequestUrl accepts DOI strings and rejects values that are not DOIs")
+    public void createRequestUrlAcceptsDoiStringsAndRejectsValuesThatAreNotDois() throws IOException {
+        DataciteClient dataciteClient = new DataciteClient();
+
+        URL url = dataciteClient.createRequestUrl("doi:10.5061/DRYAD.1", DataciteContentType.DATACITE_JSON);
+
+        assertThat(url.toString(), is(equalTo(
+            DataciteClient.DATACITE_BASE_URL_STRING + "/application/vnd.datacite.datacite+json/10.5061/dryad.1")));
+        assertThrows(MalformedURLException.class,
+            () -> dataciteClient.createRequestUrl("https://example.org/10.5061/dryad.1",
+                                                  DataciteContentType.DATACITE_JSON));
+    }
+
+    @Test
+    @DisplayName("createRequest asks for gzip encoding")
+    public void createRequestAsksForGzipEncoding() throws IOException {
+        DataciteClient dataciteClient = new DataciteClient();
+        URL url = dataciteClient.createRequestUrl(DOI_URL, DataciteContentType.DATACITE_XML);
+
+        HttpRequest request = dataciteClient.createRequest(url);
+
+        assertThat(request.headers().firstValue(HttpHeaders.ACCEPT_ENCODING).get(),
+                   is(equalTo(DataciteClient.GZIP)));
+        assertThat(request.uri().toString(), is(equalTo(
+            DataciteClient.DATACITE_BASE_URL_STRING + "/application/vnd.datacite.datacite+xml/10.5061/dryad.1")));
+    }
+
+    @Test
+    @DisplayName("revalidate sends the stored validators and keeps the validators of changed metadata")
+    public void revalidateSendsTheStoredValidatorsAndKeepsTheValidatorsOfChangedMetadata() throws IOException {
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            "{}".getBytes(StandardCharsets.UTF_8), Map.of(HttpHeaders.ETAG, List.of(NEW_ETAG),
+                                                          HttpHeaders.LAST_MODIFIED, List.of(LAST_MODIFIED))));
+        MetadataAndContentLocation stored = new MetadataAndContentLocation(
+            DataciteClient.DATACITE_BASE_URL_STRING, "{\"old\":true}", OLD_ETAG, LAST_MODIFIED);
+
+        Optional<MetadataAndContentLocation> changed = new DataciteClient(httpClient)
+            .revalidate(DOI_URL, DataciteContentType.DATACITE_JSON, stored);
+
+        HttpRequest request = httpClient.getLastRequest();
+        assertThat(request.headers().firstValue(HttpHeaders.IF_NONE_MATCH).get(), is(equalTo(OLD_ETAG)));
+        assertThat(request.headers().firstValue(HttpHeaders.IF_MODIFIED_SINCE).get(), is(equalTo(LAST_MODIFIED)));
+        assertThat(changed.get().getJson(), is(equalTo("{}")));
+        assertThat(changed.get().getEtag(), is(equalTo(NEW_ETAG)));
+        assertThat(changed.get().getLastModified(), is(equalTo(LAST_MODIFIED)));
+    }
+
+    @Test
+    @DisplayName("revalidate returns empty when DataCite answers NotModified")
+    public void revalidateReturnsEmptyWhenDataCiteAnswersNotModified() throws IOException {
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus304<>(new byte[0]));
+        MetadataAndContentLocation stored = new MetadataAndContentLocation(DataciteClient.DATACITE_BASE_URL_STRING,
+                                                                           "{}");
+
+        assertThat(new DataciteClient(httpClient).revalidate(DOI_URL, DataciteContentType.DATACITE_JSON, stored),
+                   is(Optional.empty()));
+        assertThat(httpClient.getLastRequest().headers().firstValue(HttpHeaders.IF_NONE_MATCH), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("fetchMetadata gives an attempt no more than what is left of the invocation")
+    public void fetchMetadataGivesAnAttemptNoMoreThanWhatIsLeftOfTheInvocation() throws IOException {
+        MockHttpClient<byte[]> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>(new byte[0]));
+        InvocationDeadline.start(REMAINING_MILLIS);
+        try {
+            new DataciteClient(httpClient).fetchMetadata(DOI_URL, DataciteContentType.CITEPROC_JSON);
+        } finally {
+            InvocationDeadline.start(null);
+        }
+
+        Duration timeout = httpClient.getLastRequest().timeout().orElseThrow();
+        assertThat(timeout.compareTo(Duration.ofMillis(REMAINING_MILLIS).minus(InvocationDeadline.RESPONSE_MARGIN))
+                       <= 0, is(true));
+    }
+
+    private DataciteClient dataciteClientReturning(byte[] body) {
+        return new DataciteClient(new MockHttpClient<>(new HttpResponseStatus200<>(body)));
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+            gzip.write(body);
+        }
+        return bytes.toByteArray();
     }
 }
@@ -1,6 +1,7 @@
 package no.unit.nva.doi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
@@ -27,4 +28,11 @@ public class DataciteContentTypeTest {
 
         assertTrue(exception.getMessage().contains("Datacite Content Type not found for"));
     }
+
+    @Test
+    public void testIsJson() {
+        assertTrue(DataciteContentType.CITEPROC_JSON.isJson());
+        assertTrue(DataciteContentType.DATACITE_JSON.isJson());
+        assertFalse(DataciteContentType.DATACITE_XML.isJson());
+    }
 }
@@ -1,10 +1,13 @@
 package no.unit.nva.doi;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import java.net.MalformedURLException;
+import java.util.List;
 import org.junit.Test;
 
 public class DoiLookupTest {
@@ -25,4 +28,13 @@ public class DoiLookupTest {
 
         assertEquals(processedDoiLookup.getDoi(), doiLookup.getDoi());
     }
+
+    @Test
+    public void batchLookupsCarryAListOfDois() {
+        DoiLookup doiLookup = gson.fromJson("{\"dois\":[\"10.1109/5.771073\"]}", DoiLookup.class);
+
+        assertTrue(doiLookup.isBatch());
+        assertEquals(List.of("10.1109/5.771073"), doiLookup.getDois());
+        assertFalse(new DoiLookup().isBatch());
+    }
 }
@@ -0,0 +1,452 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_XML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.DelayedMockHttpClient;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus304;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus500;
+import no.unit.nva.utils.HttpResponseStatus503;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class DoiMetadataResolverTest extends AbstractLambdaTest {
+
+    public static final String DATACITE_DOI = "https://doi.org/10.99999/dataset.1";
+    public static final String OTHER_DATACITE_DOI = "https://doi.org/10.99999/dataset.2";
+    public static final String SEEDED_DATACITE_DOI = "https://doi.org/10.5061/dryad.1";
+
+    public static final int CONCURRENT_LOOKUPS = 4;
+    public static final Duration STALE_TTL = Duration.ofMinutes(10);
+    public static final String CHANGED_JSON =
+        "{\"message\":{\"DOI\":\"10.1007/s00115-004-1822-4\",\"type\":\"journal-article\",\"title\":[\"Changed\"]}}";
+    public static final String CHANGED_XML = "<resource><titles><title>Changed</title></titles></resource>";
+    public static final MetadataAndContentLocation STALE_METADATA =
+        new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, "{}", "\"1\"", null);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("resolve serves stale metadata and extends it when CrossRef answers NotModified")
+    public void resolveServesStaleMetadataAndExtendsItWhenCrossRefAnswersNotModified()
+        throws IOException, URISyntaxException {
+        MutableClock clock = new MutableClock();
+        MetadataCache cache = new MetadataCache(Long.MAX_VALUE, STALE_TTL, STALE_TTL, clock);
+        DoiMetadataResolver resolver = revalidatingResolver(
+            new MockHttpClient<>(new HttpResponseStatus304<>("")), cache);
+        cache.put(CacheKey.of(DOI_STRING, CITEPROC_JSON), STALE_METADATA);
+        clock.advance(STALE_TTL);
+
+        MetadataAndContentLocation result = resolver.resolve(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result, is(STALE_METADATA));
+        assertThat(resolver.getNotModified(), is(1L));
+        assertThat(cache.get(CacheKey.of(DOI_STRING, CITEPROC_JSON)).isPresent(), is(true));
+    }
+
+    @Test
+    @DisplayName("resolve serves stale metadata and replaces it when CrossRef has changed it")
+    public void resolveServesStaleMetadataAndReplacesItWhenCrossRefHasChangedIt()
+        throws IOException, URISyntaxException {
+        MutableClock clock = new MutableClock();
+        MetadataCache cache = new MetadataCache(Long.MAX_VALUE, STALE_TTL, STALE_TTL, clock);
+        DoiMetadataResolver resolver = revalidatingResolver(
+            new MockHttpClient<>(new HttpResponseStatus200<>(CHANGED_JSON)), cache);
+        cache.put(CacheKey.of(DOI_STRING, CITEPROC_JSON), STALE_METADATA);
+        clock.advance(STALE_TTL);
+
+        MetadataAndContentLocation result = resolver.resolve(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result, is(STALE_METADATA));
+        assertThat(resolver.getRefreshed(), is(1L));
+        assertThat(resolver.resolve(DOI_STRING, CITEPROC_JSON).getJson(),
+                   is(equalTo(WorkTransformer.transform(CHANGED_JSON, CITEPROC_JSON))));
+    }
+
+    @Test
+    @DisplayName("resolve revalidates stale DataCite metadata in its own content type")
+    public void resolveRevalidatesStaleDataciteMetadataInItsOwnContentType()
+        throws IOException, URISyntaxException {
+        MutableClock clock = new MutableClock();
+        MetadataCache cache = new MetadataCache(Long.MAX_VALUE, STALE_TTL, STALE_TTL, clock);
+        MockHttpClient<byte[]> dataciteHttpClient = new MockHttpClient<>(
+            new HttpResponseStatus200<>(CHANGED_XML.getBytes(StandardCharsets.UTF_8)));
+        Config config = new Config();
+        CrossRefClient crossRefClient = new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>("")));
+        DataciteClient dataciteClient = new DataciteClient(dataciteHttpClient);
+        DoiMetadataResolver resolver = new DoiMetadataResolver(
+            dataciteClient, crossRefClient, cache, RegistrationAgencyCache.fromConfig(config),
+            PrefixRouter.fromConfig(config), HedgedLookup.fromConfig(crossRefClient, dataciteClient, config),
+            Runnable::run);
+        MetadataAndContentLocation stale = new MetadataAndContentLocation(DataciteClient.DATACITE_BASE_URL_STRING,
+                                                                          "<resource/>", "\"1\"", null);
+        cache.put(CacheKey.of(DATACITE_DOI, DATACITE_XML), stale);
+        clock.advance(STALE_TTL);
+
+        assertThat(resolver.resolve(DATACITE_DOI, DATACITE_XML), is(stale));
+
+        assertThat(dataciteHttpClient.getLastRequest().uri().toString()
+                                     .contains(DATACITE_XML.getContentType()), is(true));
+        assertThat(resolver.getRefreshed(), is(1L));
+        assertThat(resolver.resolve(DATACITE_DOI, DATACITE_XML).getJson(), is(equalTo(CHANGED_XML)));
+        assertThat(cache.get(CacheKey.of(DATACITE_DOI, DATACITE_JSON)).isPresent(), is(false));
+    }
+
+    @Test
+    @DisplayName("resolve keeps serving stale metadata when revalidation fails")
+    public void resolveKeepsServingStaleMetadataWhenRevalidationFails() throws IOException, URISyntaxException {
+        MutableClock clock = new MutableClock();
+        MetadataCache cache = new MetadataCache(Long.MAX_VALUE, STALE_TTL, STALE_TTL, clock);
+        DoiMetadataResolver resolver = revalidatingResolver(
+            new MockHttpClient<>(new HttpResponseStatus500<>(ERROR_MESSAGE)), cache);
+        cache.put(CacheKey.of(DOI_STRING, CITEPROC_JSON), STALE_METADATA);
+        clock.advance(STALE_TTL);
+
+        resolver.resolve(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(resolver.getRevalidationFailures(), is(1L));
+        assertThat(resolver.resolve(DOI_STRING, CITEPROC_JSON), is(STALE_METADATA));
+    }
+
+    @Test
+    @DisplayName("resolve skips CrossRef for DOIs whose prefix was answered by DataCite")
+    public void resolveSkipsCrossRefForDoisWhosePrefixWasAnsweredByDataCite()
+        throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), Config.getInstance());
+
+        resolver.resolve(DATACITE_DOI, CITEPROC_JSON);
+        MetadataAndContentLocation result = resolver.resolve(OTHER_DATACITE_DOI, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(dataciteClient.getRequestCount(), is(2));
+        assertThat(resolver.getPrefixRouter().getGuesses(), is(1L));
+        assertThat(resolver.getPrefixRouter().getCorrectGuesses(), is(1L));
+    }
+
+    @Test
+    @DisplayName("resolve goes straight to DataCite for prefixes seeded as DataCite prefixes")
+    public void resolveGoesStraightToDataCiteForPrefixesSeededAsDataCitePrefixes()
+        throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), Config.getInstance());
+
+        resolver.resolve(SEEDED_DATACITE_DOI, CITEPROC_JSON);
+
+        assertThat(crossRefHttpClient.getRequestCount(), is(0));
+        assertThat(dataciteClient.getRequestCount(), is(1));
+    }
+
+    @Test
+    @DisplayName("resolve falls back to CrossRef when the DataCite guess was wrong")
+    public void resolveFallsBackToCrossRefWhenTheDataCiteGuessWasWrong() throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = (MockHttpClient<String>) mockHttpClientWithNonEmptyResponse();
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), Config.getInstance());
+
+        MetadataAndContentLocation result = resolver.resolve(SEEDED_DATACITE_DOI, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        assertThat(resolver.getPrefixRouter().getAccuracy(), is(0.0));
+    }
+
+    @Test
+    @DisplayName("resolve rethrows the DataCite failure when CrossRef does not know the DOI either")
+    public void resolveRethrowsTheDataCiteFailureWhenCrossRefDoesNotKnowTheDoiEither() {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), Config.getInstance());
+
+        assertThrows(FileNotFoundException.class, () -> resolver.resolve(SEEDED_DATACITE_DOI, CITEPROC_JSON));
+    }
+
+    @Test
+    @DisplayName("resolve reports the CrossRef failure rather than not found when the DataCite guess fails")
+    public void resolveReportsTheCrossRefFailureRatherThanNotFoundWhenTheDataCiteGuessFails() {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus500<>(ERROR_MESSAGE));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), Config.getInstance());
+
+        IOException exception =
+            assertThrows(IOException.class, () -> resolver.resolve(SEEDED_DATACITE_DOI, CITEPROC_JSON));
+
+        assertThat(exception instanceof FileNotFoundException, is(false));
+        assertThat(exception.getSuppressed()[0] instanceof FileNotFoundException, is(true));
+    }
+
+    @Test
+    @DisplayName("resolve asks DataCite when CrossRef fails")
+    public void resolveAsksDataCiteWhenCrossRefFails() throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus500<>(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), new Config());
+
+        MetadataAndContentLocation result = resolver.resolve(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+    }
+
+    @Test
+    @DisplayName("resolve goes to DataCite without waiting for CrossRef when its circuit breaker opens")
+    public void resolveGoesToDataCiteWithoutWaitingForCrossRefWhenItsCircuitBreakerOpens()
+        throws IOException, URISyntaxException {
+        Config config = new Config();
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus503<>(ERROR_MESSAGE));
+        CircuitBreaker breaker = new CircuitBreaker(CrossRefClient.NAME, 1, STALE_TTL, Integer.MAX_VALUE);
+        CrossRefClient crossRefClient = new CrossRefClient(crossRefHttpClient, RetryPolicy.fromConfig(config),
+                                                           breaker);
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(new FakeDataciteClient(), crossRefClient,
+                                                                      config);
+
+        MetadataAndContentLocation result = resolver.resolve(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(breaker.getState(), is(CircuitBreaker.State.OPEN));
+        assertThat(breaker.getRejectedWhileOpen(), is(1L));
+    }
+
+    @Test
+    @DisplayName("resolve reports the CrossRef failure rather than not found when DataCite fails as well")
+    public void resolveReportsTheCrossRefFailureRatherThanNotFoundWhenDataCiteFailsAsWell() {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus500<>(ERROR_MESSAGE));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), new Config());
+
+        IOException exception = assertThrows(IOException.class, () -> resolver.resolve(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(exception instanceof FileNotFoundException, is(false));
+        assertThat(exception.getSuppressed().length, is(1));
+    }
+
+    @Test
+    @DisplayName("resolve serves repeated lookups from the metadata cache")
+    public void resolveServesRepeatedLookupsFromTheMetadataCache() throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = (MockHttpClient<String>) mockHttpClientWithNonEmptyResponse();
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        CrossRefClient crossRefClient = new CrossRefClient(crossRefHttpClient);
+        Config config = new Config();
+        MetadataCache metadataCache = MetadataCache.fromConfig(config);
+        DoiMetadataResolver resolver = new DoiMetadataResolver(
+            dataciteClient, crossRefClient, metadataCache, RegistrationAgencyCache.fromConfig(config),
+            PrefixRouter.fromConfig(config), HedgedLookup.fromConfig(crossRefClient, dataciteClient, config));
+
+        resolver.resolve(DOI_STRING, CITEPROC_JSON);
+        MetadataAndContentLocation result = resolver.resolve(DOI_URL_PREFIX + "/" + DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(dataciteClient.getRequestCount(), is(0));
+        assertThat(metadataCache.getHits(), is(1L));
+        assertThat(resolver.getMetadataStore(), is(metadataCache));
+    }
+
+    @Test
+    @DisplayName("resolve serves every content type of a CrossRef DOI from one fetch")
+    public void resolveServesEveryContentTypeOfACrossRefDoiFromOneFetch() throws IOException, URISyntaxException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(crossRefSample));
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(crossRefHttpClient), new Config());
+
+        for (DataciteContentType contentType : DataciteContentType.values()) {
+            assertThat(resolver.resolve(DOI_STRING, contentType).getJson(),
+                       is(equalTo(WorkTransformer.transform(crossRefSample, contentType))));
+        }
+
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(dataciteClient.getRequestCount(), is(0));
+        assertThat(resolver.getDerivations(), is(2L));
+        assertThat(resolver.getMetadataStore().lookup(CacheKey.of(DOI_STRING, DATACITE_XML)).isPresent(), is(true));
+        assertThat(resolver.getMetadataStore().lookup(CacheKey.of(DOI_STRING, DATACITE_JSON)).isPresent(), is(true));
+    }
+
+    @Test
+    @DisplayName("resolve records one store lookup for a content type derived from the stored CrossRef work")
+    public void resolveRecordsOneStoreLookupForAContentTypeDerivedFromTheStoredCrossRefWork()
+        throws IOException, URISyntaxException {
+        MockHttpClient<String> crossRefHttpClient = (MockHttpClient<String>) mockHttpClientWithNonEmptyResponse();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), new Config());
+        resolver.resolve(DOI_STRING, DoiMetadataResolver.CANONICAL_CONTENT_TYPE);
+
+        Metrics metrics = Metrics.start(null, DoiMetadataResolverTest.class.getSimpleName());
+        resolver.resolve(DOI_STRING, DATACITE_XML);
+
+        assertThat(metrics.getValues(Metrics.CACHE_HIT), is(List.of(0.0)));
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+    }
+
+    @Test
+    @DisplayName("resolve fetches every content type of a DataCite DOI from DataCite once")
+    public void resolveFetchesEveryContentTypeOfADataciteDoiFromDataciteOnce()
+        throws IOException, URISyntaxException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE))),
+            new Config());
+
+        resolver.resolve(DATACITE_DOI, DATACITE_JSON);
+        MetadataAndContentLocation csl = resolver.resolve(DATACITE_DOI, CITEPROC_JSON);
+        MetadataAndContentLocation xml = resolver.resolve(DATACITE_DOI, DATACITE_XML);
+        resolver.resolve(DATACITE_DOI, CITEPROC_JSON);
+
+        assertThat(csl.getJson(), is(equalTo(FakeDataciteClient.DATACITE_JSON)));
+        assertThat(xml.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(dataciteClient.getRequestedContentTypes(), is(equalTo(List.of(DATACITE_JSON, CITEPROC_JSON,
+                                                                                 DATACITE_XML))));
+        assertThat(resolver.getDerivations(), is(0L));
+        assertThat(resolver.getMetadataStore().lookup(CacheKey.of(DATACITE_DOI, DATACITE_XML)).isPresent(),
+                   is(true));
+    }
+
+    @Test
+    @DisplayName("resolve uses a hedged lookup for unknown prefixes when hedging is enabled")
+    public void resolveUsesAHedgedLookupForUnknownPrefixesWhenHedgingIsEnabled()
+        throws IOException, URISyntaxException {
+        Config config = new Config();
+        config.setHedgedLookupEnabled(true);
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), config);
+
+        MetadataAndContentLocation result = resolver.resolve(DATACITE_DOI, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(resolver.getHedgedLookup().getLookups(), is(1L));
+    }
+
+    @Test
+    @DisplayName("resolve serves lookups from the file store when the in-memory cache is empty")
+    public void resolveServesLookupsFromTheFileStoreWhenTheInMemoryCacheIsEmpty()
+        throws IOException, URISyntaxException {
+        Config config = new Config();
+        config.setMetadataStoreDirectory(directory.toString());
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        CrossRefClient crossRefClient = new CrossRefClient(crossRefHttpClient);
+
+        DoiMetadataResolver.fromConfig(dataciteClient, crossRefClient, config).resolve(SEEDED_DATACITE_DOI,
+                                                                                        DATACITE_JSON);
+        MetadataAndContentLocation result = DoiMetadataResolver.fromConfig(dataciteClient, crossRefClient, config)
+                                                               .resolve(SEEDED_DATACITE_DOI, DATACITE_JSON);
+
+        assertThat(result.getJson(), is(equalTo(FakeDataciteClient.DATACITE_JSON)));
+        assertThat(dataciteClient.getRequestCount(), is(1));
+    }
+
+    @Test
+    @DisplayName("resolve shares one upstream lookup between concurrent lookups of the same DOI")
+    public void resolveSharesOneUpstreamLookupBetweenConcurrentLookupsOfTheSameDoi() throws Exception {
+        String responseBody = IoUtils.resourceAsString(CrossRefSamplePath);
+        MockHttpClient<String> crossRefHttpClient =
+            new DelayedMockHttpClient<>(new HttpResponseStatus200<>(responseBody), Duration.ofMillis(300));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), new Config());
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_LOOKUPS);
+        try {
+            List<Future<MetadataAndContentLocation>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_LOOKUPS; i++) {
+                results.add(executor.submit(() -> resolver.resolve(DOI_STRING, CITEPROC_JSON)));
+            }
+            for (Future<MetadataAndContentLocation> result : results) {
+                assertThat(result.get().getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(resolver.getUpstreamLookups().getCalls(), is(1L));
+    }
+
+    @Test
+    @DisplayName("resolveStream shares one upstream lookup between concurrent lookups of the same DOI")
+    public void resolveStreamSharesOneUpstreamLookupBetweenConcurrentLookupsOfTheSameDoi() throws Exception {
+        byte[] responseBody = IoUtils.resourceAsString(CrossRefSamplePath).getBytes(StandardCharsets.UTF_8);
+        MockHttpClient<InputStream> crossRefHttpClient = new DelayedMockHttpClient<>(
+            new HttpResponseStatus200<>(new ByteArrayInputStream(responseBody)), Duration.ofMillis(300));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), new Config());
+        ExecutorService executor = Executors.newFixedThreadPool(CONCURRENT_LOOKUPS);
+        try {
+            List<Future<MetadataStream>> results = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_LOOKUPS; i++) {
+                results.add(executor.submit(() -> resolver.resolveStream(DOI_STRING, DATACITE_JSON)));
+            }
+            for (Future<MetadataStream> result : results) {
+                assertThat(result.get().getMetadata().orElseThrow().getContentHeader(),
+                           is(equalTo(CrossRefClient.CROSSREF_LINK)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(resolver.getUpstreamLookups().getCalls(), is(1L));
+    }
+
+    @Test
+    @DisplayName("resolveStream uses a hedged lookup for unknown prefixes when hedging is enabled")
+    public void resolveStreamUsesAHedgedLookupForUnknownPrefixesWhenHedgingIsEnabled()
+        throws IOException, URISyntaxException {
+        Config config = new Config();
+        config.setHedgedLookupEnabled(true);
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(), new CrossRefClient(crossRefHttpClient), config);
+
+        try (MetadataStream result = resolver.resolveStream(DATACITE_DOI, DATACITE_JSON)) {
+            assertThat(result.getMetadata().orElseThrow().getJson(), is(equalTo(FakeDataciteClient.DATACITE_JSON)));
+        }
+        assertThat(resolver.getHedgedLookup().getLookups(), is(1L));
+    }
+
+    private static DoiMetadataResolver revalidatingResolver(MockHttpClient<String> crossRefHttpClient,
+                                                            MetadataCache cache) {
+        Config config = new Config();
+        CrossRefClient crossRefClient = new CrossRefClient(crossRefHttpClient);
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        return new DoiMetadataResolver(dataciteClient, crossRefClient, cache,
+                                       RegistrationAgencyCache.fromConfig(config), PrefixRouter.fromConfig(config),
+                                       HedgedLookup.fromConfig(crossRefClient, dataciteClient, config),
+                                       Runnable::run);
+    }
+}
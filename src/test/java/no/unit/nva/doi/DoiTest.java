@@ -0,0 +1,108 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class DoiTest {
+
+    public static final String DOI_STRING = "10.1093/afraf/ady029";
+    public static final List<String> SAME_DOI = List.of(
+        DOI_STRING,
+        "10.1093/AFRAF/ady029",
+        "doi:10.1093/afraf/ady029",
+        "DOI:10.1093/afraf/ADY029",
+        "https://doi.org/10.1093/afraf/ady029",
+        "http://dx.doi.org/10.1093/afraf/ady029",
+        "HTTPS://DOI.ORG/10.1093/AFRAF/ADY029",
+        "https://doi.org/10.1093/afraf%2Fady029",
+        "https://doi.org/10.1093/afraf/ady029?download=true#top",
+        "  10.1093/afraf/ady029\n");
+    public static final List<String> NOT_DOIS = List.of(
+        "",
+        "   ",
+        "10.1093",
+        "10.1093/",
+        "10/afraf",
+        "10./afraf",
+        "10.1a/afraf",
+        "11.1093/afraf",
+        "doi:",
+        "https://example.org/10.1093/afraf",
+        "https://doi.org/",
+        "https://doi.org/10.1093/?query",
+        "https://doi.org/10.1093/%zz",
+        "https://doi.org/10.1093/%4",
+        "https://doi.org/10.1093/a%0Ab",
+        "10.1093/a\tb");
+
+    @Test
+    @DisplayName("parse reduces DOI strings and DOI URLs to the same canonical DOI")
+    public void parseReducesDoiStringsAndDoiUrlsToTheSameCanonicalDoi() {
+        Doi expected = Doi.parse(DOI_STRING).orElseThrow();
+
+        for (String doi : SAME_DOI) {
+            assertThat(Doi.parse(doi), is(equalTo(Optional.of(expected))));
+            assertThat(Doi.parse(doi).orElseThrow().hashCode(), is(equalTo(expected.hashCode())));
+        }
+        assertThat(expected.toString(), is(equalTo(DOI_STRING)));
+        assertThat(expected.getPrefix(), is(equalTo("10.1093")));
+        assertThat(expected.getSuffix(), is(equalTo("afraf/ady029")));
+        assertThat(expected.getEncodedPath(), is(equalTo(DOI_STRING)));
+    }
+
+    @Test
+    @DisplayName("parse keeps a DOI string that is already canonical instead of copying it")
+    public void parseKeepsADoiStringThatIsAlreadyCanonicalInsteadOfCopyingIt() {
+        String canonical = new String(DOI_STRING.toCharArray());
+        Doi doi = Doi.parse(canonical).orElseThrow();
+
+        assertThat(doi.toString() == canonical, is(true));
+        assertThat(doi.getEncodedPath() == canonical, is(true));
+    }
+
+    @Test
+    @DisplayName("parse rejects values that are not DOIs")
+    public void parseRejectsValuesThatAreNotDois() {
+        assertThat(Doi.parse(null), is(Optional.empty()));
+        for (String notADoi : NOT_DOIS) {
+            assertThat(Doi.parse(notADoi), is(Optional.empty()));
+        }
+    }
+
+    @Test
+    @DisplayName("parse accepts prefixes with several subdivisions and keeps the prefix apart from the suffix")
+    public void parseAcceptsPrefixesWithSeveralSubdivisionsAndKeepsThePrefixApartFromTheSuffix() {
+        Doi doi = Doi.parse("10.123.4.5/124/x").orElseThrow();
+
+        assertThat(doi.getPrefix(), is(equalTo("10.123.4.5")));
+        assertThat(doi.getSuffix(), is(equalTo("124/x")));
+    }
+
+    @Test
+    @DisplayName("getEncodedPath percent-encodes characters that are not allowed in a URL path")
+    public void getEncodedPathPercentEncodesCharactersThatAreNotAllowedInAUrlPath() {
+        Doi doi = Doi.parse("10.1000/a b<c>%\u00e6").orElseThrow();
+
+        assertThat(doi.getEncodedPath(), is(equalTo("10.1000/a%20b%3Cc%3E%25%C3%A6")));
+        assertThat(Doi.parse("https://doi.org/" + doi.getEncodedPath()), is(Optional.of(doi)));
+        assertThat(Doi.parse("10.1000/(SICI):x;y@z").orElseThrow().getEncodedPath(),
+                   is(equalTo("10.1000/(sici):x;y@z")));
+    }
+
+    @Test
+    @DisplayName("Doi differs from other DOIs and from other types")
+    public void doiDiffersFromOtherDoisAndFromOtherTypes() {
+        Doi doi = Doi.parse(DOI_STRING).orElseThrow();
+
+        assertThat(doi, is(not(equalTo(Doi.parse("10.1093/afraf/ady030").orElseThrow()))));
+        assertThat(doi.equals(DOI_STRING), is(false));
+        assertThat(doi.equals(doi), is(true));
+    }
+}
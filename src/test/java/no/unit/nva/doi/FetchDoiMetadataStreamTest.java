@@ -0,0 +1,458 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_XML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.core.HttpHeaders;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus500;
+import no.unit.nva.utils.MockHttpClient;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class FetchDoiMetadataStreamTest extends AbstractLambdaTest {
+
+    public static final String DATACITE_DOI = "https://doi.org/10.5061/dryad.1";
+    public static final String DATACITE_JSON_BODY = "{\"doi\":\"10.5061/dryad.1\",\"titles\":[{\"title\":\"A\"}]}";
+    public static final String DATACITE_XML_BODY = "<resource><titles><title>A</title></titles>"
+        + "<descriptions><description>Abstract</description></descriptions></resource>";
+    public static final String AUTHOR = "author";
+    public static final String LANGUAGE = "language";
+    public static final String UPSTREAM_ETAG = "\"1\"";
+    public static final String LAST_MODIFIED = "Wed, 15 Jan 2020 10:15:30 GMT";
+
+    @Test
+    @DisplayName("handleRequest streams CrossRef metadata transformed to CSL through the field filter into the body")
+    public void handleRequestStreamsCrossRefMetadataThroughTheFieldFilterIntoTheResponseBody() throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 new JsonFieldFilter(Set.of(AUTHOR)));
+
+        JsonObject response = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        JsonObject headers = response.getAsJsonObject("headers");
+        assertThat(headers.get(HttpHeaders.CONTENT_LOCATION).getAsString(),
+                   is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        assertThat(headers.get(HttpHeaders.CONTENT_TYPE).getAsString(),
+                   is(equalTo(CITEPROC_JSON.getContentType())));
+        JsonObject body = JsonParser.parseString(response.get("body").getAsString()).getAsJsonObject();
+        JsonObject expected = JsonParser.parseString(WorkTransformer.transform(crossRefSample, CITEPROC_JSON))
+                                        .getAsJsonObject();
+        expected.remove(AUTHOR);
+        assertThat(body, is(equalTo(expected)));
+    }
+
+    @Test
+    @DisplayName("handleRequest streams only the projected fields when the lookup asks for a profile")
+    public void handleRequestStreamsOnlyTheProjectedFieldsWhenTheLookupAsksForAProfile() throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 BodyFilter.NONE);
+        Map<String, Object> event = event(DOI_STRING, CITEPROC_JSON);
+        event.put(FetchDoiMetadata.BODY, lookupBody(List.of(LANGUAGE), JsonProjection.SLIM_PROFILE));
+
+        JsonObject response = invoke(handler, event);
+
+        JsonObject body = JsonParser.parseString(response.get("body").getAsString()).getAsJsonObject();
+        assertThat(body.has(LANGUAGE), is(true));
+        assertThat(body.has("title"), is(true));
+        assertThat(body.has("id"), is(false));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers BadRequest for unknown profiles")
+    public void handleRequestAnswersBadRequestForUnknownProfiles() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturning404(), BodyFilter.NONE);
+        Map<String, Object> event = event(DOI_STRING, CITEPROC_JSON);
+        event.put(FetchDoiMetadata.BODY, lookupBody(null, "fat"));
+
+        JsonObject response = invoke(handler, event);
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_BAD_REQUEST));
+    }
+
+    @Test
+    @DisplayName("handleRequest sends the body gzip-compressed when the client accepts gzip")
+    public void handleRequestSendsTheBodyGzipCompressedWhenTheClientAcceptsGzip() throws IOException {
+        String document = "{\"doi\":\"10.5061/dryad.1\",\"titles\":[{\"title\":\"" + "A".repeat(4096) + "\"}]}";
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturning(document),
+                                                 BodyFilter.NONE);
+        Map<String, Object> event = event(DATACITE_DOI, DATACITE_JSON);
+        event.put(FetchDoiMetadata.HEADERS, Map.of(HttpHeaders.ACCEPT, DATACITE_JSON.getContentType(),
+                                                   ResponseEncoder.ACCEPT_ENCODING, ResponseEncoder.GZIP));
+
+        JsonObject response = invoke(handler, event);
+
+        assertThat(response.get("isBase64Encoded").getAsBoolean(), is(true));
+        JsonObject headers = response.getAsJsonObject("headers");
+        assertThat(headers.get(ResponseEncoder.CONTENT_ENCODING).getAsString(), is(equalTo(ResponseEncoder.GZIP)));
+        assertThat(headers.has(HttpHeaders.CACHE_CONTROL), is(true));
+        byte[] compressed = Base64.getDecoder().decode(response.get("body").getAsString());
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            assertThat(new String(body.readAllBytes(), StandardCharsets.UTF_8), is(equalTo(document)));
+        }
+    }
+
+    @Test
+    @DisplayName("handleRequest answers NotModified to conditional requests for unchanged metadata")
+    public void handleRequestAnswersNotModifiedToConditionalRequestsForUnchangedMetadata() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturningJson(), BodyFilter.NONE);
+        invoke(handler, event(DATACITE_DOI, DATACITE_XML));
+        Map<String, Object> event = event(DATACITE_DOI, DATACITE_XML);
+        event.put(FetchDoiMetadata.HEADERS, Map.of(HttpHeaders.ACCEPT, DATACITE_XML.getContentType(),
+                                                   ResponseEncoder.IF_NONE_MATCH, "*"));
+
+        JsonObject response = invoke(handler, event);
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_NOT_MODIFIED));
+        assertThat(response.get("body").getAsString(), is(equalTo("")));
+        assertThat(response.getAsJsonObject("headers").has(ResponseEncoder.ETAG), is(true));
+    }
+
+    @Test
+    @DisplayName("handleRequest sends the ETag of the filtered body and answers NotModified when it is sent back")
+    public void handleRequestSendsTheEtagOfTheFilteredBodyAndAnswersNotModifiedWhenItIsSentBack()
+        throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 new JsonFieldFilter(Set.of(AUTHOR)));
+        JsonObject first = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+        String etag = first.getAsJsonObject("headers").get(ResponseEncoder.ETAG).getAsString();
+        Map<String, Object> event = event(DOI_STRING, CITEPROC_JSON);
+        event.put(FetchDoiMetadata.HEADERS, Map.of(HttpHeaders.ACCEPT, CITEPROC_JSON.getContentType(),
+                                                   ResponseEncoder.IF_NONE_MATCH, etag));
+
+        JsonObject response = invoke(handler, event);
+
+        assertThat(first.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_NOT_MODIFIED));
+        assertThat(response.getAsJsonObject("headers").get(ResponseEncoder.ETAG).getAsString(), is(equalTo(etag)));
+    }
+
+    @Test
+    @DisplayName("handleRequest serves repeated lookups from the store and streams XML unfiltered")
+    public void handleRequestServesRepeatedLookupsFromTheStoreAndStreamsXmlUnfiltered() throws IOException {
+        MockHttpClient<InputStream> dataciteHttpClient = dataciteReturning(DATACITE_XML_BODY);
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteHttpClient,
+                                                 new JsonFieldFilter(Set.of(AUTHOR)));
+
+        invoke(handler, event(DATACITE_DOI, DATACITE_XML));
+        JsonObject response = invoke(handler, event(DATACITE_DOI, DATACITE_XML));
+
+        assertThat(response.get("body").getAsString(), is(equalTo(DATACITE_XML_BODY)));
+        assertThat(dataciteHttpClient.getRequestCount(), is(1));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers ServiceUnavailable when no agency can deliver the metadata")
+    public void handleRequestAnswersServiceUnavailableWhenNoAgencyCanDeliverTheMetadata() throws IOException {
+        MockHttpClient<InputStream> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus500<>(
+            new ByteArrayInputStream(new byte[0])));
+        FetchDoiMetadataStream handler = handler(crossRefHttpClient, dataciteReturning404(), BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers NotFound when no agency knows the DOI")
+    public void handleRequestAnswersNotFoundWhenNoAgencyKnowsTheDoi() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturning404(), BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("handleRequest streams the metadata from DataCite when CrossRef fails")
+    public void handleRequestStreamsTheMetadataFromDataCiteWhenCrossRefFails() throws IOException {
+        MockHttpClient<InputStream> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus500<>(
+            new ByteArrayInputStream(new byte[0])));
+        FetchDoiMetadataStream handler = handler(crossRefHttpClient, dataciteReturningJson(), BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_URL_PREFIX + "/" + DOI_STRING, DATACITE_XML));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(response.getAsJsonObject("headers").get(HttpHeaders.CONTENT_LOCATION).getAsString(),
+                   is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+    }
+
+    @Test
+    @DisplayName("handleRequest stores streamed metadata with the validators the upstream sent")
+    public void handleRequestStoresStreamedMetadataWithTheValidatorsTheUpstreamSent() throws IOException {
+        MockHttpClient<InputStream> dataciteHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(DATACITE_JSON_BODY.getBytes(StandardCharsets.UTF_8)),
+            Map.of(HttpHeaders.ETAG, List.of(UPSTREAM_ETAG), HttpHeaders.LAST_MODIFIED, List.of(LAST_MODIFIED))));
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new DataciteClient(dataciteHttpClient), new CrossRefClient(crossRefReturning404()), new Config());
+        FetchDoiMetadataStream handler = new FetchDoiMetadataStream(new FetchDoiMetadata(resolver), BodyFilter.NONE);
+
+        invoke(handler, event(DATACITE_DOI, DATACITE_JSON));
+
+        MetadataAndContentLocation stored = resolver.getMetadataStore().lookup(CacheKey.of(DATACITE_DOI, DATACITE_JSON))
+                                                    .orElseThrow().getMetadata();
+        assertThat(stored.getJson(), is(equalTo(DATACITE_JSON_BODY)));
+        assertThat(stored.getEtag(), is(equalTo(UPSTREAM_ETAG)));
+        assertThat(stored.getLastModified(), is(equalTo(LAST_MODIFIED)));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers InternalServerError for unexpected failures")
+    public void handleRequestAnswersInternalServerErrorForUnexpectedFailures() throws IOException {
+        MockHttpClient<InputStream> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(null));
+        FetchDoiMetadataStream handler = handler(crossRefHttpClient, dataciteReturning404(), BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_INTERNAL_SERVER_ERROR));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers ServiceUnavailable when the upstream document cannot be filtered")
+    public void handleRequestAnswersServiceUnavailableWhenTheUpstreamDocumentCannotBeFiltered() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturning("{\"status\":"),
+                                                 new JsonFieldFilter(Set.of(AUTHOR)));
+
+        JsonObject response = invoke(handler, event(DATACITE_DOI, DATACITE_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    @DisplayName("handleRequest streams DataCite documents too large to hold in memory without storing them")
+    public void handleRequestStreamsDataciteDocumentsTooLargeToHoldInMemoryWithoutStoringThem() throws IOException {
+        String document = largeDataciteDocument();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new DataciteClient(dataciteReturning(document)), new CrossRefClient(crossRefReturning404()),
+            new Config());
+        FetchDoiMetadataStream handler = new FetchDoiMetadataStream(new FetchDoiMetadata(resolver), BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DATACITE_DOI, DATACITE_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(response.getAsJsonObject("headers").has(ResponseEncoder.ETAG), is(false));
+        assertThat(response.get("body").getAsString(), is(equalTo(document)));
+        assertThat(resolver.getMetadataStore().lookup(CacheKey.of(DATACITE_DOI, DATACITE_JSON)).isPresent(),
+                   is(false));
+    }
+
+    @Test
+    @DisplayName("handleRequest fails the invocation instead of answering OK when a streamed body is cut short")
+    public void handleRequestFailsTheInvocationInsteadOfAnsweringOkWhenAStreamedBodyIsCutShort() {
+        String document = largeDataciteDocument();
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(),
+                                                 dataciteReturning(document.substring(0, document.length() - 2)),
+                                                 new JsonFieldFilter(Set.of(AUTHOR)));
+
+        assertThrows(IOException.class, () -> invoke(handler, event(DATACITE_DOI, DATACITE_JSON)));
+    }
+
+    @Test
+    @DisplayName("handleRequest answers ServiceUnavailable when the CrossRef work cannot be read")
+    public void handleRequestAnswersServiceUnavailableWhenTheCrossRefWorkCannotBeRead() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning("{\"status\":"), dataciteReturning404(),
+                                                 BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_SERVICE_UNAVAILABLE));
+    }
+
+    @Test
+    @DisplayName("handleRequest streams CrossRef metadata as DataCite XML when the client asks for it")
+    public void handleRequestStreamsCrossRefMetadataAsDataciteXmlWhenTheClientAsksForIt() throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 BodyFilter.NONE);
+
+        JsonObject response = invoke(handler, event(DOI_STRING, DATACITE_XML));
+
+        assertThat(response.getAsJsonObject("headers").get(HttpHeaders.CONTENT_TYPE).getAsString(),
+                   is(equalTo(DATACITE_XML.getContentType())));
+        assertThat(response.get("body").getAsString(),
+                   is(equalTo(WorkTransformer.transform(crossRefSample, DATACITE_XML))));
+    }
+
+    @Test
+    @DisplayName("handleRequest leaves invalid and batch requests to FetchDoiMetadata")
+    public void handleRequestLeavesInvalidAndBatchRequestsToFetchDoiMetadata() throws IOException {
+        FetchDoiMetadataStream handler = handler(crossRefReturning404(), dataciteReturning404(), BodyFilter.NONE);
+
+        JsonObject invalid = invoke(handler, event("https://doi.org/lets^Go^Wild", CITEPROC_JSON));
+        Map<String, Object> batchEvent = event(DOI_STRING, CITEPROC_JSON);
+        DoiLookup batch = new DoiLookup();
+        batch.setDois(List.of(DOI_STRING));
+        batchEvent.put(FetchDoiMetadata.BODY, FetchDoiMetadata.GSON.toJson(batch));
+        JsonObject batchResponse = invoke(handler, batchEvent);
+
+        assertThat(invalid.get("statusCode").getAsInt(), is(HttpStatus.SC_BAD_REQUEST));
+        JsonObject results = JsonParser.parseString(batchResponse.get("body").getAsString()).getAsJsonObject();
+        assertThat(results.getAsJsonArray(BatchLookup.RESULTS).size(), is(1));
+    }
+
+    @Test
+    @DisplayName("handleRequest decodes request bodies that API Gateway delivers base64-encoded")
+    public void handleRequestDecodesRequestBodiesThatApiGatewayDeliversBase64Encoded() throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 BodyFilter.NONE);
+        Map<String, Object> single = base64Encoded(event(DOI_STRING, CITEPROC_JSON));
+        Map<String, Object> batchEvent = event(DOI_STRING, CITEPROC_JSON);
+        DoiLookup batch = new DoiLookup();
+        batch.setDois(List.of(DOI_STRING));
+        batchEvent.put(FetchDoiMetadata.BODY, FetchDoiMetadata.GSON.toJson(batch));
+
+        JsonObject singleResponse = invoke(handler, single);
+        JsonObject batchResponse = invoke(handler, base64Encoded(batchEvent));
+
+        assertThat(singleResponse.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(singleResponse.get("body").getAsString(),
+                   is(equalTo(WorkTransformer.transform(crossRefSample, CITEPROC_JSON))));
+        assertThat(batchResponse.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        JsonObject results = JsonParser.parseString(batchResponse.get("body").getAsString()).getAsJsonObject();
+        assertThat(results.getAsJsonArray(BatchLookup.RESULTS).size(), is(1));
+    }
+
+    @Test
+    @DisplayName("handleRequest records the parsing and the upstream call in the metrics of the invocation")
+    public void handleRequestRecordsTheParsingAndTheUpstreamCallInTheMetricsOfTheInvocation() throws IOException {
+        String crossRefSample = IoUtils.resourceAsString(CrossRefSamplePath);
+        FetchDoiMetadataStream handler = handler(crossRefReturning(crossRefSample), dataciteReturning404(),
+                                                 BodyFilter.NONE);
+
+        invoke(handler, event(DOI_STRING, CITEPROC_JSON));
+
+        Metrics metrics = Metrics.current();
+        assertThat(metrics.getValues(Metrics.PARSE_TIME).size(), is(1));
+        assertThat(metrics.getValues(CrossRefClient.NAME + Metrics.CALL_TIME).size(), is(1));
+        assertThat(metrics.getValues(CrossRefClient.NAME + Metrics.FAILURE), is(List.of(0.0)));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadataStream should have a constructor without parameters")
+    public void fetchDoiMetadataStreamShouldHaveAConstructorWithoutParameters() {
+        new FetchDoiMetadataStream();
+    }
+
+    @Test
+    @DisplayName("handleRequest prefetches the DOIs looked up before on the scheduled warm-up event")
+    public void handleRequestPrefetchesTheDoisLookedUpBeforeOnTheScheduledWarmUpEvent() throws IOException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE))),
+            new Config());
+        HotDoiTracker hotDois = new HotDoiTracker(null, 10, Duration.ofMinutes(5), 2, Clock.systemUTC());
+        FetchDoiMetadataStream handler = new FetchDoiMetadataStream(new FetchDoiMetadata(resolver, hotDois),
+                                                                    BodyFilter.NONE);
+        DoiLookup batch = new DoiLookup();
+        batch.setDois(List.of(DATACITE_DOI, DATACITE_DOI));
+        Map<String, Object> event = event(DATACITE_DOI, DATACITE_JSON);
+        event.put(FetchDoiMetadata.BODY, FetchDoiMetadata.GSON.toJson(batch));
+        invoke(handler, event);
+
+        JsonObject response = invoke(handler, Map.of(FetchDoiMetadata.SOURCE, FetchDoiMetadata.SCHEDULED_EVENT_SOURCE,
+                                                     "detail-type", "Scheduled Event"));
+
+        assertThat(response.get("statusCode").getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(JsonParser.parseString(response.get("body").getAsString()).getAsJsonObject()
+                             .get(FetchDoiMetadata.PREFETCHED).getAsInt(), is(1));
+        assertThat(hotDois.hotSet(), is(equalTo(List.of("10.5061/dryad.1"))));
+        assertThat(dataciteClient.getRequestCount(), is(1));
+    }
+
+    private static FetchDoiMetadataStream handler(MockHttpClient<InputStream> crossRefHttpClient,
+                                                  MockHttpClient<InputStream> dataciteHttpClient,
+                                                  BodyFilter bodyFilter) {
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new DataciteClient(dataciteHttpClient), new CrossRefClient(crossRefHttpClient), new Config());
+        return new FetchDoiMetadataStream(new FetchDoiMetadata(resolver), bodyFilter);
+    }
+
+    private static MockHttpClient<InputStream> crossRefReturning(String body) {
+        return new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static MockHttpClient<InputStream> crossRefReturning404() {
+        return new MockHttpClient<>(new HttpResponseStatus404<>(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static MockHttpClient<InputStream> dataciteReturningJson() {
+        return new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(DATACITE_JSON_BODY.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static MockHttpClient<InputStream> dataciteReturning(String body) {
+        return new MockHttpClient<>(new HttpResponseStatus200<>(
+            new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static MockHttpClient<InputStream> dataciteReturning404() {
+        return new MockHttpClient<>(new HttpResponseStatus404<>(new ByteArrayInputStream(new byte[0])));
+    }
+
+    private static Map<String, Object> event(String doi, DataciteContentType contentType) {
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDoi(doi);
+        Map<String, Object> event = new HashMap<>();
+        event.put(FetchDoiMetadata.HEADERS, Map.of(HttpHeaders.ACCEPT, contentType.getContentType()));
+        event.put(FetchDoiMetadata.BODY, FetchDoiMetadata.GSON.toJson(doiLookup));
+        return event;
+    }
+
+    private static String largeDataciteDocument() {
+        return "{\"doi\":\"10.5061/dryad.1\",\"descriptions\":[{\"description\":\""
+            + "A".repeat(DoiMetadataResolver.STREAM_CAPTURE_MAX_CHARS) + "\"}]}";
+    }
+
+    private static Map<String, Object> base64Encoded(Map<String, Object> event) {
+        String body = (String) event.get(FetchDoiMetadata.BODY);
+        event.put(FetchDoiMetadata.BODY, Base64.getEncoder().encodeToString(body.getBytes(StandardCharsets.UTF_8)));
+        event.put(FetchDoiMetadata.IS_BASE64_ENCODED, true);
+        return event;
+    }
+
+    private static String lookupBody(List<String> fields, String profile) {
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDoi(DOI_STRING);
+        doiLookup.setFields(fields);
+        doiLookup.setProfile(profile);
+        return FetchDoiMetadata.GSON.toJson(doiLookup);
+    }
+
+    private JsonObject invoke(FetchDoiMetadataStream handler, Map<String, ?> event) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        handler.handleRequest(new ByteArrayInputStream(FetchDoiMetadata.GSON.toJson(event)
+                                                                             .getBytes(StandardCharsets.UTF_8)),
+                              output, mockLambdaContext);
+        return JsonParser.parseString(output.toString(StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+}
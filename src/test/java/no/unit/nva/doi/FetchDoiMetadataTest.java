@@ -3,9 +3,11 @@ package no.unit.nva.doi;
 import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
 import static org.hamcrest.Matchers.hasEntry;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
@@ -13,20 +15,28 @@ import static org.mockito.Mockito.when;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.net.http.HttpClient;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Pattern;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import no.bibsys.aws.tools.IoUtils;
 import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.FakeDataciteClient;
 import no.unit.nva.utils.HttpResponseStatus200;
 import no.unit.nva.utils.MockHttpClient;
 import org.apache.http.HttpStatus;
@@ -53,7 +63,7 @@ public class FetchDoiMetadataTest extends AbstractLambdaTest {
         CrossRefClient client = mock(CrossRefClient.class);
         try {
             when(client.fetchDataForDoi(anyString())).thenReturn(Optional.empty());
-        } catch (URISyntaxException e) {
+        } catch (IOException | URISyntaxException e) {
             e.printStackTrace();
         }
         return client;
@@ -147,19 +157,15 @@ public class FetchDoiMetadataTest extends AbstractLambdaTest {
     }
 
     @Test
-    @DisplayName("DOI_STRING_PATTERN matches doi string starting with doi prefix")
-    public void doiStringPatternMatchesDoiStringStartingWithDoiPrefix() {
-        Pattern regex = FetchDoiMetadata.DOI_STRING_PATTERN;
-        boolean matchingResult = regex.matcher(VALID_DOI_WITH_DOI_PREFIX).matches();
-        assertThat(matchingResult, is(true));
+    @DisplayName("isValidDoi accepts doi string starting with doi prefix")
+    public void isValidDoiAcceptsDoiStringStartingWithDoiPrefix() {
+        assertThat(FetchDoiMetadata.isValidDoi(VALID_DOI_WITH_DOI_PREFIX), is(true));
     }
 
     @Test
-    @DisplayName("DOI_STRING_PATTERN matches doi string starting without doi prefix")
-    public void doiStringPatternMatchesDoiStringStartingWithoutDoiPrefix() {
-        Pattern regex = FetchDoiMetadata.DOI_STRING_PATTERN;
-        boolean matchingResult = regex.matcher(VALID_DOI_WITHOUT_DOI_PREFIX).matches();
-        assertThat(matchingResult, is(true));
+    @DisplayName("isValidDoi accepts doi string starting without doi prefix")
+    public void isValidDoiAcceptsDoiStringStartingWithoutDoiPrefix() {
+        assertThat(FetchDoiMetadata.isValidDoi(VALID_DOI_WITHOUT_DOI_PREFIX), is(true));
     }
 
     @Test
@@ -199,6 +205,112 @@ public class FetchDoiMetadataTest extends AbstractLambdaTest {
             hasEntry(HttpHeaders.CONTENT_LOCATION, DataciteClient.DATACITE_BASE_URL_STRING));
     }
 
+    @Test
+    @DisplayName("FetchDoiMetadata returns NotFound when no agency knows the DOI")
+    public void fetchDoiMetadataReturnsNotFoundWhenNoAgencyKnowsTheDoi() throws IOException {
+        DataciteClient dataciteClient = new FakeDataciteClient(new FileNotFoundException(MOCK_ERROR_MESSAGE));
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, crossRefClientReceives404());
+        GatewayResponse response = fetch.handleRequest(createCrossRefRequest(VALID_DOI), mockLambdaContext);
+        assertThat(response.getStatusCode(), is(HttpStatus.SC_NOT_FOUND));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadata serves repeated lookups of the same DOI from the cache")
+    public void fetchDoiMetadataServesRepeatedLookupsOfTheSameDoiFromTheCache() throws IOException {
+        DataciteClient dataciteClient = mock(DataciteClient.class);
+        MetadataCache cache = MetadataCache.fromConfig(Config.getInstance());
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, setUpCrossRefClient(), cache);
+
+        GatewayResponse first = fetch.handleRequest(createCrossRefRequest(VALID_DOI), mockLambdaContext);
+        GatewayResponse second = fetch.handleRequest(createCrossRefRequest(VALID_DOI), mockLambdaContext);
+
+        assertThat(second.getStatusCode(), is(HttpStatus.SC_OK));
+        assertThat(second.getBody(), is(first.getBody()));
+        assertThat(cache.getMisses(), is(1L));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadata returns one result per distinct DOI for batch lookups")
+    public void fetchDoiMetadataReturnsOneResultPerDistinctDoiForBatchLookups() throws IOException {
+        DataciteClient dataciteClient = mock(DataciteClient.class);
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, setUpCrossRefClient());
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDois(List.of(VALID_DOI, VALID_DOI.toUpperCase(Locale.ROOT), INVALID_DOI));
+        Map<String, Object> event = createCrossRefRequest(VALID_DOI);
+        event.put(FetchDoiMetadata.BODY, gson.toJson(doiLookup));
+
+        GatewayResponse response = fetch.handleRequest(event, mockLambdaContext);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.SC_OK));
+        assertThat(response.getHeaders(), hasEntry(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON));
+        JsonArray results = gson.fromJson(response.getBody(), JsonObject.class).getAsJsonArray(BatchLookup.RESULTS);
+        assertThat(results.size(), is(2));
+        assertThat(results.get(0).getAsJsonObject().get(BatchLookup.STATUS).getAsInt(), is(HttpStatus.SC_OK));
+        assertThat(results.get(1).getAsJsonObject().get(BatchLookup.STATUS).getAsInt(),
+                   is(HttpStatus.SC_BAD_REQUEST));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadata returns BadRequest for batches larger than the configured maximum")
+    public void fetchDoiMetadataReturnsBadRequestForBatchesLargerThanTheConfiguredMaximum() throws IOException {
+        DataciteClient dataciteClient = mock(DataciteClient.class);
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, setUpCrossRefClient());
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDois(Collections.nCopies(Config.getInstance().getBatchMaxSize() + 1, VALID_DOI).stream()
+                                     .map(doi -> doi + UUID.randomUUID())
+                                     .collect(Collectors.toList()));
+        Map<String, Object> event = createCrossRefRequest(VALID_DOI);
+        event.put(FetchDoiMetadata.BODY, gson.toJson(doiLookup));
+
+        GatewayResponse response = fetch.handleRequest(event, mockLambdaContext);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.SC_BAD_REQUEST));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadata returns only the projected fields when the lookup asks for them")
+    public void fetchDoiMetadataReturnsOnlyTheProjectedFieldsWhenTheLookupAsksForThem() throws IOException {
+        DataciteClient dataciteClient = mock(DataciteClient.class);
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, setUpCrossRefClient());
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDoi(VALID_DOI);
+        doiLookup.setFields(List.of("DOI"));
+        Map<String, Object> event = createCrossRefRequest(VALID_DOI);
+        event.put(FetchDoiMetadata.BODY, gson.toJson(doiLookup));
+
+        GatewayResponse response = fetch.handleRequest(event, mockLambdaContext);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.SC_OK));
+        JsonObject csl = gson.fromJson(response.getBody(), JsonObject.class);
+        assertThat(csl.keySet(), is(equalTo(Set.of("DOI"))));
+    }
+
+    @Test
+    @DisplayName("FetchDoiMetadata returns BadRequest for unknown profiles")
+    public void fetchDoiMetadataReturnsBadRequestForUnknownProfiles() throws IOException {
+        DataciteClient dataciteClient = mock(DataciteClient.class);
+        FetchDoiMetadata fetch = new FetchDoiMetadata(dataciteClient, setUpCrossRefClient());
+        DoiLookup doiLookup = new DoiLookup();
+        doiLookup.setDoi(VALID_DOI);
+        doiLookup.setProfile("fat");
+        Map<String, Object> event = createCrossRefRequest(VALID_DOI);
+        event.put(FetchDoiMetadata.BODY, gson.toJson(doiLookup));
+
+        GatewayResponse response = fetch.handleRequest(event, mockLambdaContext);
+
+        assertThat(response.getStatusCode(), is(HttpStatus.SC_BAD_REQUEST));
+    }
+
+    @Test
+    @DisplayName("project throws UncheckedIOException for metadata that is not JSON")
+    public void projectThrowsUncheckedIoExceptionForMetadataThatIsNotJson() {
+        BodyFilter projection = JsonProjection.of(List.of("DOI"), null).orElseThrow();
+
+        assertThrows(UncheckedIOException.class, () -> FetchDoiMetadata.project(projection, "<xml/>"));
+        assertThat(FetchDoiMetadata.project(BodyFilter.NONE, "<xml/>"), is(equalTo("<xml/>")));
+    }
+
     @Test
     @DisplayName("FetchDoiMetadata should have a contructor without parameters")
     public void fetchDoiMetadataShouldHaveAConsturctorWithoutParameters() {
@@ -0,0 +1,154 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_XML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class FileMetadataStoreTest {
+
+    public static final String DOI = "https://doi.org/10.1000/182";
+    public static final String METADATA = "{\"title\":\"\u00c6rlig talt\"}";
+    public static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    private final MutableClock clock = new MutableClock();
+
+    @Test
+    @DisplayName("get returns what was put, keyed by normalized DOI and content type")
+    public void getReturnsWhatWasPutKeyedByNormalizedDoiAndContentType() {
+        FileMetadataStore store = new FileMetadataStore(directory.resolve("store"), TIME_TO_LIVE, clock);
+        store.put(CacheKey.of(DOI, CITEPROC_JSON), new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK,
+                                                                                  METADATA));
+
+        MetadataAndContentLocation stored = store.get(CacheKey.of("10.1000/182", CITEPROC_JSON)).orElseThrow();
+
+        assertThat(stored.getJson(), is(equalTo(METADATA)));
+        assertThat(stored.getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        assertThat(store.get(CacheKey.of(DOI, DATACITE_XML)), is(Optional.empty()));
+        assertThat(store.getHits(), is(1L));
+        assertThat(store.getMisses(), is(1L));
+    }
+
+    @Test
+    @DisplayName("get returns the upstream validators that were put")
+    public void getReturnsTheUpstreamValidatorsThatWerePut() {
+        FileMetadataStore store = new FileMetadataStore(directory, TIME_TO_LIVE, clock);
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+        store.put(key, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA, "\"1\"", null));
+
+        MetadataAndContentLocation stored = store.get(key).orElseThrow();
+
+        assertThat(stored.getEtag(), is(equalTo("\"1\"")));
+        assertThat(stored.getLastModified(), is((String) null));
+    }
+
+    @Test
+    @DisplayName("get removes entries that have expired")
+    public void getRemovesEntriesThatHaveExpired() throws IOException {
+        FileMetadataStore store = new FileMetadataStore(directory, TIME_TO_LIVE, clock);
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+        store.put(key, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+        clock.advance(TIME_TO_LIVE);
+
+        assertThat(store.get(key), is(Optional.empty()));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    @DisplayName("get treats unreadable files as misses")
+    public void getTreatsUnreadableFilesAsMisses() throws IOException {
+        FileMetadataStore store = new FileMetadataStore(directory, TIME_TO_LIVE, clock);
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+        Files.writeString(store.fileFor(key), METADATA);
+
+        assertThat(store.get(key), is(Optional.empty()));
+        assertThat(store.getErrors(), is(1L));
+    }
+
+    @Test
+    @DisplayName("put counts an error and stores nothing when the directory cannot be created")
+    public void putCountsAnErrorAndStoresNothingWhenTheDirectoryCannotBeCreated() throws IOException {
+        Path file = Files.writeString(directory.resolve("file"), METADATA);
+        FileMetadataStore store = new FileMetadataStore(file.resolve("store"), TIME_TO_LIVE, clock);
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+
+        store.put(key, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+
+        assertThat(store.getErrors(), is(1L));
+        assertThat(store.get(key), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("sweep deletes expired entries and then the oldest entries until the store is within its budget")
+    public void sweepDeletesExpiredEntriesAndThenTheOldestEntriesUntilTheStoreIsWithinItsBudget() throws IOException {
+        FileMetadataStore unbounded = new FileMetadataStore(directory, TIME_TO_LIVE, clock);
+        CacheKey expired = CacheKey.of("10.1000/1", CITEPROC_JSON);
+        unbounded.put(expired, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+        clock.advance(TIME_TO_LIVE);
+        List<CacheKey> keys = List.of(CacheKey.of("10.1000/2", CITEPROC_JSON), CacheKey.of("10.1000/3", CITEPROC_JSON),
+                                      CacheKey.of("10.1000/4", CITEPROC_JSON));
+        for (int i = 0; i < keys.size(); i++) {
+            unbounded.put(keys.get(i), new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+            Files.setLastModifiedTime(unbounded.fileFor(keys.get(i)), FileTime.fromMillis(i * 1000L));
+        }
+        long entrySize = Files.size(unbounded.fileFor(keys.get(0)));
+        FileMetadataStore store = new FileMetadataStore(directory, TIME_TO_LIVE, 3 * entrySize + entrySize / 2, clock);
+
+        store.sweep();
+
+        assertThat(Files.exists(store.fileFor(expired)), is(false));
+        assertThat(Files.exists(store.fileFor(keys.get(0))), is(false));
+        assertThat(store.get(keys.get(1)).isPresent(), is(true));
+        assertThat(store.get(keys.get(2)).isPresent(), is(true));
+        assertThat(store.getEvictions(), is(2L));
+        assertThat(store.getSizeInBytes(), is(2 * entrySize));
+    }
+
+    @Test
+    @DisplayName("put sweeps the store when it grows beyond its budget")
+    public void putSweepsTheStoreWhenItGrowsBeyondItsBudget() throws IOException {
+        FileMetadataStore store = new FileMetadataStore(directory, TIME_TO_LIVE, 1, clock);
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+
+        store.put(key, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+
+        assertThat(store.get(key), is(Optional.empty()));
+        assertThat(store.getEvictions(), is(1L));
+        assertThat(store.getSizeInBytes(), is(0L));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.count(), is(0L));
+        }
+    }
+
+    @Test
+    @DisplayName("fromConfig uses the configured directory")
+    public void fromConfigUsesTheConfiguredDirectory() {
+        Config config = new Config();
+        config.setMetadataStoreDirectory(directory.toString());
+        CacheKey key = CacheKey.of(DOI, CITEPROC_JSON);
+
+        FileMetadataStore.fromConfig(config)
+                         .put(key, new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, METADATA));
+
+        assertThat(Files.exists(new FileMetadataStore(directory, TIME_TO_LIVE).fileFor(key)), is(true));
+    }
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.Collections;
 import org.junit.Test;
 
 public class GatewayResponseTest {
@@ -41,4 +42,12 @@ public class GatewayResponseTest {
         assertTrue(
             gatewayResponse1.getHeaders().containsKey(GatewayResponse.CORS_ALLOW_ORIGIN_HEADER));
     }
+
+    @Test
+    public void testBase64EncodedFlag() {
+        assertFalse(errorGatewayResponse(MOCK_BODY, CREATED.getStatusCode()).getIsBase64Encoded());
+        GatewayResponse encoded = new GatewayResponse(MOCK_BODY, CREATED.getStatusCode(), MOCK_BODY,
+                                                      Collections.emptyMap(), true);
+        assertTrue(encoded.getIsBase64Encoded());
+    }
 }
@@ -0,0 +1,179 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.DelayedMockHttpClient;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class HedgedLookupTest extends AbstractLambdaTest {
+
+    public static final Duration SHORT_DELAY = Duration.ofMillis(10);
+    public static final Duration LONG_DELAY = Duration.ofSeconds(10);
+    public static final Duration SLOW_CROSSREF = Duration.ofSeconds(2);
+    public static final double PERCENTILE = 95;
+
+    @Test
+    @DisplayName("fetch returns the CrossRef answer without asking DataCite when CrossRef answers quickly")
+    public void fetchReturnsTheCrossRefAnswerWithoutAskingDataCiteWhenCrossRefAnswersQuickly()
+        throws IOException, URISyntaxException {
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        HedgedLookup lookup = new HedgedLookup(new CrossRefClient(mockHttpClientWithNonEmptyResponse()),
+                                               dataciteClient, true, LONG_DELAY, PERCENTILE);
+
+        MetadataAndContentLocation result = lookup.fetch(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(CrossRefClient.CROSSREF_LINK)));
+        assertThat(dataciteClient.getRequestCount(), is(0));
+        assertThat(lookup.getLookups(), is(1L));
+    }
+
+    @Test
+    @DisplayName("fetch returns the DataCite answer when CrossRef is slower than the hedge delay")
+    public void fetchReturnsTheDataCiteAnswerWhenCrossRefIsSlowerThanTheHedgeDelay()
+        throws IOException, URISyntaxException {
+        HedgedLookup lookup = new HedgedLookup(slowCrossRefClient(), new FakeDataciteClient(), true,
+                                               SHORT_DELAY, PERCENTILE);
+
+        MetadataAndContentLocation result = lookup.fetch(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(lookup.getHedgedRequests(), is(1L));
+        assertThat(lookup.getHedgeWins(), is(1L));
+    }
+
+    @Test
+    @DisplayName("fetch asks DataCite at once when CrossRef does not know the DOI")
+    public void fetchAsksDataCiteAtOnceWhenCrossRefDoesNotKnowTheDoi() throws IOException, URISyntaxException {
+        HedgedLookup lookup = new HedgedLookup(crossRefClientReceives404(), new FakeDataciteClient(), true,
+                                               LONG_DELAY, PERCENTILE);
+
+        MetadataAndContentLocation result = lookup.fetch(DOI_STRING, CITEPROC_JSON);
+
+        assertThat(result.getContentHeader(), is(equalTo(DataciteClient.DATACITE_BASE_URL_STRING)));
+        assertThat(lookup.getHedgedRequests(), is(0L));
+    }
+
+    @Test
+    @DisplayName("fetch throws the DataCite failure when both agencies fail")
+    public void fetchThrowsTheDataCiteFailureWhenBothAgenciesFail() {
+        HedgedLookup lookup = new HedgedLookup(crossRefClientReceives404(),
+                                               new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE)),
+                                               true, SHORT_DELAY, PERCENTILE);
+
+        assertThrows(FileNotFoundException.class, () -> lookup.fetch(DOI_STRING, CITEPROC_JSON));
+    }
+
+    @Test
+    @DisplayName("fetch throws the CrossRef failure rather than not found when CrossRef fails")
+    public void fetchThrowsTheCrossRefFailureRatherThanNotFoundWhenCrossRefFails() throws IOException {
+        CrossRefClient crossRefClient = new CrossRefClient(mockHttpClientWithNonEmptyResponse()) {
+            @Override
+            public CompletableFuture<Optional<MetadataAndContentLocation>> fetchDataForDoiAsync(String doi) {
+                return CompletableFuture.failedFuture(new IOException(ERROR_MESSAGE));
+            }
+        };
+        HedgedLookup lookup = new HedgedLookup(crossRefClient,
+                                               new FakeDataciteClient(new FileNotFoundException(ERROR_MESSAGE)),
+                                               true, LONG_DELAY, PERCENTILE);
+
+        IOException exception = assertThrows(IOException.class, () -> lookup.fetch(DOI_STRING, CITEPROC_JSON));
+
+        assertThat(exception instanceof FileNotFoundException, is(false));
+    }
+
+    @Test
+    @DisplayName("fetch throws URISyntaxException when CrossRef cannot build a URI for the DOI")
+    public void fetchThrowsUriSyntaxExceptionWhenCrossRefCannotBuildAUriForTheDoi() throws IOException {
+        CrossRefClient crossRefClient = new CrossRefClient(mockHttpClientWithNonEmptyResponse()) {
+            @Override
+            public CompletableFuture<Optional<MetadataAndContentLocation>> fetchDataForDoiAsync(String doi)
+                throws URISyntaxException {
+                throw new URISyntaxException(doi, ERROR_MESSAGE);
+            }
+        };
+        HedgedLookup lookup = new HedgedLookup(crossRefClient, new FakeDataciteClient(), true,
+                                               LONG_DELAY, PERCENTILE);
+
+        assertThrows(URISyntaxException.class, () -> lookup.fetch(DOI_STRING, CITEPROC_JSON));
+    }
+
+    @Test
+    @DisplayName("fetch rethrows unexpected CrossRef failures when DataCite fails too")
+    public void fetchRethrowsUnexpectedFailures() throws IOException {
+        CrossRefClient crossRefClient = new CrossRefClient(mockHttpClientWithNonEmptyResponse()) {
+            @Override
+            public CompletableFuture<Optional<MetadataAndContentLocation>> fetchDataForDoiAsync(String doi) {
+                return CompletableFuture.failedFuture(new IllegalArgumentException(doi));
+            }
+        };
+        DataciteClient dataciteClient = new FakeDataciteClient() {
+            @Override
+            public CompletableFuture<MetadataAndContentLocation> fetchMetadataAsync(String doi,
+                                                                                    DataciteContentType type) {
+                return CompletableFuture.failedFuture(new IllegalStateException(doi));
+            }
+        };
+        HedgedLookup lookup = new HedgedLookup(crossRefClient, dataciteClient, true, LONG_DELAY,
+                                               PERCENTILE);
+
+        assertThrows(IllegalStateException.class, () -> lookup.fetch(DOI_STRING, CITEPROC_JSON));
+    }
+
+    @Test
+    @DisplayName("hedgeDelay switches from the fixed delay to the observed percentile")
+    public void hedgeDelaySwitchesFromTheFixedDelayToTheObservedPercentile() throws IOException, URISyntaxException {
+        HedgedLookup lookup = new HedgedLookup(new CrossRefClient(mockHttpClientWithNonEmptyResponse()),
+                                               new FakeDataciteClient(), true, LONG_DELAY, PERCENTILE);
+        assertThat(lookup.hedgeDelay(), is(LONG_DELAY));
+
+        for (int i = 0; i < HedgedLookup.MIN_SAMPLES_FOR_PERCENTILE; i++) {
+            lookup.fetch(DOI_STRING, CITEPROC_JSON);
+        }
+
+        assertThat(lookup.hedgeDelay().compareTo(LONG_DELAY) < 0, is(true));
+    }
+
+    @Test
+    @DisplayName("hedgeDelay observes the latencies of CrossRef requests that do not know the DOI")
+    public void hedgeDelayObservesTheLatenciesOfCrossRefRequestsThatDoNotKnowTheDoi()
+        throws IOException, URISyntaxException {
+        HedgedLookup lookup = new HedgedLookup(crossRefClientReceives404(), new FakeDataciteClient(), true,
+                                               LONG_DELAY, PERCENTILE);
+
+        for (int i = 0; i < HedgedLookup.MIN_SAMPLES_FOR_PERCENTILE; i++) {
+            lookup.fetch(DOI_STRING, CITEPROC_JSON);
+        }
+
+        assertThat(lookup.hedgeDelay().compareTo(LONG_DELAY) < 0, is(true));
+    }
+
+    @Test
+    @DisplayName("fromConfig creates a disabled lookup by default")
+    public void fromConfigCreatesADisabledLookupByDefault() throws IOException {
+        HedgedLookup lookup = HedgedLookup.fromConfig(new CrossRefClient(mockHttpClientWithNonEmptyResponse()),
+                                                      new FakeDataciteClient(), new Config());
+
+        assertThat(lookup.isEnabled(), is(false));
+    }
+
+    private CrossRefClient slowCrossRefClient() throws IOException {
+        String responseBody = IoUtils.resourceAsString(CrossRefSamplePath);
+        return new CrossRefClient(new DelayedMockHttpClient<>(new HttpResponseStatus200<>(responseBody),
+                                                              SLOW_CROSSREF));
+    }
+}
@@ -0,0 +1,152 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class HotDoiSketchTest {
+
+    public static final String HOT_DOI = "10.1000/182";
+    public static final String WARM_DOI = "10.5061/dryad.1";
+    public static final String COLD_DOI = "10.1126/science.169.3946.635";
+    public static final int WIDTH = 256;
+    public static final int DEPTH = 4;
+
+    @Test
+    @DisplayName("hottest returns the K most frequent DOIs, most frequent first")
+    public void hottestReturnsTheKMostFrequentDoisMostFrequentFirst() {
+        HotDoiSketch sketch = new HotDoiSketch(WIDTH, DEPTH, 2);
+
+        add(sketch, COLD_DOI, 1);
+        add(sketch, WARM_DOI, 3);
+        add(sketch, HOT_DOI, 5);
+
+        assertThat(sketch.hottest(), is(equalTo(List.of(HOT_DOI, WARM_DOI))));
+        assertThat(sketch.estimate(HOT_DOI) >= 5, is(true));
+        assertThat(sketch.estimate(COLD_DOI) >= 1, is(true));
+        assertThat(sketch.getTotal(), is(9L));
+    }
+
+    @Test
+    @DisplayName("add replaces the least frequent top DOI when another DOI becomes more frequent")
+    public void addReplacesTheLeastFrequentTopDoiWhenAnotherDoiBecomesMoreFrequent() {
+        HotDoiSketch sketch = new HotDoiSketch(WIDTH, DEPTH, 1);
+
+        add(sketch, WARM_DOI, 2);
+        add(sketch, HOT_DOI, 2);
+        assertThat(sketch.hottest(), is(equalTo(List.of(WARM_DOI))));
+
+        sketch.add(HOT_DOI);
+        assertThat(sketch.hottest(), is(equalTo(List.of(HOT_DOI))));
+    }
+
+    @Test
+    @DisplayName("merge adds the lookups of a sketch with the same dimensions")
+    public void mergeAddsTheLookupsOfASketchWithTheSameDimensions() {
+        HotDoiSketch sketch = new HotDoiSketch(WIDTH, DEPTH, 2);
+        HotDoiSketch other = new HotDoiSketch(WIDTH, DEPTH, 2);
+        add(sketch, WARM_DOI, 3);
+        add(other, HOT_DOI, 2);
+        add(other, WARM_DOI, 2);
+
+        sketch.merge(other);
+
+        assertThat(sketch.hottest(), is(equalTo(List.of(WARM_DOI, HOT_DOI))));
+        assertThat(sketch.estimate(WARM_DOI) >= 5, is(true));
+        assertThat(sketch.getTotal(), is(7L));
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new HotDoiSketch(WIDTH * 2, DEPTH, 2)));
+    }
+
+    @Test
+    @DisplayName("halve ages the lookups and clear forgets them")
+    public void halveAgesTheLookupsAndClearForgetsThem() {
+        HotDoiSketch sketch = new HotDoiSketch(WIDTH, DEPTH, 2);
+        add(sketch, HOT_DOI, 4);
+
+        sketch.halve();
+        assertThat(sketch.getTotal(), is(2L));
+        assertThat(sketch.hottest(), is(equalTo(List.of(HOT_DOI))));
+
+        sketch.clear();
+        assertThat(sketch.getTotal(), is(0L));
+        assertThat(sketch.estimate(HOT_DOI), is(0L));
+        assertThat(sketch.hottest().isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("readFrom reads back what writeTo wrote")
+    public void readFromReadsBackWhatWriteToWrote() throws IOException {
+        HotDoiSketch sketch = new HotDoiSketch(WIDTH, DEPTH, 2);
+        add(sketch, WARM_DOI, 1);
+        add(sketch, HOT_DOI, 3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+
+        HotDoiSketch read = HotDoiSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(read.getWidth(), is(WIDTH));
+        assertThat(read.getDepth(), is(DEPTH));
+        assertThat(read.getCapacity(), is(2));
+        assertThat(read.getTotal(), is(4L));
+        assertThat(read.hottest(), is(equalTo(List.of(HOT_DOI, WARM_DOI))));
+        assertThat(read.estimate(HOT_DOI), is(sketch.estimate(HOT_DOI)));
+    }
+
+    @Test
+    @DisplayName("readFrom throws IOException for another format")
+    public void readFromThrowsIoExceptionForAnotherFormat() {
+        byte[] otherFormat = {0, 0, 0, 9};
+
+        assertThrows(IOException.class,
+            () -> HotDoiSketch.readFrom(new DataInputStream(new ByteArrayInputStream(otherFormat))));
+    }
+
+    @Test
+    @DisplayName("readFrom throws IOException for dimensions and lengths out of bounds before allocating them")
+    public void readFromThrowsIoExceptionForDimensionsAndLengthsOutOfBoundsBeforeAllocatingThem() throws IOException {
+        assertCorrupt(header(-1, DEPTH, 2));
+        assertCorrupt(header(Integer.MAX_VALUE, DEPTH, 2));
+        assertCorrupt(header(HotDoiSketch.MAX_WIDTH, HotDoiSketch.MAX_DEPTH, 2));
+        assertCorrupt(header(WIDTH, DEPTH, Integer.MAX_VALUE));
+
+        ByteArrayOutputStream negativeDoiLength = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(negativeDoiLength);
+        out.write(header(1, 1, 2));
+        out.writeLong(0);
+        out.writeLong(0);
+        out.writeInt(1);
+        out.writeInt(-1);
+        assertCorrupt(negativeDoiLength.toByteArray());
+    }
+
+    private static byte[] header(int width, int depth, int capacity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(1);
+        out.writeInt(width);
+        out.writeInt(depth);
+        out.writeInt(capacity);
+        return bytes.toByteArray();
+    }
+
+    private static void assertCorrupt(byte[] bytes) {
+        assertThrows(IOException.class,
+            () -> HotDoiSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes))));
+    }
+
+    private static void add(HotDoiSketch sketch, String doi, int times) {
+        for (int time = 0; time < times; time++) {
+            sketch.add(doi);
+        }
+    }
+}
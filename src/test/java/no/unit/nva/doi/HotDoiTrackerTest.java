@@ -0,0 +1,210 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import no.unit.nva.utils.AbstractLambdaTest;
+import no.unit.nva.utils.FakeDataciteClient;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class HotDoiTrackerTest extends AbstractLambdaTest {
+
+    public static final String HOT_DOI = "https://doi.org/10.5061/DRYAD.1";
+    public static final String WARM_DOI = "doi:10.5061/dryad.2";
+    public static final String INVALID_DOI = "https://doi.org/lets^Go^Wild";
+    public static final Duration PERSIST_INTERVAL = Duration.ofMinutes(5);
+    public static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("hotSet returns the hottest DOIs of the container when there is no sketch file")
+    public void hotSetReturnsTheHottestDoisOfTheContainerWhenThereIsNoSketchFile() throws IOException {
+        HotDoiTracker tracker = new HotDoiTracker(null, 10, PERSIST_INTERVAL, 2, Clock.systemUTC());
+
+        tracker.record(WARM_DOI);
+        tracker.record(HOT_DOI);
+        tracker.record(HOT_DOI);
+        tracker.record(INVALID_DOI);
+
+        assertThat(tracker.hotSet(), is(equalTo(List.of("10.5061/dryad.1", "10.5061/dryad.2"))));
+        assertThat(tracker.persist(), is(false));
+    }
+
+    @Test
+    @DisplayName("persist merges the lookups of every container into the sketch file")
+    public void persistMergesTheLookupsOfEveryContainerIntoTheSketchFile() throws IOException {
+        HotDoiTracker container = tracker(Clock.systemUTC());
+        HotDoiTracker otherContainer = tracker(Clock.systemUTC());
+        container.record(WARM_DOI);
+        otherContainer.record(HOT_DOI);
+        otherContainer.record(HOT_DOI);
+
+        assertThat(container.persist(), is(true));
+        assertThat(otherContainer.persist(), is(true));
+        assertThat(container.persist(), is(true));
+
+        assertThat(tracker(Clock.systemUTC()).hotSet(), is(equalTo(List.of("10.5061/dryad.1", "10.5061/dryad.2"))));
+        assertThat(readSketch().getTotal(), is(3L));
+    }
+
+    @Test
+    @DisplayName("record hands the lookups to the persist executor once when the persist interval has passed")
+    public void recordHandsTheLookupsToThePersistExecutorOnceWhenThePersistIntervalHasPassed() {
+        MutableClock clock = new MutableClock();
+        List<Runnable> persists = new ArrayList<>();
+        HotDoiTracker tracker = new HotDoiTracker(sketchFile(), 10, PERSIST_INTERVAL, 2, clock, persists::add);
+
+        tracker.record(HOT_DOI);
+        assertThat(persists.size(), is(0));
+
+        clock.advance(PERSIST_INTERVAL);
+        tracker.record(HOT_DOI);
+        tracker.record(HOT_DOI);
+        assertThat(persists.size(), is(1));
+        assertThat(Files.exists(sketchFile()), is(false));
+
+        persists.get(0).run();
+        assertThat(tracker.hotSet(), is(equalTo(List.of("10.5061/dryad.1"))));
+        clock.advance(PERSIST_INTERVAL);
+        tracker.record(HOT_DOI);
+        assertThat(persists.size(), is(2));
+    }
+
+    @Test
+    @DisplayName("record persists the lookups in the background when the persist interval has passed")
+    public void recordPersistsTheLookupsInTheBackgroundWhenThePersistIntervalHasPassed() throws InterruptedException {
+        MutableClock clock = new MutableClock();
+        HotDoiTracker tracker = tracker(clock);
+
+        clock.advance(PERSIST_INTERVAL);
+        tracker.record(HOT_DOI);
+
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!Files.exists(sketchFile()) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(tracker.hotSet(), is(equalTo(List.of("10.5061/dryad.1"))));
+    }
+
+    @Test
+    @DisplayName("persist halves the sketch file when it holds many lookups per counter")
+    public void persistHalvesTheSketchFileWhenItHoldsManyLookupsPerCounter() throws IOException {
+        HotDoiTracker tracker = tracker(Clock.systemUTC());
+        long lookups = HotDoiSketch.DEFAULT_WIDTH * HotDoiTracker.AGING_LOOKUPS_PER_COUNTER + 2;
+        for (long lookup = 0; lookup < lookups; lookup++) {
+            tracker.record(HOT_DOI);
+        }
+
+        tracker.persist();
+
+        assertThat(readSketch().getTotal(), is(lookups / 2));
+    }
+
+    @Test
+    @DisplayName("persist starts over when the sketch file cannot be read and fails when it cannot be written")
+    public void persistStartsOverWhenTheSketchFileCannotBeReadAndFailsWhenItCannotBeWritten() throws IOException {
+        Files.writeString(sketchFile(), "garbage");
+        HotDoiTracker tracker = tracker(Clock.systemUTC());
+        tracker.record(HOT_DOI);
+
+        assertThat(tracker.persist(), is(true));
+        assertThat(readSketch().getTotal(), is(1L));
+
+        HotDoiTracker unwritable = new HotDoiTracker(sketchFile().resolve("child"), 10, PERSIST_INTERVAL, 2,
+                                                     Clock.systemUTC());
+        unwritable.record(HOT_DOI);
+        assertThrows(IOException.class, unwritable::persist);
+        unwritable.record(HOT_DOI);
+    }
+
+    @Test
+    @DisplayName("prefetch resolves the hot DOIs persisted by earlier containers into the metadata store")
+    public void prefetchResolvesTheHotDoisPersistedByEarlierContainersIntoTheMetadataStore() throws IOException {
+        HotDoiTracker earlierContainer = tracker(Clock.systemUTC());
+        earlierContainer.record(HOT_DOI);
+        earlierContainer.record(WARM_DOI);
+        earlierContainer.persist();
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE))),
+            new Config());
+        HotDoiTracker newContainer = tracker(Clock.systemUTC());
+
+        assertThat(newContainer.prefetch(resolver, TIMEOUT), is(2));
+        assertThat(dataciteClient.getRequestCount(), is(2));
+        assertThat(resolver.getMetadataStore()
+                           .lookup(CacheKey.of(HOT_DOI, DoiMetadataResolver.CANONICAL_CONTENT_TYPE))
+                           .isPresent(), is(true));
+        assertThat(new HotDoiTracker(null, 10, PERSIST_INTERVAL, 2, Clock.systemUTC()).prefetch(resolver, TIMEOUT),
+                   is(0));
+    }
+
+    @Test
+    @DisplayName("prefetch counts only the hot DOIs that could be resolved")
+    public void prefetchCountsOnlyTheHotDoisThatCouldBeResolved() {
+        HotDoiTracker tracker = new HotDoiTracker(null, 10, PERSIST_INTERVAL, 2, Clock.systemUTC());
+        tracker.record(HOT_DOI);
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            new FakeDataciteClient(new IOException(ERROR_MESSAGE)),
+            new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE))), new Config());
+
+        assertThat(tracker.prefetch(resolver, TIMEOUT), is(0));
+    }
+
+    @Test
+    @DisplayName("prefetch looks nothing up without time to do so")
+    public void prefetchLooksNothingUpWithoutTimeToDoSo() {
+        HotDoiTracker tracker = new HotDoiTracker(null, 10, PERSIST_INTERVAL, 2, Clock.systemUTC());
+        tracker.record(HOT_DOI);
+        FakeDataciteClient dataciteClient = new FakeDataciteClient();
+        DoiMetadataResolver resolver = DoiMetadataResolver.fromConfig(
+            dataciteClient, new CrossRefClient(new MockHttpClient<>(new HttpResponseStatus404<>(ERROR_MESSAGE))),
+            new Config());
+
+        assertThat(tracker.prefetch(resolver, Duration.ZERO), is(0));
+        assertThat(dataciteClient.getRequestCount(), is(0));
+    }
+
+    @Test
+    @DisplayName("fromConfig persists to the configured sketch file")
+    public void fromConfigPersistsToTheConfiguredSketchFile() throws IOException {
+        Config config = new Config();
+        config.setHotDoiSketchFile(sketchFile().toString());
+        HotDoiTracker tracker = HotDoiTracker.fromConfig(config);
+        tracker.record(HOT_DOI);
+
+        assertThat(tracker.persist(), is(true));
+        assertThat(HotDoiTracker.fromConfig(new Config()).persist(), is(false));
+    }
+
+    private HotDoiTracker tracker(Clock clock) {
+        return new HotDoiTracker(sketchFile(), 10, PERSIST_INTERVAL, 2, clock);
+    }
+
+    private Path sketchFile() {
+        return directory.resolve("hot-dois.sketch");
+    }
+
+    private HotDoiSketch readSketch() throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(sketchFile()))) {
+            return HotDoiSketch.readFrom(in);
+        }
+    }
+}
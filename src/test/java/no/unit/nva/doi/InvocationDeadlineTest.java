@@ -0,0 +1,55 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class InvocationDeadlineTest {
+
+    public static final long REMAINING_MILLIS = 5000;
+
+    @AfterEach
+    public void clearDeadline() {
+        InvocationDeadline.start(null);
+    }
+
+    @Test
+    @DisplayName("remaining counts down from the time left of the invocation")
+    public void remainingCountsDownFromTheTimeLeftOfTheInvocation() {
+        InvocationDeadline.start(REMAINING_MILLIS);
+
+        Duration remaining = InvocationDeadline.remaining();
+
+        assertThat(remaining.compareTo(Duration.ofMillis(REMAINING_MILLIS)) <= 0, is(true));
+        assertThat(remaining.compareTo(Duration.ofMillis(REMAINING_MILLIS / 2)) > 0, is(true));
+    }
+
+    @Test
+    @DisplayName("remaining is unbounded when the invocation has no known deadline")
+    public void remainingIsUnboundedWhenTheInvocationHasNoKnownDeadline() {
+        InvocationDeadline.start(REMAINING_MILLIS);
+        InvocationDeadline.start(null);
+
+        assertThat(InvocationDeadline.remaining(), is(ChronoUnit.FOREVER.getDuration()));
+    }
+
+    @Test
+    @DisplayName("within cuts a timeout short to end before the response margin of the invocation")
+    public void withinCutsATimeoutShortToEndBeforeTheResponseMarginOfTheInvocation() {
+        Duration timeout = Duration.ofSeconds(15);
+        InvocationDeadline.start(REMAINING_MILLIS);
+
+        Duration within = InvocationDeadline.within(timeout);
+
+        assertThat(within.compareTo(Duration.ofMillis(REMAINING_MILLIS).minus(InvocationDeadline.RESPONSE_MARGIN))
+                       <= 0, is(true));
+        assertThat(InvocationDeadline.within(timeout, Duration.ofSeconds(20)), is(timeout));
+        assertThat(InvocationDeadline.within(timeout, ChronoUnit.FOREVER.getDuration()), is(timeout));
+        assertThat(InvocationDeadline.within(timeout, Duration.ZERO), is(InvocationDeadline.MIN_TIMEOUT));
+    }
+}
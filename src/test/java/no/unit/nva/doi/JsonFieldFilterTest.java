@@ -0,0 +1,71 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class JsonFieldFilterTest {
+
+    public static final String WORK = "{\"status\":\"ok\",\"message\":{\"title\":[\"T\"],\"score\":1.0000000000000001,"
+        + "\"open\":true,\"page\":null,\"reference\":[{\"key\":\"ref1\",\"reference\":{}}]},\"reference\":1}";
+
+    @Test
+    @DisplayName("copy drops the excluded fields at any depth and keeps everything else as it was")
+    public void copyDropsTheExcludedFieldsAtAnyDepthAndKeepsEverythingElseAsItWas() throws IOException {
+        StringWriter out = new StringWriter();
+
+        new JsonFieldFilter(Set.of("reference")).copy(new StringReader(WORK), out);
+
+        assertThat(out.toString(), is(equalTo("{\"status\":\"ok\",\"message\":{\"title\":[\"T\"],"
+            + "\"score\":1.0000000000000001,\"open\":true,\"page\":null}}")));
+    }
+
+    @Test
+    @DisplayName("copy throws IOException for documents that are not JSON")
+    public void copyThrowsIoExceptionForDocumentsThatAreNotJson() {
+        BodyFilter filter = JsonFieldFilter.excluding("reference");
+
+        assertThrows(IOException.class, () -> filter.copy(new StringReader("<xml/>"), new StringWriter()));
+    }
+
+    @Test
+    @DisplayName("copy reads the document to its end and rejects content after it")
+    public void copyReadsTheDocumentToItsEndAndRejectsContentAfterIt() throws IOException {
+        AtomicBoolean endOfStream = new AtomicBoolean();
+        Reader in = new StringReader(WORK + "\n") {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                int read = super.read(buffer, offset, length);
+                endOfStream.compareAndSet(false, read == -1);
+                return read;
+            }
+        };
+        BodyFilter filter = JsonFieldFilter.excluding("reference");
+
+        filter.copy(in, new StringWriter());
+
+        assertThat(endOfStream.get(), is(true));
+        assertThrows(IOException.class, () -> filter.copy(new StringReader(WORK + "{}"), new StringWriter()));
+    }
+
+    @Test
+    @DisplayName("excluding returns the pass-through filter when no fields are excluded")
+    public void excludingReturnsThePassThroughFilterWhenNoFieldsAreExcluded() throws IOException {
+        assertThat(JsonFieldFilter.excluding(null), is(BodyFilter.NONE));
+        assertThat(JsonFieldFilter.excluding(" "), is(BodyFilter.NONE));
+
+        StringWriter out = new StringWriter();
+        JsonFieldFilter.excluding(" reference, ,abstract").copy(new StringReader(WORK), out);
+        assertThat(out.toString().contains("reference"), is(false));
+    }
+}
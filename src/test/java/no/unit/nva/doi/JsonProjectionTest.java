@@ -0,0 +1,49 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class JsonProjectionTest {
+
+    public static final String CSL_RECORD = "{\"id\":\"x\",\"title\":\"T\","
+        + "\"author\":[{\"given\":\"A\",\"title\":\"Dr\"}],\"abstract\":\"long\"}";
+    public static final String DATACITE_RECORD = "{\"id\":\"x\",\"titles\":[{\"title\":\"T\"}],\"descriptions\":[]}";
+
+    @Test
+    @DisplayName("apply keeps the projected top-level fields with everything below them")
+    public void applyKeepsTheProjectedTopLevelFieldsWithEverythingBelowThem() throws IOException {
+        JsonProjection projection = JsonProjection.of(List.of("title", "author"), null).orElseThrow();
+
+        assertThat(projection.apply(CSL_RECORD),
+                   is(equalTo("{\"title\":\"T\",\"author\":[{\"given\":\"A\",\"title\":\"Dr\"}]}")));
+    }
+
+    @Test
+    @DisplayName("apply projects DataCite records with the slim profile")
+    public void applyProjectsDataCiteRecordsWithTheSlimProfile() throws IOException {
+        JsonProjection projection = JsonProjection.of(null, JsonProjection.SLIM_PROFILE).orElseThrow();
+
+        assertThat(projection.apply(DATACITE_RECORD), is(equalTo("{\"titles\":[{\"title\":\"T\"}]}")));
+    }
+
+    @Test
+    @DisplayName("of returns empty when neither fields nor a profile are requested")
+    public void ofReturnsEmptyWhenNeitherFieldsNorAProfileAreRequested() {
+        assertThat(JsonProjection.of(null, null), is(Optional.empty()));
+        assertThat(JsonProjection.of(List.of(), null), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("of throws IllegalArgumentException for unknown profiles")
+    public void ofThrowsIllegalArgumentExceptionForUnknownProfiles() {
+        assertThrows(IllegalArgumentException.class, () -> JsonProjection.of(List.of("title"), "fat"));
+    }
+}
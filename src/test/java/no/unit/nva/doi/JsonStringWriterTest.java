@@ -0,0 +1,42 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.io.StringWriter;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class JsonStringWriterTest {
+
+    public static final String DOCUMENT = "{\"title\":\"A \\\\ B\",\n\t\"note\":\"\u0001\u2028\"}\r";
+
+    @Test
+    @DisplayName("write escapes the text so that it can be read back as a JSON string")
+    public void writeEscapesTheTextSoThatItCanBeReadBackAsAJsonString() throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonStringWriter writer = new JsonStringWriter(out)) {
+            writer.write(DOCUMENT);
+            writer.flush();
+        }
+
+        String escaped = out.toString();
+        assertThat(escaped.contains("\n"), is(false));
+        assertThat(escaped.contains("\\u0001"), is(true));
+        assertThat(escaped.contains("\\u2028"), is(true));
+        assertThat(JsonParser.parseString("\"" + escaped + "\"").getAsString(), is(equalTo(DOCUMENT)));
+    }
+
+    @Test
+    @DisplayName("close leaves the underlying writer open")
+    public void closeLeavesTheUnderlyingWriterOpen() throws IOException {
+        StringWriter out = new StringWriter();
+        new JsonStringWriter(out).close();
+        out.write("\"");
+
+        assertThat(out.toString(), is(equalTo("\"")));
+    }
+}
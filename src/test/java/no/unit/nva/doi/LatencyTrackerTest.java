@@ -0,0 +1,43 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class LatencyTrackerTest {
+
+    @Test
+    @DisplayName("percentile returns zero when nothing has been recorded")
+    public void percentileReturnsZeroWhenNothingHasBeenRecorded() {
+        assertThat(new LatencyTracker(10).percentile(95), is(Duration.ZERO));
+    }
+
+    @Test
+    @DisplayName("percentile returns the latency at the given rank")
+    public void percentileReturnsTheLatencyAtTheGivenRank() {
+        LatencyTracker tracker = new LatencyTracker(100);
+        for (int millis = 100; millis > 0; millis--) {
+            tracker.record(Duration.ofMillis(millis));
+        }
+
+        assertThat(tracker.percentile(50), is(Duration.ofMillis(50)));
+        assertThat(tracker.percentile(95), is(Duration.ofMillis(95)));
+        assertThat(tracker.percentile(100), is(Duration.ofMillis(100)));
+        assertThat(tracker.percentile(0), is(Duration.ofMillis(1)));
+    }
+
+    @Test
+    @DisplayName("record keeps only the most recent latencies")
+    public void recordKeepsOnlyTheMostRecentLatencies() {
+        LatencyTracker tracker = new LatencyTracker(2);
+        tracker.record(Duration.ofMillis(1000));
+        tracker.record(Duration.ofMillis(10));
+        tracker.record(Duration.ofMillis(20));
+
+        assertThat(tracker.getSampleCount(), is(2));
+        assertThat(tracker.percentile(100), is(Duration.ofMillis(20)));
+    }
+}
@@ -0,0 +1,135 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import java.time.Duration;
+import java.util.Optional;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MetadataCacheTest {
+
+    public static final Duration TTL = Duration.ofMinutes(10);
+    public static final long LARGE_BUDGET = 1024 * 1024;
+    public static final CacheKey FIRST_KEY = CacheKey.of("10.1000/1", CITEPROC_JSON);
+    public static final CacheKey SECOND_KEY = CacheKey.of("10.1000/2", CITEPROC_JSON);
+    public static final CacheKey THIRD_KEY = CacheKey.of("10.1000/3", CITEPROC_JSON);
+    public static final MetadataAndContentLocation METADATA =
+        new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, "{\"title\":\"A title\"}");
+
+    private MutableClock clock;
+
+    @BeforeEach
+    void before() {
+        clock = new MutableClock();
+    }
+
+    @Test
+    @DisplayName("get returns the stored entry and counts a hit")
+    public void getReturnsTheStoredEntryAndCountsAHit() {
+        MetadataCache cache = new MetadataCache(LARGE_BUDGET, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+
+        Optional<MetadataAndContentLocation> result = cache.get(FIRST_KEY);
+
+        assertThat(result.isPresent(), is(true));
+        assertThat(result.get(), is(METADATA));
+        assertThat(cache.getHits(), is(1L));
+        assertThat(cache.getMisses(), is(0L));
+    }
+
+    @Test
+    @DisplayName("get returns empty for an unknown key and counts a miss")
+    public void getReturnsEmptyForAnUnknownKeyAndCountsAMiss() {
+        MetadataCache cache = new MetadataCache(LARGE_BUDGET, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+
+        assertThat(cache.get(CacheKey.of("10.1000/1", DATACITE_JSON)).isEmpty(), is(true));
+        assertThat(cache.getMisses(), is(1L));
+    }
+
+    @Test
+    @DisplayName("get returns empty for an expired entry and removes it")
+    public void getReturnsEmptyForAnExpiredEntryAndRemovesIt() {
+        MetadataCache cache = new MetadataCache(LARGE_BUDGET, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+        clock.advance(TTL);
+
+        assertThat(cache.get(FIRST_KEY).isEmpty(), is(true));
+        assertThat(cache.getExpirations(), is(1L));
+        assertThat(cache.size(), is(0));
+        assertThat(cache.getSizeInBytes(), is(0L));
+    }
+
+    @Test
+    @DisplayName("lookup returns an expired entry as stale until its stale window has passed")
+    public void lookupReturnsAnExpiredEntryAsStaleUntilItsStaleWindowHasPassed() {
+        MetadataCache cache = new MetadataCache(LARGE_BUDGET, TTL, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+
+        assertThat(cache.lookup(FIRST_KEY).get().isFresh(), is(true));
+        clock.advance(TTL);
+        assertThat(cache.get(FIRST_KEY).isEmpty(), is(true));
+        StoredMetadata stale = cache.lookup(FIRST_KEY).get();
+        assertThat(stale.isFresh(), is(false));
+        assertThat(stale.getMetadata(), is(METADATA));
+        assertThat(cache.getStaleHits(), is(1L));
+        clock.advance(TTL);
+        assertThat(cache.lookup(FIRST_KEY).isEmpty(), is(true));
+        assertThat(cache.getExpirations(), is(1L));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    @DisplayName("put evicts the least recently used entry when the byte budget is exceeded")
+    public void putEvictsTheLeastRecentlyUsedEntryWhenTheByteBudgetIsExceeded() {
+        long entrySize = MetadataCache.estimateSize(FIRST_KEY, METADATA);
+        MetadataCache cache = new MetadataCache(2 * entrySize, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+        cache.put(SECOND_KEY, METADATA);
+        cache.get(FIRST_KEY);
+        cache.put(THIRD_KEY, METADATA);
+
+        assertThat(cache.get(SECOND_KEY).isEmpty(), is(true));
+        assertThat(cache.get(FIRST_KEY).isPresent(), is(true));
+        assertThat(cache.get(THIRD_KEY).isPresent(), is(true));
+        assertThat(cache.getEvictions(), is(1L));
+        assertThat(cache.getSizeInBytes(), is(equalTo(2 * entrySize)));
+    }
+
+    @Test
+    @DisplayName("put replaces an existing entry without growing the cache")
+    public void putReplacesAnExistingEntryWithoutGrowingTheCache() {
+        MetadataCache cache = new MetadataCache(LARGE_BUDGET, TTL, clock);
+        cache.put(FIRST_KEY, METADATA);
+        cache.put(FIRST_KEY, METADATA);
+
+        assertThat(cache.size(), is(1));
+        assertThat(cache.getSizeInBytes(), is(equalTo(MetadataCache.estimateSize(FIRST_KEY, METADATA))));
+    }
+
+    @Test
+    @DisplayName("put ignores entries larger than the whole budget")
+    public void putIgnoresEntriesLargerThanTheWholeBudget() {
+        MetadataCache cache = new MetadataCache(MetadataCache.ENTRY_OVERHEAD_BYTES, TTL, clock);
+        cache.put(FIRST_KEY, new MetadataAndContentLocation(null, null));
+        cache.put(SECOND_KEY, METADATA);
+
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    @DisplayName("fromConfig creates a cache using the configured limits")
+    public void fromConfigCreatesACacheUsingTheConfiguredLimits() {
+        MetadataCache cache = MetadataCache.fromConfig(Config.getInstance());
+        cache.put(FIRST_KEY, METADATA);
+
+        assertThat(cache.get(FIRST_KEY).isPresent(), is(true));
+    }
+}
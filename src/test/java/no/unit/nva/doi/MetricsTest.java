@@ -0,0 +1,172 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus503;
+import org.apache.http.HttpHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class MetricsTest {
+
+    public static final String NAMESPACE = "Namespace";
+    public static final String SERVICE = "Service";
+    public static final String REQUEST_ID = "request-id";
+    public static final String TRACE_ID = "Root=1-5f84c7a5-6a1b2c3d4e5f6a7b8c9d0e1f";
+    public static final String UPSTREAM = "Upstream";
+    public static final long TIMESTAMP = 1_600_000_000_000L;
+    public static final String NORWEGIAN = "\u00e6\u00f8\u00e5";
+    public static final String MIXED_WIDTHS = "a\u00e6\u20ac\ud83d\ude00";
+
+    @Test
+    @DisplayName("toEmf writes the metric definitions, dimensions, ids and values in the embedded metric format")
+    public void toEmfWritesTheMetricDefinitionsDimensionsIdsAndValuesInTheEmbeddedMetricFormat() {
+        Metrics metrics = new Metrics(NAMESPACE, SERVICE, REQUEST_ID, TRACE_ID, true);
+        metrics.putMetric(Metrics.RESPONSE_SIZE, 42, Metrics.Unit.BYTES);
+        metrics.recordCacheLookup(System.nanoTime(), true);
+        metrics.recordCacheLookup(System.nanoTime(), false);
+        metrics.putProperty(UPSTREAM + Metrics.STATUS_CODES, 200);
+
+        JsonObject emf = JsonParser.parseString(metrics.toEmf(TIMESTAMP).get(0)).getAsJsonObject();
+
+        JsonObject aws = emf.getAsJsonObject("_aws");
+        assertThat(aws.get("Timestamp").getAsLong(), is(TIMESTAMP));
+        JsonObject directive = aws.getAsJsonArray("CloudWatchMetrics").get(0).getAsJsonObject();
+        assertThat(directive.get("Namespace").getAsString(), is(NAMESPACE));
+        assertThat(directive.getAsJsonArray("Dimensions").get(0).getAsJsonArray().get(0).getAsString(),
+            is(Metrics.SERVICE_DIMENSION));
+        JsonObject responseSize = directive.getAsJsonArray("Metrics").get(1).getAsJsonObject();
+        assertThat(responseSize.get("Name").getAsString(), is(Metrics.RESPONSE_SIZE));
+        assertThat(responseSize.get("Unit").getAsString(), is(Metrics.Unit.BYTES.getName()));
+
+        assertThat(emf.get(Metrics.SERVICE_DIMENSION).getAsString(), is(SERVICE));
+        assertThat(emf.get(Metrics.REQUEST_ID).getAsString(), is(REQUEST_ID));
+        assertThat(emf.get(Metrics.TRACE_ID).getAsString(), is(TRACE_ID));
+        assertThat(emf.get(Metrics.COLD_START).getAsDouble(), is(1.0));
+        assertThat(emf.get(Metrics.RESPONSE_SIZE).getAsDouble(), is(42.0));
+        assertThat(emf.getAsJsonArray(Metrics.CACHE_HIT).get(0).getAsDouble(), is(1.0));
+        assertThat(emf.getAsJsonArray(Metrics.CACHE_HIT).get(1).getAsDouble(), is(0.0));
+        assertThat(emf.getAsJsonArray(Metrics.CACHE_LOOKUP_TIME).size(), is(2));
+        assertThat(emf.getAsJsonArray(UPSTREAM + Metrics.STATUS_CODES).get(0).getAsInt(), is(200));
+    }
+
+    @Test
+    @DisplayName("toEmf leaves out the ids that are not known")
+    public void toEmfLeavesOutTheIdsThatAreNotKnown() {
+        Metrics metrics = new Metrics(NAMESPACE, null, null, null, false);
+        metrics.putProperty(Metrics.STATUS_CODES, true);
+        metrics.putProperty(Metrics.STATUS_CODES, UPSTREAM);
+
+        JsonObject emf = JsonParser.parseString(metrics.toEmf(TIMESTAMP).get(0)).getAsJsonObject();
+
+        assertThat(emf.get(Metrics.SERVICE_DIMENSION).getAsString(), is(""));
+        assertThat(emf.has(Metrics.REQUEST_ID), is(false));
+        assertThat(emf.has(Metrics.TRACE_ID), is(false));
+        assertThat(emf.get(Metrics.COLD_START).getAsDouble(), is(0.0));
+        assertThat(emf.getAsJsonArray(Metrics.STATUS_CODES).get(0).getAsBoolean(), is(true));
+        assertThat(emf.getAsJsonArray(Metrics.STATUS_CODES).get(1).getAsString(), is(UPSTREAM));
+    }
+
+    @Test
+    @DisplayName("toEmf writes the values beyond the number CloudWatch accepts in one line into further lines")
+    public void toEmfWritesTheValuesBeyondTheNumberCloudWatchAcceptsInOneLineIntoFurtherLines() {
+        Metrics metrics = new Metrics(NAMESPACE, SERVICE, null, null, false);
+        for (int i = 0; i < Metrics.MAX_VALUES + 10; i++) {
+            metrics.putMetric(Metrics.PARSE_TIME, i, Metrics.Unit.MILLISECONDS);
+            metrics.putProperty(Metrics.STATUS_CODES, i);
+        }
+        metrics.putMetric(Metrics.VALIDATE_TIME, 1, Metrics.Unit.MILLISECONDS);
+
+        List<String> lines = metrics.toEmf(TIMESTAMP);
+
+        assertThat(lines.size(), is(2));
+        JsonObject first = JsonParser.parseString(lines.get(0)).getAsJsonObject();
+        JsonObject second = JsonParser.parseString(lines.get(1)).getAsJsonObject();
+        assertThat(metrics.getValues(Metrics.PARSE_TIME).size(), is(Metrics.MAX_VALUES + 10));
+        assertThat(first.getAsJsonArray(Metrics.PARSE_TIME).size(), is(Metrics.MAX_VALUES));
+        assertThat(first.getAsJsonArray(Metrics.STATUS_CODES).size(), is(Metrics.MAX_VALUES));
+        assertThat(first.get(Metrics.VALIDATE_TIME).getAsDouble(), is(1.0));
+        assertThat(second.getAsJsonArray(Metrics.PARSE_TIME).get(0).getAsDouble(), is((double) Metrics.MAX_VALUES));
+        assertThat(second.getAsJsonArray(Metrics.STATUS_CODES).size(), is(10));
+        assertThat(second.has(Metrics.VALIDATE_TIME), is(false));
+        assertThat(second.getAsJsonObject("_aws").getAsJsonArray("CloudWatchMetrics").get(0).getAsJsonObject()
+                         .getAsJsonArray("Metrics").size(), is(1));
+        assertThat(metrics.getValues(Metrics.RESPONSE_SIZE).isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("recordUpstreamCall records the duration, status code and payload size of a successful call")
+    public void recordUpstreamCallRecordsTheDurationStatusCodeAndPayloadSizeOfASuccessfulCall() {
+        Metrics metrics = new Metrics(NAMESPACE, SERVICE, null, null, false);
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(), new HttpResponseStatus200<>(NORWEGIAN), null);
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(), new HttpResponseStatus200<>(new byte[7]), null);
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(),
+            new HttpResponseStatus200<>(null, Map.of(HttpHeaders.CONTENT_LENGTH, List.of("1234"))), null);
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(), new HttpResponseStatus200<>(null), null);
+
+        assertThat(metrics.getValues(UPSTREAM + Metrics.CALL_TIME).size(), is(4));
+        assertThat(metrics.getValues(UPSTREAM + Metrics.FAILURE), is(List.of(0.0, 0.0, 0.0, 0.0)));
+        assertThat(metrics.getValues(UPSTREAM + Metrics.PAYLOAD_SIZE), is(List.of(6.0, 7.0, 1234.0)));
+    }
+
+    @Test
+    @DisplayName("recordUpstreamCall records calls without a response and with an error response as failures")
+    public void recordUpstreamCallRecordsCallsWithoutAResponseAndWithAnErrorResponseAsFailures() {
+        Metrics metrics = new Metrics(NAMESPACE, SERVICE, null, null, false);
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(), null, new IOException());
+        metrics.recordUpstreamCall(UPSTREAM, System.nanoTime(), new HttpResponseStatus503<>(""), null);
+
+        JsonObject emf = JsonParser.parseString(metrics.toEmf(TIMESTAMP).get(0)).getAsJsonObject();
+
+        assertThat(metrics.getValues(UPSTREAM + Metrics.FAILURE), is(List.of(1.0, 1.0)));
+        assertThat(emf.get(UPSTREAM + Metrics.STATUS_CODES).getAsJsonArray().get(0).getAsInt(), is(503));
+    }
+
+    @Test
+    @DisplayName("utf8Length counts the bytes of one, two, three and four byte characters")
+    public void utf8LengthCountsTheBytesOfOneTwoThreeAndFourByteCharacters() {
+        assertThat(Metrics.utf8Length(MIXED_WIDTHS), is(10L));
+        assertThat(Metrics.utf8Length(MIXED_WIDTHS), is((long) MIXED_WIDTHS.getBytes(StandardCharsets.UTF_8).length));
+    }
+
+    @Test
+    @DisplayName("start makes the metrics current and only the first invocation is a cold start")
+    public void startMakesTheMetricsCurrentAndOnlyTheFirstInvocationIsAColdStart() {
+        Metrics.start(null, SERVICE);
+        Metrics metrics = Metrics.start(null, SERVICE);
+
+        assertThat(Metrics.current(), is(metrics));
+        assertThat(metrics.isColdStart(), is(false));
+        assertThat(metrics.getValues(Metrics.COLD_START), is(List.of(0.0)));
+        assertThat(metrics.getRequestId(), is((String) null));
+    }
+
+    @Test
+    @DisplayName("flush writes the metrics to standard out as one line")
+    public void flushWritesTheMetricsToStandardOutAsOneLine() {
+        Metrics metrics = new Metrics(NAMESPACE, SERVICE, REQUEST_ID, null, false);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream standardOut = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            metrics.flush();
+        } finally {
+            System.setOut(standardOut);
+        }
+
+        String line = output.toString(StandardCharsets.UTF_8).trim();
+        assertThat(line.contains(System.lineSeparator()), is(false));
+        assertThat(JsonParser.parseString(line).getAsJsonObject().get(Metrics.REQUEST_ID).getAsString(),
+            is(REQUEST_ID));
+    }
+}
@@ -0,0 +1,66 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class PrefixRouterTest {
+
+    public static final CacheKey ZENODO_DOI = CacheKey.of("10.5281/zenodo.1", CITEPROC_JSON);
+    public static final CacheKey SPRINGER_DOI = CacheKey.of("10.1007/s00115-004-1822-4", CITEPROC_JSON);
+    public static final CacheKey UNKNOWN_DOI = CacheKey.of("10.99999/unknown", CITEPROC_JSON);
+    public static final CacheKey OTHER_UNKNOWN_DOI = CacheKey.of("10.88888/unknown", CITEPROC_JSON);
+
+    @Test
+    @DisplayName("fromConfig seeds the router from the prefix table")
+    public void fromConfigSeedsTheRouterFromThePrefixTable() {
+        PrefixRouter router = PrefixRouter.fromConfig(Config.getInstance());
+
+        assertThat(router.route(ZENODO_DOI), is(Optional.of(RegistrationAgency.DATACITE)));
+        assertThat(router.route(SPRINGER_DOI), is(Optional.of(RegistrationAgency.CROSSREF)));
+        assertThat(router.route(UNKNOWN_DOI).isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("recordOutcome learns the agency of unknown prefixes")
+    public void recordOutcomeLearnsTheAgencyOfUnknownPrefixes() {
+        PrefixRouter router = new PrefixRouter(Map.of(), 1);
+        router.recordOutcome(UNKNOWN_DOI, Optional.empty(), RegistrationAgency.DATACITE);
+        router.recordOutcome(OTHER_UNKNOWN_DOI, Optional.empty(), RegistrationAgency.DATACITE);
+
+        assertThat(router.route(UNKNOWN_DOI), is(Optional.of(RegistrationAgency.DATACITE)));
+        assertThat(router.route(OTHER_UNKNOWN_DOI).isEmpty(), is(true));
+        assertThat(router.getKnownPrefixes(), is(1));
+        assertThat(router.getGuesses(), is(0L));
+    }
+
+    @Test
+    @DisplayName("recordOutcome scores guesses and corrects wrong prefixes")
+    public void recordOutcomeScoresGuessesAndCorrectsWrongPrefixes() {
+        PrefixRouter router = new PrefixRouter(Map.of("10.99999", RegistrationAgency.CROSSREF), 1);
+        router.recordOutcome(UNKNOWN_DOI, router.route(UNKNOWN_DOI), RegistrationAgency.DATACITE);
+        router.recordOutcome(UNKNOWN_DOI, router.route(UNKNOWN_DOI), RegistrationAgency.DATACITE);
+
+        assertThat(router.getGuesses(), is(2L));
+        assertThat(router.getCorrectGuesses(), is(1L));
+        assertThat(router.getAccuracy(), is(0.5));
+    }
+
+    @Test
+    @DisplayName("getAccuracy is zero before any guesses have been made")
+    public void getAccuracyIsZeroBeforeAnyGuessesHaveBeenMade() {
+        assertThat(new PrefixRouter(Map.of(), 1).getAccuracy(), is(0.0));
+    }
+
+    @Test
+    @DisplayName("readPrefixTable throws when the table is missing")
+    public void readPrefixTableThrowsWhenTheTableIsMissing() {
+        assertThrows(IllegalStateException.class, () -> PrefixRouter.readPrefixTable("no-such-table.properties"));
+    }
+}
@@ -0,0 +1,152 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.net.http.HttpHeaders;
+import java.time.Duration;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RateLimiterTest {
+
+    public static final String NAME = "Upstream";
+    public static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+    public static final Duration ONE_SECOND = Duration.ofSeconds(1);
+
+    @Test
+    @DisplayName("reserve lets a burst through and then spaces requests at the allowed rate")
+    public void reserveLetsABurstThroughAndThenSpacesRequestsAtTheAllowedRate() throws UpstreamUnavailableException {
+        AtomicLong now = new AtomicLong();
+        RateLimiter limiter = new RateLimiter(NAME, 4, ONE_SECOND, ONE_SECOND, () -> UNBOUNDED, now::get);
+
+        for (int i = 0; i < 4; i++) {
+            assertThat(limiter.reserve(), is(Duration.ZERO));
+        }
+        assertThat(limiter.reserve(), is(Duration.ofMillis(250)));
+        assertThat(limiter.reserve(), is(Duration.ofMillis(500)));
+
+        now.addAndGet(Duration.ofSeconds(2).toNanos());
+        assertThat(limiter.reserve(), is(Duration.ZERO));
+        assertThat(limiter.getDelayed(), is(2L));
+        assertThat(limiter.getTotalWait(), is(Duration.ofMillis(750)));
+    }
+
+    @Test
+    @DisplayName("reserve sheds requests that would wait longer than the maximum wait or the invocation budget")
+    public void reserveShedsRequestsThatWouldWaitLongerThanTheMaximumWaitOrTheInvocationBudget()
+        throws UpstreamUnavailableException {
+        Metrics metrics = Metrics.start(null, NAME);
+        AtomicLong now = new AtomicLong();
+        Duration budget = Duration.ofMillis(600);
+        RateLimiter limiter = new RateLimiter(NAME, 2, ONE_SECOND, ONE_SECOND, () -> budget, now::get);
+
+        limiter.reserve();
+        limiter.reserve();
+        assertThat(limiter.reserve(), is(Duration.ofMillis(500)));
+
+        assertThrows(UpstreamUnavailableException.class, limiter::reserve);
+        assertThat(limiter.getShed(), is(1L));
+        now.addAndGet(Duration.ofMillis(500).toNanos());
+        assertThat(limiter.reserve(), is(Duration.ofMillis(500)));
+        JsonObject emf = JsonParser.parseString(metrics.toEmf(0).get(0)).getAsJsonObject();
+        assertThat(emf.getAsJsonArray(NAME + Metrics.RATE_LIMIT_SHED).get(3).getAsDouble(), is(1.0));
+        assertThat(emf.getAsJsonArray(NAME + Metrics.RATE_LIMIT_WAIT).get(0).getAsDouble(), is(500.0));
+    }
+
+    @Test
+    @DisplayName("submit starts calls at once, after their wait, or not at all when they are shed")
+    public void submitStartsCallsAtOnceAfterTheirWaitOrNotAtAllWhenTheyAreShed() {
+        RateLimiter limiter = new RateLimiter(NAME, 1, Duration.ofMillis(50), Duration.ofMillis(60),
+                                              () -> UNBOUNDED, System::nanoTime);
+        AtomicInteger started = new AtomicInteger();
+
+        CompletableFuture<Integer> first = limiter.submit(() -> CompletableFuture.completedFuture(
+            started.incrementAndGet()));
+        CompletableFuture<Integer> second = limiter.submit(() -> CompletableFuture.completedFuture(
+            started.incrementAndGet()));
+        CompletableFuture<Integer> shed = limiter.submit(() -> CompletableFuture.completedFuture(
+            started.incrementAndGet()));
+
+        assertThat(first.join(), is(1));
+        assertThat(second.join(), is(2));
+        CompletionException exception = assertThrows(CompletionException.class, shed::join);
+        assertThat(exception.getCause() instanceof UpstreamUnavailableException, is(true));
+        assertThat(started.get(), is(2));
+    }
+
+    @Test
+    @DisplayName("submit does not start a waiting call that was cancelled")
+    public void submitDoesNotStartAWaitingCallThatWasCancelled() throws UpstreamUnavailableException {
+        RateLimiter limiter = new RateLimiter(NAME, 1, Duration.ofMillis(50), ONE_SECOND, () -> UNBOUNDED,
+                                              System::nanoTime);
+        AtomicInteger started = new AtomicInteger();
+        limiter.reserve();
+
+        CompletableFuture<Integer> cancelled = limiter.submit(() -> CompletableFuture.completedFuture(
+            started.incrementAndGet()));
+        cancelled.cancel(true);
+        CompletableFuture<Integer> failing = limiter.submit(() -> CompletableFuture.failedFuture(
+            new IllegalStateException()));
+
+        CompletionException exception = assertThrows(CompletionException.class, failing::join);
+        assertThat(exception.getCause() instanceof IllegalStateException, is(true));
+        assertThat(started.get(), is(0));
+    }
+
+    @Test
+    @DisplayName("updateFrom follows the announced limit and ignores headers it cannot read")
+    public void updateFromFollowsTheAnnouncedLimitAndIgnoresHeadersItCannotRead() {
+        RateLimiter limiter = new RateLimiter(NAME, 50, ONE_SECOND, ONE_SECOND);
+
+        limiter.updateFrom(headers("10", "2s"));
+        assertThat(limiter.getLimit(), is(10));
+        assertThat(limiter.getInterval(), is(Duration.ofSeconds(2)));
+
+        limiter.updateFrom(headers("many", "1s"));
+        limiter.updateFrom(headers("5", "often"));
+        limiter.updateFrom(HttpHeaders.of(Map.of(), (name, value) -> true));
+        assertThat(limiter.getLimit(), is(10));
+        assertThat(limiter.getInterval(), is(Duration.ofSeconds(2)));
+    }
+
+    @Test
+    @DisplayName("parseInterval reads milliseconds, seconds and minutes")
+    public void parseIntervalReadsMillisecondsSecondsAndMinutes() {
+        assertThat(RateLimiter.parseInterval("500ms"), is(Optional.of(Duration.ofMillis(500))));
+        assertThat(RateLimiter.parseInterval(" 1s "), is(Optional.of(ONE_SECOND)));
+        assertThat(RateLimiter.parseInterval("3"), is(Optional.of(Duration.ofSeconds(3))));
+        assertThat(RateLimiter.parseInterval("1m"), is(Optional.of(Duration.ofMinutes(1))));
+        assertThat(RateLimiter.parseInterval("0s"), is(Optional.empty()));
+        assertThat(RateLimiter.parseInterval("1h"), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("fromConfig uses the configured limit per second")
+    public void fromConfigUsesTheConfiguredLimitPerSecond() {
+        Config config = new Config();
+        config.setCrossRefRateLimit(20);
+
+        RateLimiter limiter = RateLimiter.fromConfig(CrossRefClient.NAME, config);
+
+        assertThat(limiter.getLimit(), is(20));
+        assertThat(limiter.getInterval(), is(ONE_SECOND));
+    }
+
+    private static HttpHeaders headers(String limit, String interval) {
+        return HttpHeaders.of(Map.of(RateLimiter.RATE_LIMIT_LIMIT, List.of(limit),
+                                     RateLimiter.RATE_LIMIT_INTERVAL, List.of(interval)),
+                              (name, value) -> true);
+    }
+}
@@ -0,0 +1,87 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.time.Duration;
+import java.util.Optional;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RegistrationAgencyCacheTest {
+
+    public static final Duration TTL = Duration.ofHours(1);
+    public static final int MAX_ENTRIES = 10;
+    public static final CacheKey DATACITE_DOI = CacheKey.of("10.5061/dryad.1", CITEPROC_JSON);
+    public static final CacheKey OTHER_DOI_WITH_SAME_PREFIX = CacheKey.of("10.5061/dryad.2", CITEPROC_JSON);
+    public static final CacheKey CROSSREF_DOI = CacheKey.of("10.1093/afraf/ady029", CITEPROC_JSON);
+
+    private MutableClock clock;
+    private RegistrationAgencyCache cache;
+
+    @BeforeEach
+    void before() {
+        clock = new MutableClock();
+        cache = new RegistrationAgencyCache(MAX_ENTRIES, TTL, clock);
+    }
+
+    @Test
+    @DisplayName("lookup returns the agency recorded for the DOI")
+    public void lookupReturnsTheAgencyRecordedForTheDoi() {
+        cache.record(DATACITE_DOI, RegistrationAgency.DATACITE);
+
+        assertThat(cache.lookup(DATACITE_DOI), is(Optional.of(RegistrationAgency.DATACITE)));
+        assertThat(cache.getHits(), is(1L));
+    }
+
+    @Test
+    @DisplayName("lookup returns empty for another DOI with the same prefix")
+    public void lookupReturnsEmptyForAnotherDoiWithTheSamePrefix() {
+        cache.record(DATACITE_DOI, RegistrationAgency.DATACITE);
+
+        assertThat(cache.lookup(OTHER_DOI_WITH_SAME_PREFIX).isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("lookup returns empty for unknown DOIs and counts a miss")
+    public void lookupReturnsEmptyForUnknownDoisAndCountsAMiss() {
+        cache.record(DATACITE_DOI, RegistrationAgency.DATACITE);
+
+        assertThat(cache.lookup(CROSSREF_DOI).isEmpty(), is(true));
+        assertThat(cache.getMisses(), is(1L));
+    }
+
+    @Test
+    @DisplayName("lookup forgets expired observations")
+    public void lookupForgetsExpiredObservations() {
+        cache.record(DATACITE_DOI, RegistrationAgency.DATACITE);
+        clock.advance(TTL);
+
+        assertThat(cache.lookup(DATACITE_DOI).isEmpty(), is(true));
+        assertThat(cache.size(), is(0));
+    }
+
+    @Test
+    @DisplayName("record keeps the number of entries within the limit")
+    public void recordKeepsTheNumberOfEntriesWithinTheLimit() {
+        RegistrationAgencyCache smallCache = new RegistrationAgencyCache(2, TTL, clock);
+        smallCache.record(DATACITE_DOI, RegistrationAgency.DATACITE);
+        smallCache.record(OTHER_DOI_WITH_SAME_PREFIX, RegistrationAgency.DATACITE);
+        smallCache.record(CROSSREF_DOI, RegistrationAgency.CROSSREF);
+
+        assertThat(smallCache.size(), is(2));
+        assertThat(smallCache.lookup(DATACITE_DOI).isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("fromConfig creates a cache using the configured limits")
+    public void fromConfigCreatesACacheUsingTheConfiguredLimits() {
+        RegistrationAgencyCache configured = RegistrationAgencyCache.fromConfig(Config.getInstance());
+        configured.record(CROSSREF_DOI, RegistrationAgency.CROSSREF);
+
+        assertThat(configured.lookup(CROSSREF_DOI), is(Optional.of(RegistrationAgency.CROSSREF)));
+    }
+}
@@ -0,0 +1,129 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import org.apache.http.HttpStatus;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ResponseEncoderTest {
+
+    public static final String BODY = "{\"message\":{\"title\":[\"Title\"]}}";
+    public static final String CONTENT_LOCATION = "https://api.crossref.org/v1/works/";
+    public static final long MAX_AGE_SECONDS = 3600;
+
+    @Test
+    @DisplayName("encode adds a strong ETag and Cache-Control to successful responses")
+    public void encodeAddsAStrongEtagAndCacheControlToSuccessfulResponses() {
+        ResponseEncoder encoder = new ResponseEncoder(-1, MAX_AGE_SECONDS);
+
+        GatewayResponse response = encoder.encode(ok(), Map.of(), true);
+
+        assertThat(response.getBody(), is(equalTo(BODY)));
+        assertThat(response.getIsBase64Encoded(), is(false));
+        assertThat(response.getHeaders().get(ResponseEncoder.ETAG).matches("\"[A-Za-z0-9_-]{43}\""), is(true));
+        assertThat(response.getHeaders().get(HttpHeaders.CACHE_CONTROL), is(equalTo("public, max-age=3600")));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_LOCATION), is(equalTo(CONTENT_LOCATION)));
+        assertThat(response.getHeaders().get(HttpHeaders.CONTENT_TYPE), is(equalTo(MediaType.APPLICATION_JSON)));
+        assertThat(encoder.encode(ok(), null, false).getHeaders().containsKey(HttpHeaders.CACHE_CONTROL), is(false));
+    }
+
+    @Test
+    @DisplayName("encode answers NotModified without a body when If-None-Match matches the ETag")
+    public void encodeAnswersNotModifiedWithoutABodyWhenIfNoneMatchMatchesTheEtag() {
+        ResponseEncoder encoder = new ResponseEncoder(-1, MAX_AGE_SECONDS);
+        String etag = encoder.encode(ok(), null, true).getHeaders().get(ResponseEncoder.ETAG);
+
+        GatewayResponse response = encoder.encode(ok(), Map.of("if-none-match", "\"other\", W/" + etag), true);
+        GatewayResponse changed = encoder.encode(ok(), Map.of(ResponseEncoder.IF_NONE_MATCH, "\"other\""), true);
+
+        assertThat(response.getStatusCode(), is(ResponseEncoder.NOT_MODIFIED));
+        assertThat(response.getBody(), is((String) null));
+        assertThat(response.getHeaders().get(ResponseEncoder.ETAG), is(equalTo(etag)));
+        assertThat(changed.getStatusCode(), is(HttpStatus.SC_OK));
+    }
+
+    @Test
+    @DisplayName("encode compresses bodies above the threshold when the client accepts gzip")
+    public void encodeCompressesBodiesAboveTheThresholdWhenTheClientAcceptsGzip() throws IOException {
+        ResponseEncoder encoder = new ResponseEncoder(BODY.length(), MAX_AGE_SECONDS);
+        Map<String, String> requestHeaders = Map.of("accept-encoding", "br;q=1.0, gzip;q=0.8");
+
+        GatewayResponse response = encoder.encode(ok(), requestHeaders, true);
+
+        assertThat(response.getIsBase64Encoded(), is(true));
+        assertThat(response.getHeaders().get(ResponseEncoder.CONTENT_ENCODING), is(equalTo(ResponseEncoder.GZIP)));
+        assertThat(response.getHeaders().get(ResponseEncoder.ETAG).endsWith("-gzip\""), is(true));
+        assertThat(gunzip(response.getBody()), is(equalTo(BODY)));
+        GatewayResponse small = new ResponseEncoder(BODY.length() + 1, MAX_AGE_SECONDS)
+            .encode(ok(), requestHeaders, true);
+        assertThat(small.getIsBase64Encoded(), is(false));
+    }
+
+    @Test
+    @DisplayName("encode leaves responses other than OK as they are")
+    public void encodeLeavesResponsesOtherThanOkAsTheyAre() {
+        GatewayResponse error = GatewayResponse.errorGatewayResponse(BODY, HttpStatus.SC_BAD_GATEWAY);
+
+        assertThat(new ResponseEncoder(0, MAX_AGE_SECONDS).encode(error, Map.of(), true), is(error));
+    }
+
+    @Test
+    @DisplayName("acceptsGzip follows the quality values of Accept-Encoding")
+    public void acceptsGzipFollowsTheQualityValuesOfAcceptEncoding() {
+        ResponseEncoder encoder = new ResponseEncoder(0, MAX_AGE_SECONDS);
+
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "gzip, deflate")), is(true));
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "*")), is(true));
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "*, gzip;q=0")), is(false));
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "gzip;q=x")), is(false));
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "br")), is(false));
+        assertThat(encoder.acceptsGzip(Map.of()), is(false));
+        assertThat(new ResponseEncoder(-1, 0).acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "gzip")),
+                   is(false));
+    }
+
+    @Test
+    @DisplayName("matches accepts any tag for a wildcard and compares tags weakly")
+    public void matchesAcceptsAnyTagForAWildcardAndComparesTagsWeakly() {
+        assertThat(ResponseEncoder.matches("*", "\"a\""), is(true));
+        assertThat(ResponseEncoder.matches("W/\"a\"", "\"a\""), is(true));
+        assertThat(ResponseEncoder.matches("\"b\", \"c\"", "\"a\""), is(false));
+    }
+
+    @Test
+    @DisplayName("fromConfig uses the compression threshold and the metadata cache TTL")
+    public void fromConfigUsesTheCompressionThresholdAndTheMetadataCacheTtl() {
+        Config config = new Config();
+        config.setResponseCompressionMinBytes(-1);
+        config.setCacheTtlSeconds(60);
+
+        ResponseEncoder encoder = ResponseEncoder.fromConfig(config);
+
+        assertThat(encoder.acceptsGzip(Map.of(ResponseEncoder.ACCEPT_ENCODING, "gzip")), is(false));
+        assertThat(encoder.cacheHeaders().get(HttpHeaders.CACHE_CONTROL), is(equalTo("public, max-age=60")));
+        assertThat(config.getResponseCompressionMinBytes(), is(-1L));
+    }
+
+    private static GatewayResponse ok() {
+        return new GatewayResponse(BODY, HttpStatus.SC_OK, MediaType.APPLICATION_JSON,
+                                   Map.of(HttpHeaders.CONTENT_LOCATION, CONTENT_LOCATION));
+    }
+
+    private static String gunzip(String base64) throws IOException {
+        byte[] compressed = Base64.getDecoder().decode(base64);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
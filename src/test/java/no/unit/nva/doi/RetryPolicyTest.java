@@ -0,0 +1,199 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import no.unit.nva.doi.RetryPolicy.Outcome;
+import no.unit.nva.utils.AbstractHttpResponse;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.HttpResponseStatus404;
+import no.unit.nva.utils.HttpResponseStatus500;
+import no.unit.nva.utils.HttpResponseStatus503;
+import no.unit.nva.utils.MockHttpClient;
+import no.unit.nva.utils.SequenceMockHttpClient;
+import org.apache.http.HttpHeaders;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class RetryPolicyTest {
+
+    public static final Duration BASE_DELAY = Duration.ofMillis(100);
+    public static final Duration MAX_DELAY = Duration.ofMillis(300);
+    public static final Duration SLOW_ATTEMPT = Duration.ofMillis(50);
+    public static final Duration UNBOUNDED = ChronoUnit.FOREVER.getDuration();
+    public static final Instant NOW = Instant.parse("2020-06-01T12:00:00Z");
+    public static final HttpRequest REQUEST = HttpRequest.newBuilder(URI.create("https://example.org/")).build();
+
+    @Test
+    @DisplayName("nextDelay does not retry terminal errors")
+    public void nextDelayDoesNotRetryTerminalErrors() {
+        RetryPolicy policy = policy(UNBOUNDED, 0.5);
+
+        assertThat(policy.nextDelay(1, 3, UNBOUNDED, new HttpResponseStatus500<>(""), null), is(Optional.empty()));
+        assertThat(policy.nextDelay(1, 3, UNBOUNDED, null, new IllegalStateException()), is(Optional.empty()));
+        assertThat(policy.getCount(Outcome.TERMINAL), is(2L));
+    }
+
+    @Test
+    @DisplayName("nextDelay backs off exponentially with jitter up to the maximum delay")
+    public void nextDelayBacksOffExponentiallyWithJitterUpToTheMaximumDelay() {
+        RetryPolicy policy = policy(UNBOUNDED, 0.5);
+        HttpResponseStatus503<String> response = new HttpResponseStatus503<>("");
+
+        assertThat(policy.nextDelay(1, 5, UNBOUNDED, response, null), is(Optional.of(Duration.ofMillis(50))));
+        assertThat(policy.nextDelay(2, 5, UNBOUNDED, response, null), is(Optional.of(Duration.ofMillis(100))));
+        assertThat(policy.nextDelay(3, 5, UNBOUNDED, response, null), is(Optional.of(Duration.ofMillis(150))));
+        assertThat(policy.nextDelay(4, 5, UNBOUNDED, null, new IOException()), is(Optional.of(Duration.ofMillis(150))));
+        assertThat(policy.getCount(Outcome.RETRIED), is(4L));
+    }
+
+    @Test
+    @DisplayName("nextDelay gives up when the attempts or the time budget are used up")
+    public void nextDelayGivesUpWhenTheAttemptsOrTheTimeBudgetAreUsedUp() {
+        RetryPolicy policy = policy(UNBOUNDED, 0.5);
+        HttpResponseStatus503<String> response = new HttpResponseStatus503<>("");
+
+        assertThat(policy.nextDelay(3, 3, UNBOUNDED, response, null), is(Optional.empty()));
+        assertThat(policy.nextDelay(1, 3, RetryPolicy.MIN_ATTEMPT_TIME, response, null), is(Optional.empty()));
+        assertThat(policy.getCount(Outcome.ATTEMPTS_EXHAUSTED), is(1L));
+        assertThat(policy.getCount(Outcome.BUDGET_EXHAUSTED), is(1L));
+    }
+
+    @Test
+    @DisplayName("nextDelay waits at least as long as Retry-After asks for")
+    public void nextDelayWaitsAtLeastAsLongAsRetryAfterAsksFor() {
+        RetryPolicy policy = policy(UNBOUNDED, 0.5);
+        HttpResponseStatus503<String> seconds = new HttpResponseStatus503<>(
+            "", Map.of(HttpHeaders.RETRY_AFTER, List.of("2")));
+        HttpResponseStatus503<String> date = new HttpResponseStatus503<>(
+            "", Map.of(HttpHeaders.RETRY_AFTER, List.of("Mon, 01 Jun 2020 12:00:03 GMT")));
+        HttpResponseStatus503<String> invalid = new HttpResponseStatus503<>(
+            "", Map.of(HttpHeaders.RETRY_AFTER, List.of("soon")));
+
+        assertThat(policy.nextDelay(1, 3, UNBOUNDED, seconds, null), is(Optional.of(Duration.ofSeconds(2))));
+        assertThat(policy.retryAfter(date), is(Optional.of(Duration.ofSeconds(3))));
+        assertThat(policy.retryAfter(invalid), is(Optional.empty()));
+        assertThat(policy.nextDelay(1, 3, Duration.ofSeconds(2), seconds, null), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("isRetryable accepts rate limiting, gateway errors, transport failures and timeouts")
+    public void isRetryableAcceptsRateLimitingGatewayErrorsTransportFailuresAndTimeouts() {
+        assertThat(RetryPolicy.isRetryable(RetryPolicy.SC_TOO_MANY_REQUESTS), is(true));
+        assertThat(RetryPolicy.isRetryable(504), is(true));
+        assertThat(RetryPolicy.isRetryable(500), is(false));
+        assertThat(RetryPolicy.isRetryable(new CompletionException(new TimeoutException())), is(true));
+        assertThat(RetryPolicy.isRetryable(new IllegalArgumentException()), is(false));
+        assertThat(RetryPolicy.isRetryable(new UpstreamUnavailableException("")), is(false));
+        assertThat(RetryPolicy.isFailure(RetryPolicy.SC_TOO_MANY_REQUESTS), is(true));
+        assertThat(RetryPolicy.isFailure(404), is(false));
+    }
+
+    @Test
+    @DisplayName("sendAsync retries until the upstream answers")
+    public void sendAsyncRetriesUntilTheUpstreamAnswers() {
+        RetryPolicy policy = policy(UNBOUNDED, 0);
+        List<AbstractHttpResponse<String>> responses = List.of(new HttpResponseStatus503<>(""),
+                                                               new HttpResponseStatus404<>(""));
+        SequenceMockHttpClient<String> httpClient = new SequenceMockHttpClient<>(responses);
+
+        HttpResponse<String> response = policy.sendAsync(httpClient, breaker(), REQUEST, BodyHandlers.ofString())
+                                              .join();
+
+        assertThat(response.statusCode(), is(404));
+        assertThat(httpClient.getRequestCount(), is(2));
+        assertThat(policy.getCount(Outcome.RETRIED), is(1L));
+        assertThat(policy.getCount(Outcome.ANSWERED), is(1L));
+    }
+
+    @Test
+    @DisplayName("send returns the last failed response when the attempts are used up")
+    public void sendReturnsTheLastFailedResponseWhenTheAttemptsAreUsedUp() throws IOException {
+        RetryPolicy policy = policy(UNBOUNDED, 0);
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus503<>(""));
+
+        HttpResponse<String> response = policy.send(httpClient, breaker(), REQUEST, BodyHandlers.ofString());
+
+        assertThat(response.statusCode(), is(503));
+        assertThat(httpClient.getRequestCount(), is(policy.getMaxAttempts()));
+        assertThat(policy.getCount(Outcome.ATTEMPTS_EXHAUSTED), is(1L));
+    }
+
+    @Test
+    @DisplayName("send throws the last failure when every attempt fails without a response")
+    public void sendThrowsTheLastFailureWhenEveryAttemptFailsWithoutAResponse() {
+        RetryPolicy policy = policy(UNBOUNDED, 0);
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>("")) {
+            @Override
+            public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                    BodyHandler<T> responseBodyHandler) {
+                super.sendAsync(request, responseBodyHandler);
+                return CompletableFuture.failedFuture(new IOException());
+            }
+        };
+
+        assertThrows(IOException.class, () -> policy.send(httpClient, breaker(), REQUEST, BodyHandlers.ofString()));
+        assertThat(httpClient.getRequestCount(), is(policy.getMaxAttempts()));
+    }
+
+    @Test
+    @DisplayName("send gives up an attempt before the response margin of the invocation")
+    public void sendGivesUpAnAttemptBeforeTheResponseMarginOfTheInvocation() {
+        RetryPolicy policy = policy(InvocationDeadline.RESPONSE_MARGIN.plus(SLOW_ATTEMPT), 0);
+        MockHttpClient<String> httpClient = new MockHttpClient<>(new HttpResponseStatus200<>("")) {
+            @Override
+            public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                                    BodyHandler<T> responseBodyHandler) {
+                super.sendAsync(request, responseBodyHandler);
+                return new CompletableFuture<>();
+            }
+        };
+
+        IOException error = assertThrows(IOException.class,
+            () -> policy.send(httpClient, breaker(), REQUEST, BodyHandlers.ofString()));
+
+        assertThat(error.getCause() instanceof TimeoutException, is(true));
+        assertThat(policy.getCount(Outcome.ATTEMPTS_EXHAUSTED), is(1L));
+    }
+
+    @Test
+    @DisplayName("fromConfig uses the configured number of attempts")
+    public void fromConfigUsesTheConfiguredNumberOfAttempts() {
+        Config config = new Config();
+        config.setRetryMaxAttempts(5);
+        config.setRetryBaseDelayMillis(1);
+        config.setRetryMaxDelayMillis(2);
+
+        RetryPolicy policy = RetryPolicy.fromConfig(config);
+
+        assertThat(policy.getMaxAttempts(), is(5));
+        assertThat(policy.backoff(3).compareTo(Duration.ofMillis(2)) <= 0, is(true));
+    }
+
+    private static CircuitBreaker breaker() {
+        return new CircuitBreaker("", Integer.MAX_VALUE, Duration.ZERO, Integer.MAX_VALUE);
+    }
+
+    private static RetryPolicy policy(Duration remaining, double jitter) {
+        return new RetryPolicy(3, BASE_DELAY, MAX_DELAY, () -> remaining, () -> jitter,
+                               Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+}
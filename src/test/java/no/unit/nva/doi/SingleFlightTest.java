@@ -0,0 +1,135 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    public static final String KEY = "10.1000/182";
+    public static final int CALLERS = 5;
+
+    @Test
+    @DisplayName("execute shares one call between concurrent callers of the same key")
+    public void executeSharesOneCallBetweenConcurrentCallersOfTheSameKey() throws Exception {
+        Metrics metrics = Metrics.start(null, KEY);
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger callCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(KEY, () -> {
+                    await(release);
+                    return callCount.incrementAndGet();
+                })));
+            }
+            waitUntilCoalesced(singleFlight, CALLERS - 1);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                assertThat(result.get(), is(1));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(singleFlight.getCalls(), is(1L));
+        assertThat(singleFlight.getCoalesced(), is((long) CALLERS - 1));
+        assertThat(singleFlight.getInFlight(), is(0));
+        JsonArray coalesced = JsonParser.parseString(metrics.toEmf(0).get(0)).getAsJsonObject()
+                                        .getAsJsonArray(Metrics.COALESCED);
+        assertThat(coalesced.size(), is(CALLERS));
+        double coalescedCallers = 0;
+        for (JsonElement value : coalesced) {
+            coalescedCallers += value.getAsDouble();
+        }
+        assertThat(coalescedCallers, is((double) CALLERS - 1));
+    }
+
+    @Test
+    @DisplayName("execute shares failures with the callers waiting for the call")
+    public void executeSharesFailuresWithTheCallersWaitingForTheCall() throws Exception {
+        assertSharedFailure(new IOException(KEY), IOException.class);
+        assertSharedFailure(new URISyntaxException(KEY, KEY), URISyntaxException.class);
+        assertSharedFailure(new IllegalStateException(KEY), IllegalStateException.class);
+    }
+
+    @Test
+    @DisplayName("execute runs a new call for a key once the previous call has finished")
+    public void executeRunsANewCallForAKeyOnceThePreviousCallHasFinished() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        AtomicInteger callCount = new AtomicInteger();
+
+        singleFlight.execute(KEY, callCount::incrementAndGet);
+        int second = singleFlight.execute(KEY, callCount::incrementAndGet);
+
+        assertThat(second, is(2));
+        assertThat(singleFlight.getCoalesced(), is(0L));
+    }
+
+    private void assertSharedFailure(Exception failure, Class<? extends Exception> expected) throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                results.add(executor.submit(() -> singleFlight.execute(KEY, () -> {
+                    await(release);
+                    throw asCallFailure(failure);
+                })));
+            }
+            waitUntilCoalesced(singleFlight, 1);
+            release.countDown();
+
+            for (Future<Integer> result : results) {
+                ExecutionException thrown = assertThrows(ExecutionException.class, result::get);
+                assertThat(expected.isInstance(thrown.getCause()), is(true));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static IOException asCallFailure(Exception failure) throws URISyntaxException {
+        if (failure instanceof URISyntaxException) {
+            throw (URISyntaxException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        return (IOException) failure;
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void waitUntilCoalesced(SingleFlight<?, ?> singleFlight, long callers)
+        throws InterruptedException {
+        while (singleFlight.getCoalesced() < callers) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.startsWith;
+import static org.hamcrest.core.Is.is;
+
+import java.time.Duration;
+import java.util.Optional;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class StartupTimerTest {
+
+    @Test
+    @DisplayName("reportOnce reports nothing before initialization is marked as finished")
+    public void reportOnceReportsNothingBeforeInitializationIsMarkedAsFinished() {
+        StartupTimer timer = new StartupTimer();
+
+        assertThat(timer.getInitDuration(), is(Optional.empty()));
+        assertThat(timer.reportOnce(Duration.ofSeconds(1)), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("reportOnce reports the init time only once")
+    public void reportOnceReportsTheInitTimeOnlyOnce() {
+        StartupTimer timer = new StartupTimer();
+        timer.markInitialized();
+        Duration initDuration = timer.getInitDuration().orElseThrow();
+        timer.markInitialized();
+
+        assertThat(timer.getInitDuration().orElseThrow(), is(initDuration));
+        assertThat(timer.reportOnce(Duration.ofHours(1)).orElseThrow(), startsWith("Init took"));
+        assertThat(timer.reportOnce(Duration.ofHours(1)), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("reportOnce flags init times over the budget")
+    public void reportOnceFlagsInitTimesOverTheBudget() throws InterruptedException {
+        StartupTimer timer = new StartupTimer();
+        Thread.sleep(5);
+        timer.markInitialized();
+
+        assertThat(timer.reportOnce(Duration.ofMillis(1)).orElseThrow(), endsWith(StartupTimer.OVER_BUDGET));
+    }
+
+    @Test
+    @DisplayName("remaining is what is left of the budget, and zero once it is used up")
+    public void remainingIsWhatIsLeftOfTheBudgetAndZeroOnceItIsUsedUp() throws InterruptedException {
+        StartupTimer timer = new StartupTimer();
+        Thread.sleep(5);
+
+        assertThat(timer.remaining(Duration.ofHours(1)).compareTo(Duration.ofHours(1)) < 0, is(true));
+        assertThat(timer.remaining(Duration.ofMillis(1)), is(Duration.ZERO));
+    }
+}
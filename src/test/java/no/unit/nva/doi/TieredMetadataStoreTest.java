@@ -0,0 +1,129 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.core.Is.is;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import no.unit.nva.utils.MutableClock;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TieredMetadataStoreTest {
+
+    public static final CacheKey KEY = CacheKey.of("10.1000/182", CITEPROC_JSON);
+    public static final MetadataAndContentLocation METADATA =
+        new MetadataAndContentLocation(CrossRefClient.CROSSREF_LINK, "{}");
+    public static final Duration TIME_TO_LIVE = Duration.ofHours(1);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("get copies entries found only in the second tier to the first tier")
+    public void getCopiesEntriesFoundOnlyInTheSecondTierToTheFirstTier() {
+        MetadataCache firstTier = new MetadataCache(Long.MAX_VALUE, TIME_TO_LIVE);
+        FileMetadataStore secondTier = new FileMetadataStore(directory, TIME_TO_LIVE);
+        secondTier.put(KEY, METADATA);
+        TieredMetadataStore store = new TieredMetadataStore(firstTier, secondTier);
+
+        assertThat(store.get(KEY).isPresent(), is(true));
+        assertThat(store.get(KEY).isPresent(), is(true));
+
+        assertThat(secondTier.getHits(), is(1L));
+        assertThat(firstTier.getHits(), is(1L));
+    }
+
+    @Test
+    @DisplayName("put writes to both tiers")
+    public void putWritesToBothTiers() {
+        MetadataCache firstTier = new MetadataCache(Long.MAX_VALUE, TIME_TO_LIVE);
+        FileMetadataStore secondTier = new FileMetadataStore(directory, TIME_TO_LIVE);
+        TieredMetadataStore store = new TieredMetadataStore(firstTier, secondTier);
+
+        store.put(KEY, METADATA);
+
+        assertThat(store.getFirstTier().get(KEY).isPresent(), is(true));
+        assertThat(store.getSecondTier().get(KEY).isPresent(), is(true));
+        assertThat(store.get(CacheKey.of("10.1000/183", CITEPROC_JSON)), is(Optional.empty()));
+    }
+
+    @Test
+    @DisplayName("lookup prefers fresh entries of the second tier over stale entries of the first tier")
+    public void lookupPrefersFreshEntriesOfTheSecondTierOverStaleEntriesOfTheFirstTier() {
+        MutableClock clock = new MutableClock();
+        MetadataCache firstTier = new MetadataCache(Long.MAX_VALUE, TIME_TO_LIVE, TIME_TO_LIVE, clock);
+        FileMetadataStore secondTier = new FileMetadataStore(directory, TIME_TO_LIVE.multipliedBy(24), clock);
+        TieredMetadataStore store = new TieredMetadataStore(firstTier, secondTier);
+        store.put(KEY, METADATA);
+
+        assertThat(store.lookup(KEY).get().isFresh(), is(true));
+        clock.advance(TIME_TO_LIVE);
+        secondTier.put(KEY, METADATA);
+        assertThat(store.lookup(KEY).get().isFresh(), is(true));
+        assertThat(secondTier.getHits(), is(1L));
+    }
+
+    @Test
+    @DisplayName("lookup judges entries of the second tier from the time they were fetched")
+    public void lookupJudgesEntriesOfTheSecondTierFromTheTimeTheyWereFetched() {
+        MutableClock clock = new MutableClock();
+        MetadataCache firstTier = new MetadataCache(Long.MAX_VALUE, TIME_TO_LIVE, TIME_TO_LIVE, clock);
+        FileMetadataStore secondTier = new FileMetadataStore(directory, TIME_TO_LIVE.multipliedBy(24), clock);
+        TieredMetadataStore store = new TieredMetadataStore(firstTier, secondTier);
+        store.put(KEY, METADATA);
+
+        clock.advance(TIME_TO_LIVE);
+        assertThat(store.lookup(KEY).get().isFresh(), is(false));
+        assertThat(secondTier.getHits(), is(1L));
+        clock.advance(TIME_TO_LIVE);
+        assertThat(store.lookup(KEY), is(Optional.empty()));
+        assertThat(store.get(KEY).isPresent(), is(true));
+        assertThat(secondTier.lookup(KEY).get().getFetchedAt(),
+                   is(Optional.of(clock.instant().minus(TIME_TO_LIVE.multipliedBy(2)))));
+    }
+
+    @Test
+    @DisplayName("lookup copies entries of a second tier that does not keep fetch times as fetched now")
+    public void lookupCopiesEntriesOfASecondTierThatDoesNotKeepFetchTimesAsFetchedNow() {
+        MetadataCache firstTier = new MetadataCache(Long.MAX_VALUE, TIME_TO_LIVE);
+        List<MetadataAndContentLocation> written = new ArrayList<>();
+        MetadataStore secondTier = new MetadataStore() {
+            @Override
+            public Optional<MetadataAndContentLocation> get(CacheKey key) {
+                return Optional.of(METADATA);
+            }
+
+            @Override
+            public void put(CacheKey key, MetadataAndContentLocation value) {
+                written.add(value);
+            }
+        };
+        TieredMetadataStore store = new TieredMetadataStore(firstTier, secondTier);
+
+        assertThat(store.lookup(KEY).get().isFresh(), is(true));
+        assertThat(firstTier.get(KEY).isPresent(), is(true));
+        secondTier.put(KEY, METADATA, Instant.EPOCH);
+        assertThat(written.size(), is(1));
+    }
+
+    @Test
+    @DisplayName("fromConfig adds a file store only when a directory is configured")
+    public void fromConfigAddsAFileStoreOnlyWhenADirectoryIsConfigured() {
+        Config config = new Config();
+        assertThat(TieredMetadataStore.fromConfig(config), is(instanceOf(MetadataCache.class)));
+        config.setMetadataStoreDirectory(" ");
+        assertThat(TieredMetadataStore.fromConfig(config), is(instanceOf(MetadataCache.class)));
+
+        config.setMetadataStoreDirectory(directory.toString());
+        TieredMetadataStore store = (TieredMetadataStore) TieredMetadataStore.fromConfig(config);
+        assertThat(store.getSecondTier(), is(instanceOf(FileMetadataStore.class)));
+    }
+}
@@ -0,0 +1,52 @@
+package no.unit.nva.doi;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+import java.time.Duration;
+import no.unit.nva.utils.DelayedMockHttpClient;
+import no.unit.nva.utils.HttpResponseStatus200;
+import no.unit.nva.utils.MockHttpClient;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class WarmupTest {
+
+    public static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    @Test
+    @DisplayName("run opens a connection to both upstreams when enabled")
+    public void runOpensAConnectionToBothUpstreamsWhenEnabled() {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(""));
+        MockHttpClient<byte[]> dataciteHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(new byte[0]));
+        Warmup warmup = new Warmup(new CrossRefClient(crossRefHttpClient), new DataciteClient(dataciteHttpClient),
+                                   true, TIMEOUT);
+
+        assertThat(warmup.run(), is(true));
+        assertThat(crossRefHttpClient.getRequestCount(), is(1));
+        assertThat(dataciteHttpClient.getRequestCount(), is(1));
+    }
+
+    @Test
+    @DisplayName("run only loads classes when connection warm-up is disabled")
+    public void runOnlyLoadsClassesWhenConnectionWarmupIsDisabled() {
+        MockHttpClient<String> crossRefHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(""));
+        Config config = new Config();
+        Warmup warmup = Warmup.fromConfig(new CrossRefClient(crossRefHttpClient), new DataciteClient(), config);
+
+        assertThat(warmup.run(), is(false));
+        assertThat(crossRefHttpClient.getRequestCount(), is(0));
+    }
+
+    @Test
+    @DisplayName("run gives up on connections that take longer than the timeout")
+    public void runGivesUpOnConnectionsThatTakeLongerThanTheTimeout() {
+        MockHttpClient<String> crossRefHttpClient =
+            new DelayedMockHttpClient<>(new HttpResponseStatus200<>(""), TIMEOUT.multipliedBy(10));
+        MockHttpClient<byte[]> dataciteHttpClient = new MockHttpClient<>(new HttpResponseStatus200<>(new byte[0]));
+        Warmup warmup = new Warmup(new CrossRefClient(crossRefHttpClient), new DataciteClient(dataciteHttpClient),
+                                   true, TIMEOUT);
+
+        assertThat(warmup.run(), is(false));
+    }
+}
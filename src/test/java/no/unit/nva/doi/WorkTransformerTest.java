@@ -0,0 +1,274 @@
+package no.unit.nva.doi;
+
+import static no.unit.nva.doi.DataciteContentType.CITEPROC_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_JSON;
+import static no.unit.nva.doi.DataciteContentType.DATACITE_XML;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsEqual.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import javax.xml.parsers.DocumentBuilderFactory;
+import no.bibsys.aws.tools.IoUtils;
+import no.unit.nva.utils.AbstractLambdaTest;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+public class WorkTransformerTest extends AbstractLambdaTest {
+
+    public static final String EDITED_BOOK = "{\"DOI\":\"10.1000/182\",\"type\":\"edited-book\",\"title\":\"Handbook\","
+        + "\"publisher\":null,\"volume\":3,\"ISBN\":[\"978-3-16-148410-0\"],\"issued\":{\"date-parts\":[[null]]},"
+        + "\"author\":[{\"name\":\"Working Group\"},{\"given\":\"Anonymous\"},\"nobody\"],"
+        + "\"editor\":[{\"given\":\"Ada\",\"family\":\"Lovelace\",\"ORCID\":\"https://orcid.org/0000-0002-1825-0097\"},"
+        + "{\"family\":\"Babbage\"}],\"subtitle\":{\"nested\":true},\"reference\":[{\"key\":\"ref1\"}]}";
+    public static final String UNKNOWN_TYPE = "{\"DOI\":\"10.1000/183\",\"type\":\"peer-review\","
+        + "\"container-title\":[\"Reviews\"],\"page\":\"12\",\"issue\":\"4\",\"issued\":{\"date-parts\":[[2020,1,9]]}}";
+    public static final String DATACITE_WORK = "{\"doi\":\"10.5061/dryad.2\",\"url\":\"https://datadryad.org/2\","
+        + "\"types\":{\"resourceTypeGeneral\":\"Dataset\",\"resourceType\":\"Data\",\"citeproc\":\"dataset\"},"
+        + "\"titles\":[{\"title\":\"Seeds\"},{\"title\":\"Of change\",\"titleType\":\"Subtitle\"},"
+        + "{\"title\":\"Fr\\u00f8\",\"titleType\":\"TranslatedTitle\"},\"untitled\"],"
+        + "\"creators\":[{\"name\":\"Lovelace, Ada\",\"nameType\":\"Personal\",\"givenName\":\"Ada\","
+        + "\"familyName\":\"Lovelace\",\"nameIdentifiers\":["
+        + "{\"nameIdentifier\":\"https://orcid.org/0000-0002-1825-0097\",\"nameIdentifierScheme\":\"ORCID\"}]},"
+        + "{\"name\":\"Dryad\",\"nameType\":\"Organizational\"},3],"
+        + "\"contributors\":[{\"name\":\"Babbage, Charles\",\"givenName\":\"Charles\",\"familyName\":\"Babbage\","
+        + "\"contributorType\":\"Editor\"},{\"name\":\"Curator\",\"contributorType\":\"DataCurator\"}],"
+        + "\"container\":{\"type\":\"Series\",\"title\":\"Seed Bank\",\"volume\":\"7\",\"firstPage\":\"3\","
+        + "\"lastPage\":\"9\",\"identifier\":\"1234-5678\",\"identifierType\":\"ISSN\"},"
+        + "\"publisher\":{\"name\":\"Dryad\"},\"publicationYear\":2019,"
+        + "\"dates\":[{\"date\":\"2018-11-02T10:00:00Z\",\"dateType\":\"Issued\"},{\"date\":\"2019\"}],"
+        + "\"identifiers\":[{\"identifier\":\"978-3-16-148410-0\",\"identifierType\":\"ISBN\"}],"
+        + "\"relatedIdentifiers\":[{\"relatedIdentifier\":\"1234-5678\",\"relatedIdentifierType\":\"ISSN\","
+        + "\"relationType\":\"IsPartOf\"},{\"relatedIdentifier\":\"8765-4321\",\"relatedIdentifierType\":\"ISSN\","
+        + "\"relationType\":\"IsPartOf\"}],\"agency\":\"datacite\",\"schemaVersion\":4}";
+
+    @Test
+    @DisplayName("read keeps the bibliographic fields of a CrossRef work and skips the rest")
+    public void readKeepsTheBibliographicFieldsOfACrossRefWorkAndSkipsTheRest() throws IOException {
+        Work work = WorkTransformer.read(new StringReader(IoUtils.resourceAsString(CrossRefSamplePath)));
+
+        assertThat(work.getDoi(), is(equalTo(DOI_STRING)));
+        assertThat(work.getType(), is(equalTo("journal-article")));
+        assertThat(work.getUrl(), is(equalTo("http://dx.doi.org/" + DOI_STRING)));
+        assertThat(work.getTitles().size(), is(1));
+        assertThat(work.getSubtitles().size(), is(1));
+        assertThat(work.getContainerTitles(), is(equalTo(List.of("Der Nervenarzt"))));
+        assertThat(work.getIssued(), is(equalTo(List.of(2005, 5))));
+        assertThat(work.getVolume(), is(equalTo("76")));
+        assertThat(work.getIssue(), is(equalTo("5")));
+        assertThat(work.getPage(), is(equalTo("569-580")));
+        assertThat(work.getLanguage(), is(equalTo("de")));
+        assertThat(work.getIssns(), is(equalTo(List.of("0028-2804", "1433-0407"))));
+        assertThat(work.getAuthors().size(), is(2));
+        assertThat(work.getAuthors().get(1).getFamily(), is(equalTo("Sch\u00f6nfeldt-Lecuona")));
+        assertThat(work.getEditors().isEmpty(), is(true));
+    }
+
+    @Test
+    @DisplayName("transform writes a CrossRef work as CSL JSON")
+    public void transformWritesACrossRefWorkAsCslJson() throws IOException {
+        String csl = WorkTransformer.transform(IoUtils.resourceAsString(CrossRefSamplePath), CITEPROC_JSON);
+
+        JsonObject json = JsonParser.parseString(csl).getAsJsonObject();
+        assertThat(json.get("id").getAsString(), is(equalTo(DOI_STRING)));
+        assertThat(json.get("type").getAsString(), is(equalTo("article-journal")));
+        assertThat(json.get("container-title").getAsString(), is(equalTo("Der Nervenarzt")));
+        assertThat(json.get("ISSN").getAsString(), is(equalTo("0028-2804")));
+        assertThat(json.getAsJsonArray("author").get(0).getAsJsonObject().get("family").getAsString(),
+                   is(equalTo("Freudenmann")));
+        assertThat(json.getAsJsonObject("issued").getAsJsonArray("date-parts").toString(),
+                   is(equalTo("[[2005,5]]")));
+        assertThat(json.has("reference"), is(false));
+        assertThat(json.has("editor"), is(false));
+    }
+
+    @Test
+    @DisplayName("transform writes a CrossRef work as DataCite JSON")
+    public void transformWritesACrossRefWorkAsDataciteJson() throws IOException {
+        String datacite = WorkTransformer.transform(IoUtils.resourceAsString(CrossRefSamplePath), DATACITE_JSON);
+
+        JsonObject json = JsonParser.parseString(datacite).getAsJsonObject();
+        assertThat(json.get("id").getAsString(), is(equalTo(WorkTransformer.DOI_RESOLVER + DOI_STRING)));
+        assertThat(json.getAsJsonObject("types").get("resourceTypeGeneral").getAsString(),
+                   is(equalTo("JournalArticle")));
+        JsonObject creator = json.getAsJsonArray("creators").get(0).getAsJsonObject();
+        assertThat(creator.get("name").getAsString(), is(equalTo("Freudenmann, R. W.")));
+        assertThat(creator.get("nameType").getAsString(), is(equalTo(WorkTransformer.PERSONAL)));
+        JsonArray titles = json.getAsJsonArray("titles");
+        assertThat(titles.size(), is(2));
+        assertThat(titles.get(1).getAsJsonObject().get("titleType").getAsString(),
+                   is(equalTo(WorkTransformer.SUBTITLE)));
+        JsonObject container = json.getAsJsonObject("container");
+        assertThat(container.get("type").getAsString(), is(equalTo("Journal")));
+        assertThat(container.get("firstPage").getAsString(), is(equalTo("569")));
+        assertThat(container.get("lastPage").getAsString(), is(equalTo("580")));
+        assertThat(json.get("publicationYear").getAsInt(), is(2005));
+        assertThat(json.getAsJsonArray("dates").get(0).getAsJsonObject().get("date").getAsString(),
+                   is(equalTo("2005-05")));
+        assertThat(json.getAsJsonArray("relatedIdentifiers").size(), is(2));
+        assertThat(json.get("agency").getAsString(), is(equalTo(WorkTransformer.CROSSREF_AGENCY)));
+    }
+
+    @Test
+    @DisplayName("transform writes a CrossRef work as DataCite XML")
+    public void transformWritesACrossRefWorkAsDataciteXml() throws Exception {
+        String xml = WorkTransformer.transform(IoUtils.resourceAsString(CrossRefSamplePath), DATACITE_XML);
+
+        Element resource = parseXml(xml).getDocumentElement();
+        assertThat(resource.getNamespaceURI(), is(equalTo(WorkTransformer.DATACITE_NAMESPACE)));
+        assertThat(text(resource, "identifier"), is(equalTo(DOI_STRING)));
+        assertThat(text(resource, "creatorName"), is(equalTo("Freudenmann, R. W.")));
+        assertThat(text(resource, "publicationYear"), is(equalTo("2005")));
+        assertThat(text(resource, "resourceType"), is(equalTo("journal-article")));
+        assertThat(text(resource, "description"), is(equalTo("Der Nervenarzt, 76(5), 569-580")));
+        assertThat(resource.getElementsByTagNameNS(WorkTransformer.DATACITE_NAMESPACE, "relatedIdentifier")
+                           .getLength(), is(2));
+    }
+
+    @Test
+    @DisplayName("transform writes organizations, editors and ISBNs and tolerates unexpected values")
+    public void transformWritesOrganizationsEditorsAndIsbnsAndToleratesUnexpectedValues() throws Exception {
+        JsonObject csl = JsonParser.parseString(WorkTransformer.transform(EDITED_BOOK, CITEPROC_JSON))
+                                   .getAsJsonObject();
+        JsonObject datacite = JsonParser.parseString(WorkTransformer.transform(EDITED_BOOK, DATACITE_JSON))
+                                        .getAsJsonObject();
+        Element xml = parseXml(WorkTransformer.transform(EDITED_BOOK, DATACITE_XML)).getDocumentElement();
+
+        assertThat(csl.get("type").getAsString(), is(equalTo("book")));
+        assertThat(csl.get("title").getAsString(), is(equalTo("Handbook")));
+        assertThat(csl.get("volume").getAsString(), is(equalTo("3")));
+        assertThat(csl.get("ISBN").getAsString(), is(equalTo("978-3-16-148410-0")));
+        assertThat(csl.getAsJsonArray("author").size(), is(1));
+        assertThat(csl.getAsJsonArray("author").get(0).getAsJsonObject().get("literal").getAsString(),
+                   is(equalTo("Working Group")));
+        assertThat(csl.getAsJsonArray("editor").size(), is(2));
+        assertThat(csl.has("publisher"), is(false));
+        assertThat(csl.has("issued"), is(false));
+        JsonObject editor = datacite.getAsJsonArray("contributors").get(0).getAsJsonObject();
+        assertThat(editor.get("contributorType").getAsString(), is(equalTo(WorkTransformer.EDITOR)));
+        assertThat(editor.getAsJsonArray("nameIdentifiers").size(), is(1));
+        assertThat(datacite.getAsJsonArray("contributors").get(1).getAsJsonObject().get("name").getAsString(),
+                   is(equalTo("Babbage")));
+        assertThat(datacite.getAsJsonArray("creators").get(0).getAsJsonObject().get("nameType").getAsString(),
+                   is(equalTo(WorkTransformer.ORGANIZATIONAL)));
+        assertThat(datacite.getAsJsonArray("identifiers").size(), is(1));
+        assertThat(datacite.has("container"), is(false));
+        assertThat(text(xml, "alternateIdentifier"), is(equalTo("978-3-16-148410-0")));
+        assertThat(text(xml, "nameIdentifier"), is(equalTo("https://orcid.org/0000-0002-1825-0097")));
+        assertThat(xml.getElementsByTagNameNS(WorkTransformer.DATACITE_NAMESPACE, "description").getLength(), is(0));
+    }
+
+    @Test
+    @DisplayName("transform falls back to generic types for unknown CrossRef work types")
+    public void transformFallsBackToGenericTypesForUnknownCrossRefWorkTypes() throws Exception {
+        JsonObject csl = JsonParser.parseString(WorkTransformer.transform(UNKNOWN_TYPE, CITEPROC_JSON))
+                                   .getAsJsonObject();
+        JsonObject datacite = JsonParser.parseString(WorkTransformer.transform(UNKNOWN_TYPE, DATACITE_JSON))
+                                        .getAsJsonObject();
+        Element xml = parseXml(WorkTransformer.transform(UNKNOWN_TYPE, DATACITE_XML)).getDocumentElement();
+
+        assertThat(csl.get("type").getAsString(), is(equalTo(WorkTransformer.DEFAULT_CSL_TYPE)));
+        assertThat(datacite.getAsJsonObject("types").get("resourceTypeGeneral").getAsString(),
+                   is(equalTo(WorkTransformer.DEFAULT_RESOURCE_TYPE_GENERAL)));
+        JsonObject container = datacite.getAsJsonObject("container");
+        assertThat(container.get("type").getAsString(), is(equalTo(WorkTransformer.DEFAULT_CONTAINER_TYPE)));
+        assertThat(container.get("firstPage").getAsString(), is(equalTo("12")));
+        assertThat(container.has("lastPage"), is(false));
+        assertThat(datacite.getAsJsonArray("dates").get(0).getAsJsonObject().get("date").getAsString(),
+                   is(equalTo("2020-01-09")));
+        assertThat(text(xml, "description"), is(equalTo("Reviews, 12")));
+    }
+
+    @Test
+    @DisplayName("read keeps the bibliographic fields of a DataCite work")
+    public void readKeepsTheBibliographicFieldsOfADataciteWork() throws IOException {
+        Work work = WorkTransformer.read(new StringReader(DATACITE_WORK));
+
+        assertThat(work.getDoi(), is(equalTo("10.5061/dryad.2")));
+        assertThat(work.getUrl(), is(equalTo("https://datadryad.org/2")));
+        assertThat(work.getType(), is(equalTo("Data")));
+        assertThat(work.getCslType(), is(equalTo("dataset")));
+        assertThat(work.getResourceTypeGeneral(), is(equalTo("Dataset")));
+        assertThat(work.getAgency(), is(equalTo("datacite")));
+        assertThat(work.getTitles(), is(equalTo(List.of("Seeds"))));
+        assertThat(work.getSubtitles(), is(equalTo(List.of("Of change"))));
+        assertThat(work.getAuthors().size(), is(2));
+        assertThat(work.getAuthors().get(0).getFamily(), is(equalTo("Lovelace")));
+        assertThat(work.getAuthors().get(0).getOrcid(), is(equalTo("https://orcid.org/0000-0002-1825-0097")));
+        assertThat(work.getAuthors().get(1).isPerson(), is(false));
+        assertThat(work.getAuthors().get(1).getName(), is(equalTo("Dryad")));
+        assertThat(work.getEditors().size(), is(1));
+        assertThat(work.getEditors().get(0).getGiven(), is(equalTo("Charles")));
+        assertThat(work.getContainerTitles(), is(equalTo(List.of("Seed Bank"))));
+        assertThat(work.getVolume(), is(equalTo("7")));
+        assertThat(work.getPage(), is(equalTo("3-9")));
+        assertThat(work.getPublisher(), is(equalTo("Dryad")));
+        assertThat(work.getIssued(), is(equalTo(List.of(2018, 11, 2))));
+        assertThat(work.getIsbns(), is(equalTo(List.of("978-3-16-148410-0"))));
+        assertThat(work.getIssns(), is(equalTo(List.of("1234-5678", "8765-4321"))));
+    }
+
+    @Test
+    @DisplayName("read takes the publication year of a DataCite work without a date of issue")
+    public void readTakesThePublicationYearOfADataciteWorkWithoutADateOfIssue() throws IOException {
+        Work work = WorkTransformer.read(new StringReader(
+            "{\"doi\":\"10.5061/dryad.3\",\"publicationYear\":\"2019\",\"dates\":[{\"date\":\"soon\","
+                + "\"dateType\":\"Issued\"}],\"container\":[],\"types\":null}"));
+
+        assertThat(work.getIssued(), is(equalTo(List.of(2019))));
+        assertThat(work.getType(), is((String) null));
+    }
+
+    @Test
+    @DisplayName("transform derives the CSL of a DataCite work with the types DataCite names")
+    public void transformDerivesTheCslOfADataciteWorkWithTheTypesDataciteNames() throws Exception {
+        JsonObject csl = JsonParser.parseString(WorkTransformer.transform(DATACITE_WORK, CITEPROC_JSON))
+                                   .getAsJsonObject();
+        Element xml = parseXml(WorkTransformer.transform(DATACITE_WORK, DATACITE_XML)).getDocumentElement();
+
+        assertThat(csl.get("type").getAsString(), is(equalTo("dataset")));
+        assertThat(csl.get("DOI").getAsString(), is(equalTo("10.5061/dryad.2")));
+        assertThat(csl.getAsJsonArray("editor").size(), is(1));
+        assertThat(text(xml, "resourceType"), is(equalTo("Data")));
+        assertThat(((Element) xml.getElementsByTagNameNS(WorkTransformer.DATACITE_NAMESPACE, "resourceType").item(0))
+                       .getAttribute("resourceTypeGeneral"), is(equalTo("Dataset")));
+    }
+
+    @Test
+    @DisplayName("transform derives the same CSL from a CrossRef work as from its DataCite JSON rendering")
+    public void transformDerivesTheSameCslFromACrossRefWorkAsFromItsDataciteJsonRendering() throws IOException {
+        String crossRefWork = IoUtils.resourceAsString(CrossRefSamplePath);
+        String canonical = WorkTransformer.transform(crossRefWork, DATACITE_JSON);
+
+        assertThat(JsonParser.parseString(WorkTransformer.transform(canonical, CITEPROC_JSON)),
+                   is(equalTo(JsonParser.parseString(WorkTransformer.transform(crossRefWork, CITEPROC_JSON)))));
+        assertThat(WorkTransformer.transform(canonical, DATACITE_JSON), is(equalTo(canonical)));
+    }
+
+    @Test
+    @DisplayName("read throws IOException for malformed works JSON")
+    public void readThrowsIoExceptionForMalformedWorksJson() {
+        assertThrows(IOException.class, () -> WorkTransformer.read(new StringReader("{\"status\":")));
+        assertThrows(IOException.class, () -> WorkTransformer.read(new StringReader("[\"message\"]")));
+    }
+
+    private static Document parseXml(String xml) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String text(Element element, String name) {
+        return element.getElementsByTagNameNS(WorkTransformer.DATACITE_NAMESPACE, name).item(0).getTextContent();
+    }
+}
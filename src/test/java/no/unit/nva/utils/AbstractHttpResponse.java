@@ -5,15 +5,24 @@ import java.net.http.HttpClient.Version;
 import java.net.http.HttpHeaders;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.net.ssl.SSLSession;
 
 public abstract class AbstractHttpResponse<S> implements HttpResponse<S> {
 
     protected final S responseBody;
+    protected final Map<String, List<String>> responseHeaders;
 
     public AbstractHttpResponse(S responseBody) {
+        this(responseBody, Collections.emptyMap());
+    }
+
+    public AbstractHttpResponse(S responseBody, Map<String, List<String>> responseHeaders) {
         this.responseBody = responseBody;
+        this.responseHeaders = responseHeaders;
     }
 
     @Override
@@ -28,7 +37,7 @@ public abstract class AbstractHttpResponse<S> implements HttpResponse<S> {
 
     @Override
     public HttpHeaders headers() {
-        return null;
+        return HttpHeaders.of(responseHeaders, (name, value) -> true);
     }
 
     @Override
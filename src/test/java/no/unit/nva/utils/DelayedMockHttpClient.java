@@ -0,0 +1,26 @@
+package no.unit.nva.utils;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class DelayedMockHttpClient<R> extends MockHttpClient<R> {
+
+    private final Duration delay;
+
+    public DelayedMockHttpClient(AbstractHttpResponse<R> response, Duration delay) {
+        super(response);
+        this.delay = delay;
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            BodyHandler<T> responseBodyHandler) {
+        CompletableFuture<HttpResponse<T>> immediate = super.sendAsync(request, responseBodyHandler);
+        return immediate.thenApplyAsync(response -> response,
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,48 @@
+package no.unit.nva.utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import no.unit.nva.doi.DataciteClient;
+import no.unit.nva.doi.DataciteContentType;
+import no.unit.nva.doi.MetadataAndContentLocation;
+
+public class FakeDataciteClient extends DataciteClient {
+
+    public static final String DATACITE_JSON = "{\"id\":\"https://doi.org/10.5061/dryad.1\"}";
+
+    private final IOException failure;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private final List<DataciteContentType> requestedContentTypes = new CopyOnWriteArrayList<>();
+
+    public FakeDataciteClient() {
+        this(null);
+    }
+
+    public FakeDataciteClient(IOException failure) {
+        super();
+        this.failure = failure;
+    }
+
+    @Override
+    public CompletableFuture<MetadataAndContentLocation> fetchMetadataAsync(String doiUrlString,
+                                                                            DataciteContentType dataciteContentType) {
+        requestCount.incrementAndGet();
+        requestedContentTypes.add(dataciteContentType);
+        if (failure != null) {
+            return CompletableFuture.failedFuture(failure);
+        }
+        return CompletableFuture.completedFuture(new MetadataAndContentLocation(DATACITE_BASE_URL_STRING,
+                                                                                DATACITE_JSON));
+    }
+
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public List<DataciteContentType> getRequestedContentTypes() {
+        return requestedContentTypes;
+    }
+}
@@ -1,5 +1,7 @@
 package no.unit.nva.utils;
 
+import java.util.List;
+import java.util.Map;
 import org.apache.http.HttpStatus;
 
 public class HttpResponseStatus404<S> extends AbstractHttpResponse<S> {
@@ -8,6 +10,10 @@ public class HttpResponseStatus404<S> extends AbstractHttpResponse<S> {
         super(responseBody);
     }
 
+    public HttpResponseStatus404(S responseBody, Map<String, List<String>> responseHeaders) {
+        super(responseBody, responseHeaders);
+    }
+
     @Override
     public int statusCode() {
         return HttpStatus.SC_NOT_FOUND;
@@ -0,0 +1,26 @@
+package no.unit.nva.utils;
+
+import java.util.List;
+import java.util.Map;
+import org.apache.http.HttpStatus;
+
+public class HttpResponseStatus503<S> extends AbstractHttpResponse<S> {
+
+    public HttpResponseStatus503(S responseBody) {
+        super(responseBody);
+    }
+
+    public HttpResponseStatus503(S responseBody, Map<String, List<String>> responseHeaders) {
+        super(responseBody, responseHeaders);
+    }
+
+    @Override
+    public int statusCode() {
+        return HttpStatus.SC_SERVICE_UNAVAILABLE;
+    }
+
+    @Override
+    public S body() {
+        return responseBody;
+    }
+}
@@ -12,12 +12,15 @@ import java.time.Duration;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLParameters;
 
 public class MockHttpClient<R> extends HttpClient {
 
     protected final AbstractHttpResponse<R> response;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile HttpRequest lastRequest;
 
     public MockHttpClient(AbstractHttpResponse<R> response) {
         this.response = response;
@@ -27,7 +30,8 @@ public class MockHttpClient<R> extends HttpClient {
     @Override
     public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
                                                             BodyHandler<T> responseBodyHandler) {
-
+        requestCount.incrementAndGet();
+        lastRequest = request;
         CompletableFuture<HttpResponse<T>> result = CompletableFuture.completedFuture(
             ((HttpResponse<T>) response));
         return result;
@@ -40,6 +44,14 @@ public class MockHttpClient<R> extends HttpClient {
         return null;
     }
 
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    public HttpRequest getLastRequest() {
+        return lastRequest;
+    }
+
     @Override
     public Optional<CookieHandler> cookieHandler() {
         return Optional.empty();
@@ -0,0 +1,42 @@
+package no.unit.nva.utils;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Client whose exchanges never complete and, like those of the JDK 11 client, are not aborted by cancelling their
+ * futures.
+ */
+public class PendingMockHttpClient<R> extends MockHttpClient<R> {
+
+    private final List<CompletableFuture<?>> exchanges = new ArrayList<>();
+
+    public PendingMockHttpClient(AbstractHttpResponse<R> response) {
+        super(response);
+    }
+
+    @Override
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            BodyHandler<T> responseBodyHandler) {
+        super.sendAsync(request, responseBodyHandler);
+        CompletableFuture<HttpResponse<T>> exchange = new Exchange<>();
+        exchanges.add(exchange);
+        return exchange;
+    }
+
+    public List<CompletableFuture<?>> getExchanges() {
+        return exchanges;
+    }
+
+    private static class Exchange<T> extends CompletableFuture<T> {
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+    }
+}
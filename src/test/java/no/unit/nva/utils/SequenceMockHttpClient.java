@@ -0,0 +1,31 @@
+package no.unit.nva.utils;
+
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Mock client answering each request with the next response of a list, and with the last one when the list is used
+ * up.
+ */
+public class SequenceMockHttpClient<R> extends MockHttpClient<R> {
+
+    private final List<AbstractHttpResponse<R>> responses;
+
+    public SequenceMockHttpClient(List<AbstractHttpResponse<R>> responses) {
+        super(responses.get(0));
+        this.responses = responses;
+    }
+
+    // T must be the same with R
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<HttpResponse<T>> sendAsync(HttpRequest request,
+                                                            BodyHandler<T> responseBodyHandler) {
+        super.sendAsync(request, responseBodyHandler);
+        int index = Math.min(getRequestCount(), responses.size()) - 1;
+        return CompletableFuture.completedFuture((HttpResponse<T>) responses.get(index));
+    }
+}